@@ -0,0 +1,210 @@
+/*
+ * BillingReportsBenchmark.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Feb 16, 2014 at 11:05:52 AM.
+ */
+
+package com.belcan.beltime.model;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import com.belcan.beltime.util.DateRange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for the {@link BillingReports} class.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@Fork( value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" } )
+@Measurement( iterations = 5 )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@State( Scope.Benchmark )
+@Warmup( iterations = 3 )
+public class BillingReportsBenchmark
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /** The number of activities in the time card. */
+    @Param( { "100", "1000", "10000", "100000", "1000000", "10000000" } )
+    public int activityCount;
+
+    /** The number of distinct charge numbers billed by the time card. */
+    @Param( { "1", "16", "256", "4096" } )
+    public int chargeNumberCount;
+
+    /** The collection of activities in the time card. */
+    private List<Activity> activities_;
+
+    /** The last seven days spanned by the time card. */
+    private DateRange lastWeek_;
+
+    /** The time card under test. */
+    private TimeCard timeCard_;
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code BillingReportsBenchmark} class.
+     */
+    public BillingReportsBenchmark()
+    {
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /**
+     * Measures the cost of generating the daily billing reports for the entire
+     * time card.
+     * 
+     * @return The daily billing reports.
+     */
+    @Benchmark
+    public Collection<BillingReport> daily()
+    {
+        return BillingReports.daily( timeCard_ );
+    }
+
+    /**
+     * Measures the cost of generating the daily billing reports for the entire
+     * time card in parallel.
+     * 
+     * @param executor
+     *        The executor that generates the billing reports.
+     * 
+     * @return The daily billing reports.
+     * 
+     * @throws java.lang.InterruptedException
+     *         If the benchmark thread is interrupted while waiting for the
+     *         billing reports.
+     */
+    @Benchmark
+    public Collection<BillingReport> dailyParallel(
+        final Executor executor )
+        throws InterruptedException
+    {
+        return BillingReports.daily( timeCard_, executor.executorService_ );
+    }
+
+    /**
+     * Measures the cost of generating the daily billing reports for the last
+     * week of the time card.
+     * 
+     * @return The daily billing reports.
+     */
+    @Benchmark
+    public Collection<BillingReport> dailyWithDateRange()
+    {
+        return BillingReports.daily( timeCard_, lastWeek_ );
+    }
+
+    /**
+     * Measures the cost of computing the days spanned by every activity in the
+     * time card.
+     * 
+     * @param blackhole
+     *        The blackhole that consumes the days spanned by each activity.
+     */
+    @Benchmark
+    public void getActivityDays(
+        final Blackhole blackhole )
+    {
+        for( final Activity activity : activities_ )
+        {
+            blackhole.consume( BillingReports.getActivityDays( activity ) );
+        }
+    }
+
+    /**
+     * Creates the time card under test.
+     */
+    @Setup
+    public void setUp()
+    {
+        timeCard_ = SyntheticTimeCards.create( activityCount, SyntheticTimeCards.createChargeNumbers( chargeNumberCount ) );
+        activities_ = timeCard_.getActivities();
+
+        final long lastDay = EpochDays.getDay( activities_.get( activities_.size() - 1 ).getStopTimeInMilliseconds() );
+        lastWeek_ = DateRange.fromMilliseconds( EpochDays.getStartTime( lastDay - 6L ), EpochDays.getEndTime( lastDay ) );
+    }
+
+
+    // ======================================================================
+    // Nested Types
+    // ======================================================================
+
+    /**
+     * The executor used by the parallel benchmarks.
+     * 
+     * <p>
+     * The thread count is a parameter of this state rather than of the
+     * enclosing benchmark so that only the parallel benchmarks are run once
+     * per thread count.
+     * </p>
+     */
+    @State( Scope.Benchmark )
+    public static class Executor
+    {
+        /** The number of threads in the executor. */
+        @Param( { "1", "2", "4", "8" } )
+        public int threadCount;
+
+        /** The executor service under test. */
+        ExecutorService executorService_;
+
+        /**
+         * Initializes a new instance of the {@code Executor} class.
+         */
+        public Executor()
+        {
+        }
+
+        /**
+         * Creates the executor service.
+         */
+        @Setup
+        public void setUp()
+        {
+            executorService_ = Executors.newFixedThreadPool( threadCount );
+        }
+
+        /**
+         * Shuts down the executor service.
+         */
+        @TearDown
+        public void tearDown()
+        {
+            executorService_.shutdown();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * SyntheticTimeCards.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Feb 16, 2014 at 10:14:03 AM.
+ */
+
+package com.belcan.beltime.model;
+
+import java.util.Locale;
+import java.util.Random;
+import com.belcan.beltime.util.NullAnalysis;
+
+/**
+ * A collection of methods for generating synthetic time cards for use in
+ * benchmarks.
+ * 
+ * <p>
+ * The generated time cards are deterministic: the same arguments always
+ * produce the same sequence of activities, so results from different runs can
+ * be compared against each other.
+ * </p>
+ */
+final class SyntheticTimeCards
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /** The time (2014-01-01T00:00:00Z) at which the first activity starts. */
+    private static final long FIRST_START_TIME = 1388534400000L;
+
+    /** The longest generated activity duration in milliseconds. */
+    private static final int MAXIMUM_ACTIVITY_DURATION = 4 * 60 * 60 * 1000;
+
+    /** The shortest generated activity duration in milliseconds. */
+    private static final int MINIMUM_ACTIVITY_DURATION = 5 * 60 * 1000;
+
+    /** The seed of the random number generator used to generate activities. */
+    private static final long SEED = 20140216L;
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code SyntheticTimeCards} class.
+     */
+    private SyntheticTimeCards()
+    {
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /**
+     * Creates a new inactive time card containing the specified number of
+     * activities.
+     * 
+     * <p>
+     * Each activity lasts between five minutes and four hours and is billed to
+     * a charge number chosen at random. Roughly one activity in four is
+     * followed by an idle gap, and the remaining activities are started as
+     * soon as the previous activity stops.
+     * </p>
+     * 
+     * @param activityCount
+     *        The number of activities.
+     * @param chargeNumbers
+     *        The collection of charge numbers to be billed.
+     * 
+     * @return A new inactive time card.
+     */
+    static TimeCard create(
+        final int activityCount,
+        final ChargeNumber[] chargeNumbers )
+    {
+        final Random random = new Random( SEED );
+        final TimeCard timeCard = new TimeCard();
+        long time = FIRST_START_TIME;
+        for( int index = 0; index < activityCount; ++index )
+        {
+            timeCard.startActivity( NullAnalysis.nonNull( chargeNumbers[ random.nextInt( chargeNumbers.length ) ] ), time );
+            time += MINIMUM_ACTIVITY_DURATION + random.nextInt( MAXIMUM_ACTIVITY_DURATION - MINIMUM_ACTIVITY_DURATION );
+            if( random.nextInt( 4 ) == 0 )
+            {
+                timeCard.stopActiveActivity( time );
+                time += random.nextInt( MAXIMUM_ACTIVITY_DURATION );
+            }
+        }
+
+        if( timeCard.isActive() )
+        {
+            timeCard.stopActiveActivity( time );
+        }
+
+        return timeCard;
+    }
+
+    /**
+     * Creates the specified number of distinct charge numbers.
+     * 
+     * @param chargeNumberCount
+     *        The number of charge numbers.
+     * 
+     * @return A new collection of distinct charge numbers.
+     */
+    static ChargeNumber[] createChargeNumbers(
+        final int chargeNumberCount )
+    {
+        final ChargeNumber[] chargeNumbers = new ChargeNumber[ chargeNumberCount ];
+        for( int index = 0; index < chargeNumberCount; ++index )
+        {
+            chargeNumbers[ index ] = ChargeNumber.fromString( NullAnalysis.nonNull( String.format( Locale.US, "%07d.%04d", Integer.valueOf( index ), Integer.valueOf( index % 10000 ) ) ) ); //$NON-NLS-1$
+        }
+
+        return chargeNumbers;
+    }
+}
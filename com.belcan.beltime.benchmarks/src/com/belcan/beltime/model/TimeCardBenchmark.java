@@ -0,0 +1,139 @@
+/*
+ * TimeCardBenchmark.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Feb 16, 2014 at 10:41:27 AM.
+ */
+
+package com.belcan.beltime.model;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the {@link TimeCard} class.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@Fork( value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" } )
+@Measurement( iterations = 5 )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@State( Scope.Benchmark )
+@Warmup( iterations = 3 )
+public class TimeCardBenchmark
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /** The number of activities in the time card before each iteration. */
+    @Param( { "100", "1000", "10000", "100000", "1000000", "10000000" } )
+    public int activityCount;
+
+    /** The number of distinct charge numbers billed by the time card. */
+    @Param( { "1", "16", "256", "4096" } )
+    public int chargeNumberCount;
+
+    /** The collection of charge numbers billed by the time card. */
+    private ChargeNumber[] chargeNumbers_;
+
+    /** The index of the charge number to be billed by the next activity. */
+    private int nextChargeNumberIndex_;
+
+    /** The time at which the next activity starts. */
+    private long nextStartTime_;
+
+    /** The time card under test. */
+    private TimeCard timeCard_;
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code TimeCardBenchmark} class.
+     */
+    public TimeCardBenchmark()
+    {
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /**
+     * Measures the cost of copying the collection of activities.
+     * 
+     * @return The collection of activities.
+     */
+    @Benchmark
+    public List<Activity> getActivities()
+    {
+        return timeCard_.getActivities();
+    }
+
+    /**
+     * Measures the cost of taking a snapshot of the time card and reading its
+     * last activity.
+     * 
+     * @return The last activity of the time card.
+     */
+    @Benchmark
+    public Activity getSnapshot()
+    {
+        final List<Activity> activities = timeCard_.getSnapshot().getActivities();
+        return activities.get( activities.size() - 1 );
+    }
+
+    /**
+     * Creates the time card under test.
+     * 
+     * <p>
+     * The time card is recreated before each iteration so that the activities
+     * appended by {@link #startActivityAndStopActiveActivity} do not
+     * accumulate across iterations.
+     * </p>
+     */
+    @Setup( Level.Iteration )
+    public void setUp()
+    {
+        chargeNumbers_ = SyntheticTimeCards.createChargeNumbers( chargeNumberCount );
+        timeCard_ = SyntheticTimeCards.create( activityCount, chargeNumbers_ );
+        nextChargeNumberIndex_ = 0;
+        nextStartTime_ = timeCard_.getActivities().get( activityCount - 1 ).getStopTimeInMilliseconds();
+    }
+
+    /**
+     * Measures the cost of appending one activity to the time card.
+     */
+    @Benchmark
+    public void startActivityAndStopActiveActivity()
+    {
+        final ChargeNumber chargeNumber = chargeNumbers_[ nextChargeNumberIndex_ ];
+        nextChargeNumberIndex_ = (nextChargeNumberIndex_ + 1) % chargeNumbers_.length;
+
+        timeCard_.startActivity( chargeNumber, nextStartTime_ );
+        nextStartTime_ += 60L * 60L * 1000L;
+        timeCard_.stopActiveActivity( nextStartTime_ );
+    }
+}
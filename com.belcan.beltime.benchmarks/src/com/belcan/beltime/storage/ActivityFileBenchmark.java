@@ -0,0 +1,151 @@
+/*
+ * ActivityFileBenchmark.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Mar 5, 2014 at 11:42:27 AM.
+ */
+
+package com.belcan.beltime.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import com.belcan.beltime.model.BillingReport;
+import com.belcan.beltime.model.BillingReports;
+import com.belcan.beltime.model.ChargeNumber;
+import com.belcan.beltime.model.TimeCard;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the {@link ActivityFile} class.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@Fork( value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" } )
+@Measurement( iterations = 5 )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@State( Scope.Benchmark )
+@Warmup( iterations = 3 )
+public class ActivityFileBenchmark
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /** The number of distinct charge numbers billed by the activities. */
+    private static final int CHARGE_NUMBER_COUNT = 16;
+
+    /** The number of activities in the activity file. */
+    @Param( { "1000", "100000", "1000000" } )
+    public int activityCount;
+
+    /** The opened activity file. */
+    private ActivityFile activityFile_;
+
+    /** The activity file. */
+    private File file_;
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code ActivityFileBenchmark} class.
+     */
+    public ActivityFileBenchmark()
+    {
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /**
+     * Measures the cost of computing the daily billing reports by scanning the
+     * mapped activity records.
+     * 
+     * @return The daily billing reports.
+     */
+    @Benchmark
+    public Collection<BillingReport> daily()
+    {
+        return BillingReports.daily( activityFile_ );
+    }
+
+    /**
+     * Measures the cost of opening the activity file.
+     * 
+     * @return The opened activity file.
+     * 
+     * @throws java.io.IOException
+     *         If an I/O error occurs.
+     */
+    @Benchmark
+    public ActivityFile open()
+        throws IOException
+    {
+        return ActivityFile.open( file_ );
+    }
+
+    /**
+     * Writes the activity file of a time card in which activities are
+     * alternately started and stopped.
+     * 
+     * @throws java.io.IOException
+     *         If an I/O error occurs.
+     */
+    @Setup
+    public void setUp()
+        throws IOException
+    {
+        final ChargeNumber[] chargeNumbers = new ChargeNumber[ CHARGE_NUMBER_COUNT ];
+        for( int index = 0; index < CHARGE_NUMBER_COUNT; ++index )
+        {
+            chargeNumbers[ index ] = ChargeNumber.fromString( String.format( "%07d.%04d", index, index ) ); //$NON-NLS-1$
+        }
+
+        final TimeCard timeCard = new TimeCard();
+        long time = 0L;
+        for( int index = 0; index < activityCount; ++index )
+        {
+            time += 60L * 1000L;
+            timeCard.startActivity( chargeNumbers[ index % CHARGE_NUMBER_COUNT ], time );
+            time += 60L * 1000L;
+            timeCard.stopActiveActivity( time );
+        }
+
+        file_ = File.createTempFile( "beltime", ".activities" ); //$NON-NLS-1$ //$NON-NLS-2$
+        ActivityFile.write( file_, timeCard.getSnapshot().getActivityRecords() );
+        activityFile_ = ActivityFile.open( file_ );
+    }
+
+    /**
+     * Deletes the activity file.
+     */
+    @TearDown
+    public void tearDown()
+    {
+        file_.delete();
+        ActivityFile.getChargeNumbersFile( file_ ).delete();
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * ActivityStorageBenchmark.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Mar 7, 2014 at 3:37:52 PM.
+ */
+
+package com.belcan.beltime.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import com.belcan.beltime.model.BillingReport;
+import com.belcan.beltime.model.BillingReports;
+import com.belcan.beltime.model.ChargeNumber;
+import com.belcan.beltime.model.TimeCard;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks that compare the activity storage engines of a time card.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@Fork( value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" } )
+@Measurement( iterations = 5 )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@State( Scope.Benchmark )
+@Warmup( iterations = 3 )
+public class ActivityStorageBenchmark
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /** The number of distinct charge numbers billed by the time card. */
+    private static final int CHARGE_NUMBER_COUNT = 16;
+
+    /** The number of activities in the time card before each iteration. */
+    @Param( { "1000", "100000", "1000000" } )
+    public int activityCount;
+
+    /**
+     * The storage engine of the time card: {@code memory} for the default
+     * in-memory engine or {@code file} for {@link FileActivityStorage}.
+     */
+    @Param( { "memory", "file" } )
+    public String engine;
+
+    /** The charge numbers billed by the time card. */
+    private ChargeNumber[] chargeNumbers_;
+
+    /** The file of the file-backed engine or {@code null} if none. */
+    private File file_;
+
+    /** The file-backed storage or {@code null} if none. */
+    private FileActivityStorage storage_;
+
+    /** The time at which the next activity starts. */
+    private long time_;
+
+    /** The time card. */
+    private TimeCard timeCard_;
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code ActivityStorageBenchmark}
+     * class.
+     */
+    public ActivityStorageBenchmark()
+    {
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /**
+     * Measures the cost of computing the daily billing reports of the time
+     * card, which scans every stored activity.
+     * 
+     * @return The daily billing reports.
+     */
+    @Benchmark
+    public Collection<BillingReport> daily()
+    {
+        return BillingReports.daily( timeCard_ );
+    }
+
+    /**
+     * Creates a time card backed by the selected engine in which activities
+     * are alternately started and stopped.
+     * 
+     * @throws java.io.IOException
+     *         If an I/O error occurs.
+     */
+    @Setup( Level.Iteration )
+    public void setUp()
+        throws IOException
+    {
+        chargeNumbers_ = new ChargeNumber[ CHARGE_NUMBER_COUNT ];
+        for( int index = 0; index < CHARGE_NUMBER_COUNT; ++index )
+        {
+            chargeNumbers_[ index ] = ChargeNumber.fromString( String.format( "%07d.%04d", index, index ) ); //$NON-NLS-1$
+        }
+
+        if( "file".equals( engine ) ) //$NON-NLS-1$
+        {
+            file_ = File.createTempFile( "beltime", ".storage" ); //$NON-NLS-1$ //$NON-NLS-2$
+            storage_ = FileActivityStorage.create( file_ );
+            timeCard_ = new TimeCard( storage_ );
+        }
+        else
+        {
+            timeCard_ = new TimeCard();
+        }
+
+        time_ = 0L;
+        for( int index = 0; index < activityCount; ++index )
+        {
+            startAndStop();
+        }
+    }
+
+    /**
+     * Measures the cost of starting and stopping an activity, which appends
+     * one activity to the storage and publishes two snapshots.
+     */
+    @Benchmark
+    public void startAndStop()
+    {
+        final int index = (int)(time_ / (2L * 60L * 1000L));
+        time_ += 60L * 1000L;
+        timeCard_.startActivity( chargeNumbers_[ index % CHARGE_NUMBER_COUNT ], time_ );
+        time_ += 60L * 1000L;
+        timeCard_.stopActiveActivity( time_ );
+    }
+
+    /**
+     * Closes and deletes the file of the file-backed engine, if any.
+     * 
+     * @throws java.io.IOException
+     *         If an I/O error occurs.
+     */
+    @TearDown( Level.Iteration )
+    public void tearDown()
+        throws IOException
+    {
+        if( storage_ != null )
+        {
+            storage_.close();
+            storage_ = null;
+        }
+
+        if( file_ != null )
+        {
+            file_.delete();
+            file_ = null;
+        }
+    }
+}
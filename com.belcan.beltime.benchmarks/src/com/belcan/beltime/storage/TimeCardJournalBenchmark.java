@@ -0,0 +1,153 @@
+/*
+ * TimeCardJournalBenchmark.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Mar 4, 2014 at 1:27:52 PM.
+ */
+
+package com.belcan.beltime.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import com.belcan.beltime.model.ChargeNumber;
+import com.belcan.beltime.model.TimeCard;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the {@link TimeCardJournal} class.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@Fork( value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" } )
+@Measurement( iterations = 5 )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@State( Scope.Benchmark )
+@Warmup( iterations = 3 )
+public class TimeCardJournalBenchmark
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /** The number of distinct charge numbers billed by the time card. */
+    private static final int CHARGE_NUMBER_COUNT = 16;
+
+    /**
+     * Indicates the journal is compacted into a snapshot before it is
+     * recovered.
+     */
+    @Param( { "false", "true" } )
+    public boolean compacted;
+
+    /** The number of events recorded in the journal. */
+    @Param( { "1000", "100000", "1000000" } )
+    public int eventCount;
+
+    /** The journal file. */
+    private File file_;
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code TimeCardJournalBenchmark}
+     * class.
+     */
+    public TimeCardJournalBenchmark()
+    {
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /**
+     * Measures the cost of recovering a time card from the journal, and from
+     * its snapshot if the journal is compacted. The journal is never compacted
+     * while it is recovered, so every invocation recovers the same files.
+     * 
+     * @return The recovered time card.
+     * 
+     * @throws java.io.IOException
+     *         If an I/O error occurs.
+     */
+    @Benchmark
+    public TimeCard open()
+        throws IOException
+    {
+        final TimeCard timeCard = new TimeCard();
+        TimeCardJournal.open( file_, timeCard, Long.MAX_VALUE ).close();
+        return timeCard;
+    }
+
+    /**
+     * Records the journal of a time card in which activities are alternately
+     * started and stopped.
+     * 
+     * @throws java.io.IOException
+     *         If an I/O error occurs.
+     */
+    @Setup
+    public void setUp()
+        throws IOException
+    {
+        final ChargeNumber[] chargeNumbers = new ChargeNumber[ CHARGE_NUMBER_COUNT ];
+        for( int index = 0; index < CHARGE_NUMBER_COUNT; ++index )
+        {
+            chargeNumbers[ index ] = ChargeNumber.fromString( String.format( "%07d.%04d", index, index ) ); //$NON-NLS-1$
+        }
+
+        file_ = File.createTempFile( "beltime", ".journal" ); //$NON-NLS-1$ //$NON-NLS-2$
+        final TimeCard timeCard = new TimeCard();
+        final TimeCardJournal journal = TimeCardJournal.open( file_, timeCard, Long.MAX_VALUE );
+        long time = 0L;
+        for( int index = 0; index < eventCount; ++index )
+        {
+            time += 60L * 1000L;
+            if( timeCard.isActive() )
+            {
+                timeCard.stopActiveActivity( time );
+            }
+            else
+            {
+                timeCard.startActivity( chargeNumbers[ index % CHARGE_NUMBER_COUNT ], time );
+            }
+        }
+        if( compacted )
+        {
+            journal.compact();
+        }
+        journal.close();
+    }
+
+    /**
+     * Deletes the journal file and its snapshot file.
+     */
+    @TearDown
+    public void tearDown()
+    {
+        file_.delete();
+        TimeCardJournal.getSnapshotFile( file_ ).delete();
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * ActivityStoreTest.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Mar 2, 2014 at 1:47:05 PM.
+ */
+
+package com.belcan.beltime.model;
+
+import junit.framework.TestCase;
+
+/**
+ * A fixture for testing the {@link ActivityStore} class.
+ */
+public final class ActivityStoreTest
+    extends TestCase
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /** The activity store under test in the fixture. */
+    private ActivityStore activityStore_;
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code ActivityStoreTest} class.
+     */
+    public ActivityStoreTest()
+    {
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /*
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        activityStore_ = new ActivityStore();
+    }
+
+    /**
+     * Ensures the {@link ActivityStore#append} method retains each activity
+     * after the store has grown across several segments.
+     */
+    @SuppressWarnings( "null" )
+    public void testAppend_RetainsActivitiesAfterGrowth()
+    {
+        final int count = 3 * ActivityStore.SEGMENT_SIZE + 1;
+        for( int index = 0; index < count; ++index )
+        {
+            activityStore_.append( (index % 2 == 0) ? TestChargeNumbers.CHARGE_NUMBER_1 : TestChargeNumbers.CHARGE_NUMBER_2, 10L * index, 10L * index + 5L );
+        }
+
+        assertEquals( count, activityStore_.size() );
+        for( int index = 0; index < count; ++index )
+        {
+            assertEquals( (index % 2 == 0) ? TestChargeNumbers.CHARGE_NUMBER_1 : TestChargeNumbers.CHARGE_NUMBER_2, activityStore_.getChargeNumber( index ) );
+            assertEquals( 10L * index, activityStore_.getStartTime( index ) );
+            assertEquals( 10L * index + 5L, activityStore_.getStopTime( index ) );
+        }
+    }
+
+    /**
+     * Ensures the {@link ActivityStore#createReadOnlyView} method creates a
+     * view that cannot be modified.
+     */
+    @SuppressWarnings( "null" )
+    public void testCreateReadOnlyView_CannotBeModified()
+    {
+        final ActivityStore view = activityStore_.createReadOnlyView();
+
+        try
+        {
+            view.append( TestChargeNumbers.CHARGE_NUMBER_1, 0L, 10L );
+            fail( "add() did not throw IllegalStateException" ); //$NON-NLS-1$
+        }
+        catch( final IllegalStateException e )
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Ensures the {@link ActivityStore#createReadOnlyView} method creates a
+     * view that is unaffected by activities added to the store afterwards.
+     */
+    @SuppressWarnings( "null" )
+    public void testCreateReadOnlyView_IsUnaffectedByLaterActivities()
+    {
+        activityStore_.append( TestChargeNumbers.CHARGE_NUMBER_1, 0L, 10L );
+        final ActivityStore view = activityStore_.createReadOnlyView();
+
+        for( int index = 1; index <= ActivityStore.SEGMENT_SIZE; ++index )
+        {
+            activityStore_.append( TestChargeNumbers.CHARGE_NUMBER_2, 10L * index, 10L * index + 5L );
+        }
+
+        assertEquals( 1, view.size() );
+        assertEquals( TestChargeNumbers.CHARGE_NUMBER_1, view.getChargeNumber( 0 ) );
+        assertEquals( 10L, view.getStopTime( 0 ) );
+        assertEquals( ActivityStore.SEGMENT_SIZE + 1, activityStore_.size() );
+    }
+
+    /**
+     * Ensures the {@link ActivityStore#createWritableCopy} method creates a
+     * store that may be modified without affecting the views and copies that
+     * share its segments.
+     */
+    @SuppressWarnings( "null" )
+    public void testCreateWritableCopy_IsIndependentOfOtherStores()
+    {
+        activityStore_.append( TestChargeNumbers.CHARGE_NUMBER_1, 0L, 10L );
+        final ActivityStore earlierView = activityStore_.createReadOnlyView();
+        activityStore_.append( TestChargeNumbers.CHARGE_NUMBER_1, 10L, 20L );
+        final ActivityStore laterView = activityStore_.createReadOnlyView();
+
+        final ActivityStore copy = earlierView.createWritableCopy();
+        copy.append( TestChargeNumbers.CHARGE_NUMBER_2, 30L, 40L );
+        activityStore_.append( TestChargeNumbers.CHARGE_NUMBER_1, 20L, 30L );
+
+        assertEquals( 1, earlierView.size() );
+        assertEquals( 2, laterView.size() );
+        assertEquals( TestChargeNumbers.CHARGE_NUMBER_1, laterView.getChargeNumber( 1 ) );
+        assertEquals( 10L, laterView.getStartTime( 1 ) );
+        assertEquals( 2, copy.size() );
+        assertEquals( TestChargeNumbers.CHARGE_NUMBER_2, copy.getChargeNumber( 1 ) );
+        assertEquals( 30L, copy.getStartTime( 1 ) );
+        assertEquals( 3, activityStore_.size() );
+        assertEquals( 10L, activityStore_.getStartTime( 1 ) );
+    }
+
+    /**
+     * Ensures the {@link ActivityStore#getFirstIndexStartingAfter} method
+     * returns the index of the first activity that starts after the specified
+     * time.
+     */
+    @SuppressWarnings( "null" )
+    public void testGetFirstIndexStartingAfter()
+    {
+        activityStore_.append( TestChargeNumbers.CHARGE_NUMBER_1, 0L, 10L );
+        activityStore_.append( TestChargeNumbers.CHARGE_NUMBER_1, 10L, 20L );
+        activityStore_.append( TestChargeNumbers.CHARGE_NUMBER_1, 30L, 40L );
+
+        assertEquals( 0, activityStore_.getFirstIndexStartingAfter( -1L, 3 ) );
+        assertEquals( 1, activityStore_.getFirstIndexStartingAfter( 0L, 3 ) );
+        assertEquals( 2, activityStore_.getFirstIndexStartingAfter( 10L, 3 ) );
+        assertEquals( 2, activityStore_.getFirstIndexStartingAfter( 29L, 3 ) );
+        assertEquals( 3, activityStore_.getFirstIndexStartingAfter( Long.MAX_VALUE, 3 ) );
+        assertEquals( 2, activityStore_.getFirstIndexStartingAfter( 35L, 2 ) );
+    }
+
+    /**
+     * Ensures the {@link ActivityStore#getFirstIndexStoppingAtOrAfter} method
+     * returns the index of the first activity that stops at or after the
+     * specified time.
+     */
+    @SuppressWarnings( "null" )
+    public void testGetFirstIndexStoppingAtOrAfter()
+    {
+        activityStore_.append( TestChargeNumbers.CHARGE_NUMBER_1, 0L, 10L );
+        activityStore_.append( TestChargeNumbers.CHARGE_NUMBER_1, 10L, 20L );
+        activityStore_.append( TestChargeNumbers.CHARGE_NUMBER_1, 30L, 40L );
+
+        assertEquals( 0, activityStore_.getFirstIndexStoppingAtOrAfter( Long.MIN_VALUE, 3 ) );
+        assertEquals( 0, activityStore_.getFirstIndexStoppingAtOrAfter( 10L, 3 ) );
+        assertEquals( 1, activityStore_.getFirstIndexStoppingAtOrAfter( 11L, 3 ) );
+        assertEquals( 2, activityStore_.getFirstIndexStoppingAtOrAfter( 25L, 3 ) );
+        assertEquals( 3, activityStore_.getFirstIndexStoppingAtOrAfter( 41L, 3 ) );
+        assertEquals( 2, activityStore_.getFirstIndexStoppingAtOrAfter( 25L, 2 ) );
+    }
+
+    /**
+     * Ensures the {@link ActivityStore#getMemoryUsage} method accounts for
+     * each allocated segment in full.
+     */
+    public void testGetMemoryUsage()
+    {
+        final long segmentMemoryUsage = (long)ActivityStore.SEGMENT_SIZE * ActivityStore.BYTES_PER_ACTIVITY;
+
+        assertEquals( 0L, ActivityStore.getMemoryUsage( 0 ) );
+        assertEquals( segmentMemoryUsage, ActivityStore.getMemoryUsage( 1 ) );
+        assertEquals( segmentMemoryUsage, ActivityStore.getMemoryUsage( ActivityStore.SEGMENT_SIZE ) );
+        assertEquals( 2L * segmentMemoryUsage, ActivityStore.getMemoryUsage( ActivityStore.SEGMENT_SIZE + 1 ) );
+    }
+
+    /**
+     * Ensures the {@link ActivityStore#isSegmentSealed} method indicates a
+     * segment is sealed only once it is full.
+     */
+    @SuppressWarnings( "null" )
+    public void testIsSegmentSealed()
+    {
+        for( int index = 0; index < ActivityStore.SEGMENT_SIZE - 1; ++index )
+        {
+            activityStore_.append( TestChargeNumbers.CHARGE_NUMBER_1, index, index + 1L );
+        }
+        assertFalse( activityStore_.isSegmentSealed( 0 ) );
+
+        activityStore_.append( TestChargeNumbers.CHARGE_NUMBER_1, ActivityStore.SEGMENT_SIZE - 1L, ActivityStore.SEGMENT_SIZE );
+        assertTrue( activityStore_.isSegmentSealed( 0 ) );
+
+        activityStore_.append( TestChargeNumbers.CHARGE_NUMBER_1, ActivityStore.SEGMENT_SIZE, ActivityStore.SEGMENT_SIZE + 1L );
+        assertTrue( activityStore_.isSegmentSealed( 0 ) );
+        assertFalse( activityStore_.isSegmentSealed( 1 ) );
+    }
+
+    /**
+     * Ensures the {@link ActivityStore#truncate} method does not affect views
+     * of the store taken before the store was truncated, even when activities
+     * are added to the store afterwards.
+     */
+    @SuppressWarnings( "null" )
+    public void testTruncate_DoesNotAffectViews()
+    {
+        for( int index = 0; index < ActivityStore.SEGMENT_SIZE + 1; ++index )
+        {
+            activityStore_.append( TestChargeNumbers.CHARGE_NUMBER_1, index, index + 1L );
+        }
+        final ActivityStore view = activityStore_.createReadOnlyView();
+
+        activityStore_.truncate( 1 );
+        activityStore_.append( TestChargeNumbers.CHARGE_NUMBER_2, 100L, 200L );
+
+        assertEquals( ActivityStore.SEGMENT_SIZE + 1, view.size() );
+        assertEquals( TestChargeNumbers.CHARGE_NUMBER_1, view.getChargeNumber( 1 ) );
+        assertEquals( 1L, view.getStartTime( 1 ) );
+        assertEquals( ActivityStore.SEGMENT_SIZE, view.getStartTime( ActivityStore.SEGMENT_SIZE ) );
+        assertEquals( 2, activityStore_.size() );
+        assertEquals( TestChargeNumbers.CHARGE_NUMBER_2, activityStore_.getChargeNumber( 1 ) );
+        assertEquals( 100L, activityStore_.getStartTime( 1 ) );
+    }
+}
@@ -67,6 +67,25 @@ public final class ActivityTest
         activity_ = Activity.start( TestChargeNumbers.CHARGE_NUMBER_1, START_TIME );
     }
 
+    /**
+     * Ensures the {@link Activity#createInactive(IActivityRecords, int)}
+     * method returns an inactive activity equivalent to the record at the
+     * specified index.
+     */
+    @SuppressWarnings( "null" )
+    public void testCreateInactive_ReturnsActivityEquivalentToRecord()
+    {
+        final ActivityStore activityStore = new ActivityStore();
+        activityStore.append( TestChargeNumbers.CHARGE_NUMBER_1, 1000L, 3000L );
+
+        final Activity activity = Activity.createInactive( activityStore, 0 );
+
+        assertFalse( activity.isActive() );
+        assertEquals( TestChargeNumbers.CHARGE_NUMBER_1, activity.getChargeNumber() );
+        assertEquals( 1000L, activity.getStartTime().getTime() );
+        assertEquals( 3000L, activity.getStopTime().getTime() );
+    }
+
     /**
      * Ensures the {@link Activity#getDuration} method returns the expected
      * duration.
@@ -110,6 +129,23 @@ public final class ActivityTest
         assertEquals( expectedStartTime, activity_.getStartTime() );
     }
 
+    /**
+     * Ensures the {@link Activity#getStopTimeInMilliseconds} method throws an
+     * exception if the activity is active.
+     */
+    public void testGetStopTimeInMilliseconds_ThrowsExceptionIfActivityActive()
+    {
+        try
+        {
+            activity_.getStopTimeInMilliseconds();
+            fail( "getStopTimeInMilliseconds() did not throw IllegalStateException" ); //$NON-NLS-1$
+        }
+        catch( final IllegalStateException e )
+        {
+            // expected
+        }
+    }
+
     /**
      * Ensures the {@link Activity#getStopTime} method returns a copy of the
      * stop time.
@@ -209,6 +245,23 @@ public final class ActivityTest
         }
     }
 
+    /**
+     * Ensures the {@link Activity#stop} method throws an exception if the stop
+     * time in milliseconds is less than the start time.
+     */
+    public void testStop_ThrowsExceptionIfStopTimeInMillisecondsLessThanStartTime()
+    {
+        try
+        {
+            activity_.stop( activity_.getStartTimeInMilliseconds() - 1L );
+            fail( "stop() did not throw IllegalArgumentException" ); //$NON-NLS-1$
+        }
+        catch( final IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+
     /**
      * Ensures the {@link Activity#stop} method throws an exception if the stop
      * time is less than the start time.
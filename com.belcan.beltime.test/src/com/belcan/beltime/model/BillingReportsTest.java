@@ -14,9 +14,15 @@
 
 package com.belcan.beltime.model;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import junit.framework.TestCase;
 import com.belcan.beltime.util.DateRange;
 import com.belcan.beltime.util.Duration;
@@ -49,6 +55,9 @@ public final class BillingReportsTest
     /** The start time (00:00:00) of day 3. */
     private static final long DAY_3_START_TIME = 172800000L;
 
+    /** One day expressed in milliseconds. */
+    private static final long ONE_DAY = 86400000L;
+
     /** One hour expressed in milliseconds. */
     private static final long ONE_HOUR = 3600000L;
 
@@ -69,6 +78,272 @@ public final class BillingReportsTest
     // Methods
     // ======================================================================
 
+    /**
+     * Creates a new billing report that spans the specified epoch days.
+     * 
+     * @param firstDay
+     *        The first epoch day, inclusive.
+     * @param lastDay
+     *        The last epoch day, inclusive.
+     * @param bills
+     *        The collection of bills in charge number order.
+     * 
+     * @return A new billing report.
+     */
+    @SuppressWarnings( "null" )
+    private static BillingReport createBillingReport(
+        final long firstDay,
+        final long lastDay,
+        final Bill... bills )
+    {
+        return new BillingReport( new DateRange( new Date( firstDay * ONE_DAY ), new Date( (lastDay + 1L) * ONE_DAY - 1L ) ), Arrays.asList( bills ) );
+    }
+
+    /**
+     * Creates a new time card whose activities span several weeks and two
+     * months for use in testing rollups.
+     * 
+     * @return A new time card.
+     */
+    @SuppressWarnings( "null" )
+    private static TimeCard createRollupTimeCard()
+    {
+        final TimeCard timeCard = new TimeCard();
+        timeCard.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( 0L * ONE_DAY + 8L * ONE_HOUR ) );
+        timeCard.stopActiveActivity( new Date( 0L * ONE_DAY + 9L * ONE_HOUR ) );
+        timeCard.startActivity( TestChargeNumbers.CHARGE_NUMBER_2, new Date( 1L * ONE_DAY + 8L * ONE_HOUR ) );
+        timeCard.stopActiveActivity( new Date( 1L * ONE_DAY + 9L * ONE_HOUR ) );
+        timeCard.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( 8L * ONE_DAY + 8L * ONE_HOUR ) );
+        timeCard.stopActiveActivity( new Date( 8L * ONE_DAY + 10L * ONE_HOUR ) );
+        timeCard.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( 20L * ONE_DAY + 8L * ONE_HOUR ) );
+        timeCard.stopActiveActivity( new Date( 20L * ONE_DAY + 9L * ONE_HOUR ) );
+        timeCard.startActivity( TestChargeNumbers.CHARGE_NUMBER_2, new Date( 35L * ONE_DAY + 8L * ONE_HOUR ) );
+        timeCard.stopActiveActivity( new Date( 35L * ONE_DAY + 9L * ONE_HOUR ) );
+        return timeCard;
+    }
+
+    /**
+     * Ensures the {@link BillingReports#dailyIterable} method returns the same
+     * billing reports as the {@link BillingReports#daily(TimeCard)} method.
+     */
+    @SuppressWarnings( "null" )
+    public void testDailyIterable_ReturnsSameBillingReportsAsDaily()
+    {
+        final TimeCard timeCard = new TimeCard();
+        timeCard.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( DAY_1_START_TIME ) );
+        timeCard.startActivity( TestChargeNumbers.CHARGE_NUMBER_2, new Date( DAY_1_START_TIME + 23 * ONE_HOUR ) );
+        timeCard.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( DAY_3_START_TIME + ONE_HOUR ) );
+        timeCard.stopActiveActivity( new Date( DAY_3_START_TIME + 2 * ONE_HOUR ) );
+
+        final List<BillingReport> billingReports = new ArrayList<BillingReport>();
+        for( final BillingReport billingReport : BillingReports.dailyIterable( timeCard ) )
+        {
+            billingReports.add( billingReport );
+        }
+
+        assertEquals( BillingReports.daily( timeCard ), billingReports );
+    }
+
+    /**
+     * Ensures the iterator returned by the {@link BillingReports#dailyIterable}
+     * method has no elements when the time card contains zero activities.
+     */
+    public void testDailyIterable_ZeroActivities()
+    {
+        final Iterator<BillingReport> iterator = BillingReports.dailyIterable( new TimeCard() ).iterator();
+
+        assertFalse( "iterator has elements", iterator.hasNext() ); //$NON-NLS-1$
+    }
+
+    /**
+     * Ensures the {@link BillingReports#daily(IActivityRecords)} method
+     * returns the same billing reports as the
+     * {@link BillingReports#daily(TimeCard)} method.
+     */
+    @SuppressWarnings( "null" )
+    public void testDailyWithActivityRecords_ReturnsSameBillingReportsAsDaily()
+    {
+        final TimeCard timeCard = createRollupTimeCard();
+
+        assertEquals( BillingReports.daily( timeCard ), BillingReports.daily( timeCard.getSnapshot().getActivityRecords() ) );
+    }
+
+    /**
+     * Ensures the {@link BillingReports#daily(TimeCard, IBillingReportSink)}
+     * method delivers the same billing reports as the
+     * {@link BillingReports#daily(TimeCard)} method.
+     */
+    @SuppressWarnings( "null" )
+    public void testDailyWithBillingReportSink_DeliversSameBillingReportsAsDaily()
+    {
+        final TimeCard timeCard = new TimeCard();
+        timeCard.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( DAY_1_START_TIME ) );
+        timeCard.startActivity( TestChargeNumbers.CHARGE_NUMBER_2, new Date( DAY_1_START_TIME + 23 * ONE_HOUR ) );
+        timeCard.stopActiveActivity( new Date( DAY_2_START_TIME + ONE_HOUR ) );
+
+        final List<BillingReport> billingReports = new ArrayList<BillingReport>();
+        BillingReports.daily( timeCard, new IBillingReportSink()
+        {
+            @Override
+            public void onBillingReport(
+                final BillingReport billingReport )
+            {
+                billingReports.add( billingReport );
+            }
+        } );
+
+        assertEquals( BillingReports.daily( timeCard ), billingReports );
+    }
+
+    /**
+     * Ensures the {@link BillingReports#daily(TimeCard, DateRange)} method
+     * clips activities that straddle either end of the date range.
+     */
+    @SuppressWarnings( "null" )
+    public void testDailyWithDateRange_ClipsActivitiesStraddlingDateRange()
+    {
+        final Collection<BillingReport> expectedBillingReports = Arrays.asList( //
+            new BillingReport( //
+                new DateRange( new Date( DAY_1_START_TIME ), new Date( DAY_1_END_TIME ) ), //
+                Arrays.asList( //
+                    new Bill( //
+                        TestChargeNumbers.CHARGE_NUMBER_1, //
+                        Duration.fromMilliseconds( ONE_HOUR ) //
+                    ) //
+                    ) //
+            ), //
+            new BillingReport( //
+                new DateRange( new Date( DAY_2_START_TIME ), new Date( DAY_2_END_TIME ) ), //
+                Arrays.asList( //
+                    new Bill( //
+                        TestChargeNumbers.CHARGE_NUMBER_1, //
+                        Duration.fromMilliseconds( 2 * ONE_HOUR ) //
+                    ) //
+                    ) //
+            ) //
+            );
+        final TimeCard timeCard = new TimeCard();
+        timeCard.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( DAY_1_START_TIME + 22 * ONE_HOUR ) );
+        timeCard.stopActiveActivity( new Date( DAY_3_START_TIME + 2 * ONE_HOUR ) );
+
+        assertEquals( expectedBillingReports, BillingReports.daily( timeCard, new DateRange( new Date( DAY_1_START_TIME + 23 * ONE_HOUR ), new Date( DAY_2_START_TIME + 2 * ONE_HOUR - 1L ) ) ) );
+    }
+
+    /**
+     * Ensures the {@link BillingReports#daily(TimeCard, DateRange)} method
+     * ignores activities that lie entirely outside of the date range.
+     */
+    @SuppressWarnings( "null" )
+    public void testDailyWithDateRange_IgnoresActivitiesOutsideDateRange()
+    {
+        final Collection<BillingReport> expectedBillingReports = Arrays.asList( //
+            new BillingReport( //
+                new DateRange( new Date( DAY_2_START_TIME ), new Date( DAY_2_END_TIME ) ), //
+                Arrays.asList( //
+                    new Bill( //
+                        TestChargeNumbers.CHARGE_NUMBER_2, //
+                        Duration.fromMilliseconds( ONE_HOUR ) //
+                    ) //
+                    ) //
+            ) //
+            );
+        final TimeCard timeCard = new TimeCard();
+        timeCard.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( DAY_1_START_TIME ) );
+        timeCard.stopActiveActivity( new Date( DAY_1_START_TIME + ONE_HOUR ) );
+        timeCard.startActivity( TestChargeNumbers.CHARGE_NUMBER_2, new Date( DAY_2_START_TIME ) );
+        timeCard.stopActiveActivity( new Date( DAY_2_START_TIME + ONE_HOUR ) );
+        timeCard.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( DAY_3_START_TIME ) );
+        timeCard.stopActiveActivity( new Date( DAY_3_START_TIME + ONE_HOUR ) );
+
+        assertEquals( expectedBillingReports, BillingReports.daily( timeCard, new DateRange( new Date( DAY_2_START_TIME ), new Date( DAY_2_END_TIME ) ) ) );
+    }
+
+    /**
+     * Ensures the {@link BillingReports#daily(TimeCard, DateRange)} method
+     * returns the same billing reports as the
+     * {@link BillingReports#daily(TimeCard)} method when the date range spans
+     * all activities.
+     */
+    @SuppressWarnings( "null" )
+    public void testDailyWithDateRange_ReturnsSameBillingReportsAsDailyWhenDateRangeSpansAllActivities()
+    {
+        final TimeCard timeCard = new TimeCard();
+        timeCard.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( DAY_1_START_TIME + ONE_HOUR ) );
+        timeCard.startActivity( TestChargeNumbers.CHARGE_NUMBER_2, new Date( DAY_1_START_TIME + 23 * ONE_HOUR ) );
+        timeCard.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( DAY_2_START_TIME + 3 * ONE_HOUR ) );
+        timeCard.stopActiveActivity( new Date( DAY_3_START_TIME ) );
+
+        assertEquals( BillingReports.daily( timeCard ), BillingReports.daily( timeCard, new DateRange( new Date( DAY_1_START_TIME ), new Date( DAY_3_END_TIME ) ) ) );
+    }
+
+    /**
+     * Ensures the {@link BillingReports#daily(TimeCard, ExecutorService)}
+     * method returns the same billing reports as the sequential
+     * {@link BillingReports#daily(TimeCard)} method.
+     * 
+     * @throws java.lang.Exception
+     *         If an error occurs.
+     */
+    @SuppressWarnings( "null" )
+    public void testDailyWithExecutorService_ReturnsSameBillingReportsAsSequential()
+        throws Exception
+    {
+        final TimeCard timeCard = new TimeCard();
+        long time = DAY_1_START_TIME;
+        for( int index = 0; index < 3 * BillingReports.MINIMUM_CHUNK_SIZE; ++index )
+        {
+            timeCard.startActivity( ((index % 3) == 0) ? TestChargeNumbers.CHARGE_NUMBER_1 : TestChargeNumbers.CHARGE_NUMBER_2, new Date( time ) );
+            time += ((index % 7) == 0) ? 5 * ONE_HOUR : ONE_HOUR;
+        }
+        timeCard.stopActiveActivity( new Date( time ) );
+
+        final ExecutorService executorService = Executors.newFixedThreadPool( 4 );
+        try
+        {
+            assertEquals( BillingReports.daily( timeCard ), BillingReports.daily( timeCard, executorService ) );
+        }
+        finally
+        {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * Ensures the
+     * {@link BillingReports#daily(TimeCardRegistry, ExecutorService)} method
+     * returns the same billing reports for each employee as the sequential
+     * {@link BillingReports#daily(TimeCard)} method.
+     * 
+     * @throws java.lang.Exception
+     *         If an error occurs.
+     */
+    @SuppressWarnings( "null" )
+    public void testDailyWithTimeCardRegistry_ReturnsSameBillingReportsAsSequential()
+        throws Exception
+    {
+        final TimeCardRegistry timeCardRegistry = new TimeCardRegistry( Long.MAX_VALUE );
+        final TimeCard timeCard1 = new TimeCard();
+        final TimeCard timeCard2 = createRollupTimeCard();
+        timeCard1.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( DAY_1_START_TIME ) );
+        timeCard1.stopActiveActivity( new Date( DAY_2_START_TIME + ONE_HOUR ) );
+        timeCardRegistry.appendActivities( "alice", timeCard1.getActivities() ); //$NON-NLS-1$
+        timeCardRegistry.appendActivities( "bob", timeCard2.getActivities() ); //$NON-NLS-1$
+
+        final ExecutorService executorService = Executors.newFixedThreadPool( 4 );
+        try
+        {
+            final Map<String, Collection<BillingReport>> billingReports = BillingReports.daily( timeCardRegistry, executorService );
+
+            assertEquals( 2, billingReports.size() );
+            assertEquals( BillingReports.daily( timeCard1 ), billingReports.get( "alice" ) ); //$NON-NLS-1$
+            assertEquals( BillingReports.daily( timeCard2 ), billingReports.get( "bob" ) ); //$NON-NLS-1$
+        }
+        finally
+        {
+            executorService.shutdown();
+        }
+    }
+
     /**
      * Ensures the {@link BillingReports#daily} method returns the correct
      * billing reports when the time card contains an active activity.
@@ -95,6 +370,48 @@ public final class BillingReportsTest
         assertEquals( expectedBillingReports, BillingReports.daily( timeCard ) );
     }
 
+    /**
+     * Ensures the {@link BillingReports#daily} method does not bill the
+     * activities that have been moved into a closed period.
+     */
+    @SuppressWarnings( "null" )
+    public void testDaily_IgnoresActivitiesOfClosedPeriods()
+    {
+        final Collection<BillingReport> expectedBillingReports = Arrays.asList( //
+            createBillingReport( 2L, 2L, new Bill( TestChargeNumbers.CHARGE_NUMBER_2, Duration.fromMilliseconds( ONE_HOUR ) ) ) //
+            );
+        final TimeCard timeCard = new TimeCard();
+        timeCard.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( DAY_1_START_TIME ) );
+        timeCard.stopActiveActivity( new Date( DAY_1_START_TIME + ONE_HOUR ) );
+        timeCard.startActivity( TestChargeNumbers.CHARGE_NUMBER_2, new Date( DAY_3_START_TIME ) );
+        timeCard.stopActiveActivity( new Date( DAY_3_START_TIME + ONE_HOUR ) );
+        timeCard.closePeriod( DAY_2_START_TIME );
+
+        assertEquals( expectedBillingReports, BillingReports.daily( timeCard ) );
+    }
+
+    /**
+     * Ensures the {@link BillingReports#daily} method returns the correct
+     * billing reports when the time card contains one activity that occurs over
+     * many days.
+     */
+    @SuppressWarnings( "null" )
+    public void testDaily_OneActivityOverManyDays()
+    {
+        final List<BillingReport> expectedBillingReports = new ArrayList<BillingReport>();
+        expectedBillingReports.add( createBillingReport( 0L, 0L, new Bill( TestChargeNumbers.CHARGE_NUMBER_1, Duration.fromMilliseconds( 12L * ONE_HOUR ) ) ) );
+        for( long day = 1L; day < 29L; ++day )
+        {
+            expectedBillingReports.add( createBillingReport( day, day, new Bill( TestChargeNumbers.CHARGE_NUMBER_1, Duration.fromMilliseconds( ONE_DAY ) ) ) );
+        }
+        expectedBillingReports.add( createBillingReport( 29L, 29L, new Bill( TestChargeNumbers.CHARGE_NUMBER_1, Duration.fromMilliseconds( 6L * ONE_HOUR ) ) ) );
+        final TimeCard timeCard = new TimeCard();
+        timeCard.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( 12L * ONE_HOUR ) );
+        timeCard.stopActiveActivity( new Date( 29L * ONE_DAY + 6L * ONE_HOUR ) );
+
+        assertEquals( expectedBillingReports, BillingReports.daily( timeCard ) );
+    }
+
     /**
      * Ensures the {@link BillingReports#daily} method returns the correct
      * billing reports when the time card contains one activity that occurs over
@@ -398,4 +715,100 @@ public final class BillingReportsTest
 
         assertEquals( expectedDays, BillingReports.getActivityDays( activity ) );
     }
+
+    /**
+     * Ensures the {@link BillingReports#rollup} method returns the same daily
+     * billing reports as the {@link BillingReports#daily(TimeCard)} method.
+     */
+    @SuppressWarnings( "null" )
+    public void testRollup_DailyBillingReports()
+    {
+        final TimeCard timeCard = createRollupTimeCard();
+
+        assertEquals( BillingReports.daily( timeCard ), BillingReports.rollup( timeCard, new Date( 0L ) ).getDailyBillingReports() );
+    }
+
+    /**
+     * Ensures the {@link BillingReports#rollup} method returns the correct
+     * monthly billing reports.
+     */
+    @SuppressWarnings( "null" )
+    public void testRollup_MonthlyBillingReports()
+    {
+        final Collection<BillingReport> expectedBillingReports = Arrays.asList( //
+            createBillingReport( 0L, 30L, //
+                new Bill( TestChargeNumbers.CHARGE_NUMBER_1, Duration.fromMilliseconds( 4L * ONE_HOUR ) ), //
+                new Bill( TestChargeNumbers.CHARGE_NUMBER_2, Duration.fromMilliseconds( ONE_HOUR ) ) ), //
+            createBillingReport( 31L, 58L, //
+                new Bill( TestChargeNumbers.CHARGE_NUMBER_2, Duration.fromMilliseconds( ONE_HOUR ) ) ) //
+            );
+
+        assertEquals( expectedBillingReports, BillingReports.rollup( createRollupTimeCard(), new Date( 0L ) ).getMonthlyBillingReports() );
+    }
+
+    /**
+     * Ensures the {@link BillingReports#rollup} method returns the correct
+     * monthly billing reports when an activity spans several months.
+     */
+    @SuppressWarnings( "null" )
+    public void testRollup_MonthlyBillingReports_ActivitySpansMonths()
+    {
+        final Collection<BillingReport> expectedBillingReports = Arrays.asList( //
+            createBillingReport( 0L, 30L, //
+                new Bill( TestChargeNumbers.CHARGE_NUMBER_1, Duration.fromMilliseconds( 10L * ONE_DAY + 12L * ONE_HOUR ) ) ), //
+            createBillingReport( 31L, 58L, //
+                new Bill( TestChargeNumbers.CHARGE_NUMBER_1, Duration.fromMilliseconds( 28L * ONE_DAY ) ) ), //
+            createBillingReport( 59L, 89L, //
+                new Bill( TestChargeNumbers.CHARGE_NUMBER_1, Duration.fromMilliseconds( 11L * ONE_DAY + 6L * ONE_HOUR ) ) ) //
+            );
+        final TimeCard timeCard = new TimeCard();
+        timeCard.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( 20L * ONE_DAY + 12L * ONE_HOUR ) );
+        timeCard.stopActiveActivity( new Date( 70L * ONE_DAY + 6L * ONE_HOUR ) );
+
+        assertEquals( expectedBillingReports, BillingReports.rollup( timeCard, new Date( 0L ) ).getMonthlyBillingReports() );
+    }
+
+    /**
+     * Ensures the {@link BillingReports#rollup} method returns the correct pay
+     * period billing reports.
+     */
+    @SuppressWarnings( "null" )
+    public void testRollup_PayPeriodBillingReports()
+    {
+        final Collection<BillingReport> expectedBillingReports = Arrays.asList( //
+            createBillingReport( 0L, 13L, //
+                new Bill( TestChargeNumbers.CHARGE_NUMBER_1, Duration.fromMilliseconds( 3L * ONE_HOUR ) ), //
+                new Bill( TestChargeNumbers.CHARGE_NUMBER_2, Duration.fromMilliseconds( ONE_HOUR ) ) ), //
+            createBillingReport( 14L, 27L, //
+                new Bill( TestChargeNumbers.CHARGE_NUMBER_1, Duration.fromMilliseconds( ONE_HOUR ) ) ), //
+            createBillingReport( 28L, 41L, //
+                new Bill( TestChargeNumbers.CHARGE_NUMBER_2, Duration.fromMilliseconds( ONE_HOUR ) ) ) //
+            );
+
+        assertEquals( expectedBillingReports, BillingReports.rollup( createRollupTimeCard(), new Date( 0L ) ).getPayPeriodBillingReports() );
+    }
+
+    /**
+     * Ensures the {@link BillingReports#rollup} method returns the correct
+     * weekly billing reports when the pay period start date is not the first
+     * day of the time card.
+     */
+    @SuppressWarnings( "null" )
+    public void testRollup_WeeklyBillingReports()
+    {
+        final Collection<BillingReport> expectedBillingReports = Arrays.asList( //
+            createBillingReport( -6L, 0L, //
+                new Bill( TestChargeNumbers.CHARGE_NUMBER_1, Duration.fromMilliseconds( ONE_HOUR ) ) ), //
+            createBillingReport( 1L, 7L, //
+                new Bill( TestChargeNumbers.CHARGE_NUMBER_2, Duration.fromMilliseconds( ONE_HOUR ) ) ), //
+            createBillingReport( 8L, 14L, //
+                new Bill( TestChargeNumbers.CHARGE_NUMBER_1, Duration.fromMilliseconds( 2L * ONE_HOUR ) ) ), //
+            createBillingReport( 15L, 21L, //
+                new Bill( TestChargeNumbers.CHARGE_NUMBER_1, Duration.fromMilliseconds( ONE_HOUR ) ) ), //
+            createBillingReport( 29L, 35L, //
+                new Bill( TestChargeNumbers.CHARGE_NUMBER_2, Duration.fromMilliseconds( ONE_HOUR ) ) ) //
+            );
+
+        assertEquals( expectedBillingReports, BillingReports.rollup( createRollupTimeCard(), new Date( 29L * ONE_DAY ) ).getWeeklyBillingReports() );
+    }
 }
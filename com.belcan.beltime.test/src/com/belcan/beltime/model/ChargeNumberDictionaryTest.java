@@ -0,0 +1,124 @@
+/*
+ * ChargeNumberDictionaryTest.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Mar 1, 2014 at 4:55:31 PM.
+ */
+
+package com.belcan.beltime.model;
+
+import junit.framework.TestCase;
+
+/**
+ * A fixture for testing the {@link ChargeNumberDictionary} class.
+ */
+public final class ChargeNumberDictionaryTest
+    extends TestCase
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /** The charge number dictionary under test in the fixture. */
+    private ChargeNumberDictionary dictionary_;
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code ChargeNumberDictionaryTest}
+     * class.
+     */
+    public ChargeNumberDictionaryTest()
+    {
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /*
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        dictionary_ = new ChargeNumberDictionary();
+    }
+
+    /**
+     * Ensures the {@link ChargeNumberDictionary#getChargeNumber} method returns
+     * the charge number associated with each identifier after the dictionary
+     * has grown.
+     */
+    @SuppressWarnings( "null" )
+    public void testGetChargeNumber_ReturnsChargeNumberAfterGrowth()
+    {
+        final int count = 1000;
+        for( int index = 0; index < count; ++index )
+        {
+            assertEquals( index, dictionary_.getId( ChargeNumber.fromString( Integer.toString( index ) ) ) );
+        }
+
+        for( int index = 0; index < count; ++index )
+        {
+            assertEquals( ChargeNumber.fromString( Integer.toString( index ) ), dictionary_.getChargeNumber( index ) );
+            assertEquals( index, dictionary_.getId( ChargeNumber.fromString( Integer.toString( index ) ) ) );
+        }
+        assertEquals( count, dictionary_.size() );
+    }
+
+    /**
+     * Ensures the {@link ChargeNumberDictionary#getId} method assigns dense
+     * identifiers in the order charge numbers are first encountered.
+     */
+    @SuppressWarnings( "null" )
+    public void testGetId_AssignsDenseIdentifiers()
+    {
+        assertEquals( 0, dictionary_.getId( TestChargeNumbers.CHARGE_NUMBER_2 ) );
+        assertEquals( 1, dictionary_.getId( TestChargeNumbers.CHARGE_NUMBER_1 ) );
+        assertEquals( 2, dictionary_.size() );
+    }
+
+    /**
+     * Ensures the {@link ChargeNumberDictionary#getId} method returns the same
+     * identifier for equal charge numbers.
+     */
+    @SuppressWarnings( "null" )
+    public void testGetId_ReturnsSameIdentifierForEqualChargeNumbers()
+    {
+        final int id = dictionary_.getId( TestChargeNumbers.CHARGE_NUMBER_1 );
+
+        assertEquals( id, dictionary_.getId( ChargeNumber.fromString( TestChargeNumbers.CHARGE_NUMBER_1.toString() ) ) );
+        assertEquals( 1, dictionary_.size() );
+    }
+
+    /**
+     * Ensures the {@link ChargeNumberDictionary#getRank} method returns the
+     * position of each charge number in sorted order, including after new
+     * charge numbers have been added.
+     */
+    @SuppressWarnings( "null" )
+    public void testGetRank_ReturnsPositionInSortedOrder()
+    {
+        final int id2 = dictionary_.getId( TestChargeNumbers.CHARGE_NUMBER_2 );
+        assertEquals( 0, dictionary_.getRank( id2 ) );
+
+        final int id1 = dictionary_.getId( TestChargeNumbers.CHARGE_NUMBER_1 );
+        assertEquals( 0, dictionary_.getRank( id1 ) );
+        assertEquals( 1, dictionary_.getRank( id2 ) );
+    }
+}
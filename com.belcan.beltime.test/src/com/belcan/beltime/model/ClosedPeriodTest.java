@@ -0,0 +1,140 @@
+/*
+ * ClosedPeriodTest.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Mar 3, 2014 at 3:05:22 PM.
+ */
+
+package com.belcan.beltime.model;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * A fixture for testing the {@link ClosedPeriod} class.
+ */
+public final class ClosedPeriodTest
+    extends TestCase
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /** One day expressed in milliseconds. */
+    private static final long ONE_DAY = EpochDays.MILLISECONDS_PER_DAY;
+
+    /** One hour expressed in milliseconds. */
+    private static final long ONE_HOUR = 3600000L;
+
+    /** The time card from which the closed period under test is created. */
+    private TimeCard timeCard_;
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code ClosedPeriodTest} class.
+     */
+    public ClosedPeriodTest()
+    {
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /*
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        timeCard_ = new TimeCard();
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, 8L * ONE_HOUR );
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_2, 9L * ONE_HOUR );
+        timeCard_.stopActiveActivity( 10L * ONE_HOUR );
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, 2L * ONE_DAY + 8L * ONE_HOUR );
+        timeCard_.stopActiveActivity( 2L * ONE_DAY + 9L * ONE_HOUR );
+    }
+
+    /**
+     * Ensures the {@link ClosedPeriod#getBillingReport} method returns the
+     * billing report of the specified day.
+     */
+    @SuppressWarnings( "null" )
+    public void testGetBillingReport()
+    {
+        final List<BillingReport> billingReports = new ArrayList<BillingReport>( BillingReports.daily( timeCard_ ) );
+
+        final ClosedPeriod closedPeriod = timeCard_.closePeriod( 3L * ONE_DAY );
+
+        assertEquals( billingReports.get( 0 ), closedPeriod.getBillingReport( new Date( 12L * ONE_HOUR ) ) );
+        assertNull( closedPeriod.getBillingReport( new Date( ONE_DAY ) ) );
+        assertEquals( billingReports.get( 1 ), closedPeriod.getBillingReport( new Date( 3L * ONE_DAY - 1L ) ) );
+        assertNull( closedPeriod.getBillingReport( new Date( -1L ) ) );
+        assertNull( closedPeriod.getBillingReport( new Date( 3L * ONE_DAY ) ) );
+    }
+
+    /**
+     * Ensures the {@link ClosedPeriod#getBillingReports} method returns the
+     * daily billing reports of the activities in the period.
+     */
+    @SuppressWarnings( "null" )
+    public void testGetBillingReports()
+    {
+        final List<BillingReport> billingReports = new ArrayList<BillingReport>( BillingReports.daily( timeCard_ ) );
+
+        final ClosedPeriod closedPeriod = timeCard_.closePeriod( 3L * ONE_DAY );
+
+        assertEquals( billingReports, new ArrayList<BillingReport>( closedPeriod.getBillingReports() ) );
+        assertEquals( 3, closedPeriod.getActivities().size() );
+        assertEquals( 3L * ONE_DAY, closedPeriod.getEndTimeInMilliseconds() );
+    }
+
+    /**
+     * Ensures the {@link ClosedPeriod#getBillingReports} method bills an
+     * activity that stops at the end of the period the same way as the
+     * {@link BillingReports#daily(TimeCard)} method, including the zero-length
+     * bill on the day on which the period ends.
+     */
+    @SuppressWarnings( "null" )
+    public void testGetBillingReports_BillsActivityStoppingAtEndOfPeriod()
+    {
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_2, 3L * ONE_DAY - ONE_HOUR );
+        timeCard_.stopActiveActivity( 3L * ONE_DAY );
+        final List<BillingReport> billingReports = new ArrayList<BillingReport>( BillingReports.daily( timeCard_ ) );
+
+        final ClosedPeriod closedPeriod = timeCard_.closePeriod( 3L * ONE_DAY );
+
+        assertEquals( billingReports, new ArrayList<BillingReport>( closedPeriod.getBillingReports() ) );
+        assertEquals( billingReports.get( billingReports.size() - 1 ), closedPeriod.getBillingReport( new Date( 3L * ONE_DAY ) ) );
+        assertEquals( new ArrayList<BillingReport>( BillingReports.daily( closedPeriod.getActivityRecords() ) ), billingReports );
+    }
+
+    /**
+     * Ensures the {@link ClosedPeriod#getBillingReports} method returns an
+     * empty collection if the period has no activities.
+     */
+    public void testGetBillingReports_NoActivities()
+    {
+        final ClosedPeriod closedPeriod = new TimeCard().closePeriod( ONE_DAY );
+
+        assertTrue( closedPeriod.getBillingReports().isEmpty() );
+        assertNull( closedPeriod.getBillingReport( new Date( 0L ) ) );
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * DailyBillingAggregatorTest.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Feb 15, 2014 at 4:52:19 PM.
+ */
+
+package com.belcan.beltime.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * A fixture for testing the {@link DailyBillingAggregator} class.
+ */
+public final class DailyBillingAggregatorTest
+    extends TestCase
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /** The start time (00:00:00) of day 2. */
+    private static final long DAY_2_START_TIME = 86400000L;
+
+    /** One hour expressed in milliseconds. */
+    private static final long ONE_HOUR = 3600000L;
+
+    /** The time card for use in the fixture. */
+    private TimeCard timeCard_;
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code DailyBillingAggregatorTest}
+     * class.
+     */
+    public DailyBillingAggregatorTest()
+    {
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /*
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        timeCard_ = new TimeCard();
+    }
+
+    /**
+     * Ensures the {@link DailyBillingAggregator#attach} method initializes the
+     * billing reports from the inactive activities already in the time card.
+     */
+    @SuppressWarnings( "null" )
+    public void testAttach_InitializesBillingReportsFromTimeCard()
+    {
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( 0L ) );
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_2, new Date( ONE_HOUR ) );
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( DAY_2_START_TIME ) );
+
+        final DailyBillingAggregator aggregator = DailyBillingAggregator.attach( timeCard_ );
+
+        assertEquals( BillingReports.daily( timeCard_ ), aggregator.getBillingReports() );
+    }
+
+    /**
+     * Ensures the {@link DailyBillingAggregator#detach} method stops the
+     * billing reports from being updated.
+     */
+    @SuppressWarnings( "null" )
+    public void testDetach_StopsUpdates()
+    {
+        final DailyBillingAggregator aggregator = DailyBillingAggregator.attach( timeCard_ );
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( 0L ) );
+        timeCard_.stopActiveActivity( new Date( ONE_HOUR ) );
+
+        aggregator.detach();
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_2, new Date( DAY_2_START_TIME ) );
+        timeCard_.stopActiveActivity( new Date( DAY_2_START_TIME + ONE_HOUR ) );
+
+        assertEquals( 1, aggregator.getBillingReports().size() );
+    }
+
+    /**
+     * Ensures the billing reports are discarded when the time card is reset.
+     */
+    @SuppressWarnings( "null" )
+    public void testGetBillingReports_DiscardedWhenTimeCardReset()
+    {
+        final DailyBillingAggregator aggregator = DailyBillingAggregator.attach( timeCard_ );
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( 0L ) );
+        timeCard_.stopActiveActivity( new Date( DAY_2_START_TIME + ONE_HOUR ) );
+
+        timeCard_.reset();
+
+        assertTrue( "billing reports not discarded", aggregator.getBillingReports().isEmpty() ); //$NON-NLS-1$
+    }
+
+    /**
+     * Ensures the billing reports of a closed period are discarded when the
+     * period is closed.
+     */
+    @SuppressWarnings( "null" )
+    public void testGetBillingReports_DiscardedWhenPeriodClosed()
+    {
+        final DailyBillingAggregator aggregator = DailyBillingAggregator.attach( timeCard_ );
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( 0L ) );
+        timeCard_.stopActiveActivity( new Date( DAY_2_START_TIME + ONE_HOUR ) );
+
+        timeCard_.closePeriod( DAY_2_START_TIME );
+
+        assertEquals( 1, aggregator.getBillingReports().size() );
+        assertEquals( BillingReports.daily( timeCard_ ), aggregator.getBillingReports() );
+    }
+
+    /**
+     * Ensures only the billing reports from the last remaining day are
+     * recomputed when a change to the time card is undone or redone.
+     */
+    @SuppressWarnings( "null" )
+    public void testGetBillingReports_RecomputesOnlyLastDayWhenChangeUndoneOrRedone()
+    {
+        final DailyBillingAggregator aggregator = DailyBillingAggregator.attach( timeCard_ );
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( 0L ) );
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_2, new Date( ONE_HOUR ) );
+        timeCard_.stopActiveActivity( new Date( DAY_2_START_TIME ) );
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( DAY_2_START_TIME + ONE_HOUR ) );
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_2, new Date( DAY_2_START_TIME + 2 * ONE_HOUR ) );
+        timeCard_.stopActiveActivity( new Date( DAY_2_START_TIME + 3 * ONE_HOUR ) );
+        final BillingReport firstBillingReport = new ArrayList<BillingReport>( aggregator.getBillingReports() ).get( 0 );
+
+        timeCard_.undo();
+        timeCard_.undo();
+        List<BillingReport> billingReports = new ArrayList<BillingReport>( aggregator.getBillingReports() );
+        assertEquals( BillingReports.daily( timeCard_ ), billingReports );
+        assertSame( firstBillingReport, billingReports.get( 0 ) );
+
+        timeCard_.undo();
+        billingReports = new ArrayList<BillingReport>( aggregator.getBillingReports() );
+        assertEquals( BillingReports.daily( timeCard_ ), billingReports );
+        assertSame( firstBillingReport, billingReports.get( 0 ) );
+
+        timeCard_.redo();
+        timeCard_.redo();
+        timeCard_.redo();
+        billingReports = new ArrayList<BillingReport>( aggregator.getBillingReports() );
+        assertEquals( BillingReports.daily( timeCard_ ), billingReports );
+        assertSame( firstBillingReport, billingReports.get( 0 ) );
+    }
+
+    /**
+     * Ensures the billing reports are updated when a batch of activities is
+     * appended.
+     */
+    @SuppressWarnings( "null" )
+    public void testGetBillingReports_UpdatedWhenActivitiesAppended()
+    {
+        final DailyBillingAggregator aggregator = DailyBillingAggregator.attach( timeCard_ );
+        final Activity activity1 = Activity.start( TestChargeNumbers.CHARGE_NUMBER_1, 0L );
+        activity1.stop( ONE_HOUR );
+        final Activity activity2 = Activity.start( TestChargeNumbers.CHARGE_NUMBER_2, DAY_2_START_TIME );
+        activity2.stop( DAY_2_START_TIME + ONE_HOUR );
+
+        timeCard_.appendActivities( Arrays.asList( activity1, activity2 ) );
+
+        assertEquals( 2, aggregator.getBillingReports().size() );
+        assertEquals( BillingReports.daily( timeCard_ ), aggregator.getBillingReports() );
+    }
+
+    /**
+     * Ensures the billing reports are updated when activities are stopped.
+     */
+    @SuppressWarnings( "null" )
+    public void testGetBillingReports_UpdatedWhenActivityStopped()
+    {
+        final DailyBillingAggregator aggregator = DailyBillingAggregator.attach( timeCard_ );
+
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( 0L ) );
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_2, new Date( ONE_HOUR ) );
+        assertEquals( BillingReports.daily( timeCard_ ), aggregator.getBillingReports() );
+
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( DAY_2_START_TIME + ONE_HOUR ) );
+        assertEquals( BillingReports.daily( timeCard_ ), aggregator.getBillingReports() );
+
+        timeCard_.stopActiveActivity( new Date( DAY_2_START_TIME + 3 * ONE_HOUR ) );
+        assertEquals( BillingReports.daily( timeCard_ ), aggregator.getBillingReports() );
+    }
+
+    /**
+     * Ensures the billing reports are rebuilt when a change to the time card
+     * is undone or redone.
+     */
+    @SuppressWarnings( "null" )
+    public void testGetBillingReports_UpdatedWhenChangeUndoneOrRedone()
+    {
+        final DailyBillingAggregator aggregator = DailyBillingAggregator.attach( timeCard_ );
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( 0L ) );
+        timeCard_.stopActiveActivity( new Date( ONE_HOUR ) );
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_2, new Date( DAY_2_START_TIME ) );
+        timeCard_.stopActiveActivity( new Date( DAY_2_START_TIME + ONE_HOUR ) );
+
+        timeCard_.undo();
+        assertEquals( 1, aggregator.getBillingReports().size() );
+        assertEquals( BillingReports.daily( timeCard_ ), aggregator.getBillingReports() );
+
+        timeCard_.redo();
+        assertEquals( 2, aggregator.getBillingReports().size() );
+        assertEquals( BillingReports.daily( timeCard_ ), aggregator.getBillingReports() );
+    }
+
+    /**
+     * Ensures the billing reports are rebuilt when the closing of a period is
+     * undone or redone.
+     */
+    @SuppressWarnings( "null" )
+    public void testGetBillingReports_UpdatedWhenPeriodCloseUndoneOrRedone()
+    {
+        final DailyBillingAggregator aggregator = DailyBillingAggregator.attach( timeCard_ );
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( 0L ) );
+        timeCard_.stopActiveActivity( new Date( DAY_2_START_TIME + ONE_HOUR ) );
+        timeCard_.closePeriod( DAY_2_START_TIME );
+
+        timeCard_.undo();
+        assertEquals( 2, aggregator.getBillingReports().size() );
+        assertEquals( BillingReports.daily( timeCard_ ), aggregator.getBillingReports() );
+
+        timeCard_.redo();
+        assertEquals( 1, aggregator.getBillingReports().size() );
+        assertEquals( BillingReports.daily( timeCard_ ), aggregator.getBillingReports() );
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * DurationAccumulatorTest.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Mar 1, 2014 at 5:12:44 PM.
+ */
+
+package com.belcan.beltime.model;
+
+import junit.framework.TestCase;
+
+/**
+ * A fixture for testing the {@link DurationAccumulator} class.
+ */
+public final class DurationAccumulatorTest
+    extends TestCase
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /** The duration accumulator under test in the fixture. */
+    private DurationAccumulator accumulator_;
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code DurationAccumulatorTest} class.
+     */
+    public DurationAccumulatorTest()
+    {
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /*
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        accumulator_ = new DurationAccumulator();
+    }
+
+    /**
+     * Ensures the {@link DurationAccumulator#add} method accumulates the
+     * durations of each charge number in the order they were first added.
+     */
+    public void testAdd_AccumulatesDurations()
+    {
+        accumulator_.add( 7, 10L );
+        accumulator_.add( 3, 20L );
+        accumulator_.add( 7, 5L );
+
+        assertEquals( 2, accumulator_.size() );
+        assertEquals( 7, accumulator_.getChargeNumberId( 0 ) );
+        assertEquals( 15L, accumulator_.getDuration( 0 ) );
+        assertEquals( 3, accumulator_.getChargeNumberId( 1 ) );
+        assertEquals( 20L, accumulator_.getDuration( 1 ) );
+    }
+
+    /**
+     * Ensures the {@link DurationAccumulator#add} method accumulates the
+     * durations of each charge number after the accumulator has grown.
+     */
+    public void testAdd_AccumulatesDurationsAfterGrowth()
+    {
+        final int count = 1000;
+        for( int id = 0; id < count; ++id )
+        {
+            accumulator_.add( id, id );
+            accumulator_.add( id, 1L );
+        }
+
+        assertEquals( count, accumulator_.size() );
+        for( int index = 0; index < count; ++index )
+        {
+            assertEquals( index, accumulator_.getChargeNumberId( index ) );
+            assertEquals( index + 1L, accumulator_.getDuration( index ) );
+        }
+    }
+
+    /**
+     * Ensures the {@link DurationAccumulator#clear} method removes all entries
+     * so the accumulator can be reused.
+     */
+    public void testClear_RemovesAllEntries()
+    {
+        accumulator_.add( 1, 10L );
+        accumulator_.add( 2, 20L );
+
+        accumulator_.clear();
+        accumulator_.add( 2, 5L );
+
+        assertEquals( 1, accumulator_.size() );
+        assertEquals( 2, accumulator_.getChargeNumberId( 0 ) );
+        assertEquals( 5L, accumulator_.getDuration( 0 ) );
+    }
+}
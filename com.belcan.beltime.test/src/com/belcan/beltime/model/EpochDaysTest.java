@@ -0,0 +1,125 @@
+/*
+ * EpochDaysTest.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Feb 8, 2014 at 9:02:54 PM.
+ */
+
+package com.belcan.beltime.model;
+
+import java.util.Date;
+import junit.framework.TestCase;
+import com.belcan.beltime.util.DateRange;
+
+/**
+ * A fixture for testing the {@link EpochDays} class.
+ */
+public final class EpochDaysTest
+    extends TestCase
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /** The end time (23:59:59) of day 1. */
+    private static final long DAY_1_END_TIME = 86399999L;
+
+    /** The start time (00:00:00) of day 2. */
+    private static final long DAY_2_START_TIME = 86400000L;
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code EpochDaysTest} class.
+     */
+    public EpochDaysTest()
+    {
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /**
+     * Ensures the {@link EpochDays#getDay} method returns the correct day for
+     * times at the boundaries of a day.
+     */
+    public void testGetDay_DayBoundaries()
+    {
+        assertEquals( 0L, EpochDays.getDay( 0L ) );
+        assertEquals( 0L, EpochDays.getDay( DAY_1_END_TIME ) );
+        assertEquals( 1L, EpochDays.getDay( DAY_2_START_TIME ) );
+    }
+
+    /**
+     * Ensures the {@link EpochDays#getDay} method returns the correct day for
+     * times before the epoch.
+     */
+    public void testGetDay_TimeBeforeEpoch()
+    {
+        assertEquals( -1L, EpochDays.getDay( -1L ) );
+        assertEquals( -1L, EpochDays.getDay( -DAY_2_START_TIME ) );
+        assertEquals( -2L, EpochDays.getDay( -DAY_2_START_TIME - 1L ) );
+    }
+
+    /**
+     * Ensures the {@link EpochDays#getFirstDayOfMonth} method returns the first
+     * day of the month, including months in leap years and before the epoch.
+     */
+    public void testGetFirstDayOfMonth()
+    {
+        assertEquals( 0L, EpochDays.getFirstDayOfMonth( 0L ) ); // 1970-01-01
+        assertEquals( 10988L, EpochDays.getFirstDayOfMonth( 11016L ) ); // 2000-02-29
+        assertEquals( 11017L, EpochDays.getFirstDayOfMonth( 11017L ) ); // 2000-03-01
+        assertEquals( -31L, EpochDays.getFirstDayOfMonth( -1L ) ); // 1969-12-31
+        assertEquals( -25536L, EpochDays.getFirstDayOfMonth( -25509L ) ); // 1900-02-28
+    }
+
+    /**
+     * Ensures the {@link EpochDays#getFirstDayOfNextMonth} method returns the
+     * first day of the following month, including months in leap years and
+     * before the epoch.
+     */
+    public void testGetFirstDayOfNextMonth()
+    {
+        assertEquals( 31L, EpochDays.getFirstDayOfNextMonth( 0L ) ); // 1970-01-01
+        assertEquals( 11017L, EpochDays.getFirstDayOfNextMonth( 10988L ) ); // 2000-02-01
+        assertEquals( 0L, EpochDays.getFirstDayOfNextMonth( -1L ) ); // 1969-12-31
+        assertEquals( -25508L, EpochDays.getFirstDayOfNextMonth( -25536L ) ); // 1900-02-01
+    }
+
+    /**
+     * Ensures the {@link EpochDays#getFirstDayOfPeriod} method returns the
+     * first day of the period for days on either side of the anchor day.
+     */
+    public void testGetFirstDayOfPeriod()
+    {
+        assertEquals( 3L, EpochDays.getFirstDayOfPeriod( 3L, 3L, 14L ) );
+        assertEquals( 3L, EpochDays.getFirstDayOfPeriod( 16L, 3L, 14L ) );
+        assertEquals( 17L, EpochDays.getFirstDayOfPeriod( 17L, 3L, 14L ) );
+        assertEquals( -11L, EpochDays.getFirstDayOfPeriod( 2L, 3L, 14L ) );
+        assertEquals( -25L, EpochDays.getFirstDayOfPeriod( -12L, 3L, 14L ) );
+    }
+
+    /**
+     * Ensures the {@link EpochDays#toDateRange} method returns a date range
+     * that spans the entire day.
+     */
+    @SuppressWarnings( "null" )
+    public void testToDateRange()
+    {
+        assertEquals( new DateRange( new Date( 0L ), new Date( DAY_1_END_TIME ) ), EpochDays.toDateRange( 0L ) );
+        assertEquals( new DateRange( new Date( -DAY_2_START_TIME ), new Date( -1L ) ), EpochDays.toDateRange( -1L ) );
+    }
+}
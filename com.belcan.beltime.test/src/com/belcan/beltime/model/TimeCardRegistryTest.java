@@ -0,0 +1,324 @@
+/*
+ * TimeCardRegistryTest.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Mar 3, 2014 at 10:02:37 AM.
+ */
+
+package com.belcan.beltime.model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import junit.framework.TestCase;
+
+/**
+ * A fixture for testing the {@link TimeCardRegistry} class.
+ */
+public final class TimeCardRegistryTest
+    extends TestCase
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /** The number of bytes used by one segment of activities. */
+    private static final long SEGMENT_MEMORY_USAGE = (long)ActivityStore.SEGMENT_SIZE * ActivityStore.BYTES_PER_ACTIVITY;
+
+    /**
+     * The memory quota of the time card registry under test: two segments of
+     * activities and room for the charge numbers they bill.
+     */
+    private static final long MEMORY_QUOTA = 2L * SEGMENT_MEMORY_USAGE + 4096L;
+
+    /** The time card registry under test in the fixture. */
+    private TimeCardRegistry timeCardRegistry_;
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code TimeCardRegistryTest} class.
+     */
+    public TimeCardRegistryTest()
+    {
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /*
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        timeCardRegistry_ = new TimeCardRegistry( MEMORY_QUOTA );
+    }
+
+    /**
+     * Fills the time card of the specified employee to its memory quota.
+     * 
+     * @param employeeId
+     *        The employee identifier.
+     */
+    @SuppressWarnings( "null" )
+    private void fillTimeCard(
+        final String employeeId )
+    {
+        final int activityCount = 2 * ActivityStore.SEGMENT_SIZE;
+        final Activity[] activities = new Activity[ activityCount ];
+        for( int index = 0; index < activityCount; ++index )
+        {
+            activities[ index ] = Activity.createInactive( TestChargeNumbers.CHARGE_NUMBER_1, 10L * index, 10L * index + 5L );
+        }
+        timeCardRegistry_.appendActivities( employeeId, Arrays.asList( activities ) );
+    }
+
+    /**
+     * Gets the number of bytes used by a store whose activities bill only the
+     * specified charge number, excluding its segments.
+     * 
+     * @param chargeNumber
+     *        The charge number.
+     * 
+     * @return The number of bytes used by the charge numbers of the store.
+     */
+    @SuppressWarnings( "null" )
+    private static long getChargeNumberMemoryUsage(
+        final ChargeNumber chargeNumber )
+    {
+        final ActivityStore activityStore = new ActivityStore();
+        activityStore.append( chargeNumber, 0L, 1L );
+        return activityStore.getChargeNumberMemoryUsage();
+    }
+
+    /**
+     * Ensures the {@link TimeCardRegistry#appendActivities} method throws an
+     * exception if the memory quota of the employee would be exceeded.
+     */
+    @SuppressWarnings( "null" )
+    public void testAppendActivities_ThrowsExceptionIfMemoryQuotaExceeded()
+    {
+        fillTimeCard( "alice" ); //$NON-NLS-1$
+
+        try
+        {
+            timeCardRegistry_.appendActivities( "alice", Collections.singletonList( Activity.createInactive( TestChargeNumbers.CHARGE_NUMBER_1, 1000000L, 1000001L ) ) ); //$NON-NLS-1$
+            fail( "appendActivities() did not throw IllegalStateException" ); //$NON-NLS-1$
+        }
+        catch( final IllegalStateException e )
+        {
+            // expected
+        }
+
+        assertEquals( 2 * ActivityStore.SEGMENT_SIZE, timeCardRegistry_.getSnapshot( "alice" ).getActivities().size() ); //$NON-NLS-1$
+    }
+
+    /**
+     * Ensures the {@link TimeCardRegistry#getMemoryUsage} method accounts for
+     * the memory used by each employee separately.
+     */
+    @SuppressWarnings( "null" )
+    public void testGetMemoryUsage_AccountsForEachEmployeeSeparately()
+    {
+        fillTimeCard( "alice" ); //$NON-NLS-1$
+        timeCardRegistry_.startActivity( "bob", TestChargeNumbers.CHARGE_NUMBER_1, 0L ); //$NON-NLS-1$
+        timeCardRegistry_.stopActiveActivity( "bob", 10L ); //$NON-NLS-1$
+
+        final long chargeNumberMemoryUsage = getChargeNumberMemoryUsage( TestChargeNumbers.CHARGE_NUMBER_1 );
+        assertEquals( 2L * SEGMENT_MEMORY_USAGE + chargeNumberMemoryUsage, timeCardRegistry_.getMemoryUsage( "alice" ) ); //$NON-NLS-1$
+        assertEquals( SEGMENT_MEMORY_USAGE + chargeNumberMemoryUsage, timeCardRegistry_.getMemoryUsage( "bob" ) ); //$NON-NLS-1$
+        assertEquals( 0L, timeCardRegistry_.getMemoryUsage( "carol" ) ); //$NON-NLS-1$
+        assertEquals( 3L * SEGMENT_MEMORY_USAGE + 2L * chargeNumberMemoryUsage, timeCardRegistry_.getTotalMemoryUsage() );
+    }
+
+    /**
+     * Ensures the {@link TimeCardRegistry#getMemoryUsage} method accounts for
+     * the active activity, as the memory quota does.
+     */
+    @SuppressWarnings( "null" )
+    public void testGetMemoryUsage_AccountsForActiveActivity()
+    {
+        timeCardRegistry_.startActivity( "alice", TestChargeNumbers.CHARGE_NUMBER_1, 0L ); //$NON-NLS-1$
+
+        assertEquals( SEGMENT_MEMORY_USAGE + new ActivityStore().getChargeNumberMemoryUsage(), timeCardRegistry_.getMemoryUsage( "alice" ) ); //$NON-NLS-1$
+    }
+
+    /**
+     * Ensures the {@link TimeCardRegistry#getMemoryUsage} method reports the
+     * same usage that the memory quota enforces, so a time card filled to its
+     * quota never reports more than the quota.
+     */
+    @SuppressWarnings( "null" )
+    public void testGetMemoryUsage_NeverExceedsMemoryQuota()
+    {
+        fillTimeCard( "alice" ); //$NON-NLS-1$
+
+        assertTrue( timeCardRegistry_.getMemoryUsage( "alice" ) <= MEMORY_QUOTA ); //$NON-NLS-1$
+    }
+
+    /**
+     * Ensures the {@link TimeCardRegistry#getSnapshot} method returns an empty
+     * snapshot for an employee who does not have a time card.
+     */
+    public void testGetSnapshot_ReturnsEmptySnapshotIfEmployeeUnknown()
+    {
+        final TimeCardSnapshot snapshot = timeCardRegistry_.getSnapshot( "alice" ); //$NON-NLS-1$
+
+        assertFalse( snapshot.isActive() );
+        assertTrue( snapshot.getActivities().isEmpty() );
+        assertTrue( timeCardRegistry_.getEmployeeIds().isEmpty() );
+    }
+
+    /**
+     * Ensures the {@link TimeCardRegistry#getSnapshots} method returns a
+     * snapshot of the time card of each employee.
+     */
+    @SuppressWarnings( "null" )
+    public void testGetSnapshots()
+    {
+        timeCardRegistry_.startActivity( "alice", TestChargeNumbers.CHARGE_NUMBER_1, 0L ); //$NON-NLS-1$
+        timeCardRegistry_.startActivity( "bob", TestChargeNumbers.CHARGE_NUMBER_2, 0L ); //$NON-NLS-1$
+        timeCardRegistry_.stopActiveActivity( "bob", 10L ); //$NON-NLS-1$
+
+        final Map<String, TimeCardSnapshot> snapshots = timeCardRegistry_.getSnapshots();
+
+        assertEquals( 2, snapshots.size() );
+        assertTrue( snapshots.get( "alice" ).isActive() ); //$NON-NLS-1$
+        assertFalse( snapshots.get( "bob" ).isActive() ); //$NON-NLS-1$
+        assertEquals( TestChargeNumbers.CHARGE_NUMBER_2, snapshots.get( "bob" ).getActivities().get( 0 ).getChargeNumber() ); //$NON-NLS-1$
+    }
+
+    /**
+     * Ensures the {@link TimeCardRegistry#removeTimeCard} method removes the
+     * time card of the employee.
+     */
+    @SuppressWarnings( "null" )
+    public void testRemoveTimeCard()
+    {
+        timeCardRegistry_.startActivity( "alice", TestChargeNumbers.CHARGE_NUMBER_1, 0L ); //$NON-NLS-1$
+
+        timeCardRegistry_.removeTimeCard( "alice" ); //$NON-NLS-1$
+
+        assertFalse( timeCardRegistry_.getSnapshot( "alice" ).isActive() ); //$NON-NLS-1$
+        assertTrue( timeCardRegistry_.getEmployeeIds().isEmpty() );
+    }
+
+    /**
+     * Ensures the {@link TimeCardRegistry#startActivity} method retains every
+     * activity started concurrently by many threads for many employees.
+     * 
+     * @throws java.lang.Exception
+     *         If an error occurs.
+     */
+    @SuppressWarnings( "null" )
+    public void testStartActivity_RetainsActivitiesStartedConcurrently()
+        throws Exception
+    {
+        final int employeeCount = 16;
+        final int threadCount = 8;
+        final int activityCount = 500;
+        final CountDownLatch startLatch = new CountDownLatch( 1 );
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final Thread[] threads = new Thread[ threadCount ];
+        for( int thread = 0; thread < threadCount; ++thread )
+        {
+            final int threadIndex = thread;
+            threads[ thread ] = new Thread( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        startLatch.await();
+                        for( int index = 0; index < activityCount; ++index )
+                        {
+                            final String employeeId = "employee" + ((threadIndex + index) % employeeCount); //$NON-NLS-1$
+                            timeCardRegistry_.startActivity( employeeId, TestChargeNumbers.CHARGE_NUMBER_1, 0L );
+                        }
+                    }
+                    catch( final Throwable e )
+                    {
+                        failure.compareAndSet( null, e );
+                    }
+                }
+            } );
+            threads[ thread ].start();
+        }
+
+        startLatch.countDown();
+        for( final Thread thread : threads )
+        {
+            thread.join();
+        }
+
+        assertNull( failure.get() );
+
+        int totalActivityCount = 0;
+        for( final TimeCardSnapshot snapshot : timeCardRegistry_.getSnapshots().values() )
+        {
+            totalActivityCount += snapshot.getActivities().size();
+        }
+        assertEquals( threadCount * activityCount, totalActivityCount );
+        assertEquals( employeeCount, timeCardRegistry_.getEmployeeIds().size() );
+    }
+
+    /**
+     * Ensures the {@link TimeCardRegistry#startActivity} method throws an
+     * exception if the memory quota of the employee would be exceeded while
+     * leaving other employees unaffected.
+     */
+    @SuppressWarnings( "null" )
+    public void testStartActivity_ThrowsExceptionIfMemoryQuotaExceeded()
+    {
+        fillTimeCard( "alice" ); //$NON-NLS-1$
+
+        try
+        {
+            timeCardRegistry_.startActivity( "alice", TestChargeNumbers.CHARGE_NUMBER_1, 1000000L ); //$NON-NLS-1$
+            fail( "startActivity() did not throw IllegalStateException" ); //$NON-NLS-1$
+        }
+        catch( final IllegalStateException e )
+        {
+            // expected
+        }
+
+        timeCardRegistry_.startActivity( "bob", TestChargeNumbers.CHARGE_NUMBER_1, 1000000L ); //$NON-NLS-1$
+        assertTrue( timeCardRegistry_.getSnapshot( "bob" ).isActive() ); //$NON-NLS-1$
+    }
+
+    /**
+     * Ensures the {@link TimeCardRegistry#stopActiveActivity} method throws an
+     * exception if the employee does not have a time card.
+     */
+    public void testStopActiveActivity_ThrowsExceptionIfEmployeeUnknown()
+    {
+        try
+        {
+            timeCardRegistry_.stopActiveActivity( "alice", 0L ); //$NON-NLS-1$
+            fail( "stopActiveActivity() did not throw IllegalStateException" ); //$NON-NLS-1$
+        }
+        catch( final IllegalStateException e )
+        {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * TimeCardSnapshotTest.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Mar 2, 2014 at 4:41:52 PM.
+ */
+
+package com.belcan.beltime.model;
+
+import java.util.Date;
+import java.util.List;
+import junit.framework.TestCase;
+import com.belcan.beltime.util.DateRange;
+
+/**
+ * A fixture for testing the {@link TimeCardSnapshot} class.
+ */
+public final class TimeCardSnapshotTest
+    extends TestCase
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /** The time card whose snapshots are under test in the fixture. */
+    private TimeCard timeCard_;
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code TimeCardSnapshotTest} class.
+     */
+    public TimeCardSnapshotTest()
+    {
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /*
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        timeCard_ = new TimeCard();
+    }
+
+    /**
+     * Creates a time card with three inactive activities and one active
+     * activity.
+     * 
+     * <p>
+     * The inactive activities span the times [1000, 2000), [2000, 3000), and
+     * [5000, 6000). The active activity starts at time 8000.
+     * </p>
+     */
+    @SuppressWarnings( "null" )
+    private void createActivities()
+    {
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( 1000L ) );
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_2, new Date( 2000L ) );
+        timeCard_.stopActiveActivity( new Date( 3000L ) );
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( 5000L ) );
+        timeCard_.stopActiveActivity( new Date( 6000L ) );
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_2, new Date( 8000L ) );
+    }
+
+    /**
+     * Ensures the {@link TimeCardSnapshot#getActivitiesOverlapping(Date)}
+     * method returns the activity in progress at the specified time.
+     */
+    @SuppressWarnings( "null" )
+    public void testGetActivitiesOverlapping_Date()
+    {
+        createActivities();
+        final TimeCardSnapshot snapshot = timeCard_.getSnapshot();
+
+        assertEquals( 0, snapshot.getActivitiesOverlapping( new Date( 999L ) ).size() );
+        assertEquals( new Date( 1000L ), snapshot.getActivitiesOverlapping( new Date( 1000L ) ).get( 0 ).getStartTime() );
+        assertEquals( new Date( 2000L ), snapshot.getActivitiesOverlapping( new Date( 2000L ) ).get( 0 ).getStartTime() );
+        assertEquals( 1, snapshot.getActivitiesOverlapping( new Date( 2000L ) ).size() );
+        assertEquals( 0, snapshot.getActivitiesOverlapping( new Date( 4000L ) ).size() );
+        assertEquals( 0, snapshot.getActivitiesOverlapping( new Date( 7999L ) ).size() );
+        assertTrue( snapshot.getActivitiesOverlapping( new Date( 9000L ) ).get( 0 ).isActive() );
+    }
+
+    /**
+     * Ensures the {@link TimeCardSnapshot#getActivitiesOverlapping(DateRange)}
+     * method returns the activities that overlap the specified date range.
+     */
+    @SuppressWarnings( "null" )
+    public void testGetActivitiesOverlapping_DateRange()
+    {
+        createActivities();
+        final TimeCardSnapshot snapshot = timeCard_.getSnapshot();
+
+        final List<Activity> activities = snapshot.getActivitiesOverlapping( new DateRange( new Date( 2999L ), new Date( 5000L ) ) );
+        assertEquals( 2, activities.size() );
+        assertEquals( new Date( 2000L ), activities.get( 0 ).getStartTime() );
+        assertEquals( new Date( 5000L ), activities.get( 1 ).getStartTime() );
+
+        assertEquals( 0, snapshot.getActivitiesOverlapping( new DateRange( new Date( 3000L ), new Date( 4999L ) ) ).size() );
+        assertEquals( 4, snapshot.getActivitiesOverlapping( new DateRange( new Date( 0L ), new Date( 8000L ) ) ).size() );
+        assertEquals( 3, snapshot.getActivitiesOverlapping( new DateRange( new Date( 0L ), new Date( 7999L ) ) ).size() );
+    }
+
+    /**
+     * Ensures the {@link TimeCardSnapshot#getActivities} method returns the
+     * activities of the time card when the snapshot was taken.
+     */
+    @SuppressWarnings( "null" )
+    public void testGetActivities_ReturnsActivitiesOfTimeCard()
+    {
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( 1000L ) );
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_2, new Date( 2000L ) );
+
+        final List<Activity> activities = timeCard_.getSnapshot().getActivities();
+
+        assertEquals( 2, activities.size() );
+        assertFalse( activities.get( 0 ).isActive() );
+        assertEquals( TestChargeNumbers.CHARGE_NUMBER_1, activities.get( 0 ).getChargeNumber() );
+        assertEquals( new Date( 1000L ), activities.get( 0 ).getStartTime() );
+        assertEquals( new Date( 2000L ), activities.get( 0 ).getStopTime() );
+        assertTrue( activities.get( 1 ).isActive() );
+        assertEquals( TestChargeNumbers.CHARGE_NUMBER_2, activities.get( 1 ).getChargeNumber() );
+        assertEquals( new Date( 2000L ), activities.get( 1 ).getStartTime() );
+    }
+
+    /**
+     * Ensures the {@link TimeCardSnapshot#getActivities} method returns a view
+     * that cannot be modified.
+     */
+    @SuppressWarnings( "null" )
+    public void testGetActivities_ReturnsUnmodifiableView()
+    {
+        final List<Activity> activities = timeCard_.getSnapshot().getActivities();
+
+        try
+        {
+            activities.add( Activity.start( TestChargeNumbers.CHARGE_NUMBER_1, new Date( 1000L ) ) );
+            fail( "expected UnsupportedOperationException" ); //$NON-NLS-1$
+        }
+        catch( final UnsupportedOperationException e )
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Ensures the {@link TimeCardSnapshot#getActivityRecords} method returns
+     * the records of the inactive activities in the snapshot.
+     */
+    @SuppressWarnings( "null" )
+    public void testGetActivityRecords_ReturnsInactiveActivitiesOfSnapshot()
+    {
+        createActivities();
+        final IActivityRecords activityRecords = timeCard_.getSnapshot().getActivityRecords();
+        timeCard_.stopActiveActivity( new Date( 9000L ) );
+
+        assertEquals( 3, activityRecords.size() );
+        assertEquals( TestChargeNumbers.CHARGE_NUMBER_2, activityRecords.getChargeNumber( 1 ) );
+        assertEquals( 5000L, activityRecords.getStartTime( 2 ) );
+        assertEquals( 6000L, activityRecords.getStopTime( 2 ) );
+        try
+        {
+            activityRecords.getStartTime( 3 );
+            fail( "getStartTime() did not throw IndexOutOfBoundsException" ); //$NON-NLS-1$
+        }
+        catch( final IndexOutOfBoundsException e )
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Ensures the snapshot is unaffected by activities started and stopped
+     * after the snapshot was taken.
+     */
+    @SuppressWarnings( "null" )
+    public void testSnapshot_IsUnaffectedByLaterActivities()
+    {
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( 1000L ) );
+        final TimeCardSnapshot snapshot = timeCard_.getSnapshot();
+
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_2, new Date( 2000L ) );
+        timeCard_.stopActiveActivity( new Date( 3000L ) );
+
+        assertTrue( snapshot.isActive() );
+        assertEquals( 1, snapshot.getActivities().size() );
+        assertTrue( snapshot.getActivities().get( 0 ).isActive() );
+        assertEquals( TestChargeNumbers.CHARGE_NUMBER_1, snapshot.getActivities().get( 0 ).getChargeNumber() );
+    }
+
+    /**
+     * Ensures the snapshot is unaffected by resetting the time card after the
+     * snapshot was taken.
+     */
+    @SuppressWarnings( "null" )
+    public void testSnapshot_IsUnaffectedByReset()
+    {
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( 1000L ) );
+        timeCard_.stopActiveActivity( new Date( 2000L ) );
+        final TimeCardSnapshot snapshot = timeCard_.getSnapshot();
+
+        timeCard_.reset();
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_2, new Date( 500L ) );
+        timeCard_.stopActiveActivity( new Date( 600L ) );
+
+        assertFalse( snapshot.isActive() );
+        assertEquals( 1, snapshot.getActivities().size() );
+        assertEquals( TestChargeNumbers.CHARGE_NUMBER_1, snapshot.getActivities().get( 0 ).getChargeNumber() );
+        assertEquals( new Date( 2000L ), snapshot.getActivities().get( 0 ).getStopTime() );
+    }
+}
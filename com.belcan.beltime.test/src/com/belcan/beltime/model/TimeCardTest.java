@@ -15,12 +15,17 @@
 package com.belcan.beltime.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import junit.framework.TestCase;
 import com.belcan.beltime.test.EasyMockJUnit3Utils;
 import com.belcan.beltime.util.Dates;
 import org.easymock.Capture;
 import org.easymock.EasyMock;
+import org.easymock.IAnswer;
 import org.easymock.IMocksControl;
 
 /**
@@ -69,6 +74,240 @@ public final class TimeCardTest
         timeCard_ = new TimeCard();
     }
 
+    /**
+     * Creates a new inactive activity.
+     * 
+     * @param chargeNumber
+     *        The charge number of the job to be billed.
+     * @param startTime
+     *        The time at which the activity started in milliseconds,
+     *        inclusive.
+     * @param stopTime
+     *        The time at which the activity stopped in milliseconds,
+     *        exclusive.
+     * 
+     * @return A new inactive activity.
+     */
+    private static Activity createInactiveActivity(
+        final ChargeNumber chargeNumber,
+        final long startTime,
+        final long stopTime )
+    {
+        final Activity activity = Activity.start( chargeNumber, startTime );
+        activity.stop( stopTime );
+        return activity;
+    }
+
+    /**
+     * Ensures the {@link TimeCard#addTimeCardListener} method adds a listener
+     * that is notified in addition to the listener set by
+     * {@link TimeCard#setTimeCardListener}.
+     */
+    @SuppressWarnings( "null" )
+    public void testAddTimeCardListener_NotifiesListener()
+    {
+        final ITimeCardListener timeCardListener = mocksControl_.createMock( ITimeCardListener.class );
+        final ITimeCardListener additionalTimeCardListener = mocksControl_.createMock( ITimeCardListener.class );
+        timeCardListener.onReset( timeCard_ );
+        additionalTimeCardListener.onReset( timeCard_ );
+        mocksControl_.replay();
+
+        timeCard_.setTimeCardListener( timeCardListener );
+        timeCard_.addTimeCardListener( additionalTimeCardListener );
+        timeCard_.reset();
+
+        EasyMockJUnit3Utils.verify( mocksControl_ );
+    }
+
+    /**
+     * Ensures the {@link TimeCard#appendActivities} method appends the
+     * activities after the existing activities.
+     */
+    @SuppressWarnings( "null" )
+    public void testAppendActivities_AppendsActivities()
+    {
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, 0L );
+        timeCard_.stopActiveActivity( 1000L );
+
+        timeCard_.appendActivities( Arrays.asList( //
+            createInactiveActivity( TestChargeNumbers.CHARGE_NUMBER_2, 1000L, 2000L ), //
+            createInactiveActivity( TestChargeNumbers.CHARGE_NUMBER_1, 3000L, 4000L ) ) );
+
+        final List<Activity> activities = timeCard_.getActivities();
+        assertEquals( 3, activities.size() );
+        assertEquals( TestChargeNumbers.CHARGE_NUMBER_2, activities.get( 1 ).getChargeNumber() );
+        assertEquals( 1000L, activities.get( 1 ).getStartTimeInMilliseconds() );
+        assertEquals( 4000L, activities.get( 2 ).getStopTimeInMilliseconds() );
+    }
+
+    /**
+     * Ensures the {@link TimeCard#appendActivities} method fires a single
+     * {@link ITimeCardListener#onActivitiesAppended} event for the batch.
+     */
+    @SuppressWarnings( "null" )
+    public void testAppendActivities_FiresOnActivitiesAppendedOnce()
+    {
+        final ITimeCardListener timeCardListener = mocksControl_.createMock( ITimeCardListener.class );
+        final Capture<List<Activity>> activitiesCapture = new Capture<List<Activity>>();
+        timeCardListener.onActivitiesAppended( EasyMock.eq( timeCard_ ), EasyMock.capture( activitiesCapture ) );
+        mocksControl_.replay();
+
+        timeCard_.setTimeCardListener( timeCardListener );
+        timeCard_.appendActivities( Arrays.asList( //
+            createInactiveActivity( TestChargeNumbers.CHARGE_NUMBER_1, 0L, 1000L ), //
+            createInactiveActivity( TestChargeNumbers.CHARGE_NUMBER_2, 1000L, 2000L ) ) );
+
+        EasyMockJUnit3Utils.verify( mocksControl_ );
+        assertEquals( 2, activitiesCapture.getValue().size() );
+        assertEquals( TestChargeNumbers.CHARGE_NUMBER_2, activitiesCapture.getValue().get( 1 ).getChargeNumber() );
+    }
+
+    /**
+     * Ensures the {@link TimeCard#appendActivities} method throws an exception
+     * and appends no activities if any activity starts before the previous
+     * activity stopped.
+     */
+    @SuppressWarnings( "null" )
+    public void testAppendActivities_ThrowsExceptionIfActivitiesOutOfOrder()
+    {
+        try
+        {
+            timeCard_.appendActivities( Arrays.asList( //
+                createInactiveActivity( TestChargeNumbers.CHARGE_NUMBER_1, 0L, 2000L ), //
+                createInactiveActivity( TestChargeNumbers.CHARGE_NUMBER_2, 1000L, 3000L ) ) );
+            fail( "appendActivities() did not throw IllegalArgumentException" ); //$NON-NLS-1$
+        }
+        catch( final IllegalArgumentException e )
+        {
+            // expected
+        }
+
+        assertEquals( 0, timeCard_.getActivities().size() );
+    }
+
+    /**
+     * Ensures the {@link TimeCard#appendActivities} method throws an exception
+     * if the time card is active.
+     */
+    @SuppressWarnings( "null" )
+    public void testAppendActivities_ThrowsExceptionIfTimeCardActive()
+    {
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, 0L );
+
+        try
+        {
+            timeCard_.appendActivities( Arrays.asList( createInactiveActivity( TestChargeNumbers.CHARGE_NUMBER_2, 1000L, 2000L ) ) );
+            fail( "appendActivities() did not throw IllegalStateException" ); //$NON-NLS-1$
+        }
+        catch( final IllegalStateException e )
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Ensures the {@link TimeCard#clearHistory} method discards the changes
+     * that may be undone and redone without changing the activities.
+     */
+    @SuppressWarnings( "null" )
+    public void testClearHistory_DiscardsUndoAndRedoVersions()
+    {
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, 1000L );
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_2, 2000L );
+        timeCard_.undo();
+
+        timeCard_.clearHistory();
+
+        assertFalse( timeCard_.canUndo() );
+        assertFalse( timeCard_.canRedo() );
+        assertEquals( 1, timeCard_.getActivities().size() );
+        assertEquals( TestChargeNumbers.CHARGE_NUMBER_1, timeCard_.getActiveActivity().getChargeNumber() );
+    }
+
+    /**
+     * Ensures the {@link TimeCard#closePeriod} method moves the activities
+     * that stop before the end of the period into the closed period.
+     */
+    @SuppressWarnings( "null" )
+    public void testClosePeriod_MovesActivitiesIntoClosedPeriod()
+    {
+        final long oneDay = EpochDays.MILLISECONDS_PER_DAY;
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, 1000L );
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_2, 2000L );
+        timeCard_.stopActiveActivity( 3000L );
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, oneDay + 1000L );
+        timeCard_.stopActiveActivity( oneDay + 2000L );
+        final List<BillingReport> billingReports = new ArrayList<BillingReport>( BillingReports.daily( timeCard_ ) );
+
+        final ClosedPeriod closedPeriod = timeCard_.closePeriod( oneDay );
+
+        assertEquals( 2, closedPeriod.getActivities().size() );
+        assertEquals( 2000L, closedPeriod.getActivities().get( 1 ).getStartTimeInMilliseconds() );
+        assertEquals( billingReports.subList( 0, 1 ), new ArrayList<BillingReport>( closedPeriod.getBillingReports() ) );
+        assertEquals( Arrays.asList( closedPeriod ), timeCard_.getClosedPeriods() );
+        assertEquals( 1, timeCard_.getActivities().size() );
+        assertEquals( oneDay + 1000L, timeCard_.getActivities().get( 0 ).getStartTimeInMilliseconds() );
+        assertEquals( billingReports.subList( 1, 2 ), new ArrayList<BillingReport>( BillingReports.daily( timeCard_ ) ) );
+    }
+
+    /**
+     * Ensures the {@link TimeCard#closePeriod} method splits an activity that
+     * straddles the end of the period.
+     */
+    @SuppressWarnings( "null" )
+    public void testClosePeriod_SplitsActivityStraddlingEndTime()
+    {
+        final long oneDay = EpochDays.MILLISECONDS_PER_DAY;
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, oneDay - 1000L );
+        timeCard_.stopActiveActivity( oneDay + 1000L );
+
+        final ClosedPeriod closedPeriod = timeCard_.closePeriod( oneDay );
+
+        assertEquals( 1, closedPeriod.getActivities().size() );
+        assertEquals( oneDay - 1000L, closedPeriod.getActivities().get( 0 ).getStartTimeInMilliseconds() );
+        assertEquals( oneDay, closedPeriod.getActivities().get( 0 ).getStopTimeInMilliseconds() );
+        assertEquals( 1, timeCard_.getActivities().size() );
+        assertEquals( oneDay, timeCard_.getActivities().get( 0 ).getStartTimeInMilliseconds() );
+        assertEquals( oneDay + 1000L, timeCard_.getActivities().get( 0 ).getStopTimeInMilliseconds() );
+    }
+
+    /**
+     * Ensures the {@link TimeCard#closePeriod} method throws an exception if
+     * the end of the period follows the start of the active activity.
+     */
+    @SuppressWarnings( "null" )
+    public void testClosePeriod_ThrowsExceptionIfEndTimeFollowsStartOfActiveActivity()
+    {
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, 1000L );
+
+        try
+        {
+            timeCard_.closePeriod( EpochDays.MILLISECONDS_PER_DAY );
+            fail( "closePeriod() did not throw IllegalArgumentException" ); //$NON-NLS-1$
+        }
+        catch( final IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Ensures the {@link TimeCard#closePeriod} method throws an exception if
+     * the end of the period is not the start of a day.
+     */
+    public void testClosePeriod_ThrowsExceptionIfEndTimeNotStartOfDay()
+    {
+        try
+        {
+            timeCard_.closePeriod( EpochDays.MILLISECONDS_PER_DAY + 1L );
+            fail( "closePeriod() did not throw IllegalArgumentException" ); //$NON-NLS-1$
+        }
+        catch( final IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+
     /**
      * Ensures the {@link TimeCard#TimeCard} constructor initializes the state
      * of the time card to be inactive.
@@ -95,6 +334,28 @@ public final class TimeCardTest
         }
     }
 
+    /**
+     * Ensures the {@link TimeCard#getActivities} method and the
+     * {@link BillingReports#daily(TimeCard)} method agree after the active
+     * activity is stopped directly.
+     */
+    @SuppressWarnings( "null" )
+    public void testGetActivities_IncludesActiveActivityStoppedDirectly()
+    {
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( 0L ) );
+
+        timeCard_.getActiveActivity().stop( new Date( 1000L ) );
+
+        final List<Activity> activities = timeCard_.getActivities();
+        assertEquals( 1, activities.size() );
+        assertFalse( "activity is active", activities.get( 0 ).isActive() ); //$NON-NLS-1$
+        assertEquals( 1000L, activities.get( 0 ).getStopTimeInMilliseconds() );
+        final TimeCard expectedTimeCard = new TimeCard();
+        expectedTimeCard.appendActivities( activities );
+        assertEquals( BillingReports.daily( expectedTimeCard ), BillingReports.daily( timeCard_ ) );
+        assertEquals( 1, BillingReports.daily( timeCard_ ).size() );
+    }
+
     /**
      * Ensures the {@link TimeCard#getActivities} method returns a copy of the
      * activities collection.
@@ -109,6 +370,145 @@ public final class TimeCardTest
         assertEquals( expectedActivities, timeCard_.getActivities() );
     }
 
+    /**
+     * Ensures the {@link TimeCard#getEarliestStartTimeInMilliseconds} method
+     * returns the start time of the active activity if the time card is
+     * active, and otherwise the stop time of the previous activity.
+     */
+    @SuppressWarnings( "null" )
+    public void testGetEarliestStartTimeInMilliseconds()
+    {
+        assertEquals( Long.MIN_VALUE, timeCard_.getEarliestStartTimeInMilliseconds() );
+
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( 1000L ) );
+        assertEquals( 1000L, timeCard_.getEarliestStartTimeInMilliseconds() );
+
+        timeCard_.stopActiveActivity( new Date( 2000L ) );
+        assertEquals( 2000L, timeCard_.getEarliestStartTimeInMilliseconds() );
+    }
+
+    /**
+     * Ensures the {@link TimeCard#getSnapshot} method returns consistent
+     * snapshots to a reader on another thread while the writer is changing the
+     * time card.
+     * 
+     * @throws java.lang.Exception
+     *         If an error occurs.
+     */
+    @SuppressWarnings( "null" )
+    public void testGetSnapshot_ReturnsConsistentSnapshotsToConcurrentReader()
+        throws Exception
+    {
+        final int activityCount = 4 * ActivityStore.SEGMENT_SIZE;
+        final AtomicBoolean isWriterDone = new AtomicBoolean( false );
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        final Thread reader = new Thread( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                while( !isWriterDone.get() && (failure.get() == null) )
+                {
+                    final List<Activity> activities = timeCard_.getSnapshot().getActivities();
+                    for( int index = 0; index < activities.size(); ++index )
+                    {
+                        final Activity activity = activities.get( index );
+                        final ChargeNumber expectedChargeNumber = (index % 2 == 0) ? TestChargeNumbers.CHARGE_NUMBER_1 : TestChargeNumbers.CHARGE_NUMBER_2;
+                        if( (activity.getStartTimeInMilliseconds() != 10L * index) || !activity.getChargeNumber().equals( expectedChargeNumber ) )
+                        {
+                            failure.set( "inconsistent activity at index " + index ); //$NON-NLS-1$
+                            return;
+                        }
+                    }
+                }
+            }
+        } );
+        reader.start();
+
+        for( int index = 0; index < activityCount; ++index )
+        {
+            timeCard_.startActivity( (index % 2 == 0) ? TestChargeNumbers.CHARGE_NUMBER_1 : TestChargeNumbers.CHARGE_NUMBER_2, 10L * index );
+        }
+        isWriterDone.set( true );
+        reader.join();
+
+        assertNull( failure.get(), failure.get() );
+        assertEquals( activityCount, timeCard_.getSnapshot().getActivities().size() );
+    }
+
+    /**
+     * Ensures the {@link TimeCard#isActive} method returns {@code false} if
+     * the active activity has been stopped directly.
+     */
+    @SuppressWarnings( "null" )
+    public void testIsActive_ReturnsFalseIfActiveActivityStoppedDirectly()
+    {
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( 0L ) );
+
+        timeCard_.getActiveActivity().stop( new Date( 1000L ) );
+
+        assertFalse( "time card is active", timeCard_.isActive() ); //$NON-NLS-1$
+    }
+
+    /**
+     * Ensures the {@link TimeCard#redo} method restores the most recently
+     * undone change.
+     */
+    @SuppressWarnings( "null" )
+    public void testRedo_RestoresUndoneChange()
+    {
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, 1000L );
+        timeCard_.stopActiveActivity( 2000L );
+        timeCard_.undo();
+
+        timeCard_.redo();
+
+        assertFalse( "time card is active", timeCard_.isActive() ); //$NON-NLS-1$
+        assertEquals( 1, timeCard_.getActivities().size() );
+        assertEquals( 2000L, timeCard_.getActivities().get( 0 ).getStopTimeInMilliseconds() );
+        assertFalse( timeCard_.canRedo() );
+        assertTrue( timeCard_.canUndo() );
+    }
+
+    /**
+     * Ensures the {@link TimeCard#redo} method throws an exception if a new
+     * change has been made since the last undo.
+     */
+    @SuppressWarnings( "null" )
+    public void testRedo_ThrowsExceptionIfChangedAfterUndo()
+    {
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, 1000L );
+        timeCard_.undo();
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_2, 1000L );
+
+        try
+        {
+            timeCard_.redo();
+            fail( "redo() did not throw IllegalStateException" ); //$NON-NLS-1$
+        }
+        catch( final IllegalStateException e )
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Ensures the {@link TimeCard#removeTimeCardListener} method removes a
+     * listener that was previously added.
+     */
+    @SuppressWarnings( "null" )
+    public void testRemoveTimeCardListener_ListenerNoLongerNotified()
+    {
+        final ITimeCardListener timeCardListener = mocksControl_.createMock( ITimeCardListener.class );
+        mocksControl_.replay();
+
+        timeCard_.addTimeCardListener( timeCardListener );
+        timeCard_.removeTimeCardListener( timeCardListener );
+        timeCard_.reset();
+
+        EasyMockJUnit3Utils.verify( mocksControl_ );
+    }
+
     /**
      * Ensures the {@link TimeCard#reset} method fires the
      * {@link ITimeCardListener#onReset} event.
@@ -257,6 +657,76 @@ public final class TimeCardTest
         assertEquals( "expected previously active activity", activity, activityCapture.getValue() ); //$NON-NLS-1$
     }
 
+    /**
+     * Ensures the {@link TimeCard#startActivity} method fires the
+     * {@link ITimeCardListener#onActivityStopped} event for the previously
+     * active activity while the time card is inactive and switching
+     * activities, before the new activity is started.
+     */
+    @SuppressWarnings( "null" )
+    public void testStartActivity_FiresOnActivityStoppedWhileSwitchingActivities()
+    {
+        final AtomicBoolean isActive = new AtomicBoolean( true );
+        final AtomicBoolean isSwitchingActivities = new AtomicBoolean( false );
+        final IMocksControl mocksControl = EasyMock.createStrictControl();
+        final ITimeCardListener timeCardListener = mocksControl.createMock( ITimeCardListener.class );
+        timeCardListener.onActivityStopped( EasyMock.notNull( TimeCard.class ), EasyMock.notNull( Activity.class ) );
+        EasyMock.expectLastCall().andAnswer( new IAnswer<Object>()
+        {
+            @Override
+            public Object answer()
+            {
+                isActive.set( timeCard_.isActive() );
+                isSwitchingActivities.set( timeCard_.isSwitchingActivities() );
+                return null;
+            }
+        } );
+        timeCardListener.onActivityStarted( EasyMock.notNull( TimeCard.class ), EasyMock.notNull( Activity.class ) );
+        mocksControl.replay();
+
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( 0L ) );
+        timeCard_.setTimeCardListener( timeCardListener );
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_2, new Date( 1000L ) );
+
+        EasyMockJUnit3Utils.verify( mocksControl );
+        assertFalse( "time card is active", isActive.get() ); //$NON-NLS-1$
+        assertTrue( "time card is not switching activities", isSwitchingActivities.get() ); //$NON-NLS-1$
+        assertFalse( "time card is switching activities", timeCard_.isSwitchingActivities() ); //$NON-NLS-1$
+    }
+
+    /**
+     * Ensures the {@link TimeCard#startActivity} method leaves the time card
+     * unchanged and fires no event if the time card is inactive and the start
+     * time precedes the stop time of the previous activity.
+     */
+    @SuppressWarnings( "null" )
+    public void testStartActivity_LeavesTimeCardUnchangedIfStartTimePrecedesStopTimeOfPreviousActivity()
+    {
+        final ITimeCardListener timeCardListener = mocksControl_.createMock( ITimeCardListener.class );
+        mocksControl_.replay();
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( 0L ) );
+        timeCard_.stopActiveActivity( new Date( 2000L ) );
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( 2000L ) );
+        timeCard_.undo();
+        final TimeCardSnapshot snapshot = timeCard_.getSnapshot();
+        timeCard_.setTimeCardListener( timeCardListener );
+
+        try
+        {
+            timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_2, new Date( 1000L ) );
+            fail( "startActivity() did not throw IllegalArgumentException" ); //$NON-NLS-1$
+        }
+        catch( final IllegalArgumentException e )
+        {
+            // expected
+        }
+
+        EasyMockJUnit3Utils.verify( mocksControl_ );
+        assertFalse( "time card is active", timeCard_.isActive() ); //$NON-NLS-1$
+        assertSame( "expected unchanged snapshot", snapshot, timeCard_.getSnapshot() ); //$NON-NLS-1$
+        assertTrue( "redo history discarded", timeCard_.canRedo() ); //$NON-NLS-1$
+    }
+
     /**
      * Ensures the {@link TimeCard#startActivity} method sets the stop time of
      * the active activity equal to the start time of the new activity if the
@@ -275,6 +745,44 @@ public final class TimeCardTest
         assertEquals( "stop time of previous activity should be equal to start time of active activity", previousActivity.getStopTime(), activeActivity.getStartTime() ); //$NON-NLS-1$
     }
 
+    /**
+     * Ensures the {@link TimeCard#startActivity} method accepts a start time
+     * equal to the stop time of the previous activity if the time card is
+     * inactive.
+     */
+    @SuppressWarnings( "null" )
+    public void testStartActivity_StartsActivityIfStartTimeEqualsStopTimeOfPreviousActivity()
+    {
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( 0L ) );
+        timeCard_.stopActiveActivity( new Date( 1000L ) );
+
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_2, new Date( 1000L ) );
+
+        assertEquals( "expected start time of new activity", new Date( 1000L ), timeCard_.getActiveActivity().getStartTime() ); //$NON-NLS-1$
+    }
+
+    /**
+     * Ensures the {@link TimeCard#startActivity} method throws an exception if
+     * the time card is inactive and the start time precedes the stop time of
+     * the previous activity.
+     */
+    @SuppressWarnings( "null" )
+    public void testStartActivity_ThrowsExceptionIfStartTimePrecedesStopTimeOfPreviousActivity()
+    {
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( 0L ) );
+        timeCard_.stopActiveActivity( new Date( 2000L ) );
+
+        try
+        {
+            timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_2, new Date( 1000L ) );
+            fail( "startActivity() did not throw IllegalArgumentException" ); //$NON-NLS-1$
+        }
+        catch( final IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+
     /**
      * Ensures the {@link TimeCard#stopActiveActivity} method deactivates the
      * time card if it is active.
@@ -312,6 +820,32 @@ public final class TimeCardTest
         assertEquals( "expected previously active activity", activity, activityCapture.getValue() ); //$NON-NLS-1$
     }
 
+    /**
+     * Ensures the {@link TimeCard#stopActiveActivity} method leaves the active
+     * activity active if the activity storage fails.
+     */
+    @SuppressWarnings( "null" )
+    public void testStopActiveActivity_LeavesActivityActiveIfStorageFails()
+    {
+        final TimeCard timeCard = new TimeCard( new ActivityStore().createReadOnlyView() );
+        timeCard.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, new Date( 0L ) );
+        final Activity activity = timeCard.getActiveActivity();
+
+        try
+        {
+            timeCard.stopActiveActivity( new Date( 1000L ) );
+            fail( "stopActiveActivity() did not throw IllegalStateException" ); //$NON-NLS-1$
+        }
+        catch( final IllegalStateException e )
+        {
+            // expected
+        }
+
+        assertTrue( "time card is inactive", timeCard.isActive() ); //$NON-NLS-1$
+        assertSame( "expected previously active activity", activity, timeCard.getActiveActivity() ); //$NON-NLS-1$
+        assertTrue( "activity is inactive", activity.isActive() ); //$NON-NLS-1$
+    }
+
     /**
      * Ensures the {@link TimeCard#stopActiveActivity} method throws an
      * exception if the time card is inactive.
@@ -328,4 +862,146 @@ public final class TimeCardTest
             // expected
         }
     }
+
+    /**
+     * Ensures the {@link TimeCard#undo} method does not affect snapshots of
+     * the undone version when new changes are made after the undo.
+     */
+    @SuppressWarnings( "null" )
+    public void testUndo_DoesNotAffectSnapshotsOfUndoneVersion()
+    {
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, 1000L );
+        timeCard_.stopActiveActivity( 2000L );
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, 3000L );
+        timeCard_.stopActiveActivity( 4000L );
+        final TimeCardSnapshot snapshot = timeCard_.getSnapshot();
+
+        timeCard_.undo();
+        timeCard_.undo();
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_2, 5000L );
+        timeCard_.stopActiveActivity( 6000L );
+
+        assertEquals( 2, snapshot.getActivities().size() );
+        assertEquals( TestChargeNumbers.CHARGE_NUMBER_1, snapshot.getActivities().get( 1 ).getChargeNumber() );
+        assertEquals( 3000L, snapshot.getActivities().get( 1 ).getStartTimeInMilliseconds() );
+        assertEquals( 2, timeCard_.getActivities().size() );
+        assertEquals( TestChargeNumbers.CHARGE_NUMBER_2, timeCard_.getActivities().get( 1 ).getChargeNumber() );
+        assertEquals( 5000L, timeCard_.getActivities().get( 1 ).getStartTimeInMilliseconds() );
+    }
+
+    /**
+     * Ensures the {@link TimeCard#undo} method fires the
+     * {@link ITimeCardListener#onRestored} event.
+     */
+    @SuppressWarnings( "null" )
+    public void testUndo_FiresOnRestored()
+    {
+        final ITimeCardListener timeCardListener = mocksControl_.createMock( ITimeCardListener.class );
+        final Capture<TimeCard> timeCardCapture = new Capture<TimeCard>();
+        timeCardListener.onRestored( EasyMock.capture( timeCardCapture ), EasyMock.eq( true ) );
+        mocksControl_.replay();
+
+        timeCard_.reset();
+        timeCard_.setTimeCardListener( timeCardListener );
+        timeCard_.undo();
+
+        EasyMockJUnit3Utils.verify( mocksControl_ );
+        assertEquals( "expected fixture time card", timeCard_, timeCardCapture.getValue() ); //$NON-NLS-1$
+    }
+
+    /**
+     * Ensures the {@link TimeCard#undo} method restores the activities moved
+     * into a closed period.
+     */
+    @SuppressWarnings( "null" )
+    public void testUndo_ReopensClosedPeriod()
+    {
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, 1000L );
+        timeCard_.stopActiveActivity( 2000L );
+        timeCard_.closePeriod( EpochDays.MILLISECONDS_PER_DAY );
+
+        timeCard_.undo();
+
+        assertTrue( timeCard_.getClosedPeriods().isEmpty() );
+        assertEquals( 1, timeCard_.getActivities().size() );
+        assertEquals( 2000L, timeCard_.getActivities().get( 0 ).getStopTimeInMilliseconds() );
+    }
+
+    /**
+     * Ensures the {@link TimeCard#undo} method restores the activities removed
+     * by {@link TimeCard#reset}.
+     */
+    @SuppressWarnings( "null" )
+    public void testUndo_RestoresActivitiesRemovedByReset()
+    {
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, 1000L );
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_2, 2000L );
+        timeCard_.reset();
+
+        timeCard_.undo();
+
+        assertTrue( "time card is inactive", timeCard_.isActive() ); //$NON-NLS-1$
+        assertEquals( 2, timeCard_.getActivities().size() );
+        assertEquals( TestChargeNumbers.CHARGE_NUMBER_2, timeCard_.getActiveActivity().getChargeNumber() );
+        assertEquals( 2000L, timeCard_.getActiveActivity().getStartTimeInMilliseconds() );
+    }
+
+    /**
+     * Ensures the {@link TimeCard#undo} method undoes starting an activity
+     * while another activity is active as a single change.
+     */
+    @SuppressWarnings( "null" )
+    public void testUndo_RestoresPreviouslyActiveActivity()
+    {
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, 1000L );
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_2, 2000L );
+
+        timeCard_.undo();
+
+        assertEquals( 1, timeCard_.getActivities().size() );
+        assertEquals( TestChargeNumbers.CHARGE_NUMBER_1, timeCard_.getActiveActivity().getChargeNumber() );
+        assertEquals( 1000L, timeCard_.getActiveActivity().getStartTimeInMilliseconds() );
+
+        timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_2, 3000L );
+        assertEquals( 3000L, timeCard_.getActivities().get( 0 ).getStopTimeInMilliseconds() );
+    }
+
+    /**
+     * Ensures the {@link TimeCard#undo} method retains at most
+     * {@link TimeCard#MAXIMUM_UNDO_COUNT} changes.
+     */
+    @SuppressWarnings( "null" )
+    public void testUndo_RetainsMaximumUndoCountChanges()
+    {
+        for( int index = 0; index <= TimeCard.MAXIMUM_UNDO_COUNT; ++index )
+        {
+            timeCard_.startActivity( TestChargeNumbers.CHARGE_NUMBER_1, 1000L * index );
+        }
+
+        for( int index = 0; index < TimeCard.MAXIMUM_UNDO_COUNT; ++index )
+        {
+            timeCard_.undo();
+        }
+
+        assertFalse( timeCard_.canUndo() );
+        assertEquals( 1, timeCard_.getActivities().size() );
+        assertEquals( 0L, timeCard_.getActiveActivity().getStartTimeInMilliseconds() );
+    }
+
+    /**
+     * Ensures the {@link TimeCard#undo} method throws an exception if there is
+     * no change to undo.
+     */
+    public void testUndo_ThrowsExceptionIfNoChangeToUndo()
+    {
+        try
+        {
+            timeCard_.undo();
+            fail( "undo() did not throw IllegalStateException" ); //$NON-NLS-1$
+        }
+        catch( final IllegalStateException e )
+        {
+            // expected
+        }
+    }
 }
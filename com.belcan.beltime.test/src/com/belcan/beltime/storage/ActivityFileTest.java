@@ -0,0 +1,154 @@
+/*
+ * ActivityFileTest.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Mar 5, 2014 at 11:18:09 AM.
+ */
+
+package com.belcan.beltime.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import junit.framework.TestCase;
+import com.belcan.beltime.model.BillingReports;
+import com.belcan.beltime.model.ChargeNumber;
+import com.belcan.beltime.model.TimeCard;
+
+/**
+ * A fixture for testing the {@link ActivityFile} class.
+ */
+public final class ActivityFileTest
+    extends TestCase
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /** The first charge number used in the fixture. */
+    private static final ChargeNumber CHARGE_NUMBER_1 = ChargeNumber.fromString( "1111111.1111" ); //$NON-NLS-1$
+
+    /** The second charge number used in the fixture. */
+    private static final ChargeNumber CHARGE_NUMBER_2 = ChargeNumber.fromString( "2222222.2222" ); //$NON-NLS-1$
+
+    /** One hour expressed in milliseconds. */
+    private static final long ONE_HOUR = 60L * 60L * 1000L;
+
+    /** The activity file in the fixture. */
+    private File file_;
+
+    /** The time card whose activities are written to the activity file. */
+    private TimeCard timeCard_;
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code ActivityFileTest} class.
+     */
+    public ActivityFileTest()
+    {
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /*
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        file_ = File.createTempFile( "beltime", ".activities" ); //$NON-NLS-1$ //$NON-NLS-2$
+        timeCard_ = new TimeCard();
+        for( int index = 0; index < 100; ++index )
+        {
+            timeCard_.startActivity( (index % 3 == 0) ? CHARGE_NUMBER_1 : CHARGE_NUMBER_2, index * 5L * ONE_HOUR );
+            timeCard_.stopActiveActivity( index * 5L * ONE_HOUR + 3L * ONE_HOUR );
+        }
+    }
+
+    /*
+     * @see junit.framework.TestCase#tearDown()
+     */
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        file_.delete();
+        ActivityFile.getChargeNumbersFile( file_ ).delete();
+
+        super.tearDown();
+    }
+
+    /**
+     * Ensures the {@link ActivityFile#open} method reads the records written
+     * by the {@link ActivityFile#write} method.
+     * 
+     * @throws java.lang.Exception
+     *         If an error occurs.
+     */
+    @SuppressWarnings( "null" )
+    public void testOpen_ReadsWrittenRecords()
+        throws Exception
+    {
+        ActivityFile.write( file_, timeCard_.getSnapshot().getActivityRecords() );
+
+        final ActivityFile activityFile = ActivityFile.open( file_ );
+
+        assertEquals( 100, activityFile.size() );
+        assertEquals( 100L * ActivityFile.RECORD_SIZE, file_.length() );
+        assertEquals( CHARGE_NUMBER_1, activityFile.getChargeNumber( 0 ) );
+        assertEquals( CHARGE_NUMBER_2, activityFile.getChargeNumber( 98 ) );
+        assertEquals( 99L * 5L * ONE_HOUR, activityFile.getStartTime( 99 ) );
+        assertEquals( 99L * 5L * ONE_HOUR + 3L * ONE_HOUR, activityFile.getStopTime( 99 ) );
+        assertEquals( BillingReports.daily( timeCard_ ), BillingReports.daily( activityFile ) );
+    }
+
+    /**
+     * Ensures the {@link ActivityFile#open} method throws an exception if the
+     * length of the activity file is not a whole number of records.
+     * 
+     * @throws java.lang.Exception
+     *         If an error occurs.
+     */
+    @SuppressWarnings( "null" )
+    public void testOpen_ThrowsExceptionIfRecordTorn()
+        throws Exception
+    {
+        ActivityFile.write( file_, timeCard_.getSnapshot().getActivityRecords() );
+        final RandomAccessFile file = new RandomAccessFile( file_, "rw" ); //$NON-NLS-1$
+        try
+        {
+            file.setLength( file.length() - 1L );
+        }
+        finally
+        {
+            file.close();
+        }
+
+        try
+        {
+            ActivityFile.open( file_ );
+            fail( "open() did not throw IOException" ); //$NON-NLS-1$
+        }
+        catch( final IOException e )
+        {
+            // expected
+        }
+    }
+}
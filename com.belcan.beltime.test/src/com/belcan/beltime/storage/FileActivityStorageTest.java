@@ -0,0 +1,266 @@
+/*
+ * FileActivityStorageTest.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Mar 7, 2014 at 2:48:19 PM.
+ */
+
+package com.belcan.beltime.storage;
+
+import java.io.File;
+import junit.framework.TestCase;
+import com.belcan.beltime.model.BillingReports;
+import com.belcan.beltime.model.ChargeNumber;
+import com.belcan.beltime.model.IActivityRecords;
+import com.belcan.beltime.model.TimeCard;
+
+/**
+ * A fixture for testing the {@link FileActivityStorage} class.
+ */
+public final class FileActivityStorageTest
+    extends TestCase
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /** The first charge number used in the fixture. */
+    private static final ChargeNumber CHARGE_NUMBER_1 = ChargeNumber.fromString( "1111111.1111" ); //$NON-NLS-1$
+
+    /** The second charge number used in the fixture. */
+    private static final ChargeNumber CHARGE_NUMBER_2 = ChargeNumber.fromString( "2222222.2222" ); //$NON-NLS-1$
+
+    /** One day expressed in milliseconds. */
+    private static final long ONE_DAY = 24L * 60L * 60L * 1000L;
+
+    /** One hour expressed in milliseconds. */
+    private static final long ONE_HOUR = 60L * 60L * 1000L;
+
+    /** The file in the fixture. */
+    private File file_;
+
+    /** The storage in the fixture. */
+    private FileActivityStorage storage_;
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code FileActivityStorageTest} class.
+     */
+    public FileActivityStorageTest()
+    {
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /*
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        file_ = File.createTempFile( "beltime", ".storage" ); //$NON-NLS-1$ //$NON-NLS-2$
+        storage_ = FileActivityStorage.create( file_ );
+    }
+
+    /*
+     * @see junit.framework.TestCase#tearDown()
+     */
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        storage_.close();
+        file_.delete();
+
+        super.tearDown();
+    }
+
+    /**
+     * Asserts the specified activity records are equal.
+     * 
+     * @param expectedActivityRecords
+     *        The expected activity records.
+     * @param actualActivityRecords
+     *        The actual activity records.
+     */
+    private static void assertActivityRecordsEquals(
+        final IActivityRecords expectedActivityRecords,
+        final IActivityRecords actualActivityRecords )
+    {
+        assertEquals( expectedActivityRecords.size(), actualActivityRecords.size() );
+        for( int index = 0; index < expectedActivityRecords.size(); ++index )
+        {
+            assertEquals( expectedActivityRecords.getChargeNumber( index ), actualActivityRecords.getChargeNumber( index ) );
+            assertEquals( expectedActivityRecords.getStartTime( index ), actualActivityRecords.getStartTime( index ) );
+            assertEquals( expectedActivityRecords.getStopTime( index ), actualActivityRecords.getStopTime( index ) );
+        }
+    }
+
+    /**
+     * Ensures the {@link FileActivityStorage#append} method retains the
+     * appended activities across chunks of the file.
+     */
+    @SuppressWarnings( "null" )
+    public void testAppend_RetainsActivitiesAcrossChunks()
+    {
+        for( int index = 0; index < FileActivityStorage.CHUNK_SIZE + 1; ++index )
+        {
+            storage_.append( (index % 2 == 0) ? CHARGE_NUMBER_1 : CHARGE_NUMBER_2, 2L * index, 2L * index + 1L );
+        }
+
+        assertEquals( FileActivityStorage.CHUNK_SIZE + 1, storage_.size() );
+        assertEquals( CHARGE_NUMBER_2, storage_.getChargeNumber( 1 ) );
+        assertEquals( 2L, storage_.getStartTime( 1 ) );
+        assertEquals( 3L, storage_.getStopTime( 1 ) );
+        assertEquals( CHARGE_NUMBER_1, storage_.getChargeNumber( FileActivityStorage.CHUNK_SIZE ) );
+        assertEquals( 2L * FileActivityStorage.CHUNK_SIZE, storage_.getStartTime( FileActivityStorage.CHUNK_SIZE ) );
+        assertEquals( 2L * FileActivityStorage.CHUNK_SIZE + 1L, storage_.getStopTime( FileActivityStorage.CHUNK_SIZE ) );
+    }
+
+    /**
+     * Ensures the {@link FileActivityStorage#append} method throws an
+     * exception once the capacity of the file has been reached.
+     * 
+     * @throws java.lang.Exception
+     *         If an error occurs.
+     */
+    @SuppressWarnings( "null" )
+    public void testAppend_ThrowsExceptionIfCapacityReached()
+        throws Exception
+    {
+        storage_.close();
+        storage_ = FileActivityStorage.create( file_, 2 );
+        storage_.append( CHARGE_NUMBER_1, 0L, 10L );
+        storage_.append( CHARGE_NUMBER_1, 10L, 20L );
+
+        try
+        {
+            storage_.append( CHARGE_NUMBER_1, 20L, 30L );
+            fail( "append() did not throw IllegalStateException" ); //$NON-NLS-1$
+        }
+        catch( final IllegalStateException e )
+        {
+            // expected
+        }
+
+        assertEquals( 2, storage_.size() );
+    }
+
+    /**
+     * Ensures the {@link FileActivityStorage#createReadOnlyView} method
+     * creates a view that is unaffected by truncating and appending to the
+     * storage afterwards.
+     */
+    @SuppressWarnings( "null" )
+    public void testCreateReadOnlyView_IsUnaffectedByTruncate()
+    {
+        storage_.append( CHARGE_NUMBER_1, 0L, 10L );
+        storage_.append( CHARGE_NUMBER_1, 10L, 20L );
+        final FileActivityStorage view = storage_.createReadOnlyView();
+
+        storage_.truncate( 1 );
+        storage_.append( CHARGE_NUMBER_2, 30L, 40L );
+
+        assertEquals( 2, view.size() );
+        assertEquals( CHARGE_NUMBER_1, view.getChargeNumber( 1 ) );
+        assertEquals( 10L, view.getStartTime( 1 ) );
+        assertEquals( 2, storage_.size() );
+        assertEquals( CHARGE_NUMBER_2, storage_.getChargeNumber( 1 ) );
+        assertEquals( 30L, storage_.getStartTime( 1 ) );
+        assertEquals( 1, storage_.getFirstIndexStartingAfter( 20L, 2 ) );
+        assertEquals( 1, storage_.getFirstIndexStoppingAtOrAfter( 11L, 2 ) );
+    }
+
+    /**
+     * Ensures the {@link FileActivityStorage#createWritableCopy} method
+     * creates a copy that is independent of the storage from which it was
+     * created.
+     */
+    @SuppressWarnings( "null" )
+    public void testCreateWritableCopy_IsIndependentOfOtherStorages()
+    {
+        storage_.append( CHARGE_NUMBER_1, 0L, 10L );
+        final FileActivityStorage copy = storage_.createWritableCopy();
+
+        copy.append( CHARGE_NUMBER_2, 10L, 20L );
+        storage_.append( CHARGE_NUMBER_1, 20L, 30L );
+        copy.append( CHARGE_NUMBER_2, 30L, 40L );
+
+        assertEquals( 2, storage_.size() );
+        assertEquals( CHARGE_NUMBER_1, storage_.getChargeNumber( 1 ) );
+        assertEquals( 20L, storage_.getStartTime( 1 ) );
+        assertEquals( 3, copy.size() );
+        assertEquals( 0L, copy.getStartTime( 0 ) );
+        assertEquals( CHARGE_NUMBER_2, copy.getChargeNumber( 1 ) );
+        assertEquals( 10L, copy.getStartTime( 1 ) );
+        assertEquals( 30L, copy.getStartTime( 2 ) );
+    }
+
+    /**
+     * Ensures the {@link FileActivityStorage#getRemainingCapacity} method
+     * accounts for the records of every storage derived from the file,
+     * including records that are no longer visible to any storage.
+     */
+    @SuppressWarnings( "null" )
+    public void testGetRemainingCapacity_CountsRecordsNoLongerVisible()
+    {
+        storage_.append( CHARGE_NUMBER_1, 0L, 10L );
+        final FileActivityStorage copy = storage_.createWritableCopy();
+        copy.append( CHARGE_NUMBER_2, 10L, 20L );
+        storage_.truncate( 0 );
+        storage_.append( CHARGE_NUMBER_2, 20L, 30L );
+
+        assertEquals( FileActivityStorage.DEFAULT_CAPACITY - 3, storage_.getRemainingCapacity() );
+    }
+
+    /**
+     * Ensures a time card that stores its activities in a
+     * {@link FileActivityStorage} behaves the same as a time card that stores
+     * its activities in memory.
+     */
+    @SuppressWarnings( "null" )
+    public void testTimeCard_BehavesLikeInMemoryTimeCard()
+    {
+        final TimeCard fileTimeCard = new TimeCard( storage_ );
+        final TimeCard memoryTimeCard = new TimeCard();
+        for( final TimeCard timeCard : new TimeCard[] { fileTimeCard, memoryTimeCard } )
+        {
+            for( int index = 0; index < 20; ++index )
+            {
+                timeCard.startActivity( (index % 3 == 0) ? CHARGE_NUMBER_1 : CHARGE_NUMBER_2, index * 5L * ONE_HOUR );
+                timeCard.stopActiveActivity( index * 5L * ONE_HOUR + 4L * ONE_HOUR );
+            }
+            timeCard.closePeriod( 2L * ONE_DAY );
+            timeCard.undo();
+            timeCard.undo();
+            timeCard.redo();
+            timeCard.closePeriod( ONE_DAY );
+        }
+
+        assertActivityRecordsEquals( memoryTimeCard.getSnapshot().getActivityRecords(), fileTimeCard.getSnapshot().getActivityRecords() );
+        assertActivityRecordsEquals( memoryTimeCard.getClosedPeriods().get( 0 ).getActivityRecords(), fileTimeCard.getClosedPeriods().get( 0 ).getActivityRecords() );
+        assertEquals( BillingReports.daily( memoryTimeCard ), BillingReports.daily( fileTimeCard ) );
+
+        fileTimeCard.reset();
+        fileTimeCard.undo();
+
+        assertActivityRecordsEquals( memoryTimeCard.getSnapshot().getActivityRecords(), fileTimeCard.getSnapshot().getActivityRecords() );
+    }
+}
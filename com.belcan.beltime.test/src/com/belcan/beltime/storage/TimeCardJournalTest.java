@@ -0,0 +1,632 @@
+/*
+ * TimeCardJournalTest.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Mar 4, 2014 at 10:41:27 AM.
+ */
+
+package com.belcan.beltime.storage;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import junit.framework.TestCase;
+import com.belcan.beltime.model.Activity;
+import com.belcan.beltime.model.ChargeNumber;
+import com.belcan.beltime.model.TimeCard;
+
+/**
+ * A fixture for testing the {@link TimeCardJournal} class.
+ */
+public final class TimeCardJournalTest
+    extends TestCase
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /** The first charge number used in the fixture. */
+    private static final ChargeNumber CHARGE_NUMBER_1 = ChargeNumber.fromString( "1111111.1111" ); //$NON-NLS-1$
+
+    /** The second charge number used in the fixture. */
+    private static final ChargeNumber CHARGE_NUMBER_2 = ChargeNumber.fromString( "2222222.2222" ); //$NON-NLS-1$
+
+    /** One day expressed in milliseconds. */
+    private static final long ONE_DAY = 24L * 60L * 60L * 1000L;
+
+    /** The journal file in the fixture. */
+    private File file_;
+
+    /** The journal under test in the fixture. */
+    private TimeCardJournal journal_;
+
+    /** The time card recorded by the journal under test. */
+    private TimeCard timeCard_;
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code TimeCardJournalTest} class.
+     */
+    public TimeCardJournalTest()
+    {
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /*
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        file_ = File.createTempFile( "beltime", ".journal" ); //$NON-NLS-1$ //$NON-NLS-2$
+        timeCard_ = new TimeCard();
+        journal_ = TimeCardJournal.open( file_, timeCard_ );
+    }
+
+    /*
+     * @see junit.framework.TestCase#tearDown()
+     */
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        journal_.close();
+        file_.delete();
+        TimeCardJournal.getSnapshotFile( file_ ).delete();
+
+        super.tearDown();
+    }
+
+    /**
+     * Asserts the specified collections of activities are equivalent.
+     * 
+     * @param expectedActivities
+     *        The expected collection of activities.
+     * @param actualActivities
+     *        The actual collection of activities.
+     */
+    private static void assertActivitiesEquals(
+        final List<Activity> expectedActivities,
+        final List<Activity> actualActivities )
+    {
+        assertEquals( expectedActivities.size(), actualActivities.size() );
+        for( int index = 0; index < expectedActivities.size(); ++index )
+        {
+            final Activity expectedActivity = expectedActivities.get( index );
+            final Activity actualActivity = actualActivities.get( index );
+            assertEquals( expectedActivity.getChargeNumber(), actualActivity.getChargeNumber() );
+            assertEquals( expectedActivity.getStartTimeInMilliseconds(), actualActivity.getStartTimeInMilliseconds() );
+            assertEquals( expectedActivity.isActive(), actualActivity.isActive() );
+            if( !expectedActivity.isActive() )
+            {
+                assertEquals( expectedActivity.getStopTimeInMilliseconds(), actualActivity.getStopTimeInMilliseconds() );
+            }
+        }
+    }
+
+    /**
+     * Reads the content of the journal file.
+     * 
+     * @return The content of the journal file.
+     * 
+     * @throws java.lang.Exception
+     *         If an error occurs.
+     */
+    private byte[] readJournal()
+        throws Exception
+    {
+        final RandomAccessFile file = new RandomAccessFile( file_, "r" ); //$NON-NLS-1$
+        try
+        {
+            final byte[] content = new byte[ (int)file.length() ];
+            file.readFully( content );
+            return content;
+        }
+        finally
+        {
+            file.close();
+        }
+    }
+
+    /**
+     * Closes the journal under test and replays it against a new time card.
+     * 
+     * @return The recovered time card.
+     * 
+     * @throws java.lang.Exception
+     *         If an error occurs.
+     */
+    @SuppressWarnings( "null" )
+    private TimeCard reopen()
+        throws Exception
+    {
+        journal_.close();
+        final TimeCard timeCard = new TimeCard();
+        journal_ = TimeCardJournal.open( file_, timeCard );
+        return timeCard;
+    }
+
+    /**
+     * Removes the specified number of bytes from the end of the journal file.
+     * 
+     * @param byteCount
+     *        The number of bytes to be removed.
+     * 
+     * @throws java.lang.Exception
+     *         If an error occurs.
+     */
+    private void truncate(
+        final long byteCount )
+        throws Exception
+    {
+        final RandomAccessFile file = new RandomAccessFile( file_, "rw" ); //$NON-NLS-1$
+        try
+        {
+            file.setLength( file.length() - byteCount );
+        }
+        finally
+        {
+            file.close();
+        }
+    }
+
+    /**
+     * Replaces the content of the journal file.
+     * 
+     * @param content
+     *        The new content of the journal file.
+     * 
+     * @throws java.lang.Exception
+     *         If an error occurs.
+     */
+    private void writeJournal(
+        final byte[] content )
+        throws Exception
+    {
+        final RandomAccessFile file = new RandomAccessFile( file_, "rw" ); //$NON-NLS-1$
+        try
+        {
+            file.setLength( 0L );
+            file.write( content );
+        }
+        finally
+        {
+            file.close();
+        }
+    }
+
+    /**
+     * Ensures the {@link TimeCardJournal#commit} method syncs the journal file
+     * once for a burst of changes.
+     * 
+     * @throws java.lang.Exception
+     *         If an error occurs.
+     */
+    @SuppressWarnings( "null" )
+    public void testCommit_SyncsBurstOfChangesOnce()
+        throws Exception
+    {
+        timeCard_.startActivity( CHARGE_NUMBER_1, 1000L );
+        timeCard_.startActivity( CHARGE_NUMBER_2, 2000L );
+        timeCard_.stopActiveActivity( 3000L );
+
+        journal_.commit();
+        journal_.commit();
+
+        assertEquals( 1L, journal_.getSyncCount() );
+    }
+
+    /**
+     * Ensures the {@link TimeCardJournal#commit} method syncs the journal file
+     * once when many threads commit the same changes concurrently.
+     * 
+     * @throws java.lang.Exception
+     *         If an error occurs.
+     */
+    @SuppressWarnings( "null" )
+    public void testCommit_SyncsOnceForConcurrentCommitters()
+        throws Exception
+    {
+        timeCard_.startActivity( CHARGE_NUMBER_1, 1000L );
+        timeCard_.stopActiveActivity( 2000L );
+
+        final CountDownLatch startLatch = new CountDownLatch( 1 );
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final Thread[] threads = new Thread[ 8 ];
+        for( int index = 0; index < threads.length; ++index )
+        {
+            threads[ index ] = new Thread( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        startLatch.await();
+                        journal_.commit();
+                    }
+                    catch( final Throwable e )
+                    {
+                        failure.compareAndSet( null, e );
+                    }
+                }
+            } );
+            threads[ index ].start();
+        }
+
+        startLatch.countDown();
+        for( final Thread thread : threads )
+        {
+            thread.join();
+        }
+
+        assertNull( failure.get() );
+        assertEquals( 1L, journal_.getSyncCount() );
+    }
+
+    /**
+     * Ensures the {@link TimeCardJournal#compact} method preserves every
+     * change when the journal is committed concurrently by another thread.
+     * 
+     * @throws java.lang.Exception
+     *         If an error occurs.
+     */
+    @SuppressWarnings( "null" )
+    public void testCompact_PreservesChangesWhileCommittingConcurrently()
+        throws Exception
+    {
+        final AtomicBoolean isDone = new AtomicBoolean( false );
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final Thread thread = new Thread( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    while( !isDone.get() )
+                    {
+                        journal_.commit();
+                    }
+                }
+                catch( final Throwable e )
+                {
+                    failure.compareAndSet( null, e );
+                }
+            }
+        } );
+        thread.start();
+        try
+        {
+            for( int index = 0; index < 200; ++index )
+            {
+                timeCard_.startActivity( (index % 2 == 0) ? CHARGE_NUMBER_1 : CHARGE_NUMBER_2, 2000L * index );
+                timeCard_.stopActiveActivity( 2000L * index + 1000L );
+                if( index % 10 == 9 )
+                {
+                    journal_.compact();
+                }
+            }
+            timeCard_.startActivity( CHARGE_NUMBER_1, 400000L );
+        }
+        finally
+        {
+            isDone.set( true );
+            thread.join();
+        }
+
+        final TimeCard timeCard = reopen();
+
+        assertNull( failure.get() );
+        assertActivitiesEquals( timeCard_.getActivities(), timeCard.getActivities() );
+    }
+
+    /**
+     * Ensures the {@link TimeCardJournal#compact} method truncates the journal
+     * and clears the history of the time card.
+     * 
+     * @throws java.lang.Exception
+     *         If an error occurs.
+     */
+    @SuppressWarnings( "null" )
+    public void testCompact_TruncatesJournalAndClearsHistory()
+        throws Exception
+    {
+        timeCard_.startActivity( CHARGE_NUMBER_1, 1000L );
+        timeCard_.stopActiveActivity( 2000L );
+        journal_.commit();
+        final long uncompactedLength = file_.length();
+
+        journal_.compact();
+
+        assertTrue( file_.length() < uncompactedLength );
+        assertTrue( TimeCardJournal.getSnapshotFile( file_ ).exists() );
+        assertFalse( timeCard_.canUndo() );
+    }
+
+    /**
+     * Ensures the {@link TimeCardJournal#open} method compacts a journal whose
+     * length reaches the compaction threshold.
+     * 
+     * @throws java.lang.Exception
+     *         If an error occurs.
+     */
+    @SuppressWarnings( "null" )
+    public void testOpen_CompactsLongJournal()
+        throws Exception
+    {
+        timeCard_.startActivity( CHARGE_NUMBER_1, 1000L );
+        timeCard_.stopActiveActivity( 2000L );
+        journal_.close();
+        final long uncompactedLength = file_.length();
+
+        final TimeCard timeCard = new TimeCard();
+        journal_ = TimeCardJournal.open( file_, timeCard, uncompactedLength );
+
+        assertTrue( file_.length() < uncompactedLength );
+        assertEquals( 1, timeCard.getActivities().size() );
+        assertFalse( timeCard.canUndo() );
+    }
+
+    /**
+     * Ensures the {@link TimeCardJournal#open} method discards a journal that
+     * was already covered by the snapshot when a crash prevented its
+     * truncation.
+     * 
+     * @throws java.lang.Exception
+     *         If an error occurs.
+     */
+    @SuppressWarnings( "null" )
+    public void testOpen_DiscardsJournalCoveredBySnapshot()
+        throws Exception
+    {
+        timeCard_.startActivity( CHARGE_NUMBER_1, 1000L );
+        timeCard_.stopActiveActivity( 2000L );
+        journal_.commit();
+        final byte[] coveredJournal = readJournal();
+        journal_.compact();
+        journal_.close();
+        writeJournal( coveredJournal );
+
+        timeCard_ = new TimeCard();
+        journal_ = TimeCardJournal.open( file_, timeCard_ );
+        timeCard_.startActivity( CHARGE_NUMBER_2, 3000L );
+        final TimeCard timeCard = reopen();
+
+        assertEquals( 2, timeCard.getActivities().size() );
+        assertEquals( 2000L, timeCard.getActivities().get( 0 ).getStopTimeInMilliseconds() );
+        assertEquals( CHARGE_NUMBER_2, timeCard.getActiveActivity().getChargeNumber() );
+    }
+
+    /**
+     * Ensures the {@link TimeCardJournal#open} method continues to record
+     * changes after a torn record has been truncated.
+     * 
+     * @throws java.lang.Exception
+     *         If an error occurs.
+     */
+    @SuppressWarnings( "null" )
+    public void testOpen_RecordsChangesAfterTruncatingTornRecord()
+        throws Exception
+    {
+        timeCard_.startActivity( CHARGE_NUMBER_1, 1000L );
+        timeCard_.stopActiveActivity( 2000L );
+        journal_.close();
+        truncate( 3L );
+
+        timeCard_ = new TimeCard();
+        journal_ = TimeCardJournal.open( file_, timeCard_ );
+        timeCard_.stopActiveActivity( 3000L );
+        final TimeCard timeCard = reopen();
+
+        assertEquals( 1, timeCard.getActivities().size() );
+        assertEquals( 3000L, timeCard.getActivities().get( 0 ).getStopTimeInMilliseconds() );
+    }
+
+    /**
+     * Ensures the {@link TimeCardJournal#open} method recovers the activities,
+     * closed periods, and undo history of the time card.
+     * 
+     * @throws java.lang.Exception
+     *         If an error occurs.
+     */
+    @SuppressWarnings( "null" )
+    public void testOpen_RecoversTimeCard()
+        throws Exception
+    {
+        final Activity appendedActivity = Activity.start( CHARGE_NUMBER_2, 100L );
+        appendedActivity.stop( 200L );
+        timeCard_.appendActivities( Arrays.asList( appendedActivity ) );
+        timeCard_.startActivity( CHARGE_NUMBER_1, 1000L );
+        timeCard_.startActivity( CHARGE_NUMBER_2, 2000L );
+        timeCard_.stopActiveActivity( ONE_DAY + 1000L );
+        timeCard_.closePeriod( ONE_DAY );
+        timeCard_.startActivity( CHARGE_NUMBER_1, ONE_DAY + 2000L );
+        timeCard_.reset();
+        timeCard_.undo();
+        timeCard_.undo();
+        timeCard_.redo();
+
+        final TimeCard timeCard = reopen();
+
+        assertActivitiesEquals( timeCard_.getActivities(), timeCard.getActivities() );
+        assertEquals( 1, timeCard.getClosedPeriods().size() );
+        assertEquals( 3, timeCard.getClosedPeriods().get( 0 ).getActivities().size() );
+        assertTrue( timeCard.isActive() );
+        assertTrue( timeCard.canRedo() );
+        timeCard.undo();
+        timeCard_.undo();
+        assertActivitiesEquals( timeCard_.getActivities(), timeCard.getActivities() );
+    }
+
+    /**
+     * Ensures the {@link TimeCardJournal#open} method recovers the time card
+     * from the snapshot and the journal that follows it.
+     * 
+     * @throws java.lang.Exception
+     *         If an error occurs.
+     */
+    @SuppressWarnings( "null" )
+    public void testOpen_RecoversTimeCardFromSnapshot()
+        throws Exception
+    {
+        timeCard_.startActivity( CHARGE_NUMBER_1, 1000L );
+        timeCard_.startActivity( CHARGE_NUMBER_2, 2000L );
+        timeCard_.stopActiveActivity( ONE_DAY + 1000L );
+        timeCard_.closePeriod( ONE_DAY );
+        timeCard_.startActivity( CHARGE_NUMBER_1, ONE_DAY + 2000L );
+        journal_.compact();
+        timeCard_.startActivity( CHARGE_NUMBER_2, ONE_DAY + 3000L );
+
+        final TimeCard timeCard = reopen();
+
+        assertActivitiesEquals( timeCard_.getActivities(), timeCard.getActivities() );
+        assertEquals( 1, timeCard.getClosedPeriods().size() );
+        assertEquals( ONE_DAY, timeCard.getClosedPeriods().get( 0 ).getEndTimeInMilliseconds() );
+        assertActivitiesEquals( timeCard_.getClosedPeriods().get( 0 ).getActivities(), timeCard.getClosedPeriods().get( 0 ).getActivities() );
+        timeCard.undo();
+        assertFalse( timeCard.canUndo() );
+        assertEquals( CHARGE_NUMBER_1, timeCard.getActiveActivity().getChargeNumber() );
+    }
+
+    /**
+     * Ensures the {@link TimeCardJournal#open} method throws an exception if
+     * the time card is not empty.
+     * 
+     * @throws java.lang.Exception
+     *         If an error occurs.
+     */
+    @SuppressWarnings( "null" )
+    public void testOpen_ThrowsExceptionIfTimeCardNotEmpty()
+        throws Exception
+    {
+        final TimeCard timeCard = new TimeCard();
+        timeCard.startActivity( CHARGE_NUMBER_1, 1000L );
+
+        try
+        {
+            TimeCardJournal.open( file_, timeCard );
+            fail( "open() did not throw IllegalArgumentException" ); //$NON-NLS-1$
+        }
+        catch( final IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Ensures the {@link TimeCardJournal#open} method discards a last record
+     * whose checksum does not match its content.
+     * 
+     * @throws java.lang.Exception
+     *         If an error occurs.
+     */
+    @SuppressWarnings( "null" )
+    public void testOpen_TruncatesCorruptLastRecord()
+        throws Exception
+    {
+        timeCard_.startActivity( CHARGE_NUMBER_1, 1000L );
+        timeCard_.stopActiveActivity( 2000L );
+        journal_.close();
+        final RandomAccessFile file = new RandomAccessFile( file_, "rw" ); //$NON-NLS-1$
+        try
+        {
+            file.seek( file.length() - 5L );
+            file.writeByte( file.readByte() ^ 0x01 );
+        }
+        finally
+        {
+            file.close();
+        }
+        final long corruptLength = file_.length();
+
+        final TimeCard timeCard = new TimeCard();
+        journal_ = TimeCardJournal.open( file_, timeCard );
+
+        assertTrue( timeCard.isActive() );
+        assertTrue( file_.length() < corruptLength );
+    }
+
+    /**
+     * Ensures the {@link TimeCardJournal#open} method discards a torn last
+     * record.
+     * 
+     * @throws java.lang.Exception
+     *         If an error occurs.
+     */
+    @SuppressWarnings( "null" )
+    public void testOpen_TruncatesTornLastRecord()
+        throws Exception
+    {
+        timeCard_.startActivity( CHARGE_NUMBER_1, 1000L );
+        journal_.commit();
+        final long intactLength = file_.length();
+        timeCard_.stopActiveActivity( 2000L );
+        journal_.close();
+        truncate( 1L );
+
+        final TimeCard timeCard = new TimeCard();
+        journal_ = TimeCardJournal.open( file_, timeCard );
+
+        assertTrue( timeCard.isActive() );
+        assertEquals( 1000L, timeCard.getActiveActivity().getStartTimeInMilliseconds() );
+        assertEquals( intactLength, file_.length() );
+    }
+
+    /**
+     * Ensures the {@link TimeCardJournal#quarantine} method moves the journal
+     * and its snapshot aside so that a new, empty journal may be opened in
+     * their place.
+     * 
+     * @throws java.lang.Exception
+     *         If an error occurs.
+     */
+    @SuppressWarnings( "null" )
+    public void testQuarantine_MovesJournalAndSnapshotAside()
+        throws Exception
+    {
+        timeCard_.startActivity( CHARGE_NUMBER_1, 1000L );
+        journal_.compact();
+        timeCard_.stopActiveActivity( 2000L );
+        journal_.close();
+        final File quarantinedFile = new File( file_.getPath() + ".corrupt" ); //$NON-NLS-1$
+        final File quarantinedSnapshotFile = new File( TimeCardJournal.getSnapshotFile( file_ ).getPath() + ".corrupt" ); //$NON-NLS-1$
+        try
+        {
+            TimeCardJournal.quarantine( file_ );
+
+            final TimeCard timeCard = new TimeCard();
+            journal_ = TimeCardJournal.open( file_, timeCard );
+            assertTrue( quarantinedFile.exists() );
+            assertTrue( quarantinedSnapshotFile.exists() );
+            assertTrue( timeCard.getActivities().isEmpty() );
+        }
+        finally
+        {
+            quarantinedFile.delete();
+            quarantinedSnapshotFile.delete();
+        }
+    }
+}
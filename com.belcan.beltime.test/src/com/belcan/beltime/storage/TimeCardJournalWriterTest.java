@@ -0,0 +1,213 @@
+/*
+ * TimeCardJournalWriterTest.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Mar 8, 2014 at 10:31:56 AM.
+ */
+
+package com.belcan.beltime.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import junit.framework.TestCase;
+import com.belcan.beltime.model.ChargeNumber;
+import com.belcan.beltime.model.TimeCard;
+
+/**
+ * A fixture for testing the {@link TimeCardJournalWriter} class.
+ */
+public final class TimeCardJournalWriterTest
+    extends TestCase
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /** The charge number used in the fixture. */
+    private static final ChargeNumber CHARGE_NUMBER = ChargeNumber.fromString( "1111111.1111" ); //$NON-NLS-1$
+
+    /** The journal file in the fixture. */
+    private File file_;
+
+    /** The journal committed by the writer under test. */
+    private TimeCardJournal journal_;
+
+    /** The time card recorded by the journal. */
+    private TimeCard timeCard_;
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code TimeCardJournalWriterTest}
+     * class.
+     */
+    public TimeCardJournalWriterTest()
+    {
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /*
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        file_ = File.createTempFile( "beltime", ".journal" ); //$NON-NLS-1$ //$NON-NLS-2$
+        timeCard_ = new TimeCard();
+        journal_ = TimeCardJournal.open( file_, timeCard_ );
+    }
+
+    /*
+     * @see junit.framework.TestCase#tearDown()
+     */
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        journal_.close();
+        file_.delete();
+        TimeCardJournal.getSnapshotFile( file_ ).delete();
+
+        super.tearDown();
+    }
+
+    /**
+     * Ensures the {@link TimeCardJournalWriter#close} method commits the
+     * changes buffered by the journal.
+     * 
+     * @throws java.lang.Exception
+     *         If an error occurs.
+     */
+    public void testClose_CommitsBufferedChanges()
+        throws Exception
+    {
+        final TimeCardJournalWriter writer = TimeCardJournalWriter.start( journal_, 1000 );
+        timeCard_.startActivity( CHARGE_NUMBER, 1000L );
+        timeCard_.stopActiveActivity( 2000L );
+
+        writer.close();
+
+        assertEquals( 2L, journal_.getChangeCount() );
+        assertEquals( 2L, journal_.getCommittedChangeCount() );
+    }
+
+    /**
+     * Ensures the {@link TimeCardJournalWriter#requestCommit} method commits
+     * the journal in the background and acknowledges the commit to the
+     * listeners of the writer.
+     * 
+     * @throws java.lang.Exception
+     *         If an error occurs.
+     */
+    public void testRequestCommit_AcknowledgesCommitAsynchronously()
+        throws Exception
+    {
+        final TimeCardJournalWriter writer = TimeCardJournalWriter.start( journal_, 1000 );
+        try
+        {
+            timeCard_.startActivity( CHARGE_NUMBER, 1000L );
+            timeCard_.stopActiveActivity( 2000L );
+            final long changeCount = journal_.getChangeCount();
+            final CountDownLatch committedLatch = new CountDownLatch( 1 );
+            final AtomicLong committedChangeCount = new AtomicLong();
+            writer.addTimeCardJournalWriterListener( new ITimeCardJournalWriterListener()
+            {
+                @Override
+                public void onCommitFailed(
+                    final TimeCardJournalWriter eventWriter,
+                    final IOException e )
+                {
+                    // do nothing
+                }
+
+                @Override
+                public void onCommitted(
+                    final TimeCardJournalWriter eventWriter,
+                    final long eventCommittedChangeCount )
+                {
+                    if( eventCommittedChangeCount >= changeCount )
+                    {
+                        committedChangeCount.set( eventCommittedChangeCount );
+                        committedLatch.countDown();
+                    }
+                }
+            } );
+
+            assertEquals( 2L, writer.requestCommit() );
+
+            assertTrue( committedLatch.await( 10L, TimeUnit.SECONDS ) );
+            assertEquals( changeCount, committedChangeCount.get() );
+            assertTrue( journal_.getCommittedChangeCount() >= changeCount );
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    /**
+     * Ensures the journal never buffers more than the maximum number of
+     * changes, even if no commit is requested.
+     * 
+     * @throws java.lang.Exception
+     *         If an error occurs.
+     */
+    public void testStart_BoundsChangesBufferedByJournal()
+        throws Exception
+    {
+        final TimeCardJournalWriter writer = TimeCardJournalWriter.start( journal_, 3 );
+        try
+        {
+            for( int index = 0; index < 10; ++index )
+            {
+                timeCard_.startActivity( CHARGE_NUMBER, 2000L * index );
+                timeCard_.stopActiveActivity( 2000L * index + 1000L );
+
+                assertTrue( journal_.getChangeCount() - journal_.getCommittedChangeCount() <= 3L );
+            }
+
+            assertEquals( 20L, journal_.getChangeCount() );
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    /**
+     * Ensures the {@link TimeCardJournalWriter#start} method throws an
+     * exception if the maximum number of pending changes is not positive.
+     */
+    public void testStart_ThrowsExceptionIfMaximumPendingChangeCountNotPositive()
+    {
+        try
+        {
+            TimeCardJournalWriter.start( journal_, 0 );
+            fail( "expected IllegalArgumentException" ); //$NON-NLS-1$
+        }
+        catch( final IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+}
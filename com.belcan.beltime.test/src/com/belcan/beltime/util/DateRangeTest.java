@@ -115,6 +115,38 @@ public final class DateRangeTest
         }
     }
 
+    /**
+     * Ensures the {@link DateRange#fromMilliseconds} method creates a date
+     * range equal to the date range created from the equivalent dates.
+     */
+    @SuppressWarnings( "null" )
+    public void testFromMilliseconds_EqualsDateRangeFromDates()
+    {
+        final DateRange dateRange = DateRange.fromMilliseconds( BEGIN_DATE.getTime(), END_DATE.getTime() );
+
+        assertEquals( dateRange_, dateRange );
+        assertEquals( BEGIN_DATE.getTime(), dateRange.getBeginTimeInMilliseconds() );
+        assertEquals( END_DATE.getTime(), dateRange.getEndTimeInMilliseconds() );
+    }
+
+    /**
+     * Ensures the {@link DateRange#fromMilliseconds} method throws an exception
+     * if the ending time of the range is less than the beginning time of the
+     * range.
+     */
+    public void testFromMilliseconds_ThrowsExceptionIfEndTimeLessThanBeginTime()
+    {
+        try
+        {
+            DateRange.fromMilliseconds( 0L, -1L );
+            fail( "fromMilliseconds() did not throw IllegalArgumentException" ); //$NON-NLS-1$
+        }
+        catch( final IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+
     /**
      * Ensures the {@link DateRange#getBeginDate} method returns a copy of the
      * begin date.
@@ -16,6 +16,7 @@ package com.belcan.beltime.model;
 
 import java.util.Date;
 import com.belcan.beltime.util.Duration;
+import org.eclipse.jdt.annotation.Nullable;
 
 /**
  * A continuous period of billable work performed against a job.
@@ -29,11 +30,23 @@ public final class Activity
     /** The charge number of the job to be billed. */
     private final ChargeNumber chargeNumber_;
 
-    /** The time at which the activity started, inclusive. */
-    private final Date startTime_;
+    /** Indicates the activity is active. */
+    private boolean isActive_;
 
-    /** The time at which the activity stopped, exclusive. */
-    private Date stopTime_;
+    /** The time at which the activity started in milliseconds, inclusive. */
+    private final long startTime_;
+
+    /**
+     * The time at which the activity stopped in milliseconds, exclusive. Only
+     * meaningful if the activity is inactive.
+     */
+    private long stopTime_;
+
+    /**
+     * The time card of which the activity is the active activity or
+     * {@code null} if the activity is not the active activity of a time card.
+     */
+    private TimeCard timeCard_;
 
 
     // ======================================================================
@@ -46,15 +59,25 @@ public final class Activity
      * @param chargeNumber
      *        The charge number of the job to be billed.
      * @param startTime
-     *        The time at which the activity started, inclusive.
+     *        The time at which the activity started in milliseconds,
+     *        inclusive.
+     * @param stopTime
+     *        The time at which the activity stopped in milliseconds,
+     *        exclusive; ignored if {@code isActive} is {@code true}.
+     * @param isActive
+     *        {@code true} if the activity is active; otherwise {@code false}.
      */
     private Activity(
         final ChargeNumber chargeNumber,
-        final Date startTime )
+        final long startTime,
+        final long stopTime,
+        final boolean isActive )
     {
         chargeNumber_ = chargeNumber;
-        startTime_ = new Date( startTime.getTime() );
-        stopTime_ = null;
+        isActive_ = isActive;
+        startTime_ = startTime;
+        stopTime_ = stopTime;
+        timeCard_ = null;
     }
 
 
@@ -62,6 +85,47 @@ public final class Activity
     // Methods
     // ======================================================================
 
+    /**
+     * Creates a new inactive activity.
+     * 
+     * @param chargeNumber
+     *        The charge number of the job to be billed.
+     * @param startTime
+     *        The time at which the activity started in milliseconds,
+     *        inclusive.
+     * @param stopTime
+     *        The time at which the activity stopped in milliseconds,
+     *        exclusive.
+     * 
+     * @return A new inactive activity.
+     */
+    static Activity createInactive(
+        final ChargeNumber chargeNumber,
+        final long startTime,
+        final long stopTime )
+    {
+        assert startTime <= stopTime;
+
+        return new Activity( chargeNumber, startTime, stopTime, false );
+    }
+
+    /**
+     * Creates a new inactive activity from the record at the specified index.
+     * 
+     * @param activityRecords
+     *        The activity records.
+     * @param index
+     *        The index of the record.
+     * 
+     * @return A new inactive activity.
+     */
+    static Activity createInactive(
+        final IActivityRecords activityRecords,
+        final int index )
+    {
+        return createInactive( activityRecords.getChargeNumber( index ), activityRecords.getStartTime( index ), activityRecords.getStopTime( index ) );
+    }
+
     /**
      * Gets the charge number of the job to be billed.
      * 
@@ -83,12 +147,12 @@ public final class Activity
      */
     public Duration getDuration()
     {
-        if( stopTime_ == null )
+        if( isActive_ )
         {
             throw new IllegalStateException( "cannot get duration of an active activity" ); //$NON-NLS-1$
         }
 
-        return Duration.fromMilliseconds( stopTime_.getTime() - startTime_.getTime() );
+        return Duration.fromMilliseconds( stopTime_ - startTime_ );
     }
 
     /**
@@ -98,7 +162,18 @@ public final class Activity
      */
     public Date getStartTime()
     {
-        return new Date( startTime_.getTime() );
+        return new Date( startTime_ );
+    }
+
+    /**
+     * Gets the time at which the activity started in milliseconds, inclusive.
+     * 
+     * @return The time at which the activity started in milliseconds,
+     *         inclusive.
+     */
+    public long getStartTimeInMilliseconds()
+    {
+        return startTime_;
     }
 
     /**
@@ -111,12 +186,31 @@ public final class Activity
      */
     public Date getStopTime()
     {
-        if( stopTime_ == null )
+        if( isActive_ )
         {
             throw new IllegalStateException( "cannot get stop time of an active activity" ); //$NON-NLS-1$
         }
 
-        return new Date( stopTime_.getTime() );
+        return new Date( stopTime_ );
+    }
+
+    /**
+     * Gets the time at which the activity stopped in milliseconds, exclusive.
+     * 
+     * @return The time at which the activity stopped in milliseconds,
+     *         exclusive.
+     * 
+     * @throws java.lang.IllegalStateException
+     *         If the activity is active.
+     */
+    public long getStopTimeInMilliseconds()
+    {
+        if( isActive_ )
+        {
+            throw new IllegalStateException( "cannot get stop time of an active activity" ); //$NON-NLS-1$
+        }
+
+        return stopTime_;
     }
 
     /**
@@ -126,7 +220,22 @@ public final class Activity
      */
     public boolean isActive()
     {
-        return stopTime_ == null;
+        return isActive_;
+    }
+
+    /**
+     * Sets the time card of which the activity is the active activity.
+     * 
+     * @param timeCard
+     *        The time card of which the activity is the active activity or
+     *        {@code null} if the activity is no longer the active activity of
+     *        a time card.
+     */
+    void setTimeCard(
+        @Nullable
+        final TimeCard timeCard )
+    {
+        timeCard_ = timeCard;
     }
 
     /**
@@ -143,7 +252,25 @@ public final class Activity
         final ChargeNumber chargeNumber,
         final Date startTime )
     {
-        return new Activity( chargeNumber, startTime );
+        return start( chargeNumber, startTime.getTime() );
+    }
+
+    /**
+     * Starts a new activity.
+     * 
+     * @param chargeNumber
+     *        The charge number of the job to be billed.
+     * @param startTime
+     *        The time at which the activity started in milliseconds,
+     *        inclusive.
+     * 
+     * @return A new activity.
+     */
+    public static Activity start(
+        final ChargeNumber chargeNumber,
+        final long startTime )
+    {
+        return new Activity( chargeNumber, startTime, 0L, true );
     }
 
     /**
@@ -161,15 +288,48 @@ public final class Activity
     public void stop(
         final Date stopTime )
     {
-        if( stopTime.compareTo( startTime_ ) < 0 )
+        stop( stopTime.getTime() );
+    }
+
+    /**
+     * Stops the activity.
+     * 
+     * <p>
+     * If the activity is the active activity of a time card, the active
+     * activity of the time card is stopped as if by
+     * {@link TimeCard#stopActiveActivity(long)}.
+     * </p>
+     * 
+     * @param stopTime
+     *        The time at which the activity stopped in milliseconds,
+     *        exclusive.
+     * 
+     * @throws java.lang.IllegalArgumentException
+     *         If {@code stopTime} is less than the time at which the activity
+     *         started.
+     * @throws java.lang.IllegalStateException
+     *         If the activity is inactive.
+     */
+    public void stop(
+        final long stopTime )
+    {
+        if( stopTime < startTime_ )
         {
             throw new IllegalArgumentException( "stop time must be greater than or equal to start time" ); //$NON-NLS-1$
         }
-        else if( stopTime_ != null )
+        else if( !isActive_ )
         {
             throw new IllegalStateException( "cannot stop an inactive activity" ); //$NON-NLS-1$
         }
 
-        stopTime_ = new Date( stopTime.getTime() );
+        final TimeCard timeCard = timeCard_;
+        if( timeCard != null )
+        {
+            timeCard.stopActiveActivity( stopTime );
+            return;
+        }
+
+        isActive_ = false;
+        stopTime_ = stopTime;
     }
 }
@@ -0,0 +1,610 @@
+/*
+ * ActivityStore.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Mar 2, 2014 at 1:12:40 PM.
+ */
+
+package com.belcan.beltime.model;
+
+import com.belcan.beltime.util.NullAnalysis;
+
+/**
+ * A columnar store of inactive activities in chronological order.
+ * 
+ * <p>
+ * The store is the default, in-memory {@link IActivityStorage} engine of a
+ * time card.
+ * </p>
+ * 
+ * <p>
+ * Each activity is stored as an entry in three parallel primitive arrays: its
+ * start time, its stop time, and the identifier of its charge number in a
+ * dictionary shared by all activities in the store. This uses a fraction of
+ * the memory of a collection of {@link Activity} objects and lets scans over
+ * the store run over primitive arrays. {@code Activity} objects are only
+ * created on demand as views of individual entries.
+ * </p>
+ * 
+ * <p>
+ * The arrays are split into fixed-size segments. Only the last segment accepts
+ * new activities; once a segment is full it is sealed and never modified
+ * again. Adding an activity therefore never copies previously added
+ * activities, and sealed segments may be shared freely with readers.
+ * </p>
+ * 
+ * <p>
+ * Apart from {@link #truncate}, the store is append-only: once an activity has
+ * been added, the entry at its index never changes. Callers may therefore
+ * process a consistent prefix of the store by capturing its size before
+ * processing it. A read-only view of the current contents of the store, which
+ * is unaffected by activities added later and may be safely published to
+ * other threads, is created by {@link #createReadOnlyView}.
+ * </p>
+ * 
+ * <p>
+ * The store is also persistent: {@link #createWritableCopy} creates a new
+ * store from any view that shares all of its segments. When such a copy, or a
+ * truncated store, adds an activity to a segment that may still be visible to
+ * other stores, it first copies that segment and the segment directory, so
+ * every view and copy keeps its contents no matter which of them is modified
+ * later.
+ * </p>
+ * 
+ * <p>
+ * Because activities never overlap and are added in chronological order, both
+ * the start times and the stop times of the activities are sorted. The store
+ * is therefore its own interval index: the activities that overlap any time
+ * range are a contiguous run whose bounds are found by binary search.
+ * </p>
+ */
+final class ActivityStore
+    implements IActivityStorage
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /**
+     * The number of bytes used by each activity in the store: a charge number
+     * identifier, a start time, and a stop time.
+     */
+    static final int BYTES_PER_ACTIVITY = 4 + 8 + 8;
+
+    /** The shift used to extract the index of the segment of an activity. */
+    private static final int SEGMENT_SHIFT = 10;
+
+    /** The number of activities in each segment. */
+    static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+
+    /**
+     * The dictionary of charge numbers billed by the activities. The
+     * dictionary is shared by all views and copies of the store; it only
+     * grows, so identifiers assigned by one store never conflict with those
+     * used by another.
+     */
+    private final ChargeNumberDictionary chargeNumberDictionary_;
+
+    /**
+     * The collection of charge numbers indexed by identifier. Only the entries
+     * whose identifiers are used by activities in the store are valid.
+     */
+    private ChargeNumber[] chargeNumbers_;
+
+    /** Indicates the store is a read-only view. */
+    private final boolean isReadOnly_;
+
+    /**
+     * The collection of segments in chronological order. Only the first
+     * {@code segmentCount_} entries are used.
+     */
+    private Segment[] segments_;
+
+    /** The count of segments in the store. */
+    private int segmentCount_;
+
+    /**
+     * The count of entries at the beginning of the segments that may be
+     * visible to views or copies of the store. Entries below this count must
+     * not be modified in place.
+     */
+    private int sharedSize_;
+
+    /** The count of activities in the store. */
+    private int size_;
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code ActivityStore} class.
+     */
+    ActivityStore()
+    {
+        chargeNumberDictionary_ = new ChargeNumberDictionary();
+        chargeNumbers_ = chargeNumberDictionary_.getChargeNumbers();
+        isReadOnly_ = false;
+        segments_ = new Segment[ 1 ];
+        segmentCount_ = 0;
+        sharedSize_ = 0;
+        size_ = 0;
+    }
+
+    /**
+     * Initializes a new instance of the {@code ActivityStore} class that
+     * shares the segments of another store.
+     * 
+     * @param chargeNumberDictionary
+     *        The dictionary of charge numbers billed by the activities.
+     * @param chargeNumbers
+     *        The collection of charge numbers indexed by identifier.
+     * @param isReadOnly
+     *        {@code true} if the store is a read-only view; otherwise
+     *        {@code false}.
+     * @param segments
+     *        The collection of segments in chronological order.
+     * @param segmentCount
+     *        The count of segments in the store.
+     * @param size
+     *        The count of activities in the store.
+     */
+    private ActivityStore(
+        final ChargeNumberDictionary chargeNumberDictionary,
+        final ChargeNumber[] chargeNumbers,
+        final boolean isReadOnly,
+        final Segment[] segments,
+        final int segmentCount,
+        final int size )
+    {
+        chargeNumberDictionary_ = chargeNumberDictionary;
+        chargeNumbers_ = chargeNumbers;
+        isReadOnly_ = isReadOnly;
+        segments_ = segments;
+        segmentCount_ = segmentCount;
+        sharedSize_ = Integer.MAX_VALUE;
+        size_ = size;
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /**
+     * Appends an inactive activity to the end of the store.
+     * 
+     * <p>
+     * Activities must be added in chronological order. If the last segment is
+     * full, it is sealed and a new segment is started. If the last segment may
+     * be visible to another store, it is copied before it is modified.
+     * </p>
+     * 
+     * @param chargeNumber
+     *        The charge number of the job to be billed.
+     * @param startTimeInMilliseconds
+     *        The time at which the activity started in milliseconds,
+     *        inclusive.
+     * @param stopTimeInMilliseconds
+     *        The time at which the activity stopped in milliseconds,
+     *        exclusive.
+     * 
+     * @throws java.lang.IllegalStateException
+     *         If the store is a read-only view.
+     */
+    @Override
+    public void append(
+        final ChargeNumber chargeNumber,
+        final long startTimeInMilliseconds,
+        final long stopTimeInMilliseconds )
+    {
+        assert startTimeInMilliseconds <= stopTimeInMilliseconds;
+        assert (size_ == 0) || (startTimeInMilliseconds >= getStopTime( size_ - 1 ));
+
+        if( isReadOnly_ )
+        {
+            throw new IllegalStateException( "cannot add an activity to a read-only view" ); //$NON-NLS-1$
+        }
+
+        if( size_ < sharedSize_ )
+        {
+            unshareLastSegment();
+        }
+
+        final int segmentIndex = size_ >>> SEGMENT_SHIFT;
+        if( segmentIndex == segmentCount_ )
+        {
+            if( segmentCount_ == segments_.length )
+            {
+                final Segment[] segments = new Segment[ 2 * segmentCount_ ];
+                System.arraycopy( segments_, 0, segments, 0, segmentCount_ );
+                segments_ = segments;
+            }
+
+            segments_[ segmentCount_++ ] = new Segment();
+        }
+
+        final Segment segment = segments_[ segmentIndex ];
+        final int index = size_ & (SEGMENT_SIZE - 1);
+        segment.chargeNumberIds_[ index ] = chargeNumberDictionary_.getId( chargeNumber );
+        chargeNumbers_ = chargeNumberDictionary_.getChargeNumbers();
+        segment.startTimes_[ index ] = startTimeInMilliseconds;
+        segment.stopTimes_[ index ] = stopTimeInMilliseconds;
+        ++size_;
+    }
+
+    /**
+     * Creates a read-only view of the current contents of the store.
+     * 
+     * <p>
+     * The view shares the segments of the store and is created in constant
+     * time. It is unaffected by activities added to the store afterwards,
+     * because the store never modifies an entry once it has been added and
+     * replaces, rather than modifies, its segment directory and charge number
+     * collection when they grow. The view may be read from any thread once it
+     * has been safely published.
+     * </p>
+     * 
+     * @return A read-only view of the current contents of the store.
+     */
+    @Override
+    public ActivityStore createReadOnlyView()
+    {
+        sharedSize_ = Math.max( sharedSize_, size_ );
+        return new ActivityStore( chargeNumberDictionary_, chargeNumbers_, true, segments_, segmentCount_, size_ );
+    }
+
+    /**
+     * Creates a writable copy of the current contents of the store.
+     * 
+     * <p>
+     * The copy shares the segments of the store and is created in constant
+     * time. The first activity added to the copy causes its last segment and
+     * its segment directory to be copied, after which the copy no longer
+     * shares any modifiable state with the store or its other views and
+     * copies. This method may be called on a read-only view, which allows an
+     * earlier version of a store to be restored and modified.
+     * </p>
+     * 
+     * <p>
+     * The copy shares the charge number dictionary of the store, so only one
+     * of the writable stores derived from a store may be modified at a time.
+     * </p>
+     * 
+     * @return A writable copy of the current contents of the store.
+     */
+    @Override
+    public ActivityStore createWritableCopy()
+    {
+        sharedSize_ = Math.max( sharedSize_, size_ );
+        return new ActivityStore( chargeNumberDictionary_, chargeNumbers_, false, segments_, segmentCount_, size_ );
+    }
+
+    /**
+     * Gets the charge number of the activity at the specified index.
+     * 
+     * @param index
+     *        The index of the activity.
+     * 
+     * @return The charge number of the activity.
+     */
+    @Override
+    public ChargeNumber getChargeNumber(
+        final int index )
+    {
+        assert (index >= 0) && (index < size_);
+
+        return NullAnalysis.nonNull( chargeNumbers_[ segments_[ index >>> SEGMENT_SHIFT ].chargeNumberIds_[ index & (SEGMENT_SIZE - 1) ] ] );
+    }
+
+    /**
+     * Gets the estimated number of bytes used by the charge numbers billed by
+     * the activities in the store.
+     * 
+     * <p>
+     * The charge number dictionary is shared by all views and copies of the
+     * store, so the result should be counted only once for all of them.
+     * </p>
+     * 
+     * @return The estimated number of bytes used by the charge number
+     *         dictionary and the charge numbers of the store.
+     */
+    long getChargeNumberMemoryUsage()
+    {
+        return chargeNumberDictionary_.getMemoryUsage() + 4L * chargeNumbers_.length;
+    }
+
+    /**
+     * Gets the index of the first activity that starts after the specified
+     * time.
+     * 
+     * @param timeInMilliseconds
+     *        The time in milliseconds.
+     * @param size
+     *        The count of activities at the beginning of the store to be
+     *        searched.
+     * 
+     * @return The index of the first activity that starts after the specified
+     *         time or {@code size} if no such activity exists.
+     */
+    @Override
+    public int getFirstIndexStartingAfter(
+        final long timeInMilliseconds,
+        final int size )
+    {
+        assert (size >= 0) && (size <= size_);
+
+        int lowIndex = 0;
+        int highIndex = size;
+        while( lowIndex < highIndex )
+        {
+            final int middleIndex = (lowIndex + highIndex) >>> 1;
+            if( getStartTime( middleIndex ) <= timeInMilliseconds )
+            {
+                lowIndex = middleIndex + 1;
+            }
+            else
+            {
+                highIndex = middleIndex;
+            }
+        }
+
+        return lowIndex;
+    }
+
+    /**
+     * Gets the index of the first activity that stops at or after the
+     * specified time.
+     * 
+     * @param timeInMilliseconds
+     *        The time in milliseconds.
+     * @param size
+     *        The count of activities at the beginning of the store to be
+     *        searched.
+     * 
+     * @return The index of the first activity that stops at or after the
+     *         specified time or {@code size} if no such activity exists.
+     */
+    @Override
+    public int getFirstIndexStoppingAtOrAfter(
+        final long timeInMilliseconds,
+        final int size )
+    {
+        assert (size >= 0) && (size <= size_);
+
+        int lowIndex = 0;
+        int highIndex = size;
+        while( lowIndex < highIndex )
+        {
+            final int middleIndex = (lowIndex + highIndex) >>> 1;
+            if( getStopTime( middleIndex ) < timeInMilliseconds )
+            {
+                lowIndex = middleIndex + 1;
+            }
+            else
+            {
+                highIndex = middleIndex;
+            }
+        }
+
+        return lowIndex;
+    }
+
+    /**
+     * Gets the number of bytes used by the segments of a store containing the
+     * specified count of activities.
+     * 
+     * <p>
+     * Segments are allocated in full, so the result accounts for the unused
+     * entries of the last segment. The charge number dictionary and the object
+     * overhead of the store are not included.
+     * </p>
+     * 
+     * @param size
+     *        The count of activities in the store.
+     * 
+     * @return The number of bytes used by the segments of the store.
+     */
+    static long getMemoryUsage(
+        final int size )
+    {
+        assert size >= 0;
+
+        final long segmentCount = ((long)size + SEGMENT_SIZE - 1L) >>> SEGMENT_SHIFT;
+        return segmentCount * SEGMENT_SIZE * BYTES_PER_ACTIVITY;
+    }
+
+    /**
+     * Gets the time at which the activity at the specified index started in
+     * milliseconds, inclusive.
+     * 
+     * @param index
+     *        The index of the activity.
+     * 
+     * @return The time at which the activity started in milliseconds,
+     *         inclusive.
+     */
+    @Override
+    public long getStartTime(
+        final int index )
+    {
+        assert (index >= 0) && (index < size_);
+
+        return segments_[ index >>> SEGMENT_SHIFT ].startTimes_[ index & (SEGMENT_SIZE - 1) ];
+    }
+
+    /**
+     * Gets the time at which the activity at the specified index stopped in
+     * milliseconds, exclusive.
+     * 
+     * @param index
+     *        The index of the activity.
+     * 
+     * @return The time at which the activity stopped in milliseconds,
+     *         exclusive.
+     */
+    @Override
+    public long getStopTime(
+        final int index )
+    {
+        assert (index >= 0) && (index < size_);
+
+        return segments_[ index >>> SEGMENT_SHIFT ].stopTimes_[ index & (SEGMENT_SIZE - 1) ];
+    }
+
+    /**
+     * Indicates the segment at the specified index is sealed.
+     * 
+     * @param segmentIndex
+     *        The index of the segment.
+     * 
+     * @return {@code true} if the segment is full and will not be modified
+     *         again unless the store is truncated; otherwise {@code false}.
+     */
+    boolean isSegmentSealed(
+        final int segmentIndex )
+    {
+        assert (segmentIndex >= 0) && (segmentIndex < segmentCount_);
+
+        return size_ >= ((segmentIndex + 1) << SEGMENT_SHIFT);
+    }
+
+    /**
+     * Gets the count of activities in the store.
+     * 
+     * @return The count of activities in the store.
+     */
+    @Override
+    public int size()
+    {
+        return size_;
+    }
+
+    /**
+     * Removes the activities at and after the specified index from the store.
+     * 
+     * <p>
+     * Only the size of the store changes. Entries that may be visible to other
+     * stores are left as they are; the next activity added to the store copies
+     * the segment it modifies first.
+     * </p>
+     * 
+     * @param size
+     *        The count of activities to be retained.
+     * 
+     * @throws java.lang.IllegalArgumentException
+     *         If {@code size} is negative or greater than the count of
+     *         activities in the store.
+     * @throws java.lang.IllegalStateException
+     *         If the store is a read-only view.
+     */
+    @Override
+    public void truncate(
+        final int size )
+    {
+        if( isReadOnly_ )
+        {
+            throw new IllegalStateException( "cannot truncate a read-only view" ); //$NON-NLS-1$
+        }
+        else if( (size < 0) || (size > size_) )
+        {
+            throw new IllegalArgumentException( "size out of range: " + size ); //$NON-NLS-1$
+        }
+
+        size_ = size;
+        segmentCount_ = (size + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT;
+    }
+
+    /**
+     * Copies the segment directory and the last segment, if it is not full, so
+     * that they may be modified without affecting any other store that shares
+     * them.
+     * 
+     * <p>
+     * Only the segments in use are copied into the new directory, so segments
+     * released by {@link #truncate} are not retained by the store.
+     * </p>
+     */
+    private void unshareLastSegment()
+    {
+        final Segment[] segments = new Segment[ segments_.length ];
+        System.arraycopy( segments_, 0, segments, 0, segmentCount_ );
+        segments_ = segments;
+
+        final int segmentIndex = size_ >>> SEGMENT_SHIFT;
+        if( segmentIndex < segmentCount_ )
+        {
+            segments_[ segmentIndex ] = new Segment( NullAnalysis.nonNull( segments_[ segmentIndex ] ) );
+        }
+
+        sharedSize_ = size_;
+    }
+
+
+    // ======================================================================
+    // Nested Types
+    // ======================================================================
+
+    /**
+     * A fixed-size segment of the store.
+     */
+    private static final class Segment
+    {
+        // ==================================================================
+        // Fields
+        // ==================================================================
+
+        /** The charge number identifier of each activity in the segment. */
+        final int[] chargeNumberIds_;
+
+        /**
+         * The time in milliseconds at which each activity in the segment
+         * started, inclusive.
+         */
+        final long[] startTimes_;
+
+        /**
+         * The time in milliseconds at which each activity in the segment
+         * stopped, exclusive.
+         */
+        final long[] stopTimes_;
+
+
+        // ==================================================================
+        // Constructors
+        // ==================================================================
+
+        /**
+         * Initializes a new instance of the {@code Segment} class.
+         */
+        Segment()
+        {
+            chargeNumberIds_ = new int[ SEGMENT_SIZE ];
+            startTimes_ = new long[ SEGMENT_SIZE ];
+            stopTimes_ = new long[ SEGMENT_SIZE ];
+        }
+
+        /**
+         * Initializes a new instance of the {@code Segment} class that is a
+         * copy of the specified segment.
+         * 
+         * @param segment
+         *        The segment to be copied.
+         */
+        Segment(
+            final Segment segment )
+        {
+            chargeNumberIds_ = segment.chargeNumberIds_.clone();
+            startTimes_ = segment.startTimes_.clone();
+            stopTimes_ = segment.stopTimes_.clone();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * BillingReportCollector.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Feb 22, 2014 at 10:31:20 AM.
+ */
+
+package com.belcan.beltime.model;
+
+import java.util.Collection;
+
+/**
+ * A billing report sink that adds each billing report to a collection.
+ */
+final class BillingReportCollector
+    implements IBillingReportSink
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /** The collection that receives each billing report. */
+    private final Collection<BillingReport> billingReports_;
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code BillingReportCollector} class.
+     * 
+     * @param billingReports
+     *        The collection that receives each billing report.
+     */
+    BillingReportCollector(
+        final Collection<BillingReport> billingReports )
+    {
+        billingReports_ = billingReports;
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /*
+     * @see com.belcan.beltime.model.IBillingReportSink#onBillingReport(com.belcan.beltime.model.BillingReport)
+     */
+    @Override
+    public void onBillingReport(
+        final BillingReport billingReport )
+    {
+        billingReports_.add( billingReport );
+    }
+}
@@ -14,23 +14,34 @@
 
 package com.belcan.beltime.model;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.TimeZone;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import com.belcan.beltime.util.DateRange;
-import com.belcan.beltime.util.Duration;
 import com.belcan.beltime.util.NullAnalysis;
-import org.eclipse.jdt.annotation.Nullable;
 
 /**
  * A collection of commonly-used billing reports.
+ * 
+ * <p>
+ * The billing reports generated for a time card cover only the activities
+ * that remain in the time card. The activities of a closed period are no
+ * longer billed with the time card; their billing reports were computed when
+ * the period was closed and are available from the closed periods of the
+ * time card.
+ * </p>
  */
 public final class BillingReports
 {
@@ -38,8 +49,11 @@ public final class BillingReports
     // Fields
     // ======================================================================
 
-    /** The number of milliseconds per day. */
-    private static final long MILLISECONDS_PER_DAY = 24L * 60L * 60L * 1000L;
+    /**
+     * The minimum number of activities aggregated by each task when billing
+     * reports are generated in parallel.
+     */
+    static final int MINIMUM_CHUNK_SIZE = 8192;
 
 
     // ======================================================================
@@ -59,60 +73,53 @@ public final class BillingReports
     // ======================================================================
 
     /**
-     * Creates a new billing report for the specified day and collection of
-     * charge number durations.
-     * 
-     * @param day
-     *        The date range defining the day associated with report.
-     * @param durations
-     *        The collection of durations billed to each charge number. The key
-     *        is the charge number. The value is the cumulative duration of all
-     *        activities billed to the charge number during the period of time
-     *        specified by {@code [beginDate, endDate]}. This collection will be
-     *        cleared before this method returns.
-     * 
-     * @return A new billing report.
+     * Generates a collection of daily billing reports for the specified
+     * activity records.
+     * 
+     * <p>
+     * The records are scanned field by field, so no activity is created while
+     * the billing reports are generated. This is the cheapest way to bill a
+     * long history held outside of a time card, such as a memory-mapped
+     * activity file.
+     * </p>
+     * 
+     * @param activityRecords
+     *        The activity records for which the billing reports will be
+     *        generated.
+     * 
+     * @return A collection of daily billing reports for the specified activity
+     *         records.
      */
-    private static BillingReport createBillingReport(
-        final DateRange day,
-        final Map<ChargeNumber, Duration> durations )
+    public static Collection<BillingReport> daily(
+        final IActivityRecords activityRecords )
     {
-        final List<Bill> bills = new ArrayList<Bill>();
-        for( final Map.Entry<ChargeNumber, Duration> entry : durations.entrySet() )
-        {
-            bills.add( new Bill( NullAnalysis.nonNull( entry.getKey() ), NullAnalysis.nonNull( entry.getValue() ) ) );
-        }
-
-        // ensure reports are always returned in a deterministic order (sorted by charge number)
-        Collections.sort( bills, new Comparator<Bill>()
-        {
-            @Override
-            public int compare(
-                @Nullable
-                final Bill lhs,
-                @Nullable
-                final Bill rhs )
-            {
-                assert lhs != null;
-                assert rhs != null;
-
-                return lhs.getChargeNumber().compareTo( rhs.getChargeNumber() );
-            }
-        } );
-
-        durations.clear();
-
-        return new BillingReport( day, bills );
+        final Collection<BillingReport> billingReports = new ArrayList<BillingReport>();
+        daily( activityRecords, new BillingReportCollector( billingReports ) );
+        return billingReports;
     }
 
     /**
-     * Creates a new calendar to be used for billing date calculations.
+     * Generates the daily billing reports for the specified activity records
+     * and delivers them to the specified sink.
      * 
-     * @return A new calendar.
+     * @param activityRecords
+     *        The activity records for which the billing reports will be
+     *        generated.
+     * @param sink
+     *        The sink that receives each billing report in chronological
+     *        order.
      */
-    private static Calendar createCalendar()
+    public static void daily(
+        final IActivityRecords activityRecords,
+        final IBillingReportSink sink )
     {
-        return NullAnalysis.nonNull( Calendar.getInstance( TimeZone.getTimeZone( "GMT" ) ) ); //$NON-NLS-1$
+        final DailyBillingReportBuilder builder = new DailyBillingReportBuilder( sink );
+        final int activityCount = activityRecords.size();
+        for( int index = 0; index < activityCount; ++index )
+        {
+            builder.addActivity( activityRecords.getChargeNumber( index ), activityRecords.getStartTime( index ), activityRecords.getStopTime( index ) );
+        }
+        builder.flush();
     }
 
     /**
@@ -121,7 +128,9 @@ public final class BillingReports
      * 
      * <p>
      * A billing report will be generated for each day that has at least one
-     * time card activity.
+     * time card activity. Activities that have been moved into a closed period
+     * are not billed; see {@link TimeCard#getClosedPeriods} for the billing
+     * reports of the closed periods.
      * </p>
      * 
      * @param timeCard
@@ -134,37 +143,247 @@ public final class BillingReports
         final TimeCard timeCard )
     {
         final Collection<BillingReport> billingReports = new ArrayList<BillingReport>();
-        final Map<ChargeNumber, Duration> durations = new HashMap<ChargeNumber, Duration>();
+        daily( timeCard, new BillingReportCollector( billingReports ) );
+        return billingReports;
+    }
+
+    /**
+     * Generates a collection of daily billing reports for the portion of the
+     * specified time card that falls within the specified date range.
+     * 
+     * <p>
+     * Activities that straddle either end of the date range are clipped to the
+     * date range. The first and last activities within the date range are
+     * located using a binary search, so the cost of this method is
+     * proportional to the number of activities within the date range rather
+     * than the total number of activities in the time card.
+     * </p>
+     * 
+     * @param timeCard
+     *        The time card for which the billing reports will be generated.
+     * @param dateRange
+     *        The date range for which the billing reports will be generated.
+     * 
+     * @return A collection of daily billing reports for the specified time
+     *         card within the specified date range.
+     */
+    public static Collection<BillingReport> daily(
+        final TimeCard timeCard,
+        final DateRange dateRange )
+    {
+        final long windowStartTime = dateRange.getBeginTimeInMilliseconds();
+        final long windowEndTime = dateRange.getEndTimeInMilliseconds();
+        final long windowStopTime = (windowEndTime == Long.MAX_VALUE) ? Long.MAX_VALUE : windowEndTime + 1L;
+
+        final Collection<BillingReport> billingReports = new ArrayList<BillingReport>();
+        final DailyBillingReportBuilder builder = new DailyBillingReportBuilder( new BillingReportCollector( billingReports ), windowStartTime, windowStopTime );
+        final TimeCardSnapshot snapshot = timeCard.getSnapshot();
+        final IActivityStorage activityStore = snapshot.getActivityStore();
+        final int activityCount = snapshot.getInactiveActivityCount();
+        final int toIndex = activityStore.getFirstIndexStartingAfter( windowEndTime, activityCount );
+        for( int index = activityStore.getFirstIndexStoppingAtOrAfter( windowStartTime, activityCount ); index < toIndex; ++index )
+        {
+            builder.addActivity( activityStore.getChargeNumber( index ), activityStore.getStartTime( index ), activityStore.getStopTime( index ) );
+        }
+        builder.flush();
+
+        return billingReports;
+    }
+
+    /**
+     * Generates a collection of daily billing reports for the specified time
+     * card using the specified executor service.
+     * 
+     * <p>
+     * The activities of the time card are split into chunks that never share a
+     * day, and the billing reports of each chunk are generated by a separate
+     * task. The results are concatenated in chronological order, so the
+     * returned collection is always equal to the collection returned by
+     * {@link #daily(TimeCard)}. Time cards that are too small to benefit from
+     * parallel execution are processed on the calling thread.
+     * </p>
+     * 
+     * @param timeCard
+     *        The time card for which the billing reports will be generated.
+     * @param executorService
+     *        The executor service used to run the tasks.
+     * 
+     * @return A collection of daily billing reports for the specified time
+     *         card.
+     * 
+     * @throws java.lang.InterruptedException
+     *         If the calling thread is interrupted while waiting for the tasks
+     *         to complete.
+     */
+    public static Collection<BillingReport> daily(
+        final TimeCard timeCard,
+        final ExecutorService executorService )
+        throws InterruptedException
+    {
+        final TimeCardSnapshot snapshot = timeCard.getSnapshot();
+        final IActivityStorage activityStore = snapshot.getActivityStore();
+        final int activityCount = snapshot.getInactiveActivityCount();
+        final int chunkCount = Math.min( activityCount / MINIMUM_CHUNK_SIZE, 4 * Runtime.getRuntime().availableProcessors() );
+        if( chunkCount < 2 )
+        {
+            return daily( timeCard );
+        }
 
-        DateRange currentDay = null;
-        for( final Activity activity : getInactiveActivities( timeCard ) )
+        final List<Future<List<BillingReport>>> futures = new ArrayList<Future<List<BillingReport>>>( chunkCount );
+        try
         {
-            for( final DateRange day : getActivityDays( NullAnalysis.nonNull( activity ) ) )
+            int fromIndex = 0;
+            for( int chunk = 1; chunk <= chunkCount; ++chunk )
             {
-                if( (currentDay != null) && !currentDay.getBeginDate().equals( day.getBeginDate() ) )
+                final int toIndex = getDayAlignedChunkEnd( activityStore, activityCount, (int)((long)activityCount * chunk / chunkCount) );
+                if( toIndex > fromIndex )
                 {
-                    billingReports.add( createBillingReport( currentDay, durations ) );
+                    futures.add( executorService.submit( new DailyBillingReportsTask( activityStore, fromIndex, toIndex ) ) );
+                    fromIndex = toIndex;
                 }
+            }
 
-                final long startTime = Math.max( activity.getStartTime().getTime(), day.getBeginDate().getTime() );
-                final long stopTime = Math.min( activity.getStopTime().getTime(), day.getEndDate().getTime() + 1L ); // add +1 to day.getEndDate() because stopTime is exclusive
-                updateDuration( durations, activity.getChargeNumber(), startTime, stopTime );
+            final Collection<BillingReport> billingReports = new ArrayList<BillingReport>();
+            for( final Future<List<BillingReport>> future : futures )
+            {
+                billingReports.addAll( getTaskResult( future ) );
+            }
 
-                currentDay = day;
+            return billingReports;
+        }
+        finally
+        {
+            for( final Future<List<BillingReport>> future : futures )
+            {
+                future.cancel( true );
             }
         }
+    }
 
-        if( (currentDay != null) && !durations.isEmpty() )
+    /**
+     * Generates the daily billing reports for the specified time card and
+     * delivers them to the specified sink.
+     * 
+     * <p>
+     * Each billing report is delivered as soon as its day is complete, so only
+     * the billing report of the current day is held in memory while the time
+     * card is processed.
+     * </p>
+     * 
+     * @param timeCard
+     *        The time card for which the billing reports will be generated.
+     * @param sink
+     *        The sink that receives each billing report in chronological
+     *        order.
+     */
+    public static void daily(
+        final TimeCard timeCard,
+        final IBillingReportSink sink )
+    {
+        final DailyBillingReportBuilder builder = new DailyBillingReportBuilder( sink );
+        final TimeCardSnapshot snapshot = timeCard.getSnapshot();
+        final IActivityStorage activityStore = snapshot.getActivityStore();
+        final int activityCount = snapshot.getInactiveActivityCount();
+        for( int index = 0; index < activityCount; ++index )
         {
-            billingReports.add( createBillingReport( currentDay, durations ) );
+            builder.addActivity( activityStore.getChargeNumber( index ), activityStore.getStartTime( index ), activityStore.getStopTime( index ) );
         }
+        builder.flush();
+    }
 
-        return billingReports;
+    /**
+     * Generates a collection of daily billing reports for each employee in the
+     * specified time card registry using the specified executor service.
+     * 
+     * <p>
+     * The billing reports of each employee are generated by a separate task
+     * from a snapshot of the time card of the employee, so the tasks never
+     * block changes to the time cards and may run on all available cores.
+     * </p>
+     * 
+     * @param timeCardRegistry
+     *        The time card registry for which the billing reports will be
+     *        generated.
+     * @param executorService
+     *        The executor service used to run the tasks.
+     * 
+     * @return A collection of daily billing reports for each employee keyed by
+     *         employee identifier.
+     * 
+     * @throws java.lang.InterruptedException
+     *         If the calling thread is interrupted while waiting for the tasks
+     *         to complete.
+     */
+    public static Map<String, Collection<BillingReport>> daily(
+        final TimeCardRegistry timeCardRegistry,
+        final ExecutorService executorService )
+        throws InterruptedException
+    {
+        final Map<String, Future<List<BillingReport>>> futures = new HashMap<String, Future<List<BillingReport>>>();
+        try
+        {
+            for( final Map.Entry<String, TimeCardSnapshot> entry : timeCardRegistry.getSnapshots().entrySet() )
+            {
+                final TimeCardSnapshot snapshot = entry.getValue();
+                futures.put( entry.getKey(), executorService.submit( new DailyBillingReportsTask( snapshot.getActivityStore(), 0, snapshot.getInactiveActivityCount() ) ) );
+            }
+
+            final Map<String, Collection<BillingReport>> billingReports = new HashMap<String, Collection<BillingReport>>();
+            for( final Map.Entry<String, Future<List<BillingReport>>> entry : futures.entrySet() )
+            {
+                billingReports.put( entry.getKey(), getTaskResult( NullAnalysis.nonNull( entry.getValue() ) ) );
+            }
+
+            return billingReports;
+        }
+        finally
+        {
+            for( final Future<List<BillingReport>> future : futures.values() )
+            {
+                future.cancel( true );
+            }
+        }
+    }
+
+    /**
+     * Gets a lazily-evaluated sequence of daily billing reports for the
+     * specified time card.
+     * 
+     * <p>
+     * Each iterator returned by the sequence processes the activities present
+     * in the time card when the iterator was created. The activities are only
+     * processed as far as necessary to complete the next billing report.
+     * </p>
+     * 
+     * @param timeCard
+     *        The time card for which the billing reports will be generated.
+     * 
+     * @return A lazily-evaluated sequence of daily billing reports for the
+     *         specified time card.
+     */
+    public static Iterable<BillingReport> dailyIterable(
+        final TimeCard timeCard )
+    {
+        return new Iterable<BillingReport>()
+        {
+            @Override
+            public Iterator<BillingReport> iterator()
+            {
+                final TimeCardSnapshot snapshot = timeCard.getSnapshot();
+                return new DailyBillingReportIterator( snapshot.getActivityStore(), snapshot.getInactiveActivityCount() );
+            }
+        };
     }
 
     /**
      * Gets the collection of days spanned by the specified activity.
      * 
+     * <p>
+     * The returned collection is computed on demand and does not allocate a
+     * date range for each day up front, so its cost does not depend on the
+     * number of days spanned by the activity.
+     * </p>
+     * 
      * @param activity
      *        The activity.
      * 
@@ -176,108 +395,354 @@ public final class BillingReports
     static Collection<DateRange> getActivityDays(
         final Activity activity )
     {
-        final Collection<DateRange> days = new ArrayList<DateRange>();
-        final Date startOfFirstDay = getStartOfDay( activity.getStartTime() );
-        final Date endOfLastDay = getEndOfDay( activity.getStopTime() );
+        final long firstDay = EpochDays.getDay( activity.getStartTimeInMilliseconds() );
+        final long lastDay = EpochDays.getDay( activity.getStopTimeInMilliseconds() );
+        return new DayList( firstDay, (int)(lastDay - firstDay + 1L) );
+    }
 
-        final Date startOfDay = new Date( startOfFirstDay.getTime() );
-        while( startOfDay.compareTo( endOfLastDay ) < 0 )
+    /**
+     * Gets the exclusive end index of a chunk of activities that does not share
+     * a day with the following chunk.
+     * 
+     * @param activityStore
+     *        The store of inactive activities in chronological order.
+     * @param activityCount
+     *        The number of activities at the beginning of the store to be
+     *        split into chunks.
+     * @param index
+     *        The preferred end index of the chunk.
+     * 
+     * @return The smallest index greater than or equal to {@code index} at
+     *         which the activities may be split without the activities on
+     *         either side of the split sharing a day.
+     */
+    private static int getDayAlignedChunkEnd(
+        final IActivityStorage activityStore,
+        final int activityCount,
+        final int index )
+    {
+        int endIndex = Math.max( index, 1 );
+        while( endIndex < activityCount )
         {
-            days.add( new DateRange( startOfDay, getEndOfDay( startOfDay ) ) );
-            startOfDay.setTime( startOfDay.getTime() + MILLISECONDS_PER_DAY );
+            final long lastDayOfPreviousActivity = EpochDays.getDay( activityStore.getStopTime( endIndex - 1 ) );
+            final long firstDayOfNextActivity = EpochDays.getDay( activityStore.getStartTime( endIndex ) );
+            if( lastDayOfPreviousActivity < firstDayOfNextActivity )
+            {
+                break;
+            }
+
+            ++endIndex;
         }
 
-        return days;
+        return Math.min( endIndex, activityCount );
     }
 
     /**
-     * Gets the end of day associated with the specified date.
+     * Waits for the specified billing report task to complete and gets its
+     * result.
+     * 
+     * @param future
+     *        The future of the billing report task.
      * 
-     * @param date
-     *        The date.
+     * @return The result of the billing report task.
      * 
-     * @return The end of day associated with the specified date.
+     * @throws java.lang.InterruptedException
+     *         If the calling thread is interrupted while waiting for the task
+     *         to complete.
      */
-    private static Date getEndOfDay(
-        final Date date )
+    private static List<BillingReport> getTaskResult(
+        final Future<List<BillingReport>> future )
+        throws InterruptedException
     {
-        final Calendar calendar = createCalendar();
-        calendar.setTime( date );
-        calendar.set( Calendar.HOUR_OF_DAY, 23 );
-        calendar.set( Calendar.MINUTE, 59 );
-        calendar.set( Calendar.SECOND, 59 );
-        calendar.set( Calendar.MILLISECOND, 999 );
-        return NullAnalysis.nonNull( calendar.getTime() );
+        try
+        {
+            return NullAnalysis.nonNull( future.get() );
+        }
+        catch( final ExecutionException e )
+        {
+            final Throwable cause = e.getCause();
+            if( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException)cause;
+            }
+            else if( cause instanceof Error )
+            {
+                throw (Error)cause;
+            }
+
+            throw new IllegalStateException( "unexpected billing report task failure", cause ); //$NON-NLS-1$
+        }
     }
 
     /**
-     * Gets the collection of inactive activities in chronological order from
-     * the specified time card.
+     * Generates the billing reports for the specified time card at daily,
+     * weekly, pay period, and monthly granularity.
+     * 
+     * <p>
+     * All granularities are generated in a single pass over the time card:
+     * the coarser billing reports are rolled up from the daily billing reports
+     * rather than from the activities of the time card.
+     * </p>
      * 
      * @param timeCard
-     *        The time card.
+     *        The time card for which the billing reports will be generated.
+     * @param payPeriodStartDate
+     *        Any date on which a pay period starts. Pay periods span two weeks,
+     *        and weeks start on the same day of the week as pay periods.
      * 
-     * @return The collection of inactive activities.
+     * @return The billing rollup for the specified time card.
      */
-    private static List<Activity> getInactiveActivities(
-        final TimeCard timeCard )
+    public static BillingRollup rollup(
+        final TimeCard timeCard,
+        final Date payPeriodStartDate )
     {
-        final List<Activity> activities = timeCard.getActivities();
-        final int lastIndex = activities.size() - 1;
-        return (lastIndex >= 0) && activities.get( lastIndex ).isActive() ? NullAnalysis.nonNull( activities.subList( 0, lastIndex ) ) : activities;
+        final BillingRollupBuilder builder = new BillingRollupBuilder( EpochDays.getDay( payPeriodStartDate.getTime() ) );
+        daily( timeCard, builder );
+        return builder.build();
     }
 
+
+    // ======================================================================
+    // Nested Types
+    // ======================================================================
+
     /**
-     * Gets the start of day associated with the specified date.
-     * 
-     * @param date
-     *        The date.
-     * 
-     * @return The start of day associated with the specified date.
+     * An iterator that lazily generates the daily billing reports for the
+     * activities in an activity store.
+     */
+    private static final class DailyBillingReportIterator
+        implements Iterator<BillingReport>
+    {
+        // ==================================================================
+        // Fields
+        // ==================================================================
+
+        /** The number of activities in the store to be processed. */
+        private final int activityCount_;
+
+        /** The store of inactive activities in chronological order. */
+        private final IActivityStorage activityStore_;
+
+        /**
+         * The queue of billing reports that have been generated but not yet
+         * returned.
+         */
+        private final Queue<BillingReport> billingReports_;
+
+        /** The builder used to generate the billing reports. */
+        private final DailyBillingReportBuilder builder_;
+
+        /** The index of the next activity to be processed. */
+        private int nextIndex_;
+
+
+        // ==================================================================
+        // Constructors
+        // ==================================================================
+
+        /**
+         * Initializes a new instance of the
+         * {@code DailyBillingReportIterator} class.
+         * 
+         * @param activityStore
+         *        The store of inactive activities in chronological order.
+         * @param activityCount
+         *        The number of activities at the beginning of the store to be
+         *        processed.
+         */
+        DailyBillingReportIterator(
+            final IActivityStorage activityStore,
+            final int activityCount )
+        {
+            activityCount_ = activityCount;
+            activityStore_ = activityStore;
+            billingReports_ = new LinkedList<BillingReport>();
+            builder_ = new DailyBillingReportBuilder( new BillingReportCollector( billingReports_ ) );
+            nextIndex_ = 0;
+        }
+
+
+        // ==================================================================
+        // Methods
+        // ==================================================================
+
+        /*
+         * @see java.util.Iterator#hasNext()
+         */
+        @Override
+        public boolean hasNext()
+        {
+            while( billingReports_.isEmpty() && (nextIndex_ < activityCount_) )
+            {
+                final int index = nextIndex_++;
+                builder_.addActivity( activityStore_.getChargeNumber( index ), activityStore_.getStartTime( index ), activityStore_.getStopTime( index ) );
+                if( nextIndex_ == activityCount_ )
+                {
+                    builder_.flush();
+                }
+            }
+
+            return !billingReports_.isEmpty();
+        }
+
+        /*
+         * @see java.util.Iterator#next()
+         */
+        @Override
+        public BillingReport next()
+        {
+            if( !hasNext() )
+            {
+                throw new NoSuchElementException();
+            }
+
+            return NullAnalysis.nonNull( billingReports_.poll() );
+        }
+
+        /*
+         * @see java.util.Iterator#remove()
+         */
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * A task that generates the daily billing reports for a chunk of the
+     * activities in an activity store.
      */
-    private static Date getStartOfDay(
-        final Date date )
+    private static final class DailyBillingReportsTask
+        implements Callable<List<BillingReport>>
     {
-        final Calendar calendar = createCalendar();
-        calendar.setTime( date );
-        calendar.set( Calendar.HOUR_OF_DAY, 0 );
-        calendar.set( Calendar.MINUTE, 0 );
-        calendar.set( Calendar.SECOND, 0 );
-        calendar.set( Calendar.MILLISECOND, 0 );
-        return NullAnalysis.nonNull( calendar.getTime() );
+        // ==================================================================
+        // Fields
+        // ==================================================================
+
+        /** The store of inactive activities in chronological order. */
+        private final IActivityStorage activityStore_;
+
+        /** The index of the first activity in the chunk, inclusive. */
+        private final int fromIndex_;
+
+        /** The index of the last activity in the chunk, exclusive. */
+        private final int toIndex_;
+
+
+        // ==================================================================
+        // Constructors
+        // ==================================================================
+
+        /**
+         * Initializes a new instance of the {@code DailyBillingReportsTask}
+         * class.
+         * 
+         * @param activityStore
+         *        The store of inactive activities in chronological order.
+         * @param fromIndex
+         *        The index of the first activity in the chunk, inclusive.
+         * @param toIndex
+         *        The index of the last activity in the chunk, exclusive.
+         */
+        DailyBillingReportsTask(
+            final IActivityStorage activityStore,
+            final int fromIndex,
+            final int toIndex )
+        {
+            activityStore_ = activityStore;
+            fromIndex_ = fromIndex;
+            toIndex_ = toIndex;
+        }
+
+
+        // ==================================================================
+        // Methods
+        // ==================================================================
+
+        /*
+         * @see java.util.concurrent.Callable#call()
+         */
+        @Override
+        public List<BillingReport> call()
+        {
+            final List<BillingReport> billingReports = new ArrayList<BillingReport>();
+            final DailyBillingReportBuilder builder = new DailyBillingReportBuilder( new BillingReportCollector( billingReports ) );
+            for( int index = fromIndex_; index < toIndex_; ++index )
+            {
+                builder.addActivity( activityStore_.getChargeNumber( index ), activityStore_.getStartTime( index ), activityStore_.getStopTime( index ) );
+            }
+            builder.flush();
+
+            return billingReports;
+        }
     }
 
     /**
-     * Updates the specified collection of durations with the specified activity
-     * duration.
-     * 
-     * @param durations
-     *        The collection of durations billed to each charge number. The key
-     *        is the charge number. The value is the cumulative duration of all
-     *        activities billed to the charge number during the period of time
-     *        specified by
-     *        {@code [startTimeInMilliseconds, endTimeInMilliseconds)}.
-     * @param chargeNumber
-     *        The charge number to be billed.
-     * @param startTimeInMilliseconds
-     *        The activity start time in milliseconds, inclusive.
-     * @param stopTimeInMilliseconds
-     *        The activity stop time in milliseconds, exclusive.
+     * An immutable list of consecutive days, each of which is represented as a
+     * {@link DateRange} that is created on demand.
      */
-    private static void updateDuration(
-        final Map<ChargeNumber, Duration> durations,
-        final ChargeNumber chargeNumber,
-        final long startTimeInMilliseconds,
-        final long stopTimeInMilliseconds )
+    private static final class DayList
+        extends AbstractList<DateRange>
     {
-        Duration oldDuration = durations.get( chargeNumber );
-        if( oldDuration == null )
+        // ==================================================================
+        // Fields
+        // ==================================================================
+
+        /** The first epoch day in the list. */
+        private final long firstDay_;
+
+        /** The number of days in the list. */
+        private final int size_;
+
+
+        // ==================================================================
+        // Constructors
+        // ==================================================================
+
+        /**
+         * Initializes a new instance of the {@code DayList} class.
+         * 
+         * @param firstDay
+         *        The first epoch day in the list.
+         * @param size
+         *        The number of days in the list.
+         */
+        DayList(
+            final long firstDay,
+            final int size )
         {
-            oldDuration = Duration.fromMilliseconds( 0L );
+            firstDay_ = firstDay;
+            size_ = size;
         }
 
-        final long additionalDurationInMilliseconds = stopTimeInMilliseconds - startTimeInMilliseconds;
-        final Duration newDuration = Duration.fromMilliseconds( oldDuration.toMilliseconds() + additionalDurationInMilliseconds );
-        durations.put( chargeNumber, newDuration );
+
+        // ==================================================================
+        // Methods
+        // ==================================================================
+
+        /*
+         * @see java.util.AbstractList#get(int)
+         */
+        @Override
+        public DateRange get(
+            final int index )
+        {
+            if( (index < 0) || (index >= size_) )
+            {
+                throw new IndexOutOfBoundsException( "index out of range: " + index ); //$NON-NLS-1$
+            }
+
+            return EpochDays.toDateRange( firstDay_ + index );
+        }
+
+        /*
+         * @see java.util.AbstractCollection#size()
+         */
+        @Override
+        public int size()
+        {
+            return size_;
+        }
     }
 }
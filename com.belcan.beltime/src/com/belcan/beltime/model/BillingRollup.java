@@ -0,0 +1,127 @@
+/*
+ * BillingRollup.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Feb 16, 2014 at 2:37:10 PM.
+ */
+
+package com.belcan.beltime.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * The billing reports of a time card at daily, weekly, pay period, and
+ * monthly granularity.
+ * 
+ * <p>
+ * Pay periods span two weeks, and weeks start on the same day of the week as
+ * pay periods. Months are calendar months in GMT. Within each granularity, the
+ * billing reports are in chronological order, and a billing report is only
+ * present for a period that has at least one time card activity.
+ * </p>
+ */
+public final class BillingRollup
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /** The collection of daily billing reports. */
+    private final Collection<BillingReport> dailyBillingReports_;
+
+    /** The collection of monthly billing reports. */
+    private final Collection<BillingReport> monthlyBillingReports_;
+
+    /** The collection of pay period billing reports. */
+    private final Collection<BillingReport> payPeriodBillingReports_;
+
+    /** The collection of weekly billing reports. */
+    private final Collection<BillingReport> weeklyBillingReports_;
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code BillingRollup} class.
+     * 
+     * @param dailyBillingReports
+     *        The collection of daily billing reports. No copy is made of this
+     *        collection and it must not be modified after calling this method.
+     * @param weeklyBillingReports
+     *        The collection of weekly billing reports. No copy is made of this
+     *        collection and it must not be modified after calling this method.
+     * @param payPeriodBillingReports
+     *        The collection of pay period billing reports. No copy is made of
+     *        this collection and it must not be modified after calling this
+     *        method.
+     * @param monthlyBillingReports
+     *        The collection of monthly billing reports. No copy is made of this
+     *        collection and it must not be modified after calling this method.
+     */
+    BillingRollup(
+        final Collection<BillingReport> dailyBillingReports,
+        final Collection<BillingReport> weeklyBillingReports,
+        final Collection<BillingReport> payPeriodBillingReports,
+        final Collection<BillingReport> monthlyBillingReports )
+    {
+        dailyBillingReports_ = dailyBillingReports;
+        monthlyBillingReports_ = monthlyBillingReports;
+        payPeriodBillingReports_ = payPeriodBillingReports;
+        weeklyBillingReports_ = weeklyBillingReports;
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /**
+     * Gets the collection of daily billing reports.
+     * 
+     * @return The collection of daily billing reports.
+     */
+    public Collection<BillingReport> getDailyBillingReports()
+    {
+        return new ArrayList<BillingReport>( dailyBillingReports_ );
+    }
+
+    /**
+     * Gets the collection of monthly billing reports.
+     * 
+     * @return The collection of monthly billing reports.
+     */
+    public Collection<BillingReport> getMonthlyBillingReports()
+    {
+        return new ArrayList<BillingReport>( monthlyBillingReports_ );
+    }
+
+    /**
+     * Gets the collection of pay period billing reports.
+     * 
+     * @return The collection of pay period billing reports.
+     */
+    public Collection<BillingReport> getPayPeriodBillingReports()
+    {
+        return new ArrayList<BillingReport>( payPeriodBillingReports_ );
+    }
+
+    /**
+     * Gets the collection of weekly billing reports.
+     * 
+     * @return The collection of weekly billing reports.
+     */
+    public Collection<BillingReport> getWeeklyBillingReports()
+    {
+        return new ArrayList<BillingReport>( weeklyBillingReports_ );
+    }
+}
@@ -0,0 +1,535 @@
+/*
+ * BillingRollupBuilder.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Feb 16, 2014 at 2:58:44 PM.
+ */
+
+package com.belcan.beltime.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import com.belcan.beltime.util.Duration;
+import com.belcan.beltime.util.NullAnalysis;
+
+/**
+ * Builds a billing rollup from a chronological sequence of daily billing
+ * reports.
+ * 
+ * <p>
+ * The rollup is built as a small cube: each daily billing report is merged
+ * into the current week and the current month, and each completed week is
+ * merged into the current pay period. The bills of each billing report are in
+ * charge number order, so merging two billing reports is a single linear pass
+ * over their bills, and the cost of the coarser granularities is proportional
+ * to the number of days times the number of charge numbers billed per day.
+ * </p>
+ * 
+ * <p>
+ * A run of full days is merged into each week and month that it overlaps with
+ * a single bill, so the interior days of a long activity do not add to the
+ * cost of the weekly, pay period, and monthly billing reports.
+ * </p>
+ */
+final class BillingRollupBuilder
+    implements IBillingReportRunSink
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /** The number of days in a pay period. */
+    private static final long DAYS_PER_PAY_PERIOD = 14L;
+
+    /** The number of days in a week. */
+    private static final long DAYS_PER_WEEK = 7L;
+
+    /** The collection of daily billing reports. */
+    private final List<BillingReport> dailyBillingReports_;
+
+    /** The accumulator of the current month. */
+    private final PeriodAccumulator monthAccumulator_;
+
+    /** The collection of monthly billing reports. */
+    private final List<BillingReport> monthlyBillingReports_;
+
+    /** The accumulator of the current pay period. */
+    private final PeriodAccumulator payPeriodAccumulator_;
+
+    /** The collection of pay period billing reports. */
+    private final List<BillingReport> payPeriodBillingReports_;
+
+    /** The accumulator of the current week. */
+    private final PeriodAccumulator weekAccumulator_;
+
+    /** The collection of weekly billing reports. */
+    private final List<BillingReport> weeklyBillingReports_;
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code BillingRollupBuilder} class.
+     * 
+     * @param payPeriodAnchorDay
+     *        Any epoch day on which a pay period starts.
+     */
+    BillingRollupBuilder(
+        final long payPeriodAnchorDay )
+    {
+        dailyBillingReports_ = new ArrayList<BillingReport>();
+        monthlyBillingReports_ = new ArrayList<BillingReport>();
+        payPeriodBillingReports_ = new ArrayList<BillingReport>();
+        weeklyBillingReports_ = new ArrayList<BillingReport>();
+
+        monthAccumulator_ = new MonthAccumulator( new BillingReportCollector( monthlyBillingReports_ ) );
+        payPeriodAccumulator_ = new FixedLengthPeriodAccumulator( new BillingReportCollector( payPeriodBillingReports_ ), payPeriodAnchorDay, DAYS_PER_PAY_PERIOD );
+        weekAccumulator_ = new FixedLengthPeriodAccumulator( new WeeklyBillingReportSink(), payPeriodAnchorDay, DAYS_PER_WEEK );
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /**
+     * Creates the billing rollup from the daily billing reports received so
+     * far.
+     * 
+     * <p>
+     * This method must be called after the last daily billing report has been
+     * received.
+     * </p>
+     * 
+     * @return The billing rollup.
+     */
+    BillingRollup build()
+    {
+        weekAccumulator_.flush();
+        payPeriodAccumulator_.flush();
+        monthAccumulator_.flush();
+
+        return new BillingRollup( dailyBillingReports_, weeklyBillingReports_, payPeriodBillingReports_, monthlyBillingReports_ );
+    }
+
+    /**
+     * Gets the epoch day on which the specified billing report begins.
+     * 
+     * @param billingReport
+     *        The billing report.
+     * 
+     * @return The epoch day on which the specified billing report begins.
+     */
+    static long getFirstDay(
+        final BillingReport billingReport )
+    {
+        return EpochDays.getDay( billingReport.getDateRange().getBeginTimeInMilliseconds() );
+    }
+
+    /**
+     * Merges two collections of bills in charge number order into a single
+     * collection of bills in charge number order, adding the durations of
+     * bills with the same charge number.
+     * 
+     * @param bills1
+     *        The first collection of bills in charge number order.
+     * @param bills2
+     *        The second collection of bills in charge number order.
+     * 
+     * @return The merged collection of bills in charge number order.
+     */
+    static List<Bill> mergeBills(
+        final Collection<Bill> bills1,
+        final Collection<Bill> bills2 )
+    {
+        final List<Bill> bills = new ArrayList<Bill>( Math.max( bills1.size(), bills2.size() ) );
+        final Iterator<Bill> iterator1 = bills1.iterator();
+        final Iterator<Bill> iterator2 = bills2.iterator();
+        Bill bill1 = iterator1.hasNext() ? iterator1.next() : null;
+        Bill bill2 = iterator2.hasNext() ? iterator2.next() : null;
+        while( (bill1 != null) && (bill2 != null) )
+        {
+            final int order = bill1.getChargeNumber().compareTo( bill2.getChargeNumber() );
+            if( order < 0 )
+            {
+                bills.add( bill1 );
+                bill1 = iterator1.hasNext() ? iterator1.next() : null;
+            }
+            else if( order > 0 )
+            {
+                bills.add( bill2 );
+                bill2 = iterator2.hasNext() ? iterator2.next() : null;
+            }
+            else
+            {
+                bills.add( new Bill( bill1.getChargeNumber(), Duration.fromMilliseconds( bill1.getDuration().toMilliseconds() + bill2.getDuration().toMilliseconds() ) ) );
+                bill1 = iterator1.hasNext() ? iterator1.next() : null;
+                bill2 = iterator2.hasNext() ? iterator2.next() : null;
+            }
+        }
+
+        for( ; bill1 != null; bill1 = iterator1.hasNext() ? iterator1.next() : null )
+        {
+            bills.add( bill1 );
+        }
+
+        for( ; bill2 != null; bill2 = iterator2.hasNext() ? iterator2.next() : null )
+        {
+            bills.add( bill2 );
+        }
+
+        return bills;
+    }
+
+    /*
+     * @see com.belcan.beltime.model.IBillingReportSink#onBillingReport(com.belcan.beltime.model.BillingReport)
+     */
+    @Override
+    public void onBillingReport(
+        final BillingReport billingReport )
+    {
+        dailyBillingReports_.add( billingReport );
+
+        final long day = getFirstDay( billingReport );
+        final Collection<Bill> bills = billingReport.getBills();
+        weekAccumulator_.add( day, bills );
+        monthAccumulator_.add( day, bills );
+    }
+
+    /*
+     * @see com.belcan.beltime.model.IBillingReportRunSink#onBillingReportRun(com.belcan.beltime.model.ChargeNumber, long, long)
+     */
+    @Override
+    public void onBillingReportRun(
+        final ChargeNumber chargeNumber,
+        final long firstDay,
+        final long dayCount )
+    {
+        final List<Bill> bills = NullAnalysis.nonNull( Collections.singletonList( new Bill( chargeNumber, Duration.fromMilliseconds( EpochDays.MILLISECONDS_PER_DAY ) ) ) );
+        for( long day = firstDay; day < firstDay + dayCount; ++day )
+        {
+            dailyBillingReports_.add( new BillingReport( EpochDays.toDateRange( day ), bills ) );
+        }
+
+        weekAccumulator_.addFullDays( chargeNumber, firstDay, dayCount );
+        monthAccumulator_.addFullDays( chargeNumber, firstDay, dayCount );
+    }
+
+
+    // ======================================================================
+    // Nested Types
+    // ======================================================================
+
+    /**
+     * Accumulates the bills of a contiguous sequence of days into a single
+     * billing report.
+     */
+    private abstract static class PeriodAccumulator
+    {
+        // ==================================================================
+        // Fields
+        // ==================================================================
+
+        /** The bills accumulated for the current period in charge number order. */
+        private List<Bill> bills_;
+
+        /** The first epoch day of the current period. */
+        private long firstDay_;
+
+        /**
+         * The last epoch day of the current period or {@link Long#MIN_VALUE}
+         * if there is no current period.
+         */
+        private long lastDay_;
+
+        /** The sink that receives each completed billing report. */
+        private final IBillingReportSink sink_;
+
+
+        // ==================================================================
+        // Constructors
+        // ==================================================================
+
+        /**
+         * Initializes a new instance of the {@code PeriodAccumulator} class.
+         * 
+         * @param sink
+         *        The sink that receives each completed billing report.
+         */
+        PeriodAccumulator(
+            final IBillingReportSink sink )
+        {
+            bills_ = Collections.<Bill>emptyList();
+            firstDay_ = Long.MIN_VALUE;
+            lastDay_ = Long.MIN_VALUE;
+            sink_ = sink;
+        }
+
+
+        // ==================================================================
+        // Methods
+        // ==================================================================
+
+        /**
+         * Adds the specified bills to the period that contains the specified
+         * day.
+         * 
+         * <p>
+         * Days must be added in chronological order.
+         * </p>
+         * 
+         * @param day
+         *        The epoch day on which the bills were charged.
+         * @param bills
+         *        The collection of bills in charge number order.
+         */
+        final void add(
+            final long day,
+            final Collection<Bill> bills )
+        {
+            if( day > lastDay_ )
+            {
+                flush();
+                firstDay_ = getFirstDayOfPeriod( day );
+                lastDay_ = getFirstDayOfNextPeriod( firstDay_ ) - 1L;
+            }
+
+            bills_ = mergeBills( bills_, bills );
+        }
+
+        /**
+         * Adds a run of consecutive days that are billed in their entirety to
+         * the specified charge number.
+         * 
+         * <p>
+         * Days must be added in chronological order.
+         * </p>
+         * 
+         * @param chargeNumber
+         *        The charge number billed for each day of the run.
+         * @param firstDay
+         *        The first epoch day of the run.
+         * @param dayCount
+         *        The number of days in the run.
+         */
+        final void addFullDays(
+            final ChargeNumber chargeNumber,
+            final long firstDay,
+            final long dayCount )
+        {
+            final long stopDay = firstDay + dayCount;
+            for( long day = firstDay; day < stopDay; )
+            {
+                final long periodDayCount = Math.min( stopDay, getFirstDayOfNextPeriod( getFirstDayOfPeriod( day ) ) ) - day;
+                final Bill bill = new Bill( chargeNumber, Duration.fromMilliseconds( periodDayCount * EpochDays.MILLISECONDS_PER_DAY ) );
+                add( day, NullAnalysis.nonNull( Collections.singletonList( bill ) ) );
+                day += periodDayCount;
+            }
+        }
+
+        /**
+         * Generates the billing report for the current period, if any.
+         */
+        final void flush()
+        {
+            if( bills_.isEmpty() )
+            {
+                return;
+            }
+
+            final BillingReport billingReport = new BillingReport( EpochDays.toDateRange( firstDay_, lastDay_ ), bills_ );
+            bills_ = Collections.<Bill>emptyList();
+            sink_.onBillingReport( billingReport );
+        }
+
+        /**
+         * Gets the first epoch day of the period that follows the period that
+         * starts on the specified day.
+         * 
+         * @param firstDay
+         *        The first epoch day of the period.
+         * 
+         * @return The first epoch day of the following period.
+         */
+        abstract long getFirstDayOfNextPeriod(
+            long firstDay );
+
+        /**
+         * Gets the first epoch day of the period that contains the specified
+         * day.
+         * 
+         * @param day
+         *        The epoch day.
+         * 
+         * @return The first epoch day of the period.
+         */
+        abstract long getFirstDayOfPeriod(
+            long day );
+    }
+
+    /**
+     * Accumulates the bills of periods that have a fixed number of days.
+     */
+    private static final class FixedLengthPeriodAccumulator
+        extends PeriodAccumulator
+    {
+        // ==================================================================
+        // Fields
+        // ==================================================================
+
+        /** Any epoch day on which a period starts. */
+        private final long anchorDay_;
+
+        /** The number of days in each period. */
+        private final long periodLength_;
+
+
+        // ==================================================================
+        // Constructors
+        // ==================================================================
+
+        /**
+         * Initializes a new instance of the
+         * {@code FixedLengthPeriodAccumulator} class.
+         * 
+         * @param sink
+         *        The sink that receives each completed billing report.
+         * @param anchorDay
+         *        Any epoch day on which a period starts.
+         * @param periodLength
+         *        The number of days in each period.
+         */
+        FixedLengthPeriodAccumulator(
+            final IBillingReportSink sink,
+            final long anchorDay,
+            final long periodLength )
+        {
+            super( sink );
+
+            anchorDay_ = anchorDay;
+            periodLength_ = periodLength;
+        }
+
+
+        // ==================================================================
+        // Methods
+        // ==================================================================
+
+        /*
+         * @see com.belcan.beltime.model.BillingRollupBuilder.PeriodAccumulator#getFirstDayOfNextPeriod(long)
+         */
+        @Override
+        long getFirstDayOfNextPeriod(
+            final long firstDay )
+        {
+            return firstDay + periodLength_;
+        }
+
+        /*
+         * @see com.belcan.beltime.model.BillingRollupBuilder.PeriodAccumulator#getFirstDayOfPeriod(long)
+         */
+        @Override
+        long getFirstDayOfPeriod(
+            final long day )
+        {
+            return EpochDays.getFirstDayOfPeriod( day, anchorDay_, periodLength_ );
+        }
+    }
+
+    /**
+     * Accumulates the bills of calendar months.
+     */
+    private static final class MonthAccumulator
+        extends PeriodAccumulator
+    {
+        // ==================================================================
+        // Constructors
+        // ==================================================================
+
+        /**
+         * Initializes a new instance of the {@code MonthAccumulator} class.
+         * 
+         * @param sink
+         *        The sink that receives each completed billing report.
+         */
+        MonthAccumulator(
+            final IBillingReportSink sink )
+        {
+            super( sink );
+        }
+
+
+        // ==================================================================
+        // Methods
+        // ==================================================================
+
+        /*
+         * @see com.belcan.beltime.model.BillingRollupBuilder.PeriodAccumulator#getFirstDayOfNextPeriod(long)
+         */
+        @Override
+        long getFirstDayOfNextPeriod(
+            final long firstDay )
+        {
+            return EpochDays.getFirstDayOfNextMonth( firstDay );
+        }
+
+        /*
+         * @see com.belcan.beltime.model.BillingRollupBuilder.PeriodAccumulator#getFirstDayOfPeriod(long)
+         */
+        @Override
+        long getFirstDayOfPeriod(
+            final long day )
+        {
+            return EpochDays.getFirstDayOfMonth( day );
+        }
+    }
+
+    /**
+     * The sink that receives each completed weekly billing report and merges
+     * it into the current pay period.
+     */
+    @SuppressWarnings( "synthetic-access" )
+    private final class WeeklyBillingReportSink
+        implements IBillingReportSink
+    {
+        // ==================================================================
+        // Constructors
+        // ==================================================================
+
+        /**
+         * Initializes a new instance of the {@code WeeklyBillingReportSink}
+         * class.
+         */
+        WeeklyBillingReportSink()
+        {
+        }
+
+
+        // ==================================================================
+        // Methods
+        // ==================================================================
+
+        /*
+         * @see com.belcan.beltime.model.IBillingReportSink#onBillingReport(com.belcan.beltime.model.BillingReport)
+         */
+        @Override
+        public void onBillingReport(
+            final BillingReport billingReport )
+        {
+            weeklyBillingReports_.add( billingReport );
+            payPeriodAccumulator_.add( getFirstDay( billingReport ), billingReport.getBills() );
+        }
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * ChargeNumberDictionary.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Mar 1, 2014 at 2:18:06 PM.
+ */
+
+package com.belcan.beltime.model;
+
+import java.util.Arrays;
+import com.belcan.beltime.util.NullAnalysis;
+
+/**
+ * A dictionary that assigns a dense integer identifier to each distinct charge
+ * number.
+ * 
+ * <p>
+ * Identifiers are assigned in the order in which charge numbers are first
+ * encountered, starting at zero. An identifier, once assigned, never changes.
+ * </p>
+ * 
+ * <p>
+ * The dictionary also maintains the rank of each charge number, which is its
+ * position when all charge numbers in the dictionary are sorted in their
+ * natural order. Ranks are updated lazily, and only after new charge
+ * numbers have been added, by inserting the new charge numbers into the
+ * existing sorted order, so consumers can emit charge numbers in sorted order
+ * without sorting them each time.
+ * </p>
+ */
+final class ChargeNumberDictionary
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /**
+     * The estimated number of bytes used by each charge number in the
+     * dictionary: the charge number object, its string, and the characters of
+     * the string, including their object headers.
+     */
+    static final int BYTES_PER_CHARGE_NUMBER = 96;
+
+    /** The initial capacity of the hash table; must be a power of two. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** The collection of charge numbers indexed by identifier. */
+    private ChargeNumber[] chargeNumbers_;
+
+    /**
+     * The rank of each charge number indexed by identifier. Only the first
+     * {@link #rankedSize_} entries are valid.
+     */
+    private int[] ranks_;
+
+    /** The count of charge numbers whose rank has been computed. */
+    private int rankedSize_;
+
+    /**
+     * The hash table slots containing the charge number identifiers, or
+     * {@code -1} if the slot is empty.
+     */
+    private int[] slots_;
+
+    /** The count of charge numbers in the dictionary. */
+    private int size_;
+
+    /**
+     * The charge number identifiers indexed by rank. Only the first
+     * {@link #rankedSize_} entries are valid.
+     */
+    private int[] sortedIds_;
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code ChargeNumberDictionary} class.
+     */
+    ChargeNumberDictionary()
+    {
+        chargeNumbers_ = new ChargeNumber[ INITIAL_CAPACITY / 2 ];
+        ranks_ = new int[ 0 ];
+        rankedSize_ = 0;
+        slots_ = createSlots( INITIAL_CAPACITY );
+        size_ = 0;
+        sortedIds_ = new int[ 0 ];
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /**
+     * Creates a new array of empty hash table slots.
+     * 
+     * @param capacity
+     *        The capacity of the hash table; must be a power of two.
+     * 
+     * @return A new array of empty hash table slots.
+     */
+    private static int[] createSlots(
+        final int capacity )
+    {
+        final int[] slots = new int[ capacity ];
+        Arrays.fill( slots, -1 );
+        return slots;
+    }
+
+    /**
+     * Gets the charge number with the specified identifier.
+     * 
+     * @param id
+     *        The charge number identifier.
+     * 
+     * @return The charge number with the specified identifier.
+     */
+    ChargeNumber getChargeNumber(
+        final int id )
+    {
+        assert (id >= 0) && (id < size_);
+
+        return NullAnalysis.nonNull( chargeNumbers_[ id ] );
+    }
+
+    /**
+     * Gets the collection of charge numbers indexed by identifier.
+     * 
+     * <p>
+     * The returned array is not a copy. Only the first {@link #size} entries
+     * are valid, and those entries are never modified; when the dictionary
+     * grows, it replaces the array rather than modifying it. The returned
+     * array may therefore be shared with readers on other threads once it
+     * has been safely published.
+     * </p>
+     * 
+     * @return The collection of charge numbers indexed by identifier.
+     */
+    ChargeNumber[] getChargeNumbers()
+    {
+        return chargeNumbers_;
+    }
+
+    /**
+     * Gets the identifier of the specified charge number, assigning a new
+     * identifier if the charge number is not in the dictionary.
+     * 
+     * @param chargeNumber
+     *        The charge number.
+     * 
+     * @return The identifier of the specified charge number.
+     */
+    int getId(
+        final ChargeNumber chargeNumber )
+    {
+        final int mask = slots_.length - 1;
+        for( int slot = hash( chargeNumber.hashCode() ) & mask;; slot = (slot + 1) & mask )
+        {
+            final int id = slots_[ slot ];
+            if( id == -1 )
+            {
+                return put( slot, chargeNumber );
+            }
+            else if( chargeNumbers_[ id ].equals( chargeNumber ) )
+            {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Gets the estimated number of bytes used by the dictionary.
+     * 
+     * <p>
+     * The result accounts for the charge numbers in the dictionary and for its
+     * tables, which are allocated in full.
+     * </p>
+     * 
+     * @return The estimated number of bytes used by the dictionary.
+     */
+    long getMemoryUsage()
+    {
+        final long tableLength = (long)chargeNumbers_.length + ranks_.length + slots_.length + sortedIds_.length;
+        return (long)size_ * BYTES_PER_CHARGE_NUMBER + 4L * tableLength;
+    }
+
+    /**
+     * Gets the rank of the charge number with the specified identifier.
+     * 
+     * @param id
+     *        The charge number identifier.
+     * 
+     * @return The position of the charge number with the specified identifier
+     *         when all charge numbers in the dictionary are sorted in their
+     *         natural order.
+     */
+    int getRank(
+        final int id )
+    {
+        assert (id >= 0) && (id < size_);
+
+        if( rankedSize_ != size_ )
+        {
+            updateRanks();
+        }
+
+        return ranks_[ id ];
+    }
+
+    /**
+     * Spreads the bits of the specified hash code across the whole integer.
+     * 
+     * @param hashCode
+     *        The hash code.
+     * 
+     * @return The spread hash code.
+     */
+    static int hash(
+        final int hashCode )
+    {
+        final int hash = hashCode * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Assigns the next identifier to the specified charge number.
+     * 
+     * @param slot
+     *        The empty hash table slot in which the identifier will be stored.
+     * @param chargeNumber
+     *        The charge number.
+     * 
+     * @return The identifier assigned to the specified charge number.
+     */
+    private int put(
+        final int slot,
+        final ChargeNumber chargeNumber )
+    {
+        final int id = size_++;
+        if( id == chargeNumbers_.length )
+        {
+            final ChargeNumber[] chargeNumbers = new ChargeNumber[ 2 * id ];
+            System.arraycopy( chargeNumbers_, 0, chargeNumbers, 0, id );
+            chargeNumbers_ = chargeNumbers;
+        }
+        chargeNumbers_[ id ] = chargeNumber;
+        slots_[ slot ] = id;
+
+        if( 2 * size_ > slots_.length )
+        {
+            rehash();
+        }
+
+        return id;
+    }
+
+    /**
+     * Doubles the capacity of the hash table.
+     */
+    private void rehash()
+    {
+        final int[] slots = createSlots( 2 * slots_.length );
+        final int mask = slots.length - 1;
+        for( int id = 0; id < size_; ++id )
+        {
+            int slot = hash( chargeNumbers_[ id ].hashCode() ) & mask;
+            while( slots[ slot ] != -1 )
+            {
+                slot = (slot + 1) & mask;
+            }
+            slots[ slot ] = id;
+        }
+
+        slots_ = slots;
+    }
+
+    /**
+     * Gets the count of charge numbers in the dictionary.
+     * 
+     * @return The count of charge numbers in the dictionary.
+     */
+    int size()
+    {
+        return size_;
+    }
+
+    /**
+     * Inserts each charge number added since the ranks were last updated into
+     * the sorted order and updates the ranks of all charge numbers whose
+     * position has changed.
+     */
+    private void updateRanks()
+    {
+        if( sortedIds_.length < size_ )
+        {
+            final int[] ranks = new int[ chargeNumbers_.length ];
+            System.arraycopy( ranks_, 0, ranks, 0, ranks_.length );
+            ranks_ = ranks;
+            final int[] sortedIds = new int[ chargeNumbers_.length ];
+            System.arraycopy( sortedIds_, 0, sortedIds, 0, sortedIds_.length );
+            sortedIds_ = sortedIds;
+        }
+
+        int firstChangedRank = rankedSize_;
+        for( int id = rankedSize_; id < size_; ++id )
+        {
+            final ChargeNumber chargeNumber = NullAnalysis.nonNull( chargeNumbers_[ id ] );
+            int lowRank = 0;
+            int highRank = id;
+            while( lowRank < highRank )
+            {
+                final int middleRank = (lowRank + highRank) >>> 1;
+                if( chargeNumbers_[ sortedIds_[ middleRank ] ].compareTo( chargeNumber ) < 0 )
+                {
+                    lowRank = middleRank + 1;
+                }
+                else
+                {
+                    highRank = middleRank;
+                }
+            }
+
+            System.arraycopy( sortedIds_, lowRank, sortedIds_, lowRank + 1, id - lowRank );
+            sortedIds_[ lowRank ] = id;
+            firstChangedRank = Math.min( firstChangedRank, lowRank );
+        }
+
+        for( int rank = firstChangedRank; rank < size_; ++rank )
+        {
+            ranks_[ sortedIds_[ rank ] ] = rank;
+        }
+
+        rankedSize_ = size_;
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * ClosedPeriod.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Mar 3, 2014 at 2:18:45 PM.
+ */
+
+package com.belcan.beltime.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * A sealed block of activities that were removed from a time card when a
+ * period was closed.
+ * 
+ * <p>
+ * A closed period is immutable. Its daily billing reports are computed once
+ * when the period is closed, so retrieving the billing reports of the period
+ * never processes its activities again, and retrieving the billing report of a
+ * single day is a constant-time lookup.
+ * </p>
+ * 
+ * <p>
+ * The billing reports of a closed period are exactly those that
+ * {@link BillingReports#daily(IActivityRecords)} generates for its
+ * activities. In particular, an activity that stops at the end of the period
+ * is billed a zero-length bill on the day on which the period ends, so the
+ * last billing report of the period may fall on that day even though the
+ * rest of the day belongs to the time card.
+ * </p>
+ */
+public final class ClosedPeriod
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /** The immutable snapshot of the activities in the period. */
+    private final TimeCardSnapshot activities_;
+
+    /** The daily billing reports of the period in chronological order. */
+    private final List<BillingReport> billingReports_;
+
+    /**
+     * The daily billing reports of the period indexed by the number of days
+     * since {@link #firstDay_}. Days without activities have no billing
+     * report.
+     */
+    private final BillingReport[] billingReportsByDay_;
+
+    /**
+     * The time at which the period ends in milliseconds, exclusive.
+     */
+    private final long endTime_;
+
+    /** The epoch day of the first billing report of the period. */
+    private final long firstDay_;
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code ClosedPeriod} class.
+     * 
+     * @param activityStore
+     *        The store of the inactive activities in the period in
+     *        chronological order. The store must not be modified afterwards.
+     * @param endTime
+     *        The time at which the period ends in milliseconds, exclusive. All
+     *        activities in the store must stop at or before this time.
+     */
+    ClosedPeriod(
+        final IActivityStorage activityStore,
+        final long endTime )
+    {
+        assert (activityStore.size() == 0) || (activityStore.getStopTime( activityStore.size() - 1 ) <= endTime);
+
+        final List<BillingReport> billingReports = new ArrayList<BillingReport>();
+        final DailyBillingReportBuilder builder = new DailyBillingReportBuilder( new BillingReportCollector( billingReports ) );
+        final int activityCount = activityStore.size();
+        for( int index = 0; index < activityCount; ++index )
+        {
+            builder.addActivity( activityStore.getChargeNumber( index ), activityStore.getStartTime( index ), activityStore.getStopTime( index ) );
+        }
+        builder.flush();
+
+        final long firstDay = billingReports.isEmpty() ? 0L : getDay( billingReports.get( 0 ) );
+        final long lastDay = billingReports.isEmpty() ? -1L : getDay( billingReports.get( billingReports.size() - 1 ) );
+        final BillingReport[] billingReportsByDay = new BillingReport[ (int)(lastDay - firstDay + 1L) ];
+        for( final BillingReport billingReport : billingReports )
+        {
+            billingReportsByDay[ (int)(getDay( billingReport ) - firstDay) ] = billingReport;
+        }
+
+        activities_ = new TimeCardSnapshot( activityStore.createReadOnlyView(), activityCount, null, Collections.<ClosedPeriod>emptyList() );
+        billingReports_ = Collections.unmodifiableList( billingReports );
+        billingReportsByDay_ = billingReportsByDay;
+        endTime_ = endTime;
+        firstDay_ = firstDay;
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /**
+     * Gets a read-only view of the collection of activities in the period in
+     * chronological order.
+     * 
+     * <p>
+     * An activity that straddled the end of the period when it was closed is
+     * clipped to the period; the remainder of the activity stays in the time
+     * card.
+     * </p>
+     * 
+     * @return A read-only view of the collection of activities in the period.
+     */
+    public List<Activity> getActivities()
+    {
+        return activities_.getActivities();
+    }
+
+    /**
+     * Gets the records of the activities in the period in chronological
+     * order.
+     * 
+     * <p>
+     * The records are read directly from the activity store of the period, so
+     * scanning them creates no activities.
+     * </p>
+     * 
+     * @return The records of the activities in the period.
+     */
+    public IActivityRecords getActivityRecords()
+    {
+        return activities_.getActivityRecords();
+    }
+
+    /**
+     * Gets the billing report of the specified day.
+     * 
+     * @param day
+     *        Any time during the day.
+     * 
+     * @return The billing report of the specified day or {@code null} if the
+     *         period has no activities on the specified day.
+     */
+    @Nullable
+    public BillingReport getBillingReport(
+        final Date day )
+    {
+        final long dayIndex = EpochDays.getDay( day.getTime() ) - firstDay_;
+        if( (dayIndex < 0L) || (dayIndex >= billingReportsByDay_.length) )
+        {
+            return null;
+        }
+
+        return billingReportsByDay_[ (int)dayIndex ];
+    }
+
+    /**
+     * Gets the daily billing reports of the period.
+     * 
+     * @return A read-only view of the collection of daily billing reports of
+     *         the period in chronological order.
+     */
+    public Collection<BillingReport> getBillingReports()
+    {
+        return billingReports_;
+    }
+
+    /**
+     * Gets the epoch day of the specified daily billing report.
+     * 
+     * @param billingReport
+     *        The daily billing report.
+     * 
+     * @return The epoch day of the specified daily billing report.
+     */
+    private static long getDay(
+        final BillingReport billingReport )
+    {
+        return EpochDays.getDay( billingReport.getDateRange().getBeginTimeInMilliseconds() );
+    }
+
+    /**
+     * Gets the time at which the period ends, exclusive.
+     * 
+     * @return The time at which the period ends, exclusive.
+     */
+    public Date getEndTime()
+    {
+        return new Date( endTime_ );
+    }
+
+    /**
+     * Gets the time at which the period ends in milliseconds, exclusive.
+     * 
+     * @return The time at which the period ends in milliseconds, exclusive.
+     */
+    public long getEndTimeInMilliseconds()
+    {
+        return endTime_;
+    }
+}
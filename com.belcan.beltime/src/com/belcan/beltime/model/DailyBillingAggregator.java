@@ -0,0 +1,356 @@
+/*
+ * DailyBillingAggregator.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Feb 15, 2014 at 3:26:48 PM.
+ */
+
+package com.belcan.beltime.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Maintains the daily billing reports of a time card as activities are
+ * stopped.
+ * 
+ * <p>
+ * The aggregator listens to the time card and folds each stopped activity into
+ * the billing report of the day on which it occurred. Days prior to the
+ * current day are complete and are never recomputed, so the cost of reading
+ * the billing reports is proportional to the number of days rather than the
+ * number of activities.
+ * </p>
+ * 
+ * <p>
+ * Undoing or redoing a change that does not close a period only removes or
+ * adds activities at the end of the time card, so only the billing reports
+ * from the day on which the last remaining activity stops are recomputed.
+ * Closing a period, resetting the time card, or undoing either of them
+ * recomputes the billing reports from the activities that remain in the time
+ * card.
+ * </p>
+ */
+public final class DailyBillingAggregator
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /** The number of inactive activities added to the billing reports. */
+    private int activityCount_;
+
+    /** The collection of billing reports for all completed days. */
+    private final List<BillingReport> billingReports_;
+
+    /** The builder used to accumulate the billing report of the current day. */
+    private DailyBillingReportBuilder builder_;
+
+    /**
+     * The closed periods of the time card when the billing reports were last
+     * updated.
+     */
+    private List<ClosedPeriod> closedPeriods_;
+
+    /**
+     * The cached billing report of the current day or {@code null} if it must
+     * be recomputed.
+     */
+    private BillingReport currentBillingReport_;
+
+    /** The time card listener used to update the billing reports. */
+    private final ITimeCardListener listener_;
+
+    /** The time card whose billing reports are maintained. */
+    private final TimeCard timeCard_;
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code DailyBillingAggregator} class.
+     * 
+     * @param timeCard
+     *        The time card whose billing reports are maintained.
+     */
+    private DailyBillingAggregator(
+        final TimeCard timeCard )
+    {
+        activityCount_ = 0;
+        billingReports_ = new ArrayList<BillingReport>();
+        builder_ = new DailyBillingReportBuilder( new BillingReportCollector( billingReports_ ) );
+        closedPeriods_ = timeCard.getClosedPeriods();
+        currentBillingReport_ = null;
+        listener_ = new TimeCardListener();
+        timeCard_ = timeCard;
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /**
+     * Adds the specified inactive activity to the billing reports.
+     * 
+     * @param activity
+     *        The inactive activity.
+     */
+    private void addActivity(
+        final Activity activity )
+    {
+        builder_.addActivity( activity.getChargeNumber(), activity.getStartTimeInMilliseconds(), activity.getStopTimeInMilliseconds() );
+        ++activityCount_;
+        currentBillingReport_ = null;
+    }
+
+    /**
+     * Adds the inactive activities in the specified snapshot that have not yet
+     * been added to the billing reports.
+     * 
+     * @param snapshot
+     *        The snapshot of the time card.
+     */
+    private void addActivities(
+        final TimeCardSnapshot snapshot )
+    {
+        final IActivityStorage activityStore = snapshot.getActivityStore();
+        final int activityCount = snapshot.getInactiveActivityCount();
+        for( int index = activityCount_; index < activityCount; ++index )
+        {
+            builder_.addActivity( activityStore.getChargeNumber( index ), activityStore.getStartTime( index ), activityStore.getStopTime( index ) );
+        }
+        activityCount_ = activityCount;
+        closedPeriods_ = snapshot.getClosedPeriods();
+        currentBillingReport_ = null;
+    }
+
+    /**
+     * Creates a new aggregator that maintains the daily billing reports of the
+     * specified time card.
+     * 
+     * <p>
+     * The billing reports are initialized from the inactive activities
+     * currently in the time card.
+     * </p>
+     * 
+     * @param timeCard
+     *        The time card whose billing reports are to be maintained.
+     * 
+     * @return A new aggregator attached to the specified time card.
+     */
+    public static DailyBillingAggregator attach(
+        final TimeCard timeCard )
+    {
+        final DailyBillingAggregator aggregator = new DailyBillingAggregator( timeCard );
+        aggregator.addActivities( timeCard.getSnapshot() );
+        timeCard.addTimeCardListener( aggregator.listener_ );
+        return aggregator;
+    }
+
+    /**
+     * Detaches the aggregator from its time card. The billing reports will no
+     * longer be updated after this method returns.
+     */
+    public void detach()
+    {
+        timeCard_.removeTimeCardListener( listener_ );
+    }
+
+    /**
+     * Gets the collection of daily billing reports for the time card.
+     * 
+     * <p>
+     * The returned collection is equal to the collection returned by
+     * {@link BillingReports#daily} for the time card.
+     * </p>
+     * 
+     * @return The collection of daily billing reports for the time card.
+     */
+    public Collection<BillingReport> getBillingReports()
+    {
+        final Collection<BillingReport> billingReports = new ArrayList<BillingReport>( billingReports_.size() + 1 );
+        billingReports.addAll( billingReports_ );
+
+        final BillingReport currentBillingReport = getCurrentBillingReport();
+        if( currentBillingReport != null )
+        {
+            billingReports.add( currentBillingReport );
+        }
+
+        return billingReports;
+    }
+
+    /**
+     * Gets the billing report of the current day.
+     * 
+     * @return The billing report of the current day or {@code null} if there
+     *         is no current day.
+     */
+    @Nullable
+    private BillingReport getCurrentBillingReport()
+    {
+        if( currentBillingReport_ == null )
+        {
+            currentBillingReport_ = builder_.peek();
+        }
+
+        return currentBillingReport_;
+    }
+
+    /**
+     * Discards all billing reports.
+     */
+    private void reset()
+    {
+        activityCount_ = 0;
+        billingReports_.clear();
+        builder_ = new DailyBillingReportBuilder( new BillingReportCollector( billingReports_ ) );
+        currentBillingReport_ = null;
+    }
+
+    /**
+     * Updates the billing reports to match the specified version of the time
+     * card after a change has been undone or redone.
+     * 
+     * @param snapshot
+     *        The restored version of the time card.
+     */
+    private void restore(
+        final TimeCardSnapshot snapshot )
+    {
+        final int activityCount = snapshot.getInactiveActivityCount();
+        if( (snapshot.getClosedPeriods() != closedPeriods_) || (activityCount == 0) )
+        {
+            reset();
+        }
+        else if( activityCount < activityCount_ )
+        {
+            // the remaining activities are unchanged, so only the days from the
+            // one on which the last of them stops need to be recomputed
+            final IActivityStorage activityStore = snapshot.getActivityStore();
+            final long startTime = EpochDays.getStartTime( EpochDays.getDay( activityStore.getStopTime( activityCount - 1 ) ) );
+            int billingReportCount = billingReports_.size();
+            while( (billingReportCount > 0) && (billingReports_.get( billingReportCount - 1 ).getDateRange().getBeginTimeInMilliseconds() >= startTime) )
+            {
+                --billingReportCount;
+            }
+            billingReports_.subList( billingReportCount, billingReports_.size() ).clear();
+            activityCount_ = activityStore.getFirstIndexStoppingAtOrAfter( startTime, activityCount );
+            builder_ = new DailyBillingReportBuilder( new BillingReportCollector( billingReports_ ), startTime, Long.MAX_VALUE );
+        }
+
+        addActivities( snapshot );
+    }
+
+
+    // ======================================================================
+    // Nested Types
+    // ======================================================================
+
+    /**
+     * The time card listener for the aggregator.
+     */
+    @SuppressWarnings( "synthetic-access" )
+    private final class TimeCardListener
+        implements ITimeCardListener
+    {
+        // ==================================================================
+        // Constructors
+        // ==================================================================
+
+        /**
+         * Initializes a new instance of the {@code TimeCardListener} class.
+         */
+        TimeCardListener()
+        {
+        }
+
+
+        // ==================================================================
+        // Methods
+        // ==================================================================
+
+        /*
+         * @see com.belcan.beltime.model.ITimeCardListener#onActivitiesAppended(com.belcan.beltime.model.TimeCard, java.util.List)
+         */
+        @Override
+        public void onActivitiesAppended(
+            final TimeCard timeCard,
+            final List<Activity> activities )
+        {
+            for( final Activity activity : activities )
+            {
+                assert activity != null;
+                addActivity( activity );
+            }
+        }
+
+        /*
+         * @see com.belcan.beltime.model.ITimeCardListener#onActivityStarted(com.belcan.beltime.model.TimeCard, com.belcan.beltime.model.Activity)
+         */
+        @Override
+        public void onActivityStarted(
+            final TimeCard timeCard,
+            final Activity activity )
+        {
+            // do nothing
+        }
+
+        /*
+         * @see com.belcan.beltime.model.ITimeCardListener#onActivityStopped(com.belcan.beltime.model.TimeCard, com.belcan.beltime.model.Activity)
+         */
+        @Override
+        public void onActivityStopped(
+            final TimeCard timeCard,
+            final Activity activity )
+        {
+            addActivity( activity );
+        }
+
+        /*
+         * @see com.belcan.beltime.model.ITimeCardListener#onPeriodClosed(com.belcan.beltime.model.TimeCard, com.belcan.beltime.model.ClosedPeriod)
+         */
+        @Override
+        public void onPeriodClosed(
+            final TimeCard timeCard,
+            final ClosedPeriod closedPeriod )
+        {
+            reset();
+            addActivities( timeCard.getSnapshot() );
+        }
+
+        /*
+         * @see com.belcan.beltime.model.ITimeCardListener#onReset(com.belcan.beltime.model.TimeCard)
+         */
+        @Override
+        public void onReset(
+            final TimeCard timeCard )
+        {
+            reset();
+            addActivities( timeCard.getSnapshot() );
+        }
+
+        /*
+         * @see com.belcan.beltime.model.ITimeCardListener#onRestored(com.belcan.beltime.model.TimeCard, boolean)
+         */
+        @Override
+        public void onRestored(
+            final TimeCard timeCard,
+            final boolean isUndo )
+        {
+            restore( timeCard.getSnapshot() );
+        }
+    }
+}
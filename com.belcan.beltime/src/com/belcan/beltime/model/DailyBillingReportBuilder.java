@@ -0,0 +1,343 @@
+/*
+ * DailyBillingReportBuilder.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Feb 8, 2014 at 8:15:37 PM.
+ */
+
+package com.belcan.beltime.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import com.belcan.beltime.util.Duration;
+import com.belcan.beltime.util.NullAnalysis;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Builds daily billing reports from a chronological sequence of activities.
+ * 
+ * <p>
+ * Each activity is split into GMT days using plain epoch millisecond
+ * arithmetic. The durations billed to each charge number are accumulated for
+ * the current day, and a billing report is generated for the current day as
+ * soon as an activity is added that falls on a subsequent day.
+ * </p>
+ * 
+ * <p>
+ * Only the partial first and last days of an activity are accumulated; the
+ * full days in between are emitted as a single run. If the sink is an
+ * {@link IBillingReportRunSink}, it receives the run with a single call;
+ * otherwise, the run is expanded into one billing report per day, all of which
+ * share the same collection of bills. Either way, no per-day accumulation is
+ * performed for the interior days of a long activity.
+ * </p>
+ * 
+ * <p>
+ * The bills of each billing report are emitted in charge number order using
+ * the ranks maintained by the charge number dictionary, so no per-report sort
+ * is required.
+ * </p>
+ */
+final class DailyBillingReportBuilder
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /** The dictionary of charge numbers billed by the activities. */
+    private final ChargeNumberDictionary chargeNumberDictionary_;
+
+    /**
+     * The epoch day of the billing report currently being accumulated. Only
+     * valid when {@link #durations_} is not empty.
+     */
+    private long day_;
+
+    /**
+     * The durations billed to each charge number during the current day.
+     */
+    private final DurationAccumulator durations_;
+
+    /**
+     * The index of each entry in {@link #durations_} indexed by the rank of the
+     * entry charge number. Only valid for ranks marked in {@link #rankBits_}.
+     */
+    private int[] entryIndexesByRank_;
+
+    /**
+     * The set of charge number ranks billed during the current day, where bit
+     * {@code r % 64} of element {@code r / 64} represents rank {@code r}.
+     */
+    private long[] rankBits_;
+
+    /**
+     * The sink that receives runs of full days in bulk or {@code null} if the
+     * sink does not support runs.
+     */
+    private final IBillingReportRunSink runSink_;
+
+    /** The sink that receives each completed billing report. */
+    private final IBillingReportSink sink_;
+
+    /**
+     * The time in milliseconds at which the billing window starts, inclusive.
+     */
+    private final long windowStartTime_;
+
+    /**
+     * The time in milliseconds at which the billing window stops, exclusive.
+     */
+    private final long windowStopTime_;
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code DailyBillingReportBuilder}
+     * class.
+     * 
+     * @param sink
+     *        The sink that receives each completed billing report.
+     */
+    DailyBillingReportBuilder(
+        final IBillingReportSink sink )
+    {
+        this( sink, Long.MIN_VALUE, Long.MAX_VALUE );
+    }
+
+    /**
+     * Initializes a new instance of the {@code DailyBillingReportBuilder}
+     * class that only bills the portion of each activity that falls within the
+     * specified window.
+     * 
+     * @param sink
+     *        The sink that receives each completed billing report.
+     * @param windowStartTimeInMilliseconds
+     *        The time at which the billing window starts in milliseconds,
+     *        inclusive.
+     * @param windowStopTimeInMilliseconds
+     *        The time at which the billing window stops in milliseconds,
+     *        exclusive.
+     */
+    DailyBillingReportBuilder(
+        final IBillingReportSink sink,
+        final long windowStartTimeInMilliseconds,
+        final long windowStopTimeInMilliseconds )
+    {
+        chargeNumberDictionary_ = new ChargeNumberDictionary();
+        day_ = 0L;
+        durations_ = new DurationAccumulator();
+        entryIndexesByRank_ = new int[ 0 ];
+        rankBits_ = new long[ 0 ];
+        runSink_ = (sink instanceof IBillingReportRunSink) ? (IBillingReportRunSink)sink : null;
+        sink_ = sink;
+        windowStartTime_ = windowStartTimeInMilliseconds;
+        windowStopTime_ = windowStopTimeInMilliseconds;
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /**
+     * Adds the specified inactive activity to the billing reports.
+     * 
+     * <p>
+     * Activities must be added in chronological order. Only the portion of the
+     * activity that falls within the billing window is billed; an activity
+     * that lies entirely outside of the billing window is ignored.
+     * </p>
+     * 
+     * @param chargeNumber
+     *        The charge number of the job to be billed.
+     * @param startTimeInMilliseconds
+     *        The time at which the activity started in milliseconds,
+     *        inclusive.
+     * @param stopTimeInMilliseconds
+     *        The time at which the activity stopped in milliseconds,
+     *        exclusive.
+     */
+    void addActivity(
+        final ChargeNumber chargeNumber,
+        final long startTimeInMilliseconds,
+        final long stopTimeInMilliseconds )
+    {
+        final long firstDay = EpochDays.getDay( Math.max( startTimeInMilliseconds, windowStartTime_ ) );
+        final long lastDay = EpochDays.getDay( Math.min( stopTimeInMilliseconds, windowStopTime_ - 1L ) );
+        if( (lastDay - firstDay) < 2L )
+        {
+            for( long day = firstDay; day <= lastDay; ++day )
+            {
+                addPartialDay( chargeNumber, day, startTimeInMilliseconds, stopTimeInMilliseconds );
+            }
+            return;
+        }
+
+        addPartialDay( chargeNumber, firstDay, startTimeInMilliseconds, stopTimeInMilliseconds );
+        addFullDays( chargeNumber, firstDay + 1L, lastDay - firstDay - 1L );
+        addPartialDay( chargeNumber, lastDay, startTimeInMilliseconds, stopTimeInMilliseconds );
+    }
+
+    /**
+     * Adds a run of consecutive days that are billed in their entirety to the
+     * specified charge number.
+     * 
+     * @param chargeNumber
+     *        The charge number of the job to be billed.
+     * @param firstDay
+     *        The first epoch day of the run; must follow the current day, if
+     *        any.
+     * @param dayCount
+     *        The number of days in the run; must be positive.
+     */
+    private void addFullDays(
+        final ChargeNumber chargeNumber,
+        final long firstDay,
+        final long dayCount )
+    {
+        assert durations_.isEmpty() || (firstDay > day_);
+        assert dayCount > 0L;
+
+        flush();
+
+        if( runSink_ != null )
+        {
+            runSink_.onBillingReportRun( chargeNumber, firstDay, dayCount );
+        }
+        else
+        {
+            final List<Bill> bills = NullAnalysis.nonNull( Collections.singletonList( new Bill( chargeNumber, Duration.fromMilliseconds( EpochDays.MILLISECONDS_PER_DAY ) ) ) );
+            for( long day = firstDay; day < firstDay + dayCount; ++day )
+            {
+                sink_.onBillingReport( new BillingReport( EpochDays.toDateRange( day ), bills ) );
+            }
+        }
+    }
+
+    /**
+     * Adds the portion of the specified activity that falls on the specified
+     * day and within the billing window.
+     * 
+     * @param chargeNumber
+     *        The charge number of the job to be billed.
+     * @param day
+     *        The epoch day.
+     * @param startTimeInMilliseconds
+     *        The time at which the activity started in milliseconds,
+     *        inclusive.
+     * @param stopTimeInMilliseconds
+     *        The time at which the activity stopped in milliseconds,
+     *        exclusive.
+     */
+    private void addPartialDay(
+        final ChargeNumber chargeNumber,
+        final long day,
+        final long startTimeInMilliseconds,
+        final long stopTimeInMilliseconds )
+    {
+        final long startTimeOfDay = EpochDays.getStartTime( day );
+        final long startTime = Math.max( Math.max( startTimeInMilliseconds, startTimeOfDay ), windowStartTime_ );
+        final long stopTime = Math.min( Math.min( stopTimeInMilliseconds, startTimeOfDay + EpochDays.MILLISECONDS_PER_DAY ), windowStopTime_ );
+        if( (startTime > stopTime) || (startTime >= windowStopTime_) )
+        {
+            return;
+        }
+
+        if( !durations_.isEmpty() && (day_ != day) )
+        {
+            flush();
+        }
+
+        durations_.add( chargeNumberDictionary_.getId( chargeNumber ), stopTime - startTime );
+        day_ = day;
+    }
+
+    /**
+     * Creates a new billing report for the current day from the durations
+     * accumulated so far.
+     * 
+     * @return A new billing report.
+     */
+    private BillingReport createBillingReport()
+    {
+        final int chargeNumberCount = chargeNumberDictionary_.size();
+        if( entryIndexesByRank_.length < chargeNumberCount )
+        {
+            final int capacity = Math.max( chargeNumberCount, 2 * entryIndexesByRank_.length );
+            entryIndexesByRank_ = new int[ capacity ];
+            rankBits_ = new long[ (capacity + 63) >>> 6 ];
+        }
+
+        int firstWord = rankBits_.length;
+        int lastWord = -1;
+        for( int index = 0; index < durations_.size(); ++index )
+        {
+            final int rank = chargeNumberDictionary_.getRank( durations_.getChargeNumberId( index ) );
+            final int word = rank >>> 6;
+            entryIndexesByRank_[ rank ] = index;
+            rankBits_[ word ] |= 1L << rank;
+            firstWord = Math.min( firstWord, word );
+            lastWord = Math.max( lastWord, word );
+        }
+
+        final List<Bill> bills = new ArrayList<Bill>( durations_.size() );
+        for( int word = firstWord; word <= lastWord; ++word )
+        {
+            long bits = rankBits_[ word ];
+            while( bits != 0L )
+            {
+                final int index = entryIndexesByRank_[ (word << 6) + Long.numberOfTrailingZeros( bits ) ];
+                final ChargeNumber chargeNumber = chargeNumberDictionary_.getChargeNumber( durations_.getChargeNumberId( index ) );
+                bills.add( new Bill( chargeNumber, Duration.fromMilliseconds( durations_.getDuration( index ) ) ) );
+                bits &= bits - 1L;
+            }
+            rankBits_[ word ] = 0L;
+        }
+
+        return new BillingReport( EpochDays.toDateRange( day_ ), bills );
+    }
+
+    /**
+     * Generates the billing report for the current day, if any.
+     * 
+     * <p>
+     * This method should be called after the last activity has been added.
+     * </p>
+     */
+    void flush()
+    {
+        if( durations_.isEmpty() )
+        {
+            return;
+        }
+
+        final BillingReport billingReport = createBillingReport();
+        durations_.clear();
+        sink_.onBillingReport( billingReport );
+    }
+
+    /**
+     * Gets the billing report for the current day as accumulated so far
+     * without completing the current day.
+     * 
+     * @return The billing report for the current day or {@code null} if no
+     *         activity has been added since the last billing report was
+     *         generated.
+     */
+    @Nullable
+    BillingReport peek()
+    {
+        return durations_.isEmpty() ? null : createBillingReport();
+    }
+}
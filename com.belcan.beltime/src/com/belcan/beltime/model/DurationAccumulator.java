@@ -0,0 +1,228 @@
+/*
+ * DurationAccumulator.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Mar 1, 2014 at 3:40:51 PM.
+ */
+
+package com.belcan.beltime.model;
+
+import java.util.Arrays;
+
+/**
+ * Accumulates the duration billed to each charge number.
+ * 
+ * <p>
+ * Charge numbers are identified by their {@link ChargeNumberDictionary}
+ * identifier, and durations are accumulated as primitive millisecond totals in
+ * an open-addressing hash table. Clearing the accumulator only touches the
+ * entries that were used, so a single accumulator can be reused for every day
+ * of a billing report without allocating.
+ * </p>
+ */
+final class DurationAccumulator
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /** The initial capacity of the hash table; must be a power of two. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The charge number identifier stored in each hash table slot, or
+     * {@code -1} if the slot is empty.
+     */
+    private int[] chargeNumberIds_;
+
+    /** The duration in milliseconds stored in each hash table slot. */
+    private long[] durations_;
+
+    /** The count of entries in the accumulator. */
+    private int size_;
+
+    /** The hash table slot of each entry in the order the entries were added. */
+    private int[] usedSlots_;
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code DurationAccumulator} class.
+     */
+    DurationAccumulator()
+    {
+        chargeNumberIds_ = createChargeNumberIds( INITIAL_CAPACITY );
+        durations_ = new long[ INITIAL_CAPACITY ];
+        size_ = 0;
+        usedSlots_ = new int[ INITIAL_CAPACITY / 2 ];
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /**
+     * Adds the specified duration to the duration billed to the specified
+     * charge number.
+     * 
+     * @param chargeNumberId
+     *        The charge number identifier.
+     * @param durationInMilliseconds
+     *        The additional duration in milliseconds.
+     */
+    void add(
+        final int chargeNumberId,
+        final long durationInMilliseconds )
+    {
+        final int mask = chargeNumberIds_.length - 1;
+        int slot = ChargeNumberDictionary.hash( chargeNumberId ) & mask;
+        while( true )
+        {
+            final int id = chargeNumberIds_[ slot ];
+            if( id == chargeNumberId )
+            {
+                durations_[ slot ] += durationInMilliseconds;
+                return;
+            }
+            else if( id == -1 )
+            {
+                break;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        chargeNumberIds_[ slot ] = chargeNumberId;
+        durations_[ slot ] = durationInMilliseconds;
+        usedSlots_[ size_++ ] = slot;
+
+        if( 2 * size_ >= chargeNumberIds_.length )
+        {
+            rehash();
+        }
+    }
+
+    /**
+     * Removes all entries from the accumulator.
+     */
+    void clear()
+    {
+        for( int index = 0; index < size_; ++index )
+        {
+            chargeNumberIds_[ usedSlots_[ index ] ] = -1;
+        }
+
+        size_ = 0;
+    }
+
+    /**
+     * Creates a new array of empty hash table slots.
+     * 
+     * @param capacity
+     *        The capacity of the hash table; must be a power of two.
+     * 
+     * @return A new array of empty hash table slots.
+     */
+    private static int[] createChargeNumberIds(
+        final int capacity )
+    {
+        final int[] chargeNumberIds = new int[ capacity ];
+        Arrays.fill( chargeNumberIds, -1 );
+        return chargeNumberIds;
+    }
+
+    /**
+     * Gets the charge number identifier of the entry at the specified index.
+     * 
+     * @param index
+     *        The index of the entry in the order the entries were added.
+     * 
+     * @return The charge number identifier of the entry at the specified
+     *         index.
+     */
+    int getChargeNumberId(
+        final int index )
+    {
+        assert (index >= 0) && (index < size_);
+
+        return chargeNumberIds_[ usedSlots_[ index ] ];
+    }
+
+    /**
+     * Gets the duration in milliseconds of the entry at the specified index.
+     * 
+     * @param index
+     *        The index of the entry in the order the entries were added.
+     * 
+     * @return The duration in milliseconds of the entry at the specified
+     *         index.
+     */
+    long getDuration(
+        final int index )
+    {
+        assert (index >= 0) && (index < size_);
+
+        return durations_[ usedSlots_[ index ] ];
+    }
+
+    /**
+     * Indicates the accumulator is empty.
+     * 
+     * @return {@code true} if the accumulator is empty; otherwise
+     *         {@code false}.
+     */
+    boolean isEmpty()
+    {
+        return size_ == 0;
+    }
+
+    /**
+     * Doubles the capacity of the hash table.
+     */
+    private void rehash()
+    {
+        final int capacity = 2 * chargeNumberIds_.length;
+        final int mask = capacity - 1;
+        final int[] chargeNumberIds = createChargeNumberIds( capacity );
+        final long[] durations = new long[ capacity ];
+        final int[] usedSlots = new int[ capacity / 2 ];
+        for( int index = 0; index < size_; ++index )
+        {
+            final int oldSlot = usedSlots_[ index ];
+            int slot = ChargeNumberDictionary.hash( chargeNumberIds_[ oldSlot ] ) & mask;
+            while( chargeNumberIds[ slot ] != -1 )
+            {
+                slot = (slot + 1) & mask;
+            }
+
+            chargeNumberIds[ slot ] = chargeNumberIds_[ oldSlot ];
+            durations[ slot ] = durations_[ oldSlot ];
+            usedSlots[ index ] = slot;
+        }
+
+        chargeNumberIds_ = chargeNumberIds;
+        durations_ = durations;
+        usedSlots_ = usedSlots;
+    }
+
+    /**
+     * Gets the count of entries in the accumulator.
+     * 
+     * @return The count of entries in the accumulator.
+     */
+    int size()
+    {
+        return size_;
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * EpochDays.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Feb 8, 2014 at 7:41:12 PM.
+ */
+
+package com.belcan.beltime.model;
+
+import com.belcan.beltime.util.DateRange;
+
+/**
+ * A collection of methods for performing billing day calculations using plain
+ * epoch millisecond arithmetic.
+ * 
+ * <p>
+ * All billing days are GMT days. A day is identified by its epoch day number,
+ * which is the number of whole days between 1970-01-01T00:00:00Z and the
+ * beginning of the day; days before the epoch have negative numbers.
+ * </p>
+ */
+final class EpochDays
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /** The number of milliseconds per day. */
+    static final long MILLISECONDS_PER_DAY = 24L * 60L * 60L * 1000L;
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code EpochDays} class.
+     */
+    private EpochDays()
+    {
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /**
+     * Gets the epoch day that contains the specified time.
+     * 
+     * @param timeInMilliseconds
+     *        The time in milliseconds since the epoch.
+     * 
+     * @return The epoch day that contains the specified time.
+     */
+    static long getDay(
+        final long timeInMilliseconds )
+    {
+        final long day = timeInMilliseconds / MILLISECONDS_PER_DAY;
+        return ((timeInMilliseconds % MILLISECONDS_PER_DAY) < 0L) ? day - 1L : day;
+    }
+
+    /**
+     * Gets the day of the month of the specified epoch day.
+     * 
+     * @param day
+     *        The epoch day.
+     * 
+     * @return The day of the month, where the first day of the month is
+     *         {@code 1}.
+     */
+    private static int getDayOfMonth(
+        final long day )
+    {
+        // see Howard Hinnant, "chrono-Compatible Low-Level Date Algorithms"
+        final long shiftedDay = day + 719468L;
+        final long era = ((shiftedDay >= 0L) ? shiftedDay : shiftedDay - 146096L) / 146097L;
+        final long dayOfEra = shiftedDay - era * 146097L;
+        final long yearOfEra = (dayOfEra - dayOfEra / 1460L + dayOfEra / 36524L - dayOfEra / 146096L) / 365L;
+        final long dayOfYear = dayOfEra - (365L * yearOfEra + yearOfEra / 4L - yearOfEra / 100L);
+        final long shiftedMonth = (5L * dayOfYear + 2L) / 153L;
+        return (int)(dayOfYear - (153L * shiftedMonth + 2L) / 5L + 1L);
+    }
+
+    /**
+     * Gets the time (23:59:59.999) at which the specified epoch day ends,
+     * inclusive.
+     * 
+     * @param day
+     *        The epoch day.
+     * 
+     * @return The time in milliseconds at which the specified day ends.
+     */
+    static long getEndTime(
+        final long day )
+    {
+        return getStartTime( day ) + MILLISECONDS_PER_DAY - 1L;
+    }
+
+    /**
+     * Gets the first epoch day of the month that contains the specified epoch
+     * day.
+     * 
+     * @param day
+     *        The epoch day.
+     * 
+     * @return The first epoch day of the month.
+     */
+    static long getFirstDayOfMonth(
+        final long day )
+    {
+        return day - getDayOfMonth( day ) + 1L;
+    }
+
+    /**
+     * Gets the first epoch day of the month that follows the month that
+     * contains the specified epoch day.
+     * 
+     * @param day
+     *        The epoch day.
+     * 
+     * @return The first epoch day of the following month.
+     */
+    static long getFirstDayOfNextMonth(
+        final long day )
+    {
+        // no month has more than 31 days, so day 32 of a month always falls in the next month
+        final long dayInNextMonth = getFirstDayOfMonth( day ) + 31L;
+        return getFirstDayOfMonth( dayInNextMonth );
+    }
+
+    /**
+     * Gets the first epoch day of the fixed-length period that contains the
+     * specified epoch day.
+     * 
+     * @param day
+     *        The epoch day.
+     * @param anchorDay
+     *        Any epoch day on which a period starts.
+     * @param periodLength
+     *        The length of each period in days; must be positive.
+     * 
+     * @return The first epoch day of the period.
+     */
+    static long getFirstDayOfPeriod(
+        final long day,
+        final long anchorDay,
+        final long periodLength )
+    {
+        assert periodLength > 0L;
+
+        final long offset = (day - anchorDay) % periodLength;
+        return day - ((offset < 0L) ? offset + periodLength : offset);
+    }
+
+    /**
+     * Gets the time (00:00:00.000) at which the specified epoch day starts,
+     * inclusive.
+     * 
+     * @param day
+     *        The epoch day.
+     * 
+     * @return The time in milliseconds at which the specified day starts.
+     */
+    static long getStartTime(
+        final long day )
+    {
+        return day * MILLISECONDS_PER_DAY;
+    }
+
+    /**
+     * Creates a date range that spans the specified epoch day.
+     * 
+     * @param day
+     *        The epoch day.
+     * 
+     * @return A date range whose beginning date corresponds to time 00:00:00 on
+     *         the specified day, and whose ending date corresponds to time
+     *         23:59:59 on the specified day.
+     */
+    static DateRange toDateRange(
+        final long day )
+    {
+        return toDateRange( day, day );
+    }
+
+    /**
+     * Creates a date range that spans the specified epoch days.
+     * 
+     * @param firstDay
+     *        The first epoch day, inclusive.
+     * @param lastDay
+     *        The last epoch day, inclusive.
+     * 
+     * @return A date range whose beginning date corresponds to time 00:00:00 on
+     *         the first day, and whose ending date corresponds to time 23:59:59
+     *         on the last day.
+     */
+    static DateRange toDateRange(
+        final long firstDay,
+        final long lastDay )
+    {
+        return DateRange.fromMilliseconds( getStartTime( firstDay ), getEndTime( lastDay ) );
+    }
+}
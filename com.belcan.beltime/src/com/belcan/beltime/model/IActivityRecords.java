@@ -0,0 +1,79 @@
+/*
+ * IActivityRecords.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Mar 5, 2014 at 8:52:16 AM.
+ */
+
+package com.belcan.beltime.model;
+
+/**
+ * An indexed sequence of inactive activity records.
+ * 
+ * <p>
+ * Unlike a collection of {@link Activity} instances, the records are read
+ * field by field, so a reader may scan any number of records without creating
+ * an object for each of them.
+ * </p>
+ */
+public interface IActivityRecords
+{
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /**
+     * Gets the charge number of the activity at the specified index.
+     * 
+     * @param index
+     *        The index of the activity.
+     * 
+     * @return The charge number of the activity at the specified index.
+     */
+    public ChargeNumber getChargeNumber(
+        int index );
+
+    /**
+     * Gets the time at which the activity at the specified index started in
+     * milliseconds.
+     * 
+     * @param index
+     *        The index of the activity.
+     * 
+     * @return The time at which the activity at the specified index started
+     *         in milliseconds.
+     */
+    public long getStartTime(
+        int index );
+
+    /**
+     * Gets the time at which the activity at the specified index stopped in
+     * milliseconds.
+     * 
+     * @param index
+     *        The index of the activity.
+     * 
+     * @return The time at which the activity at the specified index stopped
+     *         in milliseconds.
+     */
+    public long getStopTime(
+        int index );
+
+    /**
+     * Gets the number of activity records.
+     * 
+     * <p>
+     * The records are in chronological order and do not overlap.
+     * </p>
+     * 
+     * @return The number of activity records.
+     */
+    public int size();
+}
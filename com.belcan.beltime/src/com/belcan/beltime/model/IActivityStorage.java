@@ -0,0 +1,141 @@
+/*
+ * IActivityStorage.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Mar 7, 2014 at 10:12:35 AM.
+ */
+
+package com.belcan.beltime.model;
+
+/**
+ * A storage engine for the inactive activities of a time card.
+ * 
+ * <p>
+ * A time card delegates the storage of its inactive activities to an engine,
+ * so engines may be swapped without changing the time card. The default
+ * engine holds the activities in memory; other engines may hold them
+ * elsewhere, such as in a file.
+ * </p>
+ * 
+ * <p>
+ * Activities are appended in chronological order and never overlap, so both
+ * their start times and their stop times are sorted, and the activities that
+ * overlap a time range are found by binary search.
+ * </p>
+ * 
+ * <p>
+ * A storage is versioned. {@link #createReadOnlyView} and
+ * {@link #createWritableCopy} must be cheap, and every view and copy must keep
+ * its contents no matter which storage derived from the same engine is
+ * modified later; in particular, {@link #truncate} must never modify an
+ * activity that is visible to another view or copy. A read-only view may be
+ * read from any thread once it has been safely published. All writable
+ * storages derived from the same engine must be modified from a single
+ * thread.
+ * </p>
+ */
+public interface IActivityStorage
+    extends IActivityRecords
+{
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /**
+     * Appends an inactive activity to the end of the storage.
+     * 
+     * @param chargeNumber
+     *        The charge number of the job to be billed.
+     * @param startTimeInMilliseconds
+     *        The time at which the activity started in milliseconds,
+     *        inclusive. The time must not precede the time at which the
+     *        previous activity stopped.
+     * @param stopTimeInMilliseconds
+     *        The time at which the activity stopped in milliseconds,
+     *        exclusive.
+     * 
+     * @throws java.lang.IllegalStateException
+     *         If the storage is a read-only view or if the activity cannot be
+     *         stored.
+     */
+    public void append(
+        ChargeNumber chargeNumber,
+        long startTimeInMilliseconds,
+        long stopTimeInMilliseconds );
+
+    /**
+     * Creates a read-only view of the current contents of the storage.
+     * 
+     * @return A read-only view of the current contents of the storage.
+     */
+    public IActivityStorage createReadOnlyView();
+
+    /**
+     * Creates a writable copy of the current contents of the storage.
+     * 
+     * <p>
+     * This method may be called on a read-only view, which allows an earlier
+     * version of a storage to be restored and modified.
+     * </p>
+     * 
+     * @return A writable copy of the current contents of the storage.
+     */
+    public IActivityStorage createWritableCopy();
+
+    /**
+     * Gets the index of the first activity that starts after the specified
+     * time.
+     * 
+     * @param timeInMilliseconds
+     *        The time in milliseconds.
+     * @param size
+     *        The count of activities at the beginning of the storage to be
+     *        searched.
+     * 
+     * @return The index of the first activity that starts after the specified
+     *         time or {@code size} if no such activity exists.
+     */
+    public int getFirstIndexStartingAfter(
+        long timeInMilliseconds,
+        int size );
+
+    /**
+     * Gets the index of the first activity that stops at or after the
+     * specified time.
+     * 
+     * @param timeInMilliseconds
+     *        The time in milliseconds.
+     * @param size
+     *        The count of activities at the beginning of the storage to be
+     *        searched.
+     * 
+     * @return The index of the first activity that stops at or after the
+     *         specified time or {@code size} if no such activity exists.
+     */
+    public int getFirstIndexStoppingAtOrAfter(
+        long timeInMilliseconds,
+        int size );
+
+    /**
+     * Removes the activities at and after the specified index from the
+     * storage.
+     * 
+     * @param size
+     *        The count of activities to be retained.
+     * 
+     * @throws java.lang.IllegalArgumentException
+     *         If {@code size} is negative or greater than the count of
+     *         activities in the storage.
+     * @throws java.lang.IllegalStateException
+     *         If the storage is a read-only view.
+     */
+    public void truncate(
+        int size );
+}
@@ -0,0 +1,57 @@
+/*
+ * IBillingReportRunSink.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Feb 16, 2014 at 5:12:31 PM.
+ */
+
+package com.belcan.beltime.model;
+
+/**
+ * A consumer of billing reports that can receive a run of consecutive full
+ * days in bulk.
+ * 
+ * <p>
+ * When an activity spans several days, every day other than the first and the
+ * last is billed in its entirety to the charge number of the activity. Rather
+ * than delivering one billing report for each of those days, the billing
+ * report generator delivers the whole run with a single call, so consumers
+ * that aggregate billing reports can process a long activity in constant time.
+ * </p>
+ */
+interface IBillingReportRunSink
+    extends IBillingReportSink
+{
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /**
+     * Called when the billing reports of a run of consecutive full days have
+     * been generated.
+     * 
+     * <p>
+     * This method is equivalent to calling {@link #onBillingReport} once for
+     * each day of the run with a billing report that contains a single
+     * 24-hour bill for the specified charge number.
+     * </p>
+     * 
+     * @param chargeNumber
+     *        The charge number billed for each day of the run.
+     * @param firstDay
+     *        The first epoch day of the run.
+     * @param dayCount
+     *        The number of days in the run; always positive.
+     */
+    public void onBillingReportRun(
+        ChargeNumber chargeNumber,
+        long firstDay,
+        long dayCount );
+}
@@ -0,0 +1,40 @@
+/*
+ * IBillingReportSink.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Feb 22, 2014 at 10:07:45 AM.
+ */
+
+package com.belcan.beltime.model;
+
+/**
+ * A consumer of billing reports that are generated one at a time.
+ */
+public interface IBillingReportSink
+{
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /**
+     * Called when a billing report has been generated.
+     * 
+     * <p>
+     * Billing reports are delivered in chronological order. Each billing report
+     * is complete when it is delivered; no further activities will be billed
+     * to its time period.
+     * </p>
+     * 
+     * @param billingReport
+     *        The billing report.
+     */
+    public void onBillingReport(
+        BillingReport billingReport );
+}
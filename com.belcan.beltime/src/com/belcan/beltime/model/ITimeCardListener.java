@@ -14,6 +14,8 @@
 
 package com.belcan.beltime.model;
 
+import java.util.List;
+
 /**
  * A listener of time card events.
  */
@@ -23,6 +25,25 @@ public interface ITimeCardListener
     // Methods
     // ======================================================================
 
+    /**
+     * Called when a batch of inactive activities has been appended.
+     * 
+     * <p>
+     * This event is fired once per batch instead of firing
+     * {@link #onActivityStarted} and {@link #onActivityStopped} for each
+     * activity in the batch.
+     * </p>
+     * 
+     * @param timeCard
+     *        The time card that fired the event.
+     * @param activities
+     *        A read-only view of the collection of activities that have been
+     *        appended in chronological order.
+     */
+    public void onActivitiesAppended(
+        TimeCard timeCard,
+        List<Activity> activities );
+
     /**
      * Called when an activity has started.
      * 
@@ -38,6 +59,13 @@ public interface ITimeCardListener
     /**
      * Called when an activity has stopped.
      * 
+     * <p>
+     * If the activity was stopped because another activity is being started,
+     * the time card is inactive and {@link TimeCard#isSwitchingActivities}
+     * returns {@code true} when this event is fired, and the
+     * {@link #onActivityStarted} event for the new activity follows.
+     * </p>
+     * 
      * @param timeCard
      *        The time card that fired the event.
      * @param activity
@@ -47,6 +75,24 @@ public interface ITimeCardListener
         TimeCard timeCard,
         Activity activity );
 
+    /**
+     * Called when a period has been closed.
+     * 
+     * <p>
+     * The activities of the closed period have been removed from the time
+     * card, so listeners that maintain state derived from the activities
+     * should rebuild it from {@link TimeCard#getSnapshot}.
+     * </p>
+     * 
+     * @param timeCard
+     *        The time card that fired the event.
+     * @param closedPeriod
+     *        The period that has been closed.
+     */
+    public void onPeriodClosed(
+        TimeCard timeCard,
+        ClosedPeriod closedPeriod );
+
     /**
      * Called when the time card has been reset.
      * 
@@ -55,4 +101,24 @@ public interface ITimeCardListener
      */
     public void onReset(
         TimeCard timeCard );
+
+    /**
+     * Called when the time card has been restored to a different version by
+     * undo or redo.
+     * 
+     * <p>
+     * The activities of the time card may have changed arbitrarily, so
+     * listeners that maintain state derived from the activities should
+     * rebuild it from {@link TimeCard#getSnapshot}.
+     * </p>
+     * 
+     * @param timeCard
+     *        The time card that fired the event.
+     * @param isUndo
+     *        {@code true} if a change has been undone; {@code false} if a
+     *        change has been redone.
+     */
+    public void onRestored(
+        TimeCard timeCard,
+        boolean isUndo );
 }
@@ -15,12 +15,45 @@
 package com.belcan.beltime.model;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import com.belcan.beltime.util.NullAnalysis;
 import org.eclipse.jdt.annotation.Nullable;
 
 /**
  * A time card.
+ * 
+ * <p>
+ * A time card has a single writer: all methods other than {@link #getSnapshot}
+ * must be called from the same thread, or be externally synchronized. After
+ * each change, the time card publishes an immutable snapshot of its
+ * activities, which {@link #getSnapshot} returns without locking. Readers on
+ * any thread, such as background report generation, may therefore take and
+ * use snapshots concurrently with the writer, and the writer never waits for
+ * readers.
+ * </p>
+ * 
+ * <p>
+ * Every change to the time card may be undone and redone. Each published
+ * snapshot is a complete version of the time card that shares its storage
+ * with the other versions, so recording a version for undo costs no more than
+ * publishing it, and restoring a version never copies the activities. Only
+ * the most recent {@link #MAXIMUM_UNDO_COUNT} versions are retained for undo;
+ * older versions are kept only while some other snapshot still refers to
+ * them.
+ * </p>
+ * 
+ * <p>
+ * The history of the time card is bounded by closing periods: the activities
+ * before the end of a period are moved into an immutable
+ * {@link ClosedPeriod} together with their precomputed daily billing reports,
+ * so the live activities of the time card stay few no matter how much history
+ * is kept.
+ * </p>
  */
 public final class TimeCard
 {
@@ -28,27 +61,87 @@ public final class TimeCard
     // Fields
     // ======================================================================
 
+    /** The maximum number of changes that may be undone. */
+    static final int MAXIMUM_UNDO_COUNT = 100;
+
+    /** The active activity or {@code null} if no activity is active. */
+    private Activity activeActivity_;
+
+    /** The storage of inactive activities in chronological order. */
+    private IActivityStorage activityStore_;
+
     /**
-     * The collection of activities in chronological order. The active activity,
-     * if any, will be the the last entry.
+     * The immutable collection of closed periods in chronological order. The
+     * collection is replaced, rather than modified, when a period is closed.
      */
-    private final List<Activity> activities_;
+    private List<ClosedPeriod> closedPeriods_;
+
+    /**
+     * Indicates the active activity has been stopped because another activity
+     * is being started.
+     */
+    private boolean isSwitchingActivities_;
 
     /** The time card listener or {@code null} if none. */
     private ITimeCardListener listener_;
 
+    /** The collection of additional time card listeners. */
+    private final List<ITimeCardListener> listeners_;
+
+    /**
+     * The collection of versions that may be restored by redo, most recent
+     * first.
+     */
+    private final LinkedList<TimeCardSnapshot> redoVersions_;
+
+    /** The most recently published snapshot of the time card. */
+    private volatile TimeCardSnapshot snapshot_;
+
+    /**
+     * The collection of versions that may be restored by undo, most recent
+     * first.
+     */
+    private final LinkedList<TimeCardSnapshot> undoVersions_;
+
 
     // ======================================================================
     // Constructors
     // ======================================================================
 
     /**
-     * Initializes a new instance of the {@code TimeCard} class.
+     * Initializes a new instance of the {@code TimeCard} class that stores its
+     * inactive activities in memory.
      */
     public TimeCard()
     {
-        activities_ = new ArrayList<Activity>();
+        this( new ActivityStore() );
+    }
+
+    /**
+     * Initializes a new instance of the {@code TimeCard} class that stores its
+     * inactive activities in the specified storage.
+     * 
+     * <p>
+     * The time card starts with the activities already in the storage. The
+     * storage must be writable and must not be modified by anyone other than
+     * the time card afterwards.
+     * </p>
+     * 
+     * @param activityStore
+     *        The storage of inactive activities in chronological order.
+     */
+    public TimeCard(
+        final IActivityStorage activityStore )
+    {
+        activeActivity_ = null;
+        activityStore_ = activityStore;
+        closedPeriods_ = Collections.emptyList();
+        isSwitchingActivities_ = false;
         listener_ = null;
+        listeners_ = new CopyOnWriteArrayList<ITimeCardListener>();
+        redoVersions_ = new LinkedList<TimeCardSnapshot>();
+        snapshot_ = createSnapshot();
+        undoVersions_ = new LinkedList<TimeCardSnapshot>();
     }
 
 
@@ -56,6 +149,382 @@ public final class TimeCard
     // Methods
     // ======================================================================
 
+    /**
+     * Adds a time card listener.
+     * 
+     * <p>
+     * Listeners added by this method are notified in addition to the listener
+     * set by {@link #setTimeCardListener}.
+     * </p>
+     * 
+     * @param listener
+     *        The time card listener.
+     */
+    public void addTimeCardListener(
+        final ITimeCardListener listener )
+    {
+        listeners_.add( listener );
+    }
+
+    /**
+     * Appends a batch of inactive activities to the time card.
+     * 
+     * <p>
+     * The whole batch is validated before any activity is appended, so either
+     * all or none of the activities are appended. A single
+     * {@link ITimeCardListener#onActivitiesAppended} event is fired for the
+     * batch, and no event is fired if the batch is empty. This method is
+     * intended for importing or restoring large histories, for which starting
+     * and stopping each activity individually would fire two events per
+     * activity.
+     * </p>
+     * 
+     * @param activities
+     *        The collection of inactive activities to be appended in
+     *        chronological order.
+     * 
+     * @throws java.lang.IllegalArgumentException
+     *         If any activity is active, or if any activity starts before the
+     *         time at which the previous activity stopped.
+     * @throws java.lang.IllegalStateException
+     *         If the time card is active.
+     */
+    public void appendActivities(
+        final Collection<Activity> activities )
+    {
+        if( isActive() )
+        {
+            throw new IllegalStateException( "cannot append activities to an active time card" ); //$NON-NLS-1$
+        }
+
+        final int fromIndex = activityStore_.size();
+        long previousStopTime = (fromIndex > 0) ? activityStore_.getStopTime( fromIndex - 1 ) : Long.MIN_VALUE;
+        for( final Activity activity : activities )
+        {
+            if( activity.isActive() )
+            {
+                throw new IllegalArgumentException( "cannot append an active activity" ); //$NON-NLS-1$
+            }
+            else if( activity.getStartTimeInMilliseconds() < previousStopTime )
+            {
+                throw new IllegalArgumentException( "start time precedes stop time of previous activity" ); //$NON-NLS-1$
+            }
+
+            previousStopTime = activity.getStopTimeInMilliseconds();
+        }
+
+        if( activities.isEmpty() )
+        {
+            return;
+        }
+
+        final TimeCardSnapshot previousSnapshot = snapshot_;
+        for( final Activity activity : activities )
+        {
+            activityStore_.append( activity.getChargeNumber(), activity.getStartTimeInMilliseconds(), activity.getStopTimeInMilliseconds() );
+        }
+
+        final TimeCardSnapshot snapshot = createSnapshot();
+        snapshot_ = snapshot;
+        recordUndoVersion( previousSnapshot );
+
+        fireActivitiesAppended( NullAnalysis.nonNull( snapshot.getActivities().subList( fromIndex, activityStore_.size() ) ) );
+    }
+
+    /**
+     * Indicates a change to the time card may be redone.
+     * 
+     * @return {@code true} if a change may be redone; otherwise {@code false}.
+     */
+    public boolean canRedo()
+    {
+        return !redoVersions_.isEmpty();
+    }
+
+    /**
+     * Indicates a change to the time card may be undone.
+     * 
+     * @return {@code true} if a change may be undone; otherwise {@code false}.
+     */
+    public boolean canUndo()
+    {
+        return !undoVersions_.isEmpty();
+    }
+
+    /**
+     * Clears the history of changes to the time card.
+     * 
+     * <p>
+     * The changes made so far may no longer be undone or redone. The
+     * activities and closed periods of the time card are unaffected, and no
+     * event is fired.
+     * </p>
+     */
+    public void clearHistory()
+    {
+        redoVersions_.clear();
+        undoVersions_.clear();
+    }
+
+    /**
+     * Closes the period that ends at the specified time.
+     * 
+     * @param endTime
+     *        The time at which the period ends, exclusive.
+     * 
+     * @return The closed period.
+     * 
+     * @throws java.lang.IllegalArgumentException
+     *         If {@code endTime} is not the start of a day, if it does not
+     *         follow the end of the previous closed period, or if it follows
+     *         the time at which the active activity started.
+     */
+    public ClosedPeriod closePeriod(
+        final Date endTime )
+    {
+        return closePeriod( endTime.getTime() );
+    }
+
+    /**
+     * Closes the period that ends at the specified time.
+     * 
+     * <p>
+     * All inactive activities that stop at or before the end of the period are
+     * removed from the time card and sealed into a new closed period, which
+     * computes their daily billing reports. An inactive activity that
+     * straddles the end of the period is split: the portion before the end of
+     * the period is closed, and the remainder stays in the time card. The
+     * period must end at the start of a day, so no day is split between a
+     * closed period and the time card.
+     * </p>
+     * 
+     * @param endTime
+     *        The time at which the period ends in milliseconds, exclusive.
+     * 
+     * @return The closed period.
+     * 
+     * @throws java.lang.IllegalArgumentException
+     *         If {@code endTime} is not the start of a day, if it does not
+     *         follow the end of the previous closed period, or if it follows
+     *         the time at which the active activity started.
+     */
+    public ClosedPeriod closePeriod(
+        final long endTime )
+    {
+        if( endTime != EpochDays.getStartTime( EpochDays.getDay( endTime ) ) )
+        {
+            throw new IllegalArgumentException( "end time is not the start of a day" ); //$NON-NLS-1$
+        }
+        else if( !closedPeriods_.isEmpty() && (endTime <= closedPeriods_.get( closedPeriods_.size() - 1 ).getEndTimeInMilliseconds()) )
+        {
+            throw new IllegalArgumentException( "end time does not follow end of previous closed period" ); //$NON-NLS-1$
+        }
+
+        final Activity activeActivity = activeActivity_;
+        if( (activeActivity != null) && (activeActivity.getStartTimeInMilliseconds() < endTime) )
+        {
+            throw new IllegalArgumentException( "end time follows start time of active activity" ); //$NON-NLS-1$
+        }
+
+        final TimeCardSnapshot previousSnapshot = snapshot_;
+        final int activityCount = activityStore_.size();
+        final int splitIndex = activityStore_.getFirstIndexStoppingAtOrAfter( endTime + 1L, activityCount );
+        final IActivityStorage closedActivityStore = activityStore_.createWritableCopy();
+        closedActivityStore.truncate( splitIndex );
+        final IActivityStorage activityStore = activityStore_.createWritableCopy();
+        activityStore.truncate( 0 );
+        for( int index = splitIndex; index < activityCount; ++index )
+        {
+            final ChargeNumber chargeNumber = activityStore_.getChargeNumber( index );
+            final long startTime = activityStore_.getStartTime( index );
+            final long stopTime = activityStore_.getStopTime( index );
+            if( startTime < endTime )
+            {
+                closedActivityStore.append( chargeNumber, startTime, endTime );
+                activityStore.append( chargeNumber, endTime, stopTime );
+            }
+            else
+            {
+                activityStore.append( chargeNumber, startTime, stopTime );
+            }
+        }
+
+        final ClosedPeriod closedPeriod = new ClosedPeriod( closedActivityStore, endTime );
+        final List<ClosedPeriod> closedPeriods = new ArrayList<ClosedPeriod>( closedPeriods_ );
+        closedPeriods.add( closedPeriod );
+        activityStore_ = activityStore;
+        closedPeriods_ = NullAnalysis.nonNull( Collections.unmodifiableList( closedPeriods ) );
+
+        snapshot_ = createSnapshot();
+        recordUndoVersion( previousSnapshot );
+
+        firePeriodClosed( closedPeriod );
+
+        return closedPeriod;
+    }
+
+    /**
+     * Stops the active activity, adds it to the activity store, and publishes
+     * a new snapshot.
+     * 
+     * @param stopTime
+     *        The time at which the active activity stopped in milliseconds.
+     * 
+     * @return The activity that has stopped.
+     * 
+     * @throws java.lang.IllegalArgumentException
+     *         If {@code stopTime} is less than the time at which the active
+     *         activity started.
+     * @throws java.lang.IllegalStateException
+     *         If the time card is inactive.
+     */
+    private Activity completeActiveActivity(
+        final long stopTime )
+    {
+        final Activity activity = getActiveActivity();
+        if( stopTime < activity.getStartTimeInMilliseconds() )
+        {
+            throw new IllegalArgumentException( "stop time must be greater than or equal to start time" ); //$NON-NLS-1$
+        }
+
+        // the activity store may fail, so it is changed before the activity
+        activityStore_.append( activity.getChargeNumber(), activity.getStartTimeInMilliseconds(), stopTime );
+        setActiveActivity( null );
+        activity.stop( stopTime );
+
+        snapshot_ = createSnapshot();
+
+        return activity;
+    }
+
+    /**
+     * Creates an immutable snapshot of the current state of the time card.
+     * 
+     * @return An immutable snapshot of the current state of the time card.
+     */
+    private TimeCardSnapshot createSnapshot()
+    {
+        return new TimeCardSnapshot( activityStore_.createReadOnlyView(), activityStore_.size(), getActiveActivityOrNull(), closedPeriods_ );
+    }
+
+    /**
+     * Fires the {@link ITimeCardListener#onActivitiesAppended} event.
+     * 
+     * @param activities
+     *        A read-only view of the collection of activities that have been
+     *        appended.
+     */
+    private void fireActivitiesAppended(
+        final List<Activity> activities )
+    {
+        if( listener_ != null )
+        {
+            listener_.onActivitiesAppended( this, activities );
+        }
+
+        for( final ITimeCardListener listener : listeners_ )
+        {
+            listener.onActivitiesAppended( this, activities );
+        }
+    }
+
+    /**
+     * Fires the {@link ITimeCardListener#onActivityStarted} event.
+     * 
+     * @param activity
+     *        The activity that has started.
+     */
+    private void fireActivityStarted(
+        final Activity activity )
+    {
+        if( listener_ != null )
+        {
+            listener_.onActivityStarted( this, activity );
+        }
+
+        for( final ITimeCardListener listener : listeners_ )
+        {
+            listener.onActivityStarted( this, activity );
+        }
+    }
+
+    /**
+     * Fires the {@link ITimeCardListener#onActivityStopped} event.
+     * 
+     * @param activity
+     *        The activity that has stopped.
+     */
+    private void fireActivityStopped(
+        final Activity activity )
+    {
+        if( listener_ != null )
+        {
+            listener_.onActivityStopped( this, activity );
+        }
+
+        for( final ITimeCardListener listener : listeners_ )
+        {
+            listener.onActivityStopped( this, activity );
+        }
+    }
+
+    /**
+     * Fires the {@link ITimeCardListener#onPeriodClosed} event.
+     * 
+     * @param closedPeriod
+     *        The period that has been closed.
+     */
+    private void firePeriodClosed(
+        final ClosedPeriod closedPeriod )
+    {
+        if( listener_ != null )
+        {
+            listener_.onPeriodClosed( this, closedPeriod );
+        }
+
+        for( final ITimeCardListener listener : listeners_ )
+        {
+            listener.onPeriodClosed( this, closedPeriod );
+        }
+    }
+
+    /**
+     * Fires the {@link ITimeCardListener#onReset} event.
+     */
+    private void fireReset()
+    {
+        if( listener_ != null )
+        {
+            listener_.onReset( this );
+        }
+
+        for( final ITimeCardListener listener : listeners_ )
+        {
+            listener.onReset( this );
+        }
+    }
+
+    /**
+     * Fires the {@link ITimeCardListener#onRestored} event.
+     * 
+     * @param isUndo
+     *        {@code true} if a change has been undone; {@code false} if a
+     *        change has been redone.
+     */
+    private void fireRestored(
+        final boolean isUndo )
+    {
+        if( listener_ != null )
+        {
+            listener_.onRestored( this, isUndo );
+        }
+
+        for( final ITimeCardListener listener : listeners_ )
+        {
+            listener.onRestored( this, isUndo );
+        }
+    }
+
     /**
      * Gets the active activity.
      * 
@@ -83,13 +552,10 @@ public final class TimeCard
     @Nullable
     private Activity getActiveActivityOrNull()
     {
-        if( !activities_.isEmpty() )
+        final Activity activity = activeActivity_;
+        if( (activity != null) && activity.isActive() )
         {
-            final Activity activity = activities_.get( activities_.size() - 1 );
-            if( activity.isActive() )
-            {
-                return activity;
-            }
+            return activity;
         }
 
         return null;
@@ -99,11 +565,91 @@ public final class TimeCard
      * Gets the collection of activities in chronological order. The active
      * activity, if any, will be the the last entry.
      * 
+     * <p>
+     * Inactive activities are created on demand from the activity store, so
+     * the returned inactive activities are not the same instances that were
+     * reported to the time card listeners. Callers that only need to read the
+     * activities should use {@link #getSnapshot} instead, which does not copy
+     * the collection of activities.
+     * </p>
+     * 
      * @return The collection of activities.
      */
     public List<Activity> getActivities()
     {
-        return new ArrayList<Activity>( activities_ );
+        final int inactiveActivityCount = activityStore_.size();
+        final List<Activity> activities = new ArrayList<Activity>( inactiveActivityCount + 1 );
+        for( int index = 0; index < inactiveActivityCount; ++index )
+        {
+            activities.add( Activity.createInactive( activityStore_, index ) );
+        }
+
+        if( activeActivity_ != null )
+        {
+            activities.add( activeActivity_ );
+        }
+
+        return activities;
+    }
+
+    /**
+     * Gets the collection of closed periods.
+     * 
+     * <p>
+     * The activities of the closed periods are not included in the activities
+     * of the time card.
+     * </p>
+     * 
+     * @return A read-only view of the collection of closed periods in
+     *         chronological order.
+     */
+    public List<ClosedPeriod> getClosedPeriods()
+    {
+        return closedPeriods_;
+    }
+
+    /**
+     * Gets the earliest time at which a new activity may be started.
+     * 
+     * <p>
+     * A caller that takes the start time from a clock that may move backwards,
+     * such as the wall clock, should start the activity no earlier than this
+     * time.
+     * </p>
+     * 
+     * @return The time at which the active activity started if the time card
+     *         is active; otherwise, the time at which the previous activity
+     *         stopped, or {@link Long#MIN_VALUE} if there is no previous
+     *         activity.
+     */
+    public long getEarliestStartTimeInMilliseconds()
+    {
+        final Activity activeActivity = getActiveActivityOrNull();
+        if( activeActivity != null )
+        {
+            return activeActivity.getStartTimeInMilliseconds();
+        }
+
+        final int activityCount = activityStore_.size();
+        return (activityCount > 0) ? activityStore_.getStopTime( activityCount - 1 ) : Long.MIN_VALUE;
+    }
+
+    /**
+     * Gets an immutable snapshot of the activities of the time card.
+     * 
+     * <p>
+     * The snapshot is unaffected by later changes to the time card. Unlike the
+     * other methods of the time card, this method may be called from any
+     * thread; it returns the snapshot most recently published by the writer
+     * without locking or copying.
+     * </p>
+     * 
+     * @return An immutable snapshot of the activities of the time card.
+     */
+    @SuppressWarnings( "null" )
+    public TimeCardSnapshot getSnapshot()
+    {
+        return snapshot_;
     }
 
     /**
@@ -116,16 +662,148 @@ public final class TimeCard
         return getActiveActivityOrNull() != null;
     }
 
+    /**
+     * Indicates the time card is switching activities.
+     * 
+     * <p>
+     * This is only the case while the
+     * {@link ITimeCardListener#onActivityStopped} event is fired for an
+     * activity that was stopped because another activity is being started.
+     * The {@link ITimeCardListener#onActivityStarted} event for the new
+     * activity follows, and the switch is undone as a single change.
+     * </p>
+     * 
+     * @return {@code true} if the time card is switching activities;
+     *         otherwise {@code false}.
+     */
+    public boolean isSwitchingActivities()
+    {
+        return isSwitchingActivities_;
+    }
+
+    /**
+     * Records the specified version of the time card so that the change that
+     * replaced it may be undone, and discards the versions that may be
+     * restored by redo.
+     * 
+     * @param version
+     *        The version of the time card before the change.
+     */
+    private void recordUndoVersion(
+        final TimeCardSnapshot version )
+    {
+        undoVersions_.addFirst( version );
+        if( undoVersions_.size() > MAXIMUM_UNDO_COUNT )
+        {
+            undoVersions_.removeLast();
+        }
+
+        redoVersions_.clear();
+    }
+
+    /**
+     * Redoes the most recently undone change to the time card.
+     * 
+     * @throws java.lang.IllegalStateException
+     *         If there is no change to redo.
+     */
+    public void redo()
+    {
+        if( redoVersions_.isEmpty() )
+        {
+            throw new IllegalStateException( "no change to redo" ); //$NON-NLS-1$
+        }
+
+        undoVersions_.addFirst( snapshot_ );
+        restore( NullAnalysis.nonNull( redoVersions_.removeFirst() ), false );
+    }
+
+    /**
+     * Removes a time card listener that was previously added by
+     * {@link #addTimeCardListener}.
+     * 
+     * @param listener
+     *        The time card listener.
+     */
+    public void removeTimeCardListener(
+        final ITimeCardListener listener )
+    {
+        listeners_.remove( listener );
+    }
+
     /**
      * Resets the time card.
+     * 
+     * <p>
+     * All activities and closed periods are removed from the time card.
+     * </p>
      */
     public void reset()
     {
-        activities_.clear();
+        final TimeCardSnapshot previousSnapshot = snapshot_;
+        setActiveActivity( null );
+        activityStore_.truncate( 0 );
+        closedPeriods_ = Collections.emptyList();
 
-        if( listener_ != null )
+        snapshot_ = createSnapshot();
+        recordUndoVersion( previousSnapshot );
+
+        fireReset();
+    }
+
+    /**
+     * Restores the specified version of the time card.
+     * 
+     * <p>
+     * The activity storage of the version is shared rather than copied; the
+     * storage copies only what it must when activities are added afterwards.
+     * </p>
+     * 
+     * @param version
+     *        The version of the time card to be restored.
+     * @param isUndo
+     *        {@code true} if a change is being undone; {@code false} if a
+     *        change is being redone.
+     */
+    private void restore(
+        final TimeCardSnapshot version,
+        final boolean isUndo )
+    {
+        setActiveActivity( version.createActiveActivity() );
+        activityStore_ = version.getActivityStore().createWritableCopy();
+        closedPeriods_ = version.getClosedPeriods();
+
+        snapshot_ = version;
+
+        fireRestored( isUndo );
+    }
+
+    /**
+     * Sets the active activity.
+     * 
+     * <p>
+     * The time card is attached to the new active activity so that stopping
+     * it directly through {@link Activity#stop(long)} moves it to the activity
+     * store, and it is detached from the previous active activity.
+     * </p>
+     * 
+     * @param activity
+     *        The active activity or {@code null} if no activity is active.
+     */
+    private void setActiveActivity(
+        @Nullable
+        final Activity activity )
+    {
+        final Activity previousActivity = activeActivity_;
+        if( previousActivity != null )
         {
-            listener_.onReset( this );
+            previousActivity.setTimeCard( null );
+        }
+
+        activeActivity_ = activity;
+        if( activity != null )
+        {
+            activity.setTimeCard( this );
         }
     }
 
@@ -158,24 +836,83 @@ public final class TimeCard
      * 
      * @throws java.lang.IllegalArgumentException
      *         If an activity is currently active and {@code startTime} is less
-     *         than the time at which the active activity started.
+     *         than the time at which the active activity started, or if no
+     *         activity is currently active and {@code startTime} is less than
+     *         the time at which the previous activity stopped.
      */
     public void startActivity(
         final ChargeNumber chargeNumber,
         final Date startTime )
     {
+        startActivity( chargeNumber, startTime.getTime() );
+    }
+
+    /**
+     * Starts a new activity.
+     * 
+     * <p>
+     * If an activity is currently active, it will be stopped, and a new
+     * activity will be started. The
+     * {@link ITimeCardListener#onActivityStopped} event for the previously
+     * active activity is fired while the time card is inactive, before the new
+     * activity is started; {@link #isSwitchingActivities} distinguishes it
+     * from an activity that was simply stopped.
+     * </p>
+     * 
+     * <p>
+     * Activities never overlap, so the start and stop times of the activities
+     * in the time card are both sorted and overlap queries may be answered by
+     * binary search (see {@link TimeCardSnapshot#getActivitiesOverlapping}).
+     * A new activity must therefore not start before the previous activity
+     * stopped; {@link #getEarliestStartTimeInMilliseconds} gets the earliest
+     * acceptable start time.
+     * </p>
+     * 
+     * @param chargeNumber
+     *        The charge number of the job to be billed.
+     * @param startTime
+     *        The time at which the new activity started in milliseconds.
+     * 
+     * @throws java.lang.IllegalArgumentException
+     *         If an activity is currently active and {@code startTime} is less
+     *         than the time at which the active activity started, or if no
+     *         activity is currently active and {@code startTime} is less than
+     *         the time at which the previous activity stopped.
+     */
+    public void startActivity(
+        final ChargeNumber chargeNumber,
+        final long startTime )
+    {
+        final TimeCardSnapshot previousSnapshot = snapshot_;
         if( isActive() )
         {
-            stopActiveActivity( startTime );
+            final Activity stoppedActivity = completeActiveActivity( startTime );
+            recordUndoVersion( previousSnapshot );
+
+            isSwitchingActivities_ = true;
+            try
+            {
+                fireActivityStopped( stoppedActivity );
+            }
+            finally
+            {
+                isSwitchingActivities_ = false;
+            }
+        }
+        else if( startTime < getEarliestStartTimeInMilliseconds() )
+        {
+            throw new IllegalArgumentException( "start time precedes stop time of previous activity" ); //$NON-NLS-1$
+        }
+        else
+        {
+            recordUndoVersion( previousSnapshot );
         }
 
         final Activity activity = Activity.start( chargeNumber, startTime );
-        activities_.add( activity );
+        setActiveActivity( activity );
+        snapshot_ = createSnapshot();
 
-        if( listener_ != null )
-        {
-            listener_.onActivityStarted( this, activity );
-        }
+        fireActivityStarted( activity );
     }
 
     /**
@@ -193,12 +930,51 @@ public final class TimeCard
     public void stopActiveActivity(
         final Date stopTime )
     {
-        final Activity activity = getActiveActivity();
-        activity.stop( stopTime );
+        stopActiveActivity( stopTime.getTime() );
+    }
 
-        if( listener_ != null )
+    /**
+     * Stops the active activity.
+     * 
+     * @param stopTime
+     *        The time at which the active activity stopped in milliseconds.
+     * 
+     * @throws java.lang.IllegalArgumentException
+     *         If {@code stopTime} is less than the time at which the active
+     *         activity started.
+     * @throws java.lang.IllegalStateException
+     *         If the time card is inactive.
+     */
+    public void stopActiveActivity(
+        final long stopTime )
+    {
+        final TimeCardSnapshot previousSnapshot = snapshot_;
+        final Activity activity = completeActiveActivity( stopTime );
+        recordUndoVersion( previousSnapshot );
+
+        fireActivityStopped( activity );
+    }
+
+    /**
+     * Undoes the most recent change to the time card.
+     * 
+     * <p>
+     * Starting, stopping, and appending activities, closing periods, and
+     * resetting the time card may be undone. Starting an activity while
+     * another activity is active is undone as a single change.
+     * </p>
+     * 
+     * @throws java.lang.IllegalStateException
+     *         If there is no change to undo.
+     */
+    public void undo()
+    {
+        if( undoVersions_.isEmpty() )
         {
-            listener_.onActivityStopped( this, activity );
+            throw new IllegalStateException( "no change to undo" ); //$NON-NLS-1$
         }
+
+        redoVersions_.addFirst( snapshot_ );
+        restore( NullAnalysis.nonNull( undoVersions_.removeFirst() ), true );
     }
 }
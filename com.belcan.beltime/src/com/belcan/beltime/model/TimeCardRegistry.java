@@ -0,0 +1,420 @@
+/*
+ * TimeCardRegistry.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Mar 3, 2014 at 9:26:14 AM.
+ */
+
+package com.belcan.beltime.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A registry of time cards keyed by employee identifier.
+ * 
+ * <p>
+ * The registry may be used concurrently from any number of threads. Time cards
+ * are stored in a concurrent map, so reading the snapshot of a time card never
+ * blocks. Because each time card supports only a single writer, changes to a
+ * time card are serialized by one of a fixed number of striped locks chosen by
+ * the employee identifier; changes to time cards guarded by different stripes
+ * proceed in parallel.
+ * </p>
+ * 
+ * <p>
+ * The memory used by the activities of each employee is accounted for
+ * separately and is limited by the same quota for every employee, so that a
+ * single very large history cannot exhaust the memory available to the other
+ * employees. An activity is charged against the quota as soon as it is
+ * started. The quota covers the activities of the time card, including the
+ * active activity, the activities of its closed periods, and the charge
+ * numbers they bill. The registry does not offer undo, so the history of each
+ * time card is discarded after every change instead of being retained
+ * outside the quota.
+ * </p>
+ */
+public final class TimeCardRegistry
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /** The snapshot of an employee who does not have a time card. */
+    private static final TimeCardSnapshot EMPTY_SNAPSHOT = new TimeCardSnapshot( new ActivityStore().createReadOnlyView(), 0, null, Collections.<ClosedPeriod>emptyList() );
+
+    /** The number of striped locks; must be a power of two. */
+    private static final int LOCK_STRIPE_COUNT = 64;
+
+    /** The striped locks that serialize changes to the time cards. */
+    private final Object[] locks_;
+
+    /**
+     * The maximum number of bytes the activities of each employee may use.
+     */
+    private final long memoryQuota_;
+
+    /** The collection of time cards keyed by employee identifier. */
+    private final ConcurrentMap<String, TimeCard> timeCards_;
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code TimeCardRegistry} class.
+     * 
+     * @param memoryQuota
+     *        The maximum number of bytes the activities of each employee may
+     *        use.
+     * 
+     * @throws java.lang.IllegalArgumentException
+     *         If {@code memoryQuota} is not positive.
+     */
+    public TimeCardRegistry(
+        final long memoryQuota )
+    {
+        if( memoryQuota <= 0L )
+        {
+            throw new IllegalArgumentException( "memory quota must be positive" ); //$NON-NLS-1$
+        }
+
+        locks_ = new Object[ LOCK_STRIPE_COUNT ];
+        for( int index = 0; index < LOCK_STRIPE_COUNT; ++index )
+        {
+            locks_[ index ] = new Object();
+        }
+        memoryQuota_ = memoryQuota;
+        timeCards_ = new ConcurrentHashMap<String, TimeCard>();
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /**
+     * Appends a batch of inactive activities to the time card of the specified
+     * employee, creating the time card if necessary.
+     * 
+     * @param employeeId
+     *        The employee identifier.
+     * @param activities
+     *        The collection of inactive activities to be appended in
+     *        chronological order.
+     * 
+     * @throws java.lang.IllegalArgumentException
+     *         If any activity is active, or if any activity starts before the
+     *         time at which the previous activity stopped.
+     * @throws java.lang.IllegalStateException
+     *         If the time card is active or if appending the activities would
+     *         exceed the memory quota of the employee.
+     */
+    public void appendActivities(
+        final String employeeId,
+        final Collection<Activity> activities )
+    {
+        synchronized( getLock( employeeId ) )
+        {
+            final TimeCard timeCard = getOrCreateTimeCard( employeeId );
+            checkMemoryQuota( timeCard, activities.size() );
+            timeCard.appendActivities( activities );
+            timeCard.clearHistory();
+        }
+    }
+
+    /**
+     * Ensures the specified time card may store the specified number of
+     * additional activities without exceeding the memory quota.
+     * 
+     * @param timeCard
+     *        The time card.
+     * @param activityCount
+     *        The number of additional activities.
+     * 
+     * @throws java.lang.IllegalStateException
+     *         If storing the additional activities would exceed the memory
+     *         quota.
+     */
+    private void checkMemoryQuota(
+        final TimeCard timeCard,
+        final int activityCount )
+    {
+        if( getMemoryUsage( timeCard.getSnapshot(), activityCount ) > memoryQuota_ )
+        {
+            throw new IllegalStateException( "memory quota exceeded" ); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Gets the collection of employee identifiers that have a time card.
+     * 
+     * @return The collection of employee identifiers that have a time card.
+     */
+    public Collection<String> getEmployeeIds()
+    {
+        return new ArrayList<String>( timeCards_.keySet() );
+    }
+
+    /**
+     * Gets the striped lock that serializes changes to the time card of the
+     * specified employee.
+     * 
+     * @param employeeId
+     *        The employee identifier.
+     * 
+     * @return The striped lock for the specified employee.
+     */
+    private Object getLock(
+        final String employeeId )
+    {
+        return locks_[ ChargeNumberDictionary.hash( employeeId.hashCode() ) & (LOCK_STRIPE_COUNT - 1) ];
+    }
+
+    /**
+     * Gets the number of bytes used by the activities of the specified
+     * employee.
+     * 
+     * @param employeeId
+     *        The employee identifier.
+     * 
+     * @return The number of bytes used by the activities of the specified
+     *         employee.
+     */
+    public long getMemoryUsage(
+        final String employeeId )
+    {
+        final TimeCard timeCard = timeCards_.get( employeeId );
+        return (timeCard != null) ? getMemoryUsage( timeCard.getSnapshot(), 0 ) : 0L;
+    }
+
+    /**
+     * Gets the number of bytes used by the activities of the specified time
+     * card snapshot once the specified number of activities has been added.
+     * 
+     * <p>
+     * This is the single formula used both to enforce and to report the
+     * memory quota. Activities are charged by the segments that store them,
+     * including the active activity and the activities of closed periods, and
+     * the charge numbers they bill are charged by the dictionary that stores
+     * them.
+     * </p>
+     * 
+     * @param snapshot
+     *        The time card snapshot.
+     * @param activityCount
+     *        The number of additional activities.
+     * 
+     * @return The number of bytes used by the activities of the snapshot and
+     *         the additional activities.
+     */
+    private static long getMemoryUsage(
+        final TimeCardSnapshot snapshot,
+        final int activityCount )
+    {
+        final long size = (long)snapshot.getInactiveActivityCount() + (snapshot.isActive() ? 1L : 0L) + activityCount;
+        if( size > Integer.MAX_VALUE )
+        {
+            return Long.MAX_VALUE;
+        }
+
+        long memoryUsage = ActivityStore.getMemoryUsage( (int)size );
+        for( final ClosedPeriod closedPeriod : snapshot.getClosedPeriods() )
+        {
+            memoryUsage += ActivityStore.getMemoryUsage( closedPeriod.getActivityRecords().size() );
+        }
+
+        final IActivityStorage activityStore = snapshot.getActivityStore();
+        if( activityStore instanceof ActivityStore )
+        {
+            memoryUsage += ((ActivityStore)activityStore).getChargeNumberMemoryUsage();
+        }
+
+        return memoryUsage;
+    }
+
+    /**
+     * Gets the time card of the specified employee, creating it if necessary.
+     * 
+     * <p>
+     * The caller must hold the lock of the employee.
+     * </p>
+     * 
+     * @param employeeId
+     *        The employee identifier.
+     * 
+     * @return The time card of the specified employee.
+     */
+    private TimeCard getOrCreateTimeCard(
+        final String employeeId )
+    {
+        final TimeCard timeCard = timeCards_.get( employeeId );
+        if( timeCard != null )
+        {
+            return timeCard;
+        }
+
+        final TimeCard newTimeCard = new TimeCard();
+        timeCards_.put( employeeId, newTimeCard );
+        return newTimeCard;
+    }
+
+    /**
+     * Gets a snapshot of the time card of the specified employee.
+     * 
+     * <p>
+     * This method never blocks. If the employee does not have a time card, an
+     * empty snapshot is returned.
+     * </p>
+     * 
+     * @param employeeId
+     *        The employee identifier.
+     * 
+     * @return A snapshot of the time card of the specified employee.
+     */
+    public TimeCardSnapshot getSnapshot(
+        final String employeeId )
+    {
+        final TimeCard timeCard = timeCards_.get( employeeId );
+        return (timeCard != null) ? timeCard.getSnapshot() : EMPTY_SNAPSHOT;
+    }
+
+    /**
+     * Gets a snapshot of the time card of each employee.
+     * 
+     * <p>
+     * This method never blocks. Each snapshot is consistent, but snapshots of
+     * different employees may be taken at slightly different times.
+     * </p>
+     * 
+     * @return A snapshot of the time card of each employee keyed by employee
+     *         identifier.
+     */
+    public Map<String, TimeCardSnapshot> getSnapshots()
+    {
+        final Map<String, TimeCardSnapshot> snapshots = new HashMap<String, TimeCardSnapshot>();
+        for( final Map.Entry<String, TimeCard> entry : timeCards_.entrySet() )
+        {
+            snapshots.put( entry.getKey(), entry.getValue().getSnapshot() );
+        }
+        return snapshots;
+    }
+
+    /**
+     * Gets the number of bytes used by the activities of all employees.
+     * 
+     * @return The number of bytes used by the activities of all employees.
+     */
+    public long getTotalMemoryUsage()
+    {
+        long memoryUsage = 0L;
+        for( final TimeCard timeCard : timeCards_.values() )
+        {
+            memoryUsage += getMemoryUsage( timeCard.getSnapshot(), 0 );
+        }
+        return memoryUsage;
+    }
+
+    /**
+     * Removes the time card of the specified employee.
+     * 
+     * @param employeeId
+     *        The employee identifier.
+     */
+    public void removeTimeCard(
+        final String employeeId )
+    {
+        synchronized( getLock( employeeId ) )
+        {
+            timeCards_.remove( employeeId );
+        }
+    }
+
+    /**
+     * Starts a new activity for the specified employee, creating the time card
+     * if necessary.
+     * 
+     * <p>
+     * If an activity is currently active, it will be stopped, and a new
+     * activity will be started.
+     * </p>
+     * 
+     * @param employeeId
+     *        The employee identifier.
+     * @param chargeNumber
+     *        The charge number of the job to be billed.
+     * @param startTime
+     *        The time at which the new activity started in milliseconds.
+     * 
+     * @throws java.lang.IllegalArgumentException
+     *         If an activity is currently active and {@code startTime} is less
+     *         than the time at which the active activity started, or if no
+     *         activity is currently active and {@code startTime} is less than
+     *         the time at which the previous activity stopped.
+     * @throws java.lang.IllegalStateException
+     *         If starting the activity would exceed the memory quota of the
+     *         employee.
+     */
+    public void startActivity(
+        final String employeeId,
+        final ChargeNumber chargeNumber,
+        final long startTime )
+    {
+        synchronized( getLock( employeeId ) )
+        {
+            final TimeCard timeCard = getOrCreateTimeCard( employeeId );
+            checkMemoryQuota( timeCard, 1 );
+            timeCard.startActivity( chargeNumber, startTime );
+            timeCard.clearHistory();
+        }
+    }
+
+    /**
+     * Stops the active activity of the specified employee.
+     * 
+     * <p>
+     * Stopping an activity never exceeds the memory quota, because the
+     * activity was charged against the quota when it was started.
+     * </p>
+     * 
+     * @param employeeId
+     *        The employee identifier.
+     * @param stopTime
+     *        The time at which the active activity stopped in milliseconds.
+     * 
+     * @throws java.lang.IllegalArgumentException
+     *         If {@code stopTime} is less than the time at which the active
+     *         activity started.
+     * @throws java.lang.IllegalStateException
+     *         If the employee does not have an active activity.
+     */
+    public void stopActiveActivity(
+        final String employeeId,
+        final long stopTime )
+    {
+        synchronized( getLock( employeeId ) )
+        {
+            final TimeCard timeCard = timeCards_.get( employeeId );
+            if( timeCard == null )
+            {
+                throw new IllegalStateException( "no active activity" ); //$NON-NLS-1$
+            }
+
+            timeCard.stopActiveActivity( stopTime );
+            timeCard.clearHistory();
+        }
+    }
+}
@@ -0,0 +1,484 @@
+/*
+ * TimeCardSnapshot.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Mar 2, 2014 at 4:03:18 PM.
+ */
+
+package com.belcan.beltime.model;
+
+import java.util.AbstractList;
+import java.util.Date;
+import java.util.List;
+import com.belcan.beltime.util.DateRange;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * An immutable snapshot of the activities of a time card.
+ * 
+ * <p>
+ * A snapshot is created in constant time and does not copy the activities of
+ * the time card. It shares a read-only view of the append-only activity store
+ * of the time card, which only records how many activities the store contained
+ * when the snapshot was taken, so it is unaffected by activities started,
+ * stopped, or removed from the time card afterwards. Snapshots are immutable
+ * and may be used from any thread.
+ * </p>
+ * 
+ * <p>
+ * The activities that overlap a given time or date range are found by binary
+ * search, so such queries cost {@code O(log n + k)}, where {@code n} is the
+ * number of activities in the snapshot and {@code k} is the number of
+ * overlapping activities.
+ * </p>
+ */
+public final class TimeCardSnapshot
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /**
+     * The charge number of the active activity or {@code null} if no activity
+     * was active.
+     */
+    private final ChargeNumber activeChargeNumber_;
+
+    /**
+     * The time at which the active activity started in milliseconds,
+     * inclusive. Only meaningful if an activity was active.
+     */
+    private final long activeStartTime_;
+
+    /** The store of inactive activities in chronological order. */
+    private final IActivityStorage activityStore_;
+
+    /**
+     * The immutable collection of periods closed in the time card in
+     * chronological order.
+     */
+    private final List<ClosedPeriod> closedPeriods_;
+
+    /**
+     * The number of activities at the beginning of the store that belong to
+     * the snapshot.
+     */
+    private final int inactiveActivityCount_;
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code TimeCardSnapshot} class.
+     * 
+     * @param activityStore
+     *        The store of inactive activities in chronological order.
+     * @param inactiveActivityCount
+     *        The number of activities at the beginning of the store in the
+     *        snapshot.
+     * @param activeActivity
+     *        The active activity or {@code null} if no activity is active.
+     * @param closedPeriods
+     *        The immutable collection of periods closed in the time card in
+     *        chronological order.
+     */
+    TimeCardSnapshot(
+        final IActivityStorage activityStore,
+        final int inactiveActivityCount,
+        @Nullable
+        final Activity activeActivity,
+        final List<ClosedPeriod> closedPeriods )
+    {
+        assert (inactiveActivityCount >= 0) && (inactiveActivityCount <= activityStore.size());
+        assert (activeActivity == null) || activeActivity.isActive();
+
+        activeChargeNumber_ = (activeActivity != null) ? activeActivity.getChargeNumber() : null;
+        activeStartTime_ = (activeActivity != null) ? activeActivity.getStartTimeInMilliseconds() : 0L;
+        activityStore_ = activityStore;
+        closedPeriods_ = closedPeriods;
+        inactiveActivityCount_ = inactiveActivityCount;
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /**
+     * Creates a new instance of the activity that was active when the snapshot
+     * was taken.
+     * 
+     * @return A new active activity or {@code null} if no activity was active.
+     */
+    @Nullable
+    Activity createActiveActivity()
+    {
+        final ChargeNumber activeChargeNumber = activeChargeNumber_;
+        return (activeChargeNumber != null) ? Activity.start( activeChargeNumber, activeStartTime_ ) : null;
+    }
+
+    /**
+     * Gets a read-only view of the collection of activities in chronological
+     * order. The active activity, if any, will be the last entry.
+     * 
+     * <p>
+     * The view is created in constant time. Each activity is created on demand
+     * when it is retrieved from the view, so retrieving the same entry twice
+     * returns two distinct but equivalent instances, and stopping the active
+     * activity returned by the view has no effect on the time card.
+     * </p>
+     * 
+     * @return A read-only view of the collection of activities.
+     */
+    public List<Activity> getActivities()
+    {
+        return new ActivityList( 0, inactiveActivityCount_, isActive() );
+    }
+
+    /**
+     * Gets a read-only view of the collection of activities that were in
+     * progress at the specified time in chronological order.
+     * 
+     * <p>
+     * An activity is in progress from its start time, inclusive, until its
+     * stop time, exclusive. The active activity is considered to be in
+     * progress at all times on or after its start time. Because activities
+     * never overlap, the returned collection contains at most one activity.
+     * </p>
+     * 
+     * @param time
+     *        The time.
+     * 
+     * @return A read-only view of the collection of activities that were in
+     *         progress at the specified time.
+     */
+    public List<Activity> getActivitiesOverlapping(
+        final Date time )
+    {
+        return getActivitiesOverlapping( time.getTime() );
+    }
+
+    /**
+     * Gets a read-only view of the collection of activities that were in
+     * progress at the specified time in chronological order.
+     * 
+     * @param time
+     *        The time in milliseconds.
+     * 
+     * @return A read-only view of the collection of activities that were in
+     *         progress at the specified time.
+     */
+    public List<Activity> getActivitiesOverlapping(
+        final long time )
+    {
+        return getActivitiesOverlapping( time, time );
+    }
+
+    /**
+     * Gets a read-only view of the collection of activities that overlap the
+     * specified date range in chronological order.
+     * 
+     * <p>
+     * An activity overlaps the date range if it starts at or before the ending
+     * date of the date range and stops after the beginning date of the date
+     * range. The active activity overlaps the date range if it starts at or
+     * before the ending date of the date range. Activities are not clipped to
+     * the date range.
+     * </p>
+     * 
+     * @param dateRange
+     *        The date range.
+     * 
+     * @return A read-only view of the collection of activities that overlap
+     *         the specified date range.
+     */
+    public List<Activity> getActivitiesOverlapping(
+        final DateRange dateRange )
+    {
+        return getActivitiesOverlapping( dateRange.getBeginTimeInMilliseconds(), dateRange.getEndTimeInMilliseconds() );
+    }
+
+    /**
+     * Gets a read-only view of the collection of activities that overlap the
+     * specified time range in chronological order.
+     * 
+     * @param beginTime
+     *        The beginning of the time range in milliseconds, inclusive.
+     * @param endTime
+     *        The end of the time range in milliseconds, inclusive.
+     * 
+     * @return A read-only view of the collection of activities that overlap
+     *         the specified time range.
+     */
+    private List<Activity> getActivitiesOverlapping(
+        final long beginTime,
+        final long endTime )
+    {
+        final int fromIndex = (beginTime == Long.MAX_VALUE) ? inactiveActivityCount_ : activityStore_.getFirstIndexStoppingAtOrAfter( beginTime + 1L, inactiveActivityCount_ );
+        final int toIndex = Math.max( fromIndex, activityStore_.getFirstIndexStartingAfter( endTime, inactiveActivityCount_ ) );
+        return new ActivityList( fromIndex, toIndex, isActive() && (activeStartTime_ <= endTime) );
+    }
+
+    /**
+     * Gets the records of the inactive activities in the snapshot in
+     * chronological order.
+     * 
+     * <p>
+     * The records are read directly from the activity store, so scanning them
+     * creates no activities.
+     * </p>
+     * 
+     * @return The records of the inactive activities in the snapshot.
+     */
+    public IActivityRecords getActivityRecords()
+    {
+        return new ActivityRecords();
+    }
+
+    /**
+     * Gets the store of inactive activities in chronological order.
+     * 
+     * <p>
+     * Only the first {@link #getInactiveActivityCount} activities in the store
+     * belong to the snapshot.
+     * </p>
+     * 
+     * @return The store of inactive activities.
+     */
+    IActivityStorage getActivityStore()
+    {
+        return activityStore_;
+    }
+
+    /**
+     * Gets the collection of periods closed in the time card when the snapshot
+     * was taken.
+     * 
+     * <p>
+     * The activities of the closed periods are not included in the activities
+     * of the snapshot.
+     * </p>
+     * 
+     * @return A read-only view of the collection of closed periods in
+     *         chronological order.
+     */
+    public List<ClosedPeriod> getClosedPeriods()
+    {
+        return closedPeriods_;
+    }
+
+    /**
+     * Gets the number of inactive activities in the snapshot.
+     * 
+     * @return The number of inactive activities in the snapshot.
+     */
+    int getInactiveActivityCount()
+    {
+        return inactiveActivityCount_;
+    }
+
+    /**
+     * Indicates an activity was active when the snapshot was taken.
+     * 
+     * @return {@code true} if an activity was active; otherwise {@code false}.
+     */
+    public boolean isActive()
+    {
+        return activeChargeNumber_ != null;
+    }
+
+
+    // ======================================================================
+    // Nested Types
+    // ======================================================================
+
+    /**
+     * A read-only view of a contiguous run of the activities in the snapshot.
+     */
+    @SuppressWarnings( "synthetic-access" )
+    private final class ActivityList
+        extends AbstractList<Activity>
+    {
+        // ==================================================================
+        // Fields
+        // ==================================================================
+
+        /**
+         * The index in the activity store of the first inactive activity in
+         * the view, inclusive.
+         */
+        private final int fromIndex_;
+
+        /** Indicates the view ends with the active activity. */
+        private final boolean includesActiveActivity_;
+
+        /**
+         * The index in the activity store of the last inactive activity in the
+         * view, exclusive.
+         */
+        private final int toIndex_;
+
+
+        // ==================================================================
+        // Constructors
+        // ==================================================================
+
+        /**
+         * Initializes a new instance of the {@code ActivityList} class.
+         * 
+         * @param fromIndex
+         *        The index in the activity store of the first inactive
+         *        activity in the view, inclusive.
+         * @param toIndex
+         *        The index in the activity store of the last inactive activity
+         *        in the view, exclusive.
+         * @param includesActiveActivity
+         *        {@code true} if the view ends with the active activity;
+         *        otherwise {@code false}.
+         */
+        ActivityList(
+            final int fromIndex,
+            final int toIndex,
+            final boolean includesActiveActivity )
+        {
+            assert (fromIndex >= 0) && (fromIndex <= toIndex) && (toIndex <= inactiveActivityCount_);
+            assert !includesActiveActivity || isActive();
+
+            fromIndex_ = fromIndex;
+            includesActiveActivity_ = includesActiveActivity;
+            toIndex_ = toIndex;
+        }
+
+
+        // ==================================================================
+        // Methods
+        // ==================================================================
+
+        /*
+         * @see java.util.AbstractList#get(int)
+         */
+        @Override
+        public Activity get(
+            final int index )
+        {
+            if( (index < 0) || (index >= size()) )
+            {
+                throw new IndexOutOfBoundsException( "index out of range: " + index ); //$NON-NLS-1$
+            }
+
+            final int inactiveActivityCount = toIndex_ - fromIndex_;
+            if( index == inactiveActivityCount )
+            {
+                final Activity activeActivity = createActiveActivity();
+                assert activeActivity != null;
+                return activeActivity;
+            }
+
+            return Activity.createInactive( activityStore_, fromIndex_ + index );
+        }
+
+        /*
+         * @see java.util.AbstractCollection#size()
+         */
+        @Override
+        public int size()
+        {
+            final int inactiveActivityCount = toIndex_ - fromIndex_;
+            return includesActiveActivity_ ? inactiveActivityCount + 1 : inactiveActivityCount;
+        }
+    }
+
+    /**
+     * The records of the inactive activities in the snapshot.
+     */
+    @SuppressWarnings( "synthetic-access" )
+    private final class ActivityRecords
+        implements IActivityRecords
+    {
+        // ==================================================================
+        // Constructors
+        // ==================================================================
+
+        /**
+         * Initializes a new instance of the {@code ActivityRecords} class.
+         */
+        ActivityRecords()
+        {
+        }
+
+
+        // ==================================================================
+        // Methods
+        // ==================================================================
+
+        /**
+         * Ensures the specified index is the index of an inactive activity in
+         * the snapshot.
+         * 
+         * @param index
+         *        The index of the activity.
+         * 
+         * @throws java.lang.IndexOutOfBoundsException
+         *         If {@code index} is out of range.
+         */
+        private void checkIndex(
+            final int index )
+        {
+            if( (index < 0) || (index >= inactiveActivityCount_) )
+            {
+                throw new IndexOutOfBoundsException( "index out of range: " + index ); //$NON-NLS-1$
+            }
+        }
+
+        /*
+         * @see com.belcan.beltime.model.IActivityRecords#getChargeNumber(int)
+         */
+        @Override
+        public ChargeNumber getChargeNumber(
+            final int index )
+        {
+            checkIndex( index );
+            return activityStore_.getChargeNumber( index );
+        }
+
+        /*
+         * @see com.belcan.beltime.model.IActivityRecords#getStartTime(int)
+         */
+        @Override
+        public long getStartTime(
+            final int index )
+        {
+            checkIndex( index );
+            return activityStore_.getStartTime( index );
+        }
+
+        /*
+         * @see com.belcan.beltime.model.IActivityRecords#getStopTime(int)
+         */
+        @Override
+        public long getStopTime(
+            final int index )
+        {
+            checkIndex( index );
+            return activityStore_.getStopTime( index );
+        }
+
+        /*
+         * @see com.belcan.beltime.model.IActivityRecords#size()
+         */
+        @Override
+        public int size()
+        {
+            return inactiveActivityCount_;
+        }
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * ActivityFile.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Mar 5, 2014 at 9:36:48 AM.
+ */
+
+package com.belcan.beltime.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import com.belcan.beltime.model.ChargeNumber;
+import com.belcan.beltime.model.IActivityRecords;
+import com.belcan.beltime.util.NullAnalysis;
+
+/**
+ * A file of fixed-width inactive activity records that is read through a
+ * memory mapping.
+ * 
+ * <p>
+ * Each record holds the start time and stop time of an activity in
+ * milliseconds followed by the identifier of its charge number. The charge
+ * numbers themselves are held in a small sidecar file, which is read when the
+ * activity file is opened. Opening the activity file only maps it, so it takes
+ * constant time no matter how many activities the file holds; the operating
+ * system pages the records in as they are read. Records are read field by
+ * field straight from the mapping, so scanning the file, for example with
+ * {@link com.belcan.beltime.model.BillingReports#daily(IActivityRecords)},
+ * creates no activities.
+ * </p>
+ * 
+ * <p>
+ * An activity file is immutable once opened and may be read from any thread.
+ * </p>
+ */
+public final class ActivityFile
+    implements IActivityRecords
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /** The size of the buffer used to write the files in bytes. */
+    private static final int BUFFER_SIZE = 65536;
+
+    /** The suffix of the name of the charge number sidecar file. */
+    private static final String CHARGE_NUMBERS_FILE_SUFFIX = ".chargenumbers"; //$NON-NLS-1$
+
+    /** The offset of the charge number identifier within a record. */
+    static final int CHARGE_NUMBER_ID_OFFSET = 8 + 8;
+
+    /** The size of a record in bytes. */
+    static final int RECORD_SIZE = 8 + 8 + 4;
+
+    /** The offset of the stop time within a record. */
+    static final int STOP_TIME_OFFSET = 8;
+
+    /** The charge numbers indexed by identifier. */
+    private final ChargeNumber[] chargeNumbers_;
+
+    /** The mapped records. */
+    private final ByteBuffer records_;
+
+    /** The number of records. */
+    private final int size_;
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code ActivityFile} class.
+     * 
+     * @param chargeNumbers
+     *        The charge numbers indexed by identifier.
+     * @param records
+     *        The mapped records.
+     */
+    private ActivityFile(
+        final ChargeNumber[] chargeNumbers,
+        final ByteBuffer records )
+    {
+        chargeNumbers_ = chargeNumbers;
+        records_ = records;
+        size_ = records.capacity() / RECORD_SIZE;
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /*
+     * @see com.belcan.beltime.model.IActivityRecords#getChargeNumber(int)
+     */
+    @Override
+    public ChargeNumber getChargeNumber(
+        final int index )
+    {
+        final int chargeNumberId = records_.getInt( getPosition( index ) + CHARGE_NUMBER_ID_OFFSET );
+        if( (chargeNumberId < 0) || (chargeNumberId >= chargeNumbers_.length) )
+        {
+            throw new IllegalStateException( "unknown charge number identifier: " + chargeNumberId ); //$NON-NLS-1$
+        }
+
+        return NullAnalysis.nonNull( chargeNumbers_[ chargeNumberId ] );
+    }
+
+    /**
+     * Gets the charge number sidecar file of the specified activity file.
+     * 
+     * @param file
+     *        The activity file.
+     * 
+     * @return The charge number sidecar file of the specified activity file.
+     */
+    static File getChargeNumbersFile(
+        final File file )
+    {
+        return new File( file.getPath() + CHARGE_NUMBERS_FILE_SUFFIX );
+    }
+
+    /**
+     * Gets the position of the record at the specified index.
+     * 
+     * @param index
+     *        The index of the record.
+     * 
+     * @return The position of the record at the specified index.
+     * 
+     * @throws java.lang.IndexOutOfBoundsException
+     *         If {@code index} is out of range.
+     */
+    private int getPosition(
+        final int index )
+    {
+        if( (index < 0) || (index >= size_) )
+        {
+            throw new IndexOutOfBoundsException( "index out of range: " + index ); //$NON-NLS-1$
+        }
+
+        return index * RECORD_SIZE;
+    }
+
+    /*
+     * @see com.belcan.beltime.model.IActivityRecords#getStartTime(int)
+     */
+    @Override
+    public long getStartTime(
+        final int index )
+    {
+        return records_.getLong( getPosition( index ) );
+    }
+
+    /*
+     * @see com.belcan.beltime.model.IActivityRecords#getStopTime(int)
+     */
+    @Override
+    public long getStopTime(
+        final int index )
+    {
+        return records_.getLong( getPosition( index ) + STOP_TIME_OFFSET );
+    }
+
+    /**
+     * Opens the specified activity file.
+     * 
+     * @param file
+     *        The activity file.
+     * 
+     * @return The opened activity file.
+     * 
+     * @throws java.io.IOException
+     *         If an I/O error occurs or the file is not a valid activity file.
+     */
+    public static ActivityFile open(
+        final File file )
+        throws IOException
+    {
+        final ChargeNumber[] chargeNumbers = readChargeNumbers( getChargeNumbersFile( file ) );
+
+        final RandomAccessFile randomAccessFile = new RandomAccessFile( file, "r" ); //$NON-NLS-1$
+        try
+        {
+            final long length = randomAccessFile.length();
+            if( ((length % RECORD_SIZE) != 0L) || (length > Integer.MAX_VALUE) )
+            {
+                throw new IOException( "invalid activity file length: " + length ); //$NON-NLS-1$
+            }
+
+            // the mapping remains valid after the channel is closed
+            final ByteBuffer records = randomAccessFile.getChannel().map( FileChannel.MapMode.READ_ONLY, 0L, length );
+            return new ActivityFile( chargeNumbers, NullAnalysis.nonNull( records ) );
+        }
+        finally
+        {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Reads the specified charge number sidecar file.
+     * 
+     * @param file
+     *        The charge number sidecar file.
+     * 
+     * @return The charge numbers indexed by identifier.
+     * 
+     * @throws java.io.IOException
+     *         If an I/O error occurs.
+     */
+    private static ChargeNumber[] readChargeNumbers(
+        final File file )
+        throws IOException
+    {
+        final DataInputStream input = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+        try
+        {
+            final int chargeNumberCount = input.readInt();
+            if( chargeNumberCount < 0 )
+            {
+                throw new IOException( "invalid charge number count: " + chargeNumberCount ); //$NON-NLS-1$
+            }
+
+            final List<ChargeNumber> chargeNumbers = new ArrayList<ChargeNumber>();
+            for( int index = 0; index < chargeNumberCount; ++index )
+            {
+                chargeNumbers.add( ChargeNumber.fromString( NullAnalysis.nonNull( input.readUTF() ) ) );
+            }
+            return NullAnalysis.nonNull( chargeNumbers.toArray( new ChargeNumber[ chargeNumberCount ] ) );
+        }
+        finally
+        {
+            input.close();
+        }
+    }
+
+    /*
+     * @see com.belcan.beltime.model.IActivityRecords#size()
+     */
+    @Override
+    public int size()
+    {
+        return size_;
+    }
+
+    /**
+     * Writes the specified activity records to the specified activity file,
+     * replacing its previous content.
+     * 
+     * <p>
+     * The records are read field by field, so writing the activities of a
+     * time card, which are available from
+     * {@link com.belcan.beltime.model.TimeCardSnapshot#getActivityRecords},
+     * creates no activities.
+     * </p>
+     * 
+     * @param file
+     *        The activity file.
+     * @param activityRecords
+     *        The activity records to be written in chronological order.
+     * 
+     * @throws java.io.IOException
+     *         If an I/O error occurs.
+     */
+    public static void write(
+        final File file,
+        final IActivityRecords activityRecords )
+        throws IOException
+    {
+        final Map<ChargeNumber, Integer> chargeNumberIds = new HashMap<ChargeNumber, Integer>();
+        final List<ChargeNumber> chargeNumbers = new ArrayList<ChargeNumber>();
+
+        final FileOutputStream recordsOutputStream = new FileOutputStream( file );
+        try
+        {
+            final DataOutputStream output = new DataOutputStream( new BufferedOutputStream( recordsOutputStream, BUFFER_SIZE ) );
+            final int activityCount = activityRecords.size();
+            for( int index = 0; index < activityCount; ++index )
+            {
+                final ChargeNumber chargeNumber = activityRecords.getChargeNumber( index );
+                Integer chargeNumberId = chargeNumberIds.get( chargeNumber );
+                if( chargeNumberId == null )
+                {
+                    chargeNumberId = Integer.valueOf( chargeNumbers.size() );
+                    chargeNumberIds.put( chargeNumber, chargeNumberId );
+                    chargeNumbers.add( chargeNumber );
+                }
+
+                output.writeLong( activityRecords.getStartTime( index ) );
+                output.writeLong( activityRecords.getStopTime( index ) );
+                output.writeInt( chargeNumberId.intValue() );
+            }
+            output.flush();
+            recordsOutputStream.getFD().sync();
+        }
+        finally
+        {
+            recordsOutputStream.close();
+        }
+
+        final FileOutputStream chargeNumbersOutputStream = new FileOutputStream( getChargeNumbersFile( file ) );
+        try
+        {
+            final DataOutputStream output = new DataOutputStream( new BufferedOutputStream( chargeNumbersOutputStream ) );
+            output.writeInt( chargeNumbers.size() );
+            for( final ChargeNumber chargeNumber : chargeNumbers )
+            {
+                output.writeUTF( chargeNumber.toString() );
+            }
+            output.flush();
+            chargeNumbersOutputStream.getFD().sync();
+        }
+        finally
+        {
+            chargeNumbersOutputStream.close();
+        }
+    }
+}
@@ -0,0 +1,677 @@
+/*
+ * FileActivityStorage.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Mar 7, 2014 at 11:26:03 AM.
+ */
+
+package com.belcan.beltime.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import com.belcan.beltime.model.ChargeNumber;
+import com.belcan.beltime.model.IActivityStorage;
+import com.belcan.beltime.util.NullAnalysis;
+
+/**
+ * An activity storage engine that holds the inactive activities of a time
+ * card in a memory-mapped file rather than on the heap.
+ * 
+ * <p>
+ * The file is an append-only log of fixed-width records in the format of an
+ * {@link ActivityFile}, mapped in chunks as it grows. A record is never
+ * modified once it has been appended, so every storage derived from the same
+ * file shares the log: a storage is a list of extents, each of which is a run
+ * of consecutive records in the log. Appending to a storage whose last extent
+ * ends at the end of the log extends that extent; appending to any other
+ * storage, such as a truncated storage or a writable copy of an earlier view,
+ * starts a new extent at the end of the log. Views and copies are therefore
+ * created in constant time and never copy records.
+ * </p>
+ * 
+ * <p>
+ * The file is scratch space for the lifetime of a single process: it is not
+ * meant to be reopened, and durability is provided by {@link TimeCardJournal}.
+ * Because any storage derived from the file may still refer to any record, a
+ * record is never reclaimed, even after it is no longer visible, for example
+ * after a truncation, a period is closed, or an undone change is replaced.
+ * The file is therefore bounded by a fixed capacity in records; once it is
+ * reached, appending to any storage derived from the file fails. An owner
+ * that approaches the capacity, as reported by
+ * {@link #getRemainingCapacity}, should rebuild its time card over a new file,
+ * as happens each time the time card is recovered from its journal.
+ * </p>
+ */
+public final class FileActivityStorage
+    implements IActivityStorage
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /** The shift used to extract the index of the chunk of a record. */
+    private static final int CHUNK_SHIFT = 16;
+
+    /** The number of records in each chunk of the log. */
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    /**
+     * The default capacity of the file in records, which bounds the file to
+     * 320 MiB.
+     */
+    static final int DEFAULT_CAPACITY = 1 << 24;
+
+    /**
+     * The charge numbers indexed by identifier as of the last change to the
+     * storage.
+     */
+    private ChargeNumber[] chargeNumbers_;
+
+    /** The mapped chunks of the log as of the last change to the storage. */
+    private ByteBuffer[] chunks_;
+
+    /** The count of extents in the storage. */
+    private int extentCount_;
+
+    /**
+     * The index in the log of the first record of each extent. Only the first
+     * {@code extentCount_} entries are used.
+     */
+    private int[] extentLogIndexes_;
+
+    /**
+     * The index in the storage of the first activity of each extent. Only the
+     * first {@code extentCount_} entries are used.
+     */
+    private int[] extentStartIndexes_;
+
+    /** Indicates the storage is a read-only view. */
+    private final boolean isReadOnly_;
+
+    /**
+     * Indicates the extent arrays may be visible to other storages and must be
+     * copied before they are modified.
+     */
+    private boolean isShared_;
+
+    /** The log shared by all storages derived from the same file. */
+    private final Log log_;
+
+    /** The count of activities in the storage. */
+    private int size_;
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code FileActivityStorage} class that
+     * is empty.
+     * 
+     * @param log
+     *        The log shared by all storages derived from the same file.
+     */
+    private FileActivityStorage(
+        final Log log )
+    {
+        chargeNumbers_ = log.chargeNumbers_;
+        chunks_ = log.chunks_;
+        extentCount_ = 0;
+        extentLogIndexes_ = new int[ 1 ];
+        extentStartIndexes_ = new int[ 1 ];
+        isReadOnly_ = false;
+        isShared_ = false;
+        log_ = log;
+        size_ = 0;
+    }
+
+    /**
+     * Initializes a new instance of the {@code FileActivityStorage} class that
+     * shares the extents of another storage.
+     * 
+     * @param storage
+     *        The storage whose extents are shared.
+     * @param isReadOnly
+     *        {@code true} if the storage is a read-only view; otherwise
+     *        {@code false}.
+     */
+    private FileActivityStorage(
+        final FileActivityStorage storage,
+        final boolean isReadOnly )
+    {
+        chargeNumbers_ = storage.chargeNumbers_;
+        chunks_ = storage.chunks_;
+        extentCount_ = storage.extentCount_;
+        extentLogIndexes_ = storage.extentLogIndexes_;
+        extentStartIndexes_ = storage.extentStartIndexes_;
+        isReadOnly_ = isReadOnly;
+        isShared_ = true;
+        log_ = storage.log_;
+        size_ = storage.size_;
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /**
+     * Starts a new extent at the specified position in the log.
+     * 
+     * @param logIndex
+     *        The index in the log of the first record of the extent.
+     */
+    private void addExtent(
+        final int logIndex )
+    {
+        if( isShared_ || (extentCount_ == extentLogIndexes_.length) )
+        {
+            final int length = Math.max( extentCount_ + 1, 2 * extentLogIndexes_.length );
+            final int[] extentLogIndexes = new int[ length ];
+            System.arraycopy( extentLogIndexes_, 0, extentLogIndexes, 0, extentCount_ );
+            extentLogIndexes_ = extentLogIndexes;
+            final int[] extentStartIndexes = new int[ length ];
+            System.arraycopy( extentStartIndexes_, 0, extentStartIndexes, 0, extentCount_ );
+            extentStartIndexes_ = extentStartIndexes;
+            isShared_ = false;
+        }
+
+        extentLogIndexes_[ extentCount_ ] = logIndex;
+        extentStartIndexes_[ extentCount_ ] = size_;
+        ++extentCount_;
+    }
+
+    /*
+     * @see com.belcan.beltime.model.IActivityStorage#append(com.belcan.beltime.model.ChargeNumber, long, long)
+     */
+    @Override
+    public void append(
+        final ChargeNumber chargeNumber,
+        final long startTimeInMilliseconds,
+        final long stopTimeInMilliseconds )
+    {
+        if( isReadOnly_ )
+        {
+            throw new IllegalStateException( "cannot add an activity to a read-only view" ); //$NON-NLS-1$
+        }
+
+        final int logSize = log_.size_;
+        final int lastExtentIndex = extentCount_ - 1;
+        if( (extentCount_ == 0) || (extentLogIndexes_[ lastExtentIndex ] + size_ - extentStartIndexes_[ lastExtentIndex ] != logSize) )
+        {
+            addExtent( logSize );
+        }
+
+        try
+        {
+            log_.append( chargeNumber, startTimeInMilliseconds, stopTimeInMilliseconds );
+        }
+        catch( final IOException e )
+        {
+            throw new IllegalStateException( "cannot store activity", e ); //$NON-NLS-1$
+        }
+
+        chargeNumbers_ = log_.chargeNumbers_;
+        chunks_ = log_.chunks_;
+        ++size_;
+    }
+
+    /**
+     * Closes the file.
+     * 
+     * <p>
+     * Storages derived from the file remain readable after the file is
+     * closed, but activities may no longer be added to them.
+     * </p>
+     * 
+     * @throws java.io.IOException
+     *         If an I/O error occurs.
+     */
+    public void close()
+        throws IOException
+    {
+        log_.randomAccessFile_.close();
+    }
+
+    /**
+     * Creates an empty storage in the specified file with the default
+     * capacity, replacing its previous content.
+     * 
+     * @param file
+     *        The file.
+     * 
+     * @return An empty storage in the specified file.
+     * 
+     * @throws java.io.IOException
+     *         If an I/O error occurs.
+     */
+    public static FileActivityStorage create(
+        final File file )
+        throws IOException
+    {
+        return create( file, DEFAULT_CAPACITY );
+    }
+
+    /**
+     * Creates an empty storage in the specified file with the specified
+     * capacity, replacing its previous content.
+     * 
+     * @param file
+     *        The file.
+     * @param capacity
+     *        The maximum number of records that may be appended to the file by
+     *        all storages derived from it.
+     * 
+     * @return An empty storage in the specified file.
+     * 
+     * @throws java.io.IOException
+     *         If an I/O error occurs.
+     * @throws java.lang.IllegalArgumentException
+     *         If {@code capacity} is not positive.
+     */
+    public static FileActivityStorage create(
+        final File file,
+        final int capacity )
+        throws IOException
+    {
+        if( capacity <= 0 )
+        {
+            throw new IllegalArgumentException( "capacity must be positive" ); //$NON-NLS-1$
+        }
+
+        final RandomAccessFile randomAccessFile = new RandomAccessFile( file, "rw" ); //$NON-NLS-1$
+        try
+        {
+            randomAccessFile.setLength( 0L );
+        }
+        catch( final IOException e )
+        {
+            randomAccessFile.close();
+            throw e;
+        }
+
+        return new FileActivityStorage( new Log( randomAccessFile, capacity ) );
+    }
+
+    /*
+     * @see com.belcan.beltime.model.IActivityStorage#createReadOnlyView()
+     */
+    @Override
+    public FileActivityStorage createReadOnlyView()
+    {
+        isShared_ = true;
+        return new FileActivityStorage( this, true );
+    }
+
+    /*
+     * @see com.belcan.beltime.model.IActivityStorage#createWritableCopy()
+     */
+    @Override
+    public FileActivityStorage createWritableCopy()
+    {
+        isShared_ = true;
+        return new FileActivityStorage( this, false );
+    }
+
+    /*
+     * @see com.belcan.beltime.model.IActivityRecords#getChargeNumber(int)
+     */
+    @Override
+    public ChargeNumber getChargeNumber(
+        final int index )
+    {
+        final int logIndex = getLogIndex( index );
+        final int chargeNumberId = chunks_[ logIndex >>> CHUNK_SHIFT ].getInt( getPosition( logIndex ) + ActivityFile.CHARGE_NUMBER_ID_OFFSET );
+        return NullAnalysis.nonNull( chargeNumbers_[ chargeNumberId ] );
+    }
+
+    /*
+     * @see com.belcan.beltime.model.IActivityStorage#getFirstIndexStartingAfter(long, int)
+     */
+    @Override
+    public int getFirstIndexStartingAfter(
+        final long timeInMilliseconds,
+        final int size )
+    {
+        assert (size >= 0) && (size <= size_);
+
+        int lowIndex = 0;
+        int highIndex = size;
+        while( lowIndex < highIndex )
+        {
+            final int middleIndex = (lowIndex + highIndex) >>> 1;
+            if( getStartTime( middleIndex ) <= timeInMilliseconds )
+            {
+                lowIndex = middleIndex + 1;
+            }
+            else
+            {
+                highIndex = middleIndex;
+            }
+        }
+
+        return lowIndex;
+    }
+
+    /*
+     * @see com.belcan.beltime.model.IActivityStorage#getFirstIndexStoppingAtOrAfter(long, int)
+     */
+    @Override
+    public int getFirstIndexStoppingAtOrAfter(
+        final long timeInMilliseconds,
+        final int size )
+    {
+        assert (size >= 0) && (size <= size_);
+
+        int lowIndex = 0;
+        int highIndex = size;
+        while( lowIndex < highIndex )
+        {
+            final int middleIndex = (lowIndex + highIndex) >>> 1;
+            if( getStopTime( middleIndex ) < timeInMilliseconds )
+            {
+                lowIndex = middleIndex + 1;
+            }
+            else
+            {
+                highIndex = middleIndex;
+            }
+        }
+
+        return lowIndex;
+    }
+
+    /**
+     * Gets the index in the log of the record of the activity at the
+     * specified index.
+     * 
+     * @param index
+     *        The index of the activity.
+     * 
+     * @return The index in the log of the record of the activity at the
+     *         specified index.
+     * 
+     * @throws java.lang.IndexOutOfBoundsException
+     *         If {@code index} is out of range.
+     */
+    private int getLogIndex(
+        final int index )
+    {
+        if( (index < 0) || (index >= size_) )
+        {
+            throw new IndexOutOfBoundsException( "index out of range: " + index ); //$NON-NLS-1$
+        }
+
+        int lowExtentIndex = 0;
+        int highExtentIndex = extentCount_ - 1;
+        while( lowExtentIndex < highExtentIndex )
+        {
+            final int middleExtentIndex = (lowExtentIndex + highExtentIndex + 1) >>> 1;
+            if( extentStartIndexes_[ middleExtentIndex ] <= index )
+            {
+                lowExtentIndex = middleExtentIndex;
+            }
+            else
+            {
+                highExtentIndex = middleExtentIndex - 1;
+            }
+        }
+
+        return extentLogIndexes_[ lowExtentIndex ] + index - extentStartIndexes_[ lowExtentIndex ];
+    }
+
+    /**
+     * Gets the number of records that may still be appended to the file by
+     * all storages derived from it.
+     * 
+     * <p>
+     * This method must be called from the thread that changes the storages
+     * derived from the file.
+     * </p>
+     * 
+     * @return The number of records that may still be appended to the file.
+     */
+    public int getRemainingCapacity()
+    {
+        return log_.capacity_ - log_.size_;
+    }
+
+    /**
+     * Gets the position of the specified record within its chunk.
+     * 
+     * @param logIndex
+     *        The index of the record in the log.
+     * 
+     * @return The position of the specified record within its chunk.
+     */
+    static int getPosition(
+        final int logIndex )
+    {
+        return (logIndex & (CHUNK_SIZE - 1)) * ActivityFile.RECORD_SIZE;
+    }
+
+    /*
+     * @see com.belcan.beltime.model.IActivityRecords#getStartTime(int)
+     */
+    @Override
+    public long getStartTime(
+        final int index )
+    {
+        final int logIndex = getLogIndex( index );
+        return chunks_[ logIndex >>> CHUNK_SHIFT ].getLong( getPosition( logIndex ) );
+    }
+
+    /*
+     * @see com.belcan.beltime.model.IActivityRecords#getStopTime(int)
+     */
+    @Override
+    public long getStopTime(
+        final int index )
+    {
+        final int logIndex = getLogIndex( index );
+        return chunks_[ logIndex >>> CHUNK_SHIFT ].getLong( getPosition( logIndex ) + ActivityFile.STOP_TIME_OFFSET );
+    }
+
+    /*
+     * @see com.belcan.beltime.model.IActivityRecords#size()
+     */
+    @Override
+    public int size()
+    {
+        return size_;
+    }
+
+    /*
+     * @see com.belcan.beltime.model.IActivityStorage#truncate(int)
+     */
+    @Override
+    public void truncate(
+        final int size )
+    {
+        if( isReadOnly_ )
+        {
+            throw new IllegalStateException( "cannot truncate a read-only view" ); //$NON-NLS-1$
+        }
+        else if( (size < 0) || (size > size_) )
+        {
+            throw new IllegalArgumentException( "size out of range: " + size ); //$NON-NLS-1$
+        }
+
+        while( (extentCount_ > 0) && (extentStartIndexes_[ extentCount_ - 1 ] >= size) )
+        {
+            --extentCount_;
+        }
+        size_ = size;
+    }
+
+
+    // ======================================================================
+    // Nested Types
+    // ======================================================================
+
+    /**
+     * The append-only log of records shared by all storages derived from the
+     * same file.
+     * 
+     * <p>
+     * The chunk and charge number arrays are replaced, rather than modified,
+     * when they grow, so a storage that captured them earlier may continue to
+     * read them from any thread.
+     * </p>
+     */
+    private static final class Log
+    {
+        // ==================================================================
+        // Fields
+        // ==================================================================
+
+        /** The maximum count of records in the log. */
+        final int capacity_;
+
+        /** The charge number identifiers indexed by charge number. */
+        final Map<ChargeNumber, Integer> chargeNumberIds_;
+
+        /**
+         * The charge numbers indexed by identifier. Only the first
+         * {@code chargeNumberIds_.size()} entries are used.
+         */
+        ChargeNumber[] chargeNumbers_;
+
+        /** The count of mapped chunks. */
+        int chunkCount_;
+
+        /**
+         * The mapped chunks of the log. Only the first {@code chunkCount_}
+         * entries are used.
+         */
+        ByteBuffer[] chunks_;
+
+        /** The file. */
+        final RandomAccessFile randomAccessFile_;
+
+        /** The count of records in the log. */
+        int size_;
+
+
+        // ==================================================================
+        // Constructors
+        // ==================================================================
+
+        /**
+         * Initializes a new instance of the {@code Log} class.
+         * 
+         * @param randomAccessFile
+         *        The file.
+         * @param capacity
+         *        The maximum count of records in the log.
+         */
+        Log(
+            final RandomAccessFile randomAccessFile,
+            final int capacity )
+        {
+            capacity_ = capacity;
+            chargeNumberIds_ = new HashMap<ChargeNumber, Integer>();
+            chargeNumbers_ = new ChargeNumber[ 1 ];
+            chunkCount_ = 0;
+            chunks_ = new ByteBuffer[ 1 ];
+            randomAccessFile_ = randomAccessFile;
+            size_ = 0;
+        }
+
+
+        // ==================================================================
+        // Methods
+        // ==================================================================
+
+        /**
+         * Appends a record to the end of the log, mapping a new chunk if the
+         * last chunk is full.
+         * 
+         * @param chargeNumber
+         *        The charge number of the activity.
+         * @param startTimeInMilliseconds
+         *        The time at which the activity started in milliseconds.
+         * @param stopTimeInMilliseconds
+         *        The time at which the activity stopped in milliseconds.
+         * 
+         * @throws java.io.IOException
+         *         If an I/O error occurs or the log is full.
+         */
+        void append(
+            final ChargeNumber chargeNumber,
+            final long startTimeInMilliseconds,
+            final long stopTimeInMilliseconds )
+            throws IOException
+        {
+            if( size_ == capacity_ )
+            {
+                throw new IOException( "activity log is full" ); //$NON-NLS-1$
+            }
+
+            final int chunkIndex = size_ >>> CHUNK_SHIFT;
+            if( chunkIndex == chunkCount_ )
+            {
+                final long chunkLength = (long)CHUNK_SIZE * ActivityFile.RECORD_SIZE;
+                final ByteBuffer chunk = randomAccessFile_.getChannel().map( FileChannel.MapMode.READ_WRITE, chunkIndex * chunkLength, chunkLength );
+                final ByteBuffer[] chunks = (chunkCount_ == chunks_.length) ? new ByteBuffer[ 2 * chunkCount_ ] : chunks_;
+                if( chunks != chunks_ )
+                {
+                    System.arraycopy( chunks_, 0, chunks, 0, chunkCount_ );
+                }
+                chunks[ chunkCount_ ] = NullAnalysis.nonNull( chunk );
+                chunks_ = chunks;
+                ++chunkCount_;
+            }
+
+            final ByteBuffer chunk = chunks_[ chunkIndex ];
+            final int position = getPosition( size_ );
+            chunk.putLong( position, startTimeInMilliseconds );
+            chunk.putLong( position + ActivityFile.STOP_TIME_OFFSET, stopTimeInMilliseconds );
+            chunk.putInt( position + ActivityFile.CHARGE_NUMBER_ID_OFFSET, getChargeNumberId( chargeNumber ) );
+            ++size_;
+        }
+
+        /**
+         * Gets the identifier of the specified charge number, assigning a new
+         * identifier if the charge number has not been seen before.
+         * 
+         * @param chargeNumber
+         *        The charge number.
+         * 
+         * @return The identifier of the specified charge number.
+         */
+        private int getChargeNumberId(
+            final ChargeNumber chargeNumber )
+        {
+            final Integer chargeNumberId = chargeNumberIds_.get( chargeNumber );
+            if( chargeNumberId != null )
+            {
+                return chargeNumberId.intValue();
+            }
+
+            final int newChargeNumberId = chargeNumberIds_.size();
+            final ChargeNumber[] chargeNumbers = (newChargeNumberId == chargeNumbers_.length) ? new ChargeNumber[ 2 * newChargeNumberId ] : chargeNumbers_;
+            if( chargeNumbers != chargeNumbers_ )
+            {
+                System.arraycopy( chargeNumbers_, 0, chargeNumbers, 0, newChargeNumberId );
+            }
+            chargeNumbers[ newChargeNumberId ] = chargeNumber;
+            chargeNumbers_ = chargeNumbers;
+            chargeNumberIds_.put( chargeNumber, Integer.valueOf( newChargeNumberId ) );
+            return newChargeNumberId;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * ITimeCardJournalWriterListener.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Mar 8, 2014 at 9:14:22 AM.
+ */
+
+package com.belcan.beltime.storage;
+
+import java.io.IOException;
+
+/**
+ * A listener of time card journal writer events.
+ * 
+ * <p>
+ * Events are fired on the thread of the writer, so a listener that updates a
+ * user interface must hand the event over to the user interface thread.
+ * </p>
+ */
+public interface ITimeCardJournalWriterListener
+{
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /**
+     * Called when the writer has failed to commit the journal.
+     * 
+     * <p>
+     * The journal fails with the first error it encounters, so no further
+     * records are committed and the writer stops.
+     * </p>
+     * 
+     * @param writer
+     *        The writer that fired the event.
+     * @param e
+     *        The error that failed the journal.
+     */
+    public void onCommitFailed(
+        TimeCardJournalWriter writer,
+        IOException e );
+
+    /**
+     * Called when the writer has committed the journal.
+     * 
+     * @param writer
+     *        The writer that fired the event.
+     * @param committedChangeCount
+     *        The number of changes that are now durable. Every change whose
+     *        commit was requested by a call to
+     *        {@link TimeCardJournalWriter#requestCommit} that returned a
+     *        number less than or equal to this number is durable.
+     */
+    public void onCommitted(
+        TimeCardJournalWriter writer,
+        long committedChangeCount );
+}
@@ -0,0 +1,1297 @@
+/*
+ * TimeCardJournal.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Mar 4, 2014 at 9:14:03 AM.
+ */
+
+package com.belcan.beltime.storage;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import com.belcan.beltime.model.Activity;
+import com.belcan.beltime.model.ChargeNumber;
+import com.belcan.beltime.model.ClosedPeriod;
+import com.belcan.beltime.model.ITimeCardListener;
+import com.belcan.beltime.model.TimeCard;
+import com.belcan.beltime.util.NullAnalysis;
+
+/**
+ * An append-only journal of the changes made to a time card.
+ * 
+ * <p>
+ * The journal listens to a time card and appends a compact binary record to
+ * its file for each change. Each record consists of the length of its body,
+ * the body itself, which starts with the type of the record, and the CRC-32
+ * of the body. Charge numbers are recorded once, the first time they are
+ * used, and are referred to by their index thereafter.
+ * </p>
+ * 
+ * <p>
+ * Appending a record only buffers it in memory. {@link #commit} writes every
+ * buffered record to the file and syncs the file once, so a burst of changes
+ * costs a single sync. Concurrent callers of {@link #commit} are group
+ * committed: a caller that finds a sync in progress waits for it, and the
+ * records of all callers that arrived in the meantime are written by the next
+ * sync. The buffer may be bounded by a maximum number of pending changes:
+ * once it holds that many, the next change commits the journal on the thread
+ * that made it before its records are buffered.
+ * </p>
+ * 
+ * <p>
+ * A time card is recovered by {@link #open}, which replays each recorded
+ * change against the time card, so its undo history is recovered as well. A
+ * record that was torn by a crash while it was being written fails its
+ * length or CRC check; the journal is truncated after the last intact record.
+ * </p>
+ * 
+ * <p>
+ * To bound the time taken to recover a time card, {@link #compact} writes a
+ * compact binary snapshot of the time card next to the journal and then
+ * truncates the journal, which starts a new generation. Recovery loads the
+ * snapshot and replays only the journal that follows it. A journal that
+ * survived a crash after its snapshot was written, but before the journal was
+ * truncated, belongs to an earlier generation and is discarded. Changes made
+ * before a compaction may no longer be undone.
+ * </p>
+ */
+public final class TimeCardJournal
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /** The type of the record of a batch of appended activities. */
+    private static final byte ACTIVITIES_APPENDED = 1;
+
+    /** The type of the record of a started activity. */
+    private static final byte ACTIVITY_STARTED = 2;
+
+    /** The type of the record of a stopped activity. */
+    private static final byte ACTIVITY_STOPPED = 3;
+
+    /** The size of the buffer used to read the journal in bytes. */
+    private static final int BUFFER_SIZE = 65536;
+
+    /** The type of the record of a charge number used for the first time. */
+    private static final byte CHARGE_NUMBER_DEFINED = 4;
+
+    /**
+     * The default length of the journal file in bytes at or above which the
+     * journal is compacted when it is opened.
+     */
+    private static final long COMPACTION_THRESHOLD = 1L << 20;
+
+    /** The type of the record that starts a new generation of the journal. */
+    private static final byte JOURNAL_STARTED = 9;
+
+    /** The type of the record of a closed period. */
+    private static final byte PERIOD_CLOSED = 5;
+
+    /** The suffix of the name of a quarantined file. */
+    private static final String QUARANTINE_FILE_SUFFIX = ".corrupt"; //$NON-NLS-1$
+
+    /**
+     * The number of bytes in a record in addition to its body: the length of
+     * the body and the CRC-32 of the body.
+     */
+    private static final int RECORD_OVERHEAD = 4 + 4;
+
+    /** The type of the record of a redone change. */
+    private static final byte REDONE = 6;
+
+    /** The type of the record of a reset. */
+    private static final byte RESET = 7;
+
+    /** The suffix of the name of the snapshot file. */
+    private static final String SNAPSHOT_FILE_SUFFIX = ".snapshot"; //$NON-NLS-1$
+
+    /** The type of the record of an undone change. */
+    private static final byte UNDONE = 8;
+
+    /** The number of changes to the time card that have been recorded. */
+    private long changeCount_;
+
+    /**
+     * The identifiers of the charge numbers recorded in the journal keyed by
+     * charge number.
+     */
+    private final Map<ChargeNumber, Integer> chargeNumberIds_;
+
+    /**
+     * The number of changes to the time card whose records have been written
+     * and synced.
+     */
+    private long committedChangeCount_;
+
+    /** The number of records that have been written and synced. */
+    private long committedRecordCount_;
+
+    /** The checksum used to compute the CRC-32 of each record. */
+    private final CRC32 crc_;
+
+    /**
+     * The error that failed the journal or {@code null} if the journal has not
+     * failed. Once failed, the journal can no longer be committed.
+     */
+    private IOException failure_;
+
+    /** The journal file positioned at its end. */
+    private final RandomAccessFile file_;
+
+    /**
+     * The generation of the journal. Each compaction starts a new generation
+     * whose first record identifies it; the journal written before the first
+     * compaction is generation zero and has no such record.
+     */
+    private long generation_;
+
+    /** Indicates a commit is writing and syncing the journal file. */
+    private boolean isCommitting_;
+
+    /** The lock that guards the buffered records and the commit state. */
+    private final Object lock_;
+
+    /**
+     * The maximum number of changes whose records may be buffered before the
+     * next change commits the journal.
+     */
+    private int maximumPendingChangeCount_;
+
+    /** The buffer of records that have not been committed. */
+    private final ByteArrayOutputStream pendingRecords_;
+
+    /** The output stream over {@link #pendingRecords_}. */
+    private final DataOutputStream pendingRecordsOutput_;
+
+    /** The number of records that have been appended. */
+    private long recordCount_;
+
+    /** The buffer of the body of the record being appended. */
+    private final ByteArrayOutputStream recordBody_;
+
+    /** The output stream over {@link #recordBody_}. */
+    private final DataOutputStream recordBodyOutput_;
+
+    /** The snapshot file that precedes the journal. */
+    private final File snapshotFile_;
+
+    /** The number of times the journal file has been synced. */
+    private long syncCount_;
+
+    /** The time card whose changes are recorded. */
+    private final TimeCard timeCard_;
+
+    /** The time card listener used to record the changes. */
+    private final ITimeCardListener timeCardListener_;
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code TimeCardJournal} class.
+     * 
+     * @param file
+     *        The journal file positioned at its end.
+     * @param snapshotFile
+     *        The snapshot file that precedes the journal.
+     * @param generation
+     *        The generation of the journal.
+     * @param timeCard
+     *        The time card whose changes are recorded.
+     * @param chargeNumbers
+     *        The collection of charge numbers already recorded in the snapshot
+     *        and the journal in order of their identifiers.
+     */
+    private TimeCardJournal(
+        final RandomAccessFile file,
+        final File snapshotFile,
+        final long generation,
+        final TimeCard timeCard,
+        final List<ChargeNumber> chargeNumbers )
+    {
+        changeCount_ = 0L;
+        chargeNumberIds_ = new HashMap<ChargeNumber, Integer>();
+        for( final ChargeNumber chargeNumber : chargeNumbers )
+        {
+            chargeNumberIds_.put( chargeNumber, Integer.valueOf( chargeNumberIds_.size() ) );
+        }
+        committedChangeCount_ = 0L;
+        committedRecordCount_ = 0L;
+        crc_ = new CRC32();
+        failure_ = null;
+        file_ = file;
+        generation_ = generation;
+        isCommitting_ = false;
+        lock_ = new Object();
+        maximumPendingChangeCount_ = Integer.MAX_VALUE;
+        pendingRecords_ = new ByteArrayOutputStream();
+        pendingRecordsOutput_ = new DataOutputStream( pendingRecords_ );
+        recordCount_ = 0L;
+        recordBody_ = new ByteArrayOutputStream();
+        recordBodyOutput_ = new DataOutputStream( recordBody_ );
+        snapshotFile_ = snapshotFile;
+        syncCount_ = 0L;
+        timeCard_ = timeCard;
+        timeCardListener_ = new TimeCardListener();
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /**
+     * Applies the specified record to the specified time card.
+     * 
+     * @param record
+     *        The body of the record.
+     * @param timeCard
+     *        The time card.
+     * @param chargeNumbers
+     *        The collection of charge numbers recorded so far in order of
+     *        their identifiers.
+     * 
+     * @throws java.io.IOException
+     *         If the record is malformed or cannot be applied to the time
+     *         card.
+     */
+    private static void applyRecord(
+        final ByteBuffer record,
+        final TimeCard timeCard,
+        final List<ChargeNumber> chargeNumbers )
+        throws IOException
+    {
+        try
+        {
+            final byte type = record.get();
+            switch( type )
+            {
+                case ACTIVITIES_APPENDED:
+                    final int activityCount = record.getInt();
+                    final List<Activity> activities = new ArrayList<Activity>( Math.min( activityCount, record.remaining() ) );
+                    for( int index = 0; index < activityCount; ++index )
+                    {
+                        final Activity activity = Activity.start( getChargeNumber( chargeNumbers, record.getInt() ), record.getLong() );
+                        activity.stop( record.getLong() );
+                        activities.add( activity );
+                    }
+                    timeCard.appendActivities( activities );
+                    break;
+
+                case ACTIVITY_STARTED:
+                    timeCard.startActivity( getChargeNumber( chargeNumbers, record.getInt() ), record.getLong() );
+                    break;
+
+                case ACTIVITY_STOPPED:
+                    timeCard.stopActiveActivity( record.getLong() );
+                    break;
+
+                case CHARGE_NUMBER_DEFINED:
+                    final DataInputStream input = new DataInputStream( new ByteArrayInputStream( record.array(), record.position(), record.remaining() ) );
+                    chargeNumbers.add( ChargeNumber.fromString( NullAnalysis.nonNull( input.readUTF() ) ) );
+                    record.position( record.limit() - input.available() );
+                    break;
+
+                case JOURNAL_STARTED:
+                    throw new IOException( "unexpected journal start record" ); //$NON-NLS-1$
+
+                case PERIOD_CLOSED:
+                    timeCard.closePeriod( record.getLong() );
+                    break;
+
+                case REDONE:
+                    timeCard.redo();
+                    break;
+
+                case RESET:
+                    timeCard.reset();
+                    break;
+
+                case UNDONE:
+                    timeCard.undo();
+                    break;
+
+                default:
+                    throw new IOException( "unknown journal record type: " + type ); //$NON-NLS-1$
+            }
+
+            if( record.hasRemaining() )
+            {
+                throw new IOException( "journal record is too long" ); //$NON-NLS-1$
+            }
+        }
+        catch( final BufferUnderflowException e )
+        {
+            throw createMalformedRecordException( e );
+        }
+        catch( final IllegalArgumentException e )
+        {
+            throw createMalformedRecordException( e );
+        }
+        catch( final IllegalStateException e )
+        {
+            throw createMalformedRecordException( e );
+        }
+    }
+
+    /**
+     * Begins recording a change to the time card.
+     * 
+     * <p>
+     * If the maximum number of changes are already pending commit, the
+     * journal is committed on the calling thread first, so the buffer never
+     * holds more than the maximum number of changes. The caller must not hold
+     * {@link #lock_}.
+     * </p>
+     * 
+     * @return {@code true} if the change should be recorded; {@code false} if
+     *         the journal has failed and can no longer be committed.
+     */
+    private boolean beginChange()
+    {
+        synchronized( lock_ )
+        {
+            if( failure_ != null )
+            {
+                return false;
+            }
+            else if( changeCount_ - committedChangeCount_ < maximumPendingChangeCount_ )
+            {
+                return true;
+            }
+        }
+
+        try
+        {
+            commit();
+        }
+        catch( final IOException e )
+        {
+            // the failure is reported by the next commit
+        }
+
+        synchronized( lock_ )
+        {
+            return failure_ == null;
+        }
+    }
+
+    /**
+     * Begins a new record of the specified type.
+     * 
+     * <p>
+     * The caller must hold {@link #lock_}.
+     * </p>
+     * 
+     * @param type
+     *        The type of the record.
+     * 
+     * @throws java.io.IOException
+     *         If an I/O error occurs.
+     */
+    private void beginRecord(
+        final byte type )
+        throws IOException
+    {
+        recordBody_.reset();
+        recordBodyOutput_.writeByte( type );
+    }
+
+    /**
+     * Closes the journal.
+     * 
+     * <p>
+     * The journal stops recording changes to the time card, and all buffered
+     * records are committed before the journal file is closed.
+     * </p>
+     * 
+     * @throws java.io.IOException
+     *         If an I/O error occurs.
+     */
+    public void close()
+        throws IOException
+    {
+        timeCard_.removeTimeCardListener( timeCardListener_ );
+        try
+        {
+            commit();
+        }
+        finally
+        {
+            file_.close();
+        }
+    }
+
+    /**
+     * Commits the journal.
+     * 
+     * <p>
+     * When this method returns, every record appended before it was called
+     * has been written to the journal file and synced. This method may be
+     * called from any thread.
+     * </p>
+     * 
+     * @throws java.io.IOException
+     *         If an I/O error occurs or the journal has failed.
+     */
+    public void commit()
+        throws IOException
+    {
+        final byte[] records;
+        final long changeCount;
+        final long recordCount;
+        synchronized( lock_ )
+        {
+            final long targetRecordCount = recordCount_;
+            while( isCommitting_ && (committedRecordCount_ < targetRecordCount) )
+            {
+                try
+                {
+                    lock_.wait();
+                }
+                catch( final InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException( "interrupted while waiting for commit" ); //$NON-NLS-1$
+                }
+            }
+
+            if( committedRecordCount_ >= targetRecordCount )
+            {
+                return;
+            }
+
+            final IOException failure = failure_;
+            if( failure != null )
+            {
+                throw failure;
+            }
+
+            isCommitting_ = true;
+            records = pendingRecords_.toByteArray();
+            changeCount = changeCount_;
+            recordCount = recordCount_;
+            pendingRecords_.reset();
+        }
+
+        IOException failure = null;
+        try
+        {
+            file_.write( records );
+            file_.getFD().sync();
+        }
+        catch( final IOException e )
+        {
+            failure = e;
+        }
+
+        synchronized( lock_ )
+        {
+            isCommitting_ = false;
+            if( failure == null )
+            {
+                committedChangeCount_ = changeCount;
+                committedRecordCount_ = recordCount;
+                ++syncCount_;
+            }
+            else
+            {
+                failure_ = failure;
+            }
+            lock_.notifyAll();
+        }
+
+        if( failure != null )
+        {
+            throw failure;
+        }
+    }
+
+    /**
+     * Compacts the journal.
+     * 
+     * <p>
+     * Once any commit in progress has finished, a snapshot of the time card is
+     * written atomically to the snapshot file, the buffered records, which the
+     * snapshot covers, are discarded, and the journal is truncated to start a
+     * new generation that follows the snapshot. All of this happens while
+     * {@link #commit} is held off, so no commit can write to the journal file
+     * while it is being truncated. The history of the time card is then
+     * cleared, because the changes it refers to are no longer in the journal.
+     * This method must be called from the thread that changes the time card.
+     * </p>
+     * 
+     * @throws java.io.IOException
+     *         If an I/O error occurs or the journal has failed. If the
+     *         snapshot could not be written, the journal is unaffected;
+     *         otherwise, the journal fails.
+     */
+    public void compact()
+        throws IOException
+    {
+        synchronized( lock_ )
+        {
+            while( isCommitting_ )
+            {
+                try
+                {
+                    lock_.wait();
+                }
+                catch( final InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException( "interrupted while waiting for commit" ); //$NON-NLS-1$
+                }
+            }
+
+            final IOException failure = failure_;
+            if( failure != null )
+            {
+                throw failure;
+            }
+
+            // the time card is only changed by the calling thread, so every
+            // change in the snapshot has already been buffered
+            final long generation = generation_ + 1L;
+            final List<ChargeNumber> chargeNumbers = TimeCardSnapshotFile.write( snapshotFile_, timeCard_.getSnapshot(), generation );
+            pendingRecords_.reset();
+            committedChangeCount_ = changeCount_;
+            committedRecordCount_ = recordCount_;
+            lock_.notifyAll();
+
+            try
+            {
+                file_.setLength( 0L );
+                chargeNumberIds_.clear();
+                for( final ChargeNumber chargeNumber : chargeNumbers )
+                {
+                    chargeNumberIds_.put( chargeNumber, Integer.valueOf( chargeNumberIds_.size() ) );
+                }
+                startGeneration( generation );
+            }
+            catch( final IOException e )
+            {
+                failure_ = e;
+                throw e;
+            }
+        }
+        commit();
+
+        timeCard_.clearHistory();
+    }
+
+    /**
+     * Creates an exception indicating a journal record is malformed.
+     * 
+     * @param cause
+     *        The cause of the exception.
+     * 
+     * @return A new exception indicating a journal record is malformed.
+     */
+    private static IOException createMalformedRecordException(
+        final RuntimeException cause )
+    {
+        final IOException e = new IOException( "malformed journal record" ); //$NON-NLS-1$
+        e.initCause( cause );
+        return e;
+    }
+
+    /**
+     * Ends the record being appended and buffers it for the next commit.
+     * 
+     * <p>
+     * The caller must hold {@link #lock_}.
+     * </p>
+     * 
+     * @throws java.io.IOException
+     *         If an I/O error occurs.
+     */
+    private void endRecord()
+        throws IOException
+    {
+        final byte[] body = recordBody_.toByteArray();
+        crc_.reset();
+        crc_.update( body, 0, body.length );
+
+        pendingRecordsOutput_.writeInt( body.length );
+        pendingRecordsOutput_.write( body );
+        pendingRecordsOutput_.writeInt( (int)crc_.getValue() );
+        ++recordCount_;
+    }
+
+    /**
+     * Gets the charge number with the specified identifier.
+     * 
+     * @param chargeNumbers
+     *        The collection of charge numbers recorded so far in order of
+     *        their identifiers.
+     * @param id
+     *        The charge number identifier.
+     * 
+     * @return The charge number with the specified identifier.
+     * 
+     * @throws java.lang.IllegalArgumentException
+     *         If no charge number has the specified identifier.
+     */
+    private static ChargeNumber getChargeNumber(
+        final List<ChargeNumber> chargeNumbers,
+        final int id )
+    {
+        if( (id < 0) || (id >= chargeNumbers.size()) )
+        {
+            throw new IllegalArgumentException( "unknown charge number identifier: " + id ); //$NON-NLS-1$
+        }
+
+        return NullAnalysis.nonNull( chargeNumbers.get( id ) );
+    }
+
+    /**
+     * Gets the identifier of the specified charge number, recording the
+     * charge number if it is used for the first time.
+     * 
+     * <p>
+     * The caller must hold {@link #lock_} and must not be appending a record.
+     * </p>
+     * 
+     * @param chargeNumber
+     *        The charge number.
+     * 
+     * @return The identifier of the specified charge number.
+     * 
+     * @throws java.io.IOException
+     *         If an I/O error occurs.
+     */
+    private int getChargeNumberId(
+        final ChargeNumber chargeNumber )
+        throws IOException
+    {
+        final Integer id = chargeNumberIds_.get( chargeNumber );
+        if( id != null )
+        {
+            return id.intValue();
+        }
+
+        final int newId = chargeNumberIds_.size();
+        beginRecord( CHARGE_NUMBER_DEFINED );
+        recordBodyOutput_.writeUTF( chargeNumber.toString() );
+        endRecord();
+        chargeNumberIds_.put( chargeNumber, Integer.valueOf( newId ) );
+        return newId;
+    }
+
+    /**
+     * Gets the number of changes to the time card that have been recorded.
+     * 
+     * @return The number of changes to the time card that have been recorded.
+     */
+    long getChangeCount()
+    {
+        synchronized( lock_ )
+        {
+            return changeCount_;
+        }
+    }
+
+    /**
+     * Gets the number of changes to the time card whose records have been
+     * written and synced.
+     * 
+     * @return The number of changes to the time card whose records have been
+     *         written and synced.
+     */
+    long getCommittedChangeCount()
+    {
+        synchronized( lock_ )
+        {
+            return committedChangeCount_;
+        }
+    }
+
+    /**
+     * Gets the snapshot file that precedes the specified journal file.
+     * 
+     * @param file
+     *        The journal file.
+     * 
+     * @return The snapshot file that precedes the specified journal file.
+     */
+    static File getSnapshotFile(
+        final File file )
+    {
+        return new File( file.getPath() + SNAPSHOT_FILE_SUFFIX );
+    }
+
+    /**
+     * Gets the number of times the journal file has been synced.
+     * 
+     * @return The number of times the journal file has been synced.
+     */
+    long getSyncCount()
+    {
+        synchronized( lock_ )
+        {
+            return syncCount_;
+        }
+    }
+
+    /**
+     * Opens the specified journal and replays it against the specified time
+     * card.
+     * 
+     * <p>
+     * The journal file is created if it does not exist. If a snapshot precedes
+     * the journal, the time card is restored from the snapshot before the
+     * journal is replayed. If the last record of the journal is torn or
+     * corrupt, the journal is truncated after the last intact record. If the
+     * journal is long, it is compacted once it has been replayed. The journal
+     * then records every later change to the time card until it is closed.
+     * </p>
+     * 
+     * @param file
+     *        The journal file.
+     * @param timeCard
+     *        The time card to be recovered. The time card must be empty and
+     *        must not be changed by any other thread while the journal is
+     *        replayed.
+     * 
+     * @return The opened journal.
+     * 
+     * @throws java.io.IOException
+     *         If an I/O error occurs, if the snapshot is malformed, or if an
+     *         intact record of the journal cannot be applied to the time card.
+     * @throws java.lang.IllegalArgumentException
+     *         If {@code timeCard} is not empty.
+     */
+    public static TimeCardJournal open(
+        final File file,
+        final TimeCard timeCard )
+        throws IOException
+    {
+        return open( file, timeCard, COMPACTION_THRESHOLD );
+    }
+
+    /**
+     * Opens the specified journal and replays it against the specified time
+     * card, compacting the journal if its length reaches the specified
+     * threshold.
+     * 
+     * @param file
+     *        The journal file.
+     * @param timeCard
+     *        The time card to be recovered. The time card must be empty and
+     *        must not be changed by any other thread while the journal is
+     *        replayed.
+     * @param compactionThreshold
+     *        The length of the journal file in bytes at or above which the
+     *        journal is compacted once it has been replayed.
+     * 
+     * @return The opened journal.
+     * 
+     * @throws java.io.IOException
+     *         If an I/O error occurs, if the snapshot is malformed, or if an
+     *         intact record of the journal cannot be applied to the time card.
+     * @throws java.lang.IllegalArgumentException
+     *         If {@code timeCard} is not empty.
+     */
+    static TimeCardJournal open(
+        final File file,
+        final TimeCard timeCard,
+        final long compactionThreshold )
+        throws IOException
+    {
+        if( !timeCard.getSnapshot().getActivities().isEmpty() || !timeCard.getClosedPeriods().isEmpty() )
+        {
+            throw new IllegalArgumentException( "time card is not empty" ); //$NON-NLS-1$
+        }
+
+        final File snapshotFile = getSnapshotFile( file );
+        final List<ChargeNumber> chargeNumbers = new ArrayList<ChargeNumber>();
+        final long generation = snapshotFile.exists() ? TimeCardSnapshotFile.read( snapshotFile, timeCard, chargeNumbers ) : 0L;
+
+        final RandomAccessFile randomAccessFile = new RandomAccessFile( file, "rw" ); //$NON-NLS-1$
+        boolean isOpen = false;
+        try
+        {
+            final long length = replay( file, timeCard, chargeNumbers, generation );
+            if( length < randomAccessFile.length() )
+            {
+                randomAccessFile.setLength( length );
+                randomAccessFile.getFD().sync();
+            }
+            randomAccessFile.seek( length );
+
+            final TimeCardJournal journal = new TimeCardJournal( randomAccessFile, snapshotFile, generation, timeCard, chargeNumbers );
+            if( (length == 0L) && (generation != 0L) )
+            {
+                synchronized( journal.lock_ )
+                {
+                    journal.startGeneration( generation );
+                }
+                journal.commit();
+            }
+            else if( length >= compactionThreshold )
+            {
+                journal.compact();
+            }
+            timeCard.addTimeCardListener( journal.timeCardListener_ );
+            isOpen = true;
+            return journal;
+        }
+        finally
+        {
+            if( !isOpen )
+            {
+                randomAccessFile.close();
+            }
+        }
+    }
+
+    /**
+     * Quarantines the specified journal so that a new journal may be started
+     * in its place.
+     * 
+     * <p>
+     * The journal file and the snapshot that precedes it, if any, are renamed
+     * with the suffix {@value #QUARANTINE_FILE_SUFFIX} so that they may be
+     * examined later, replacing any journal quarantined earlier. The journal
+     * must not be open.
+     * </p>
+     * 
+     * @param file
+     *        The journal file.
+     * 
+     * @throws java.io.IOException
+     *         If a file cannot be renamed.
+     */
+    public static void quarantine(
+        final File file )
+        throws IOException
+    {
+        quarantineFile( file );
+        quarantineFile( getSnapshotFile( file ) );
+    }
+
+    /**
+     * Quarantines the specified file, if it exists.
+     * 
+     * @param file
+     *        The file.
+     * 
+     * @throws java.io.IOException
+     *         If the file cannot be renamed.
+     */
+    private static void quarantineFile(
+        final File file )
+        throws IOException
+    {
+        if( !file.exists() )
+        {
+            return;
+        }
+
+        final File quarantinedFile = new File( file.getPath() + QUARANTINE_FILE_SUFFIX );
+        quarantinedFile.delete();
+        if( !file.renameTo( quarantinedFile ) )
+        {
+            throw new IOException( "failed to quarantine file: " + file ); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Reads the generation from the specified record that starts a journal.
+     * 
+     * @param record
+     *        The body of the record.
+     * 
+     * @return The generation of the journal.
+     * 
+     * @throws java.io.IOException
+     *         If the record is malformed.
+     */
+    private static long readGeneration(
+        final ByteBuffer record )
+        throws IOException
+    {
+        try
+        {
+            record.get();
+            final long generation = record.getLong();
+            if( record.hasRemaining() )
+            {
+                throw new IOException( "journal record is too long" ); //$NON-NLS-1$
+            }
+
+            return generation;
+        }
+        catch( final BufferUnderflowException e )
+        {
+            throw createMalformedRecordException( e );
+        }
+    }
+
+    /**
+     * Replays the records of the specified journal file against the specified
+     * time card.
+     * 
+     * @param file
+     *        The journal file.
+     * @param timeCard
+     *        The time card.
+     * @param chargeNumbers
+     *        The collection of charge numbers recorded in the snapshot, which
+     *        receives the charge numbers recorded in the journal, in order of
+     *        their identifiers.
+     * @param generation
+     *        The generation of the journal that follows the snapshot.
+     * 
+     * @return The length of the intact prefix of the journal file in bytes,
+     *         or zero if the journal precedes the snapshot.
+     * 
+     * @throws java.io.IOException
+     *         If an I/O error occurs, if the journal follows a later snapshot,
+     *         or if an intact record cannot be applied to the time card.
+     */
+    private static long replay(
+        final File file,
+        final TimeCard timeCard,
+        final List<ChargeNumber> chargeNumbers,
+        final long generation )
+        throws IOException
+    {
+        final long fileLength = file.length();
+        final DataInputStream input = new DataInputStream( new BufferedInputStream( new FileInputStream( file ), BUFFER_SIZE ) );
+        try
+        {
+            final CRC32 crc = new CRC32();
+            byte[] body = new byte[ 64 ];
+            ByteBuffer record = NullAnalysis.nonNull( ByteBuffer.wrap( body ) );
+            long position = 0L;
+            while( fileLength - position >= RECORD_OVERHEAD )
+            {
+                final int bodyLength = input.readInt();
+                if( (bodyLength <= 0) || (bodyLength > fileLength - position - RECORD_OVERHEAD) )
+                {
+                    break;
+                }
+
+                if( bodyLength > body.length )
+                {
+                    body = new byte[ Math.max( bodyLength, 2 * body.length ) ];
+                    record = NullAnalysis.nonNull( ByteBuffer.wrap( body ) );
+                }
+                input.readFully( body, 0, bodyLength );
+                crc.reset();
+                crc.update( body, 0, bodyLength );
+                if( input.readInt() != (int)crc.getValue() )
+                {
+                    break;
+                }
+
+                record.clear();
+                record.limit( bodyLength );
+                if( position == 0L )
+                {
+                    final long journalGeneration = (body[ 0 ] == JOURNAL_STARTED) ? readGeneration( record ) : 0L;
+                    if( journalGeneration < generation )
+                    {
+                        // the journal is already covered by the snapshot but
+                        // was not truncated before a crash
+                        return 0L;
+                    }
+                    else if( journalGeneration > generation )
+                    {
+                        throw new IOException( "journal follows a missing snapshot: generation " + journalGeneration ); //$NON-NLS-1$
+                    }
+                }
+                if( record.hasRemaining() )
+                {
+                    applyRecord( record, timeCard, chargeNumbers );
+                }
+                position += RECORD_OVERHEAD + bodyLength;
+            }
+
+            return position;
+        }
+        finally
+        {
+            input.close();
+        }
+    }
+
+    /**
+     * Sets the maximum number of changes whose records may be buffered before
+     * the next change commits the journal.
+     * 
+     * @param maximumPendingChangeCount
+     *        The maximum number of changes that may be pending commit.
+     */
+    void setMaximumPendingChangeCount(
+        final int maximumPendingChangeCount )
+    {
+        synchronized( lock_ )
+        {
+            maximumPendingChangeCount_ = maximumPendingChangeCount;
+        }
+    }
+
+    /**
+     * Starts the specified generation of the journal by appending the record
+     * that identifies it.
+     * 
+     * <p>
+     * The caller must hold {@link #lock_}, and the journal file must be empty.
+     * </p>
+     * 
+     * @param generation
+     *        The generation of the journal.
+     * 
+     * @throws java.io.IOException
+     *         If an I/O error occurs.
+     */
+    private void startGeneration(
+        final long generation )
+        throws IOException
+    {
+        generation_ = generation;
+        beginRecord( JOURNAL_STARTED );
+        recordBodyOutput_.writeLong( generation );
+        endRecord();
+    }
+
+    /**
+     * Appends a record of the specified type that has no other content.
+     * 
+     * @param type
+     *        The type of the record.
+     */
+    private void writeEmptyRecord(
+        final byte type )
+    {
+        if( !beginChange() )
+        {
+            return;
+        }
+
+        synchronized( lock_ )
+        {
+            try
+            {
+                beginRecord( type );
+                endRecord();
+                ++changeCount_;
+            }
+            catch( final IOException e )
+            {
+                failure_ = e;
+            }
+        }
+    }
+
+
+    // ======================================================================
+    // Nested Types
+    // ======================================================================
+
+    /**
+     * The time card listener for the journal.
+     */
+    @SuppressWarnings( "synthetic-access" )
+    private final class TimeCardListener
+        implements ITimeCardListener
+    {
+        // ==================================================================
+        // Constructors
+        // ==================================================================
+
+        /**
+         * Initializes a new instance of the {@code TimeCardListener} class.
+         */
+        TimeCardListener()
+        {
+        }
+
+
+        // ==================================================================
+        // Methods
+        // ==================================================================
+
+        /*
+         * @see com.belcan.beltime.model.ITimeCardListener#onActivitiesAppended(com.belcan.beltime.model.TimeCard, java.util.List)
+         */
+        @Override
+        public void onActivitiesAppended(
+            final TimeCard timeCard,
+            final List<Activity> activities )
+        {
+            if( !beginChange() )
+            {
+                return;
+            }
+
+            synchronized( lock_ )
+            {
+                try
+                {
+                    final int[] chargeNumberIds = new int[ activities.size() ];
+                    for( int index = 0; index < chargeNumberIds.length; ++index )
+                    {
+                        chargeNumberIds[ index ] = getChargeNumberId( NullAnalysis.nonNull( activities.get( index ) ).getChargeNumber() );
+                    }
+
+                    beginRecord( ACTIVITIES_APPENDED );
+                    recordBodyOutput_.writeInt( chargeNumberIds.length );
+                    for( int index = 0; index < chargeNumberIds.length; ++index )
+                    {
+                        final Activity activity = NullAnalysis.nonNull( activities.get( index ) );
+                        recordBodyOutput_.writeInt( chargeNumberIds[ index ] );
+                        recordBodyOutput_.writeLong( activity.getStartTimeInMilliseconds() );
+                        recordBodyOutput_.writeLong( activity.getStopTimeInMilliseconds() );
+                    }
+                    endRecord();
+                    ++changeCount_;
+                }
+                catch( final IOException e )
+                {
+                    failure_ = e;
+                }
+            }
+        }
+
+        /*
+         * @see com.belcan.beltime.model.ITimeCardListener#onActivityStarted(com.belcan.beltime.model.TimeCard, com.belcan.beltime.model.Activity)
+         */
+        @Override
+        public void onActivityStarted(
+            final TimeCard timeCard,
+            final Activity activity )
+        {
+            if( !beginChange() )
+            {
+                return;
+            }
+
+            synchronized( lock_ )
+            {
+                try
+                {
+                    final int chargeNumberId = getChargeNumberId( activity.getChargeNumber() );
+                    beginRecord( ACTIVITY_STARTED );
+                    recordBodyOutput_.writeInt( chargeNumberId );
+                    recordBodyOutput_.writeLong( activity.getStartTimeInMilliseconds() );
+                    endRecord();
+                    ++changeCount_;
+                }
+                catch( final IOException e )
+                {
+                    failure_ = e;
+                }
+            }
+        }
+
+        /*
+         * @see com.belcan.beltime.model.ITimeCardListener#onActivityStopped(com.belcan.beltime.model.TimeCard, com.belcan.beltime.model.Activity)
+         */
+        @Override
+        public void onActivityStopped(
+            final TimeCard timeCard,
+            final Activity activity )
+        {
+            // an activity stopped by starting another activity is replayed by
+            // the record of the started activity
+            if( timeCard.isSwitchingActivities() || !beginChange() )
+            {
+                return;
+            }
+
+            synchronized( lock_ )
+            {
+                try
+                {
+                    beginRecord( ACTIVITY_STOPPED );
+                    recordBodyOutput_.writeLong( activity.getStopTimeInMilliseconds() );
+                    endRecord();
+                    ++changeCount_;
+                }
+                catch( final IOException e )
+                {
+                    failure_ = e;
+                }
+            }
+        }
+
+        /*
+         * @see com.belcan.beltime.model.ITimeCardListener#onPeriodClosed(com.belcan.beltime.model.TimeCard, com.belcan.beltime.model.ClosedPeriod)
+         */
+        @Override
+        public void onPeriodClosed(
+            final TimeCard timeCard,
+            final ClosedPeriod closedPeriod )
+        {
+            if( !beginChange() )
+            {
+                return;
+            }
+
+            synchronized( lock_ )
+            {
+                try
+                {
+                    beginRecord( PERIOD_CLOSED );
+                    recordBodyOutput_.writeLong( closedPeriod.getEndTimeInMilliseconds() );
+                    endRecord();
+                    ++changeCount_;
+                }
+                catch( final IOException e )
+                {
+                    failure_ = e;
+                }
+            }
+        }
+
+        /*
+         * @see com.belcan.beltime.model.ITimeCardListener#onReset(com.belcan.beltime.model.TimeCard)
+         */
+        @Override
+        public void onReset(
+            final TimeCard timeCard )
+        {
+            writeEmptyRecord( RESET );
+        }
+
+        /*
+         * @see com.belcan.beltime.model.ITimeCardListener#onRestored(com.belcan.beltime.model.TimeCard, boolean)
+         */
+        @Override
+        public void onRestored(
+            final TimeCard timeCard,
+            final boolean isUndo )
+        {
+            writeEmptyRecord( isUndo ? UNDONE : REDONE );
+        }
+    }
+}
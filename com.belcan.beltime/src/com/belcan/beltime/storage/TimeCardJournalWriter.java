@@ -0,0 +1,415 @@
+/*
+ * TimeCardJournalWriter.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Mar 8, 2014 at 9:02:47 AM.
+ */
+
+package com.belcan.beltime.storage;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A background writer that commits a time card journal on a dedicated thread,
+ * so the thread that changes the time card never waits for the disk.
+ * 
+ * <p>
+ * Each change to the time card is appended to the in-memory buffer of the
+ * journal by the thread that made it; {@link #requestCommit} then wakes the
+ * writer and returns at once. The writer commits every change buffered so far
+ * with a single write and sync, so changes that arrive while a commit is in
+ * progress are batched into the next one. When the commit completes, the
+ * listeners of the writer are notified on the thread of the writer.
+ * </p>
+ * 
+ * <p>
+ * The buffer of the journal is bounded by the maximum number of pending
+ * changes: if the writer falls that far behind, the next change to the time
+ * card commits the journal on the thread that made it before the change is
+ * buffered. An interactive time card changes far too slowly to reach the
+ * bound, which only throttles bulk changes.
+ * </p>
+ * 
+ * <p>
+ * {@link #flush} commits the journal on the calling thread and should be
+ * called when the application may be stopped, such as when its user
+ * interface is paused. The journal is also flushed when the process shuts
+ * down normally.
+ * </p>
+ */
+public final class TimeCardJournalWriter
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /** The name of the writer thread. */
+    private static final String THREAD_NAME = "TimeCardJournalWriter"; //$NON-NLS-1$
+
+    /** Indicates the writer has been closed. */
+    private boolean isClosed_;
+
+    /** Indicates a commit has been requested since the last commit started. */
+    private boolean isCommitRequested_;
+
+    /** The journal committed by the writer. */
+    private final TimeCardJournal journal_;
+
+    /** The collection of writer listeners. */
+    private final List<ITimeCardJournalWriterListener> listeners_;
+
+    /** The lock that guards the state of the writer. */
+    private final Object lock_;
+
+    /** The thread that flushes the journal when the process shuts down. */
+    private final Thread shutdownHook_;
+
+    /** The writer thread. */
+    private final Thread thread_;
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code TimeCardJournalWriter} class.
+     * 
+     * @param journal
+     *        The journal committed by the writer.
+     */
+    private TimeCardJournalWriter(
+        final TimeCardJournal journal )
+    {
+        isClosed_ = false;
+        isCommitRequested_ = false;
+        journal_ = journal;
+        listeners_ = new CopyOnWriteArrayList<ITimeCardJournalWriterListener>();
+        lock_ = new Object();
+        shutdownHook_ = new Thread( new ShutdownTask() );
+        thread_ = new Thread( new CommitTask(), THREAD_NAME );
+        thread_.setDaemon( true );
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /**
+     * Adds a writer listener.
+     * 
+     * @param listener
+     *        The writer listener.
+     */
+    public void addTimeCardJournalWriterListener(
+        final ITimeCardJournalWriterListener listener )
+    {
+        listeners_.add( listener );
+    }
+
+    /**
+     * Closes the writer.
+     * 
+     * <p>
+     * The writer thread is stopped and every buffered change is committed
+     * before this method returns. The journal itself is not closed.
+     * </p>
+     * 
+     * @throws java.io.IOException
+     *         If an I/O error occurs or the journal has failed.
+     */
+    public void close()
+        throws IOException
+    {
+        synchronized( lock_ )
+        {
+            if( isClosed_ )
+            {
+                return;
+            }
+
+            isClosed_ = true;
+            lock_.notifyAll();
+        }
+
+        try
+        {
+            Runtime.getRuntime().removeShutdownHook( shutdownHook_ );
+        }
+        catch( final IllegalStateException e )
+        {
+            // the process is shutting down and the hook will flush the journal
+        }
+
+        try
+        {
+            thread_.join();
+        }
+        catch( final InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( "interrupted while stopping writer" ); //$NON-NLS-1$
+        }
+
+        flush();
+    }
+
+    /**
+     * Runs the writer thread until the writer is closed or the journal fails.
+     */
+    private void commitRequestedChanges()
+    {
+        while( true )
+        {
+            synchronized( lock_ )
+            {
+                while( !isCommitRequested_ && !isClosed_ )
+                {
+                    try
+                    {
+                        lock_.wait();
+                    }
+                    catch( final InterruptedException e )
+                    {
+                        return;
+                    }
+                }
+
+                if( !isCommitRequested_ )
+                {
+                    return;
+                }
+
+                isCommitRequested_ = false;
+            }
+
+            IOException failure = null;
+            try
+            {
+                journal_.commit();
+            }
+            catch( final IOException e )
+            {
+                failure = e;
+            }
+            if( failure != null )
+            {
+                fireCommitFailed( failure );
+                return;
+            }
+
+            fireCommitted( journal_.getCommittedChangeCount() );
+        }
+    }
+
+    /**
+     * Fires the commit failed event.
+     * 
+     * @param e
+     *        The error that failed the journal.
+     */
+    private void fireCommitFailed(
+        final IOException e )
+    {
+        for( final ITimeCardJournalWriterListener listener : listeners_ )
+        {
+            listener.onCommitFailed( this, e );
+        }
+    }
+
+    /**
+     * Fires the committed event.
+     * 
+     * @param committedChangeCount
+     *        The number of changes that are now durable.
+     */
+    private void fireCommitted(
+        final long committedChangeCount )
+    {
+        for( final ITimeCardJournalWriterListener listener : listeners_ )
+        {
+            listener.onCommitted( this, committedChangeCount );
+        }
+    }
+
+    /**
+     * Commits every change buffered by the journal on the calling thread.
+     * 
+     * <p>
+     * When this method returns, every change made to the time card before it
+     * was called is durable. A commit in progress on the writer thread is
+     * joined rather than repeated. This method may be called from any thread.
+     * </p>
+     * 
+     * @throws java.io.IOException
+     *         If an I/O error occurs or the journal has failed.
+     */
+    public void flush()
+        throws IOException
+    {
+        journal_.commit();
+    }
+
+    /**
+     * Removes a writer listener.
+     * 
+     * @param listener
+     *        The writer listener.
+     */
+    public void removeTimeCardJournalWriterListener(
+        final ITimeCardJournalWriterListener listener )
+    {
+        listeners_.remove( listener );
+    }
+
+    /**
+     * Requests the writer to commit every change buffered by the journal.
+     * 
+     * <p>
+     * This method returns without waiting for the commit. If the journal has
+     * failed, the failure is reported to the listeners of the writer.
+     * </p>
+     * 
+     * @return The number of changes that will be durable once the requested
+     *         commit completes. Compare it to the number reported by
+     *         {@link ITimeCardJournalWriterListener#onCommitted} to find out
+     *         when the changes made so far are durable.
+     * 
+     * @throws java.lang.IllegalStateException
+     *         If the writer is closed.
+     */
+    public long requestCommit()
+    {
+        final long changeCount = journal_.getChangeCount();
+        synchronized( lock_ )
+        {
+            if( isClosed_ )
+            {
+                throw new IllegalStateException( "writer is closed" ); //$NON-NLS-1$
+            }
+
+            isCommitRequested_ = true;
+            lock_.notifyAll();
+        }
+
+        return changeCount;
+    }
+
+    /**
+     * Starts a writer for the specified journal.
+     * 
+     * @param journal
+     *        The journal to be committed by the writer.
+     * @param maximumPendingChangeCount
+     *        The maximum number of changes that may be buffered by the journal
+     *        before the next change commits it on the thread that made it.
+     * 
+     * @return The started writer.
+     * 
+     * @throws java.lang.IllegalArgumentException
+     *         If {@code maximumPendingChangeCount} is not positive.
+     */
+    public static TimeCardJournalWriter start(
+        final TimeCardJournal journal,
+        final int maximumPendingChangeCount )
+    {
+        if( maximumPendingChangeCount <= 0 )
+        {
+            throw new IllegalArgumentException( "maximum pending change count must be positive" ); //$NON-NLS-1$
+        }
+
+        journal.setMaximumPendingChangeCount( maximumPendingChangeCount );
+        final TimeCardJournalWriter writer = new TimeCardJournalWriter( journal );
+        writer.thread_.start();
+        Runtime.getRuntime().addShutdownHook( writer.shutdownHook_ );
+        return writer;
+    }
+
+
+    // ======================================================================
+    // Nested Types
+    // ======================================================================
+
+    /**
+     * The task run by the writer thread.
+     */
+    @SuppressWarnings( "synthetic-access" )
+    private final class CommitTask
+        implements Runnable
+    {
+        // ==================================================================
+        // Constructors
+        // ==================================================================
+
+        /**
+         * Initializes a new instance of the {@code CommitTask} class.
+         */
+        CommitTask()
+        {
+        }
+
+
+        // ==================================================================
+        // Methods
+        // ==================================================================
+
+        /*
+         * @see java.lang.Runnable#run()
+         */
+        @Override
+        public void run()
+        {
+            commitRequestedChanges();
+        }
+    }
+
+    /**
+     * The task run when the process shuts down.
+     */
+    private final class ShutdownTask
+        implements Runnable
+    {
+        // ==================================================================
+        // Constructors
+        // ==================================================================
+
+        /**
+         * Initializes a new instance of the {@code ShutdownTask} class.
+         */
+        ShutdownTask()
+        {
+        }
+
+
+        // ==================================================================
+        // Methods
+        // ==================================================================
+
+        /*
+         * @see java.lang.Runnable#run()
+         */
+        @Override
+        public void run()
+        {
+            try
+            {
+                flush();
+            }
+            catch( final IOException e )
+            {
+                // nothing more can be done while the process shuts down
+            }
+        }
+    }
+}
@@ -0,0 +1,434 @@
+/*
+ * TimeCardSnapshotFile.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Mar 6, 2014 at 9:05:41 AM.
+ */
+
+package com.belcan.beltime.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import com.belcan.beltime.model.Activity;
+import com.belcan.beltime.model.ChargeNumber;
+import com.belcan.beltime.model.ClosedPeriod;
+import com.belcan.beltime.model.IActivityRecords;
+import com.belcan.beltime.model.TimeCard;
+import com.belcan.beltime.model.TimeCardSnapshot;
+import com.belcan.beltime.util.NullAnalysis;
+
+/**
+ * A compact binary snapshot of the state of a time card.
+ * 
+ * <p>
+ * The snapshot file holds the generation of the journal it precedes, the
+ * charge number dictionary, the activities of each closed period, the inactive
+ * activities, and the active activity, followed by the CRC-32 of its content.
+ * Activities refer to their charge numbers by their index in the dictionary.
+ * A snapshot file is replaced atomically: the new snapshot is written to a
+ * temporary file, which is synced and then renamed over the previous snapshot.
+ * </p>
+ */
+final class TimeCardSnapshotFile
+{
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /** The size of the buffer used to read and write the file in bytes. */
+    private static final int BUFFER_SIZE = 65536;
+
+    /** The suffix of the name of the temporary file. */
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp"; //$NON-NLS-1$
+
+
+    // ======================================================================
+    // Constructors
+    // ======================================================================
+
+    /**
+     * Initializes a new instance of the {@code TimeCardSnapshotFile} class.
+     */
+    private TimeCardSnapshotFile()
+    {
+    }
+
+
+    // ======================================================================
+    // Methods
+    // ======================================================================
+
+    /**
+     * Adds the specified charge number to the specified charge number
+     * dictionary if it is not already present.
+     * 
+     * @param chargeNumber
+     *        The charge number.
+     * @param chargeNumberIds
+     *        The identifiers of the charge numbers in the dictionary keyed by
+     *        charge number.
+     * @param chargeNumbers
+     *        The charge numbers in the dictionary in order of their
+     *        identifiers.
+     */
+    private static void addChargeNumber(
+        final ChargeNumber chargeNumber,
+        final Map<ChargeNumber, Integer> chargeNumberIds,
+        final List<ChargeNumber> chargeNumbers )
+    {
+        if( !chargeNumberIds.containsKey( chargeNumber ) )
+        {
+            chargeNumberIds.put( chargeNumber, Integer.valueOf( chargeNumbers.size() ) );
+            chargeNumbers.add( chargeNumber );
+        }
+    }
+
+    /**
+     * Adds the charge numbers of the specified activity records to the
+     * specified charge number dictionary.
+     * 
+     * @param activityRecords
+     *        The activity records.
+     * @param chargeNumberIds
+     *        The identifiers of the charge numbers in the dictionary keyed by
+     *        charge number.
+     * @param chargeNumbers
+     *        The charge numbers in the dictionary in order of their
+     *        identifiers.
+     */
+    private static void addChargeNumbers(
+        final IActivityRecords activityRecords,
+        final Map<ChargeNumber, Integer> chargeNumberIds,
+        final List<ChargeNumber> chargeNumbers )
+    {
+        final int activityCount = activityRecords.size();
+        for( int index = 0; index < activityCount; ++index )
+        {
+            addChargeNumber( activityRecords.getChargeNumber( index ), chargeNumberIds, chargeNumbers );
+        }
+    }
+
+    /**
+     * Creates an exception indicating the snapshot file is malformed.
+     * 
+     * @param cause
+     *        The cause of the exception.
+     * 
+     * @return A new exception indicating the snapshot file is malformed.
+     */
+    private static IOException createMalformedSnapshotException(
+        final RuntimeException cause )
+    {
+        final IOException e = new IOException( "malformed time card snapshot" ); //$NON-NLS-1$
+        e.initCause( cause );
+        return e;
+    }
+
+    /**
+     * Gets the charge number with the specified identifier.
+     * 
+     * @param chargeNumbers
+     *        The charge numbers in the dictionary in order of their
+     *        identifiers.
+     * @param id
+     *        The charge number identifier.
+     * 
+     * @return The charge number with the specified identifier.
+     * 
+     * @throws java.io.IOException
+     *         If no charge number has the specified identifier.
+     */
+    private static ChargeNumber getChargeNumber(
+        final List<ChargeNumber> chargeNumbers,
+        final int id )
+        throws IOException
+    {
+        if( (id < 0) || (id >= chargeNumbers.size()) )
+        {
+            throw new IOException( "unknown charge number identifier: " + id ); //$NON-NLS-1$
+        }
+
+        return NullAnalysis.nonNull( chargeNumbers.get( id ) );
+    }
+
+    /**
+     * Reads the specified snapshot file into the specified time card.
+     * 
+     * <p>
+     * The time card is restored through its public methods, after which its
+     * history is cleared, so none of the restored changes may be undone.
+     * </p>
+     * 
+     * @param file
+     *        The snapshot file.
+     * @param timeCard
+     *        The empty time card to be restored.
+     * @param chargeNumbers
+     *        The collection that receives the charge number dictionary of the
+     *        snapshot in order of the charge number identifiers.
+     * 
+     * @return The generation of the journal that follows the snapshot.
+     * 
+     * @throws java.io.IOException
+     *         If an I/O error occurs or the snapshot file is malformed.
+     */
+    static long read(
+        final File file,
+        final TimeCard timeCard,
+        final List<ChargeNumber> chargeNumbers )
+        throws IOException
+    {
+        final CRC32 crc = new CRC32();
+        final DataInputStream input = new DataInputStream( new CheckedInputStream( new BufferedInputStream( new FileInputStream( file ), BUFFER_SIZE ), crc ) );
+        try
+        {
+            final long generation = input.readLong();
+
+            final int chargeNumberCount = readCount( input );
+            for( int index = 0; index < chargeNumberCount; ++index )
+            {
+                chargeNumbers.add( ChargeNumber.fromString( NullAnalysis.nonNull( input.readUTF() ) ) );
+            }
+
+            final int closedPeriodCount = readCount( input );
+            for( int index = 0; index < closedPeriodCount; ++index )
+            {
+                final long endTime = input.readLong();
+                timeCard.appendActivities( readActivities( input, chargeNumbers ) );
+                timeCard.closePeriod( endTime );
+            }
+
+            timeCard.appendActivities( readActivities( input, chargeNumbers ) );
+
+            if( input.readBoolean() )
+            {
+                timeCard.startActivity( getChargeNumber( chargeNumbers, input.readInt() ), input.readLong() );
+            }
+
+            final int expectedCrc = (int)crc.getValue();
+            if( input.readInt() != expectedCrc )
+            {
+                throw new IOException( "time card snapshot checksum mismatch" ); //$NON-NLS-1$
+            }
+
+            timeCard.clearHistory();
+            return generation;
+        }
+        catch( final IllegalArgumentException e )
+        {
+            throw createMalformedSnapshotException( e );
+        }
+        catch( final IllegalStateException e )
+        {
+            throw createMalformedSnapshotException( e );
+        }
+        finally
+        {
+            input.close();
+        }
+    }
+
+    /**
+     * Reads a block of inactive activities.
+     * 
+     * @param input
+     *        The input stream.
+     * @param chargeNumbers
+     *        The charge numbers in the dictionary in order of their
+     *        identifiers.
+     * 
+     * @return The collection of inactive activities in chronological order.
+     * 
+     * @throws java.io.IOException
+     *         If an I/O error occurs or the block is malformed.
+     */
+    private static List<Activity> readActivities(
+        final DataInputStream input,
+        final List<ChargeNumber> chargeNumbers )
+        throws IOException
+    {
+        final int activityCount = readCount( input );
+        final List<Activity> activities = new ArrayList<Activity>( Math.min( activityCount, BUFFER_SIZE ) );
+        for( int index = 0; index < activityCount; ++index )
+        {
+            final Activity activity = Activity.start( getChargeNumber( chargeNumbers, input.readInt() ), input.readLong() );
+            activity.stop( input.readLong() );
+            activities.add( activity );
+        }
+        return activities;
+    }
+
+    /**
+     * Reads a non-negative count.
+     * 
+     * @param input
+     *        The input stream.
+     * 
+     * @return The count.
+     * 
+     * @throws java.io.IOException
+     *         If an I/O error occurs or the count is negative.
+     */
+    private static int readCount(
+        final DataInputStream input )
+        throws IOException
+    {
+        final int count = input.readInt();
+        if( count < 0 )
+        {
+            throw new IOException( "invalid count: " + count ); //$NON-NLS-1$
+        }
+
+        return count;
+    }
+
+    /**
+     * Writes the specified time card snapshot to the specified snapshot file,
+     * atomically replacing its previous content.
+     * 
+     * @param file
+     *        The snapshot file.
+     * @param snapshot
+     *        The time card snapshot.
+     * @param generation
+     *        The generation of the journal that follows the snapshot.
+     * 
+     * @return The charge number dictionary of the snapshot in order of the
+     *         charge number identifiers.
+     * 
+     * @throws java.io.IOException
+     *         If an I/O error occurs. The previous content of the snapshot
+     *         file is unaffected.
+     */
+    static List<ChargeNumber> write(
+        final File file,
+        final TimeCardSnapshot snapshot,
+        final long generation )
+        throws IOException
+    {
+        final List<ClosedPeriod> closedPeriods = snapshot.getClosedPeriods();
+        final IActivityRecords activityRecords = snapshot.getActivityRecords();
+        final List<Activity> activities = snapshot.getActivities();
+        final Activity activeActivity = snapshot.isActive() ? activities.get( activities.size() - 1 ) : null;
+
+        final Map<ChargeNumber, Integer> chargeNumberIds = new HashMap<ChargeNumber, Integer>();
+        final List<ChargeNumber> chargeNumbers = new ArrayList<ChargeNumber>();
+        for( final ClosedPeriod closedPeriod : closedPeriods )
+        {
+            addChargeNumbers( closedPeriod.getActivityRecords(), chargeNumberIds, chargeNumbers );
+        }
+        addChargeNumbers( activityRecords, chargeNumberIds, chargeNumbers );
+        if( activeActivity != null )
+        {
+            addChargeNumber( activeActivity.getChargeNumber(), chargeNumberIds, chargeNumbers );
+        }
+
+        final File temporaryFile = new File( file.getPath() + TEMPORARY_FILE_SUFFIX );
+        boolean isWritten = false;
+        try
+        {
+            final FileOutputStream outputStream = new FileOutputStream( temporaryFile );
+            try
+            {
+                final CRC32 crc = new CRC32();
+                final DataOutputStream output = new DataOutputStream( new CheckedOutputStream( new BufferedOutputStream( outputStream, BUFFER_SIZE ), crc ) );
+                output.writeLong( generation );
+
+                output.writeInt( chargeNumbers.size() );
+                for( final ChargeNumber chargeNumber : chargeNumbers )
+                {
+                    output.writeUTF( chargeNumber.toString() );
+                }
+
+                output.writeInt( closedPeriods.size() );
+                for( final ClosedPeriod closedPeriod : closedPeriods )
+                {
+                    output.writeLong( closedPeriod.getEndTimeInMilliseconds() );
+                    writeActivities( output, closedPeriod.getActivityRecords(), chargeNumberIds );
+                }
+
+                writeActivities( output, activityRecords, chargeNumberIds );
+
+                output.writeBoolean( activeActivity != null );
+                if( activeActivity != null )
+                {
+                    output.writeInt( NullAnalysis.nonNull( chargeNumberIds.get( activeActivity.getChargeNumber() ) ).intValue() );
+                    output.writeLong( activeActivity.getStartTimeInMilliseconds() );
+                }
+
+                output.writeInt( (int)crc.getValue() );
+                output.flush();
+                outputStream.getFD().sync();
+            }
+            finally
+            {
+                outputStream.close();
+            }
+
+            if( !temporaryFile.renameTo( file ) )
+            {
+                throw new IOException( "failed to rename time card snapshot: " + temporaryFile ); //$NON-NLS-1$
+            }
+            isWritten = true;
+        }
+        finally
+        {
+            if( !isWritten )
+            {
+                temporaryFile.delete();
+            }
+        }
+
+        return chargeNumbers;
+    }
+
+    /**
+     * Writes a block of inactive activities.
+     * 
+     * @param output
+     *        The output stream.
+     * @param activityRecords
+     *        The records of the inactive activities.
+     * @param chargeNumberIds
+     *        The identifiers of the charge numbers in the dictionary keyed by
+     *        charge number.
+     * 
+     * @throws java.io.IOException
+     *         If an I/O error occurs.
+     */
+    private static void writeActivities(
+        final DataOutputStream output,
+        final IActivityRecords activityRecords,
+        final Map<ChargeNumber, Integer> chargeNumberIds )
+        throws IOException
+    {
+        final int activityCount = activityRecords.size();
+        output.writeInt( activityCount );
+        for( int index = 0; index < activityCount; ++index )
+        {
+            output.writeInt( NullAnalysis.nonNull( chargeNumberIds.get( activityRecords.getChargeNumber( index ) ) ).intValue() );
+            output.writeLong( activityRecords.getStartTime( index ) );
+            output.writeLong( activityRecords.getStopTime( index ) );
+        }
+    }
+}
@@ -0,0 +1,21 @@
+/*
+ * package-info.java
+ *
+ * Copyright 2014 Beltime contributors and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Public License v1.0, which
+ * accompanies this distribution and is available at
+ * <http://www.eclipse.org/legal/epl-v10.html>.
+ *
+ * Created on Mar 4, 2014 at 9:12:40 AM.
+ */
+
+/**
+ * Defines the persistent storage of the Beltime application model.
+ */
+@NonNullByDefault
+package com.belcan.beltime.storage;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
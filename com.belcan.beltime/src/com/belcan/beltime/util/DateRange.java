@@ -26,11 +26,11 @@ public final class DateRange
     // Fields
     // ======================================================================
 
-    /** The beginning date of the range, inclusive. */
-    private final Date beginDate_;
+    /** The beginning time of the range in milliseconds, inclusive. */
+    private final long beginTime_;
 
-    /** The ending date of the range, inclusive. */
-    private final Date endDate_;
+    /** The ending time of the range in milliseconds, inclusive. */
+    private final long endTime_;
 
 
     // ======================================================================
@@ -52,13 +52,31 @@ public final class DateRange
         final Date beginDate,
         final Date endDate )
     {
-        if( endDate.compareTo( beginDate ) < 0 )
+        this( beginDate.getTime(), endDate.getTime() );
+    }
+
+    /**
+     * Initializes a new instance of the {@code DateRange} class.
+     * 
+     * @param beginTime
+     *        The beginning time of the range in milliseconds, inclusive.
+     * @param endTime
+     *        The ending time of the range in milliseconds, inclusive.
+     * 
+     * @throws java.lang.IllegalArgumentException
+     *         If {@code endTime} is less than {@code beginTime}.
+     */
+    private DateRange(
+        final long beginTime,
+        final long endTime )
+    {
+        if( endTime < beginTime )
         {
             throw new IllegalArgumentException( "ending date must be greater than or equal to beginning date" ); //$NON-NLS-1$
         }
 
-        beginDate_ = new Date( beginDate.getTime() );
-        endDate_ = new Date( endDate.getTime() );
+        beginTime_ = beginTime;
+        endTime_ = endTime;
     }
 
 
@@ -85,8 +103,28 @@ public final class DateRange
         }
 
         final DateRange other = (DateRange)o;
-        return beginDate_.equals( other.beginDate_ ) //
-            && endDate_.equals( other.endDate_ );
+        return (beginTime_ == other.beginTime_) //
+            && (endTime_ == other.endTime_);
+    }
+
+    /**
+     * Creates a new date range from the specified times in milliseconds.
+     * 
+     * @param beginTime
+     *        The beginning time of the range in milliseconds, inclusive.
+     * @param endTime
+     *        The ending time of the range in milliseconds, inclusive.
+     * 
+     * @return A new date range.
+     * 
+     * @throws java.lang.IllegalArgumentException
+     *         If {@code endTime} is less than {@code beginTime}.
+     */
+    public static DateRange fromMilliseconds(
+        final long beginTime,
+        final long endTime )
+    {
+        return new DateRange( beginTime, endTime );
     }
 
     /**
@@ -96,7 +134,17 @@ public final class DateRange
      */
     public Date getBeginDate()
     {
-        return new Date( beginDate_.getTime() );
+        return new Date( beginTime_ );
+    }
+
+    /**
+     * Gets the beginning time of the range in milliseconds, inclusive.
+     * 
+     * @return The beginning time of the range in milliseconds, inclusive.
+     */
+    public long getBeginTimeInMilliseconds()
+    {
+        return beginTime_;
     }
 
     /**
@@ -106,7 +154,17 @@ public final class DateRange
      */
     public Date getEndDate()
     {
-        return new Date( endDate_.getTime() );
+        return new Date( endTime_ );
+    }
+
+    /**
+     * Gets the ending time of the range in milliseconds, inclusive.
+     * 
+     * @return The ending time of the range in milliseconds, inclusive.
+     */
+    public long getEndTimeInMilliseconds()
+    {
+        return endTime_;
     }
 
     /*
@@ -116,8 +174,8 @@ public final class DateRange
     public int hashCode()
     {
         int hashCode = 17;
-        hashCode = 31 * hashCode + beginDate_.hashCode();
-        hashCode = 31 * hashCode + endDate_.hashCode();
+        hashCode = 31 * hashCode + (int)(beginTime_ ^ (beginTime_ >>> 32));
+        hashCode = 31 * hashCode + (int)(endTime_ ^ (endTime_ >>> 32));
         return hashCode;
     }
 
@@ -130,9 +188,9 @@ public final class DateRange
         final StringBuilder sb = new StringBuilder();
         sb.append( "DateRange[" ); //$NON-NLS-1$
         sb.append( "beginDate=" ); //$NON-NLS-1$
-        sb.append( beginDate_ );
+        sb.append( new Date( beginTime_ ) );
         sb.append( ", endDate=" ); //$NON-NLS-1$
-        sb.append( endDate_ );
+        sb.append( new Date( endTime_ ) );
         sb.append( "]" ); //$NON-NLS-1$
         return NullAnalysis.nonNull( sb.toString() );
     }
@@ -46,4 +46,14 @@ public final class Dates
     {
         return new Date();
     }
+
+    /**
+     * Gets the current time in milliseconds.
+     * 
+     * @return The current time in milliseconds.
+     */
+    public static long nowInMilliseconds()
+    {
+        return System.currentTimeMillis();
+    }
 }
@@ -14,8 +14,15 @@
 
 package com.belcan.beltime.view;
 
+import java.io.File;
+import java.io.IOException;
 import android.app.Application;
+import android.util.Log;
+import com.belcan.beltime.model.DailyBillingAggregator;
 import com.belcan.beltime.model.TimeCard;
+import com.belcan.beltime.storage.TimeCardJournal;
+import com.belcan.beltime.storage.TimeCardJournalWriter;
+import org.eclipse.jdt.annotation.Nullable;
 
 /**
  * The Beltime application.
@@ -27,9 +34,30 @@ public final class BeltimeApplication
     // Fields
     // ======================================================================
 
+    /** The tag of the messages logged by the application. */
+    private static final String LOG_TAG = "Beltime"; //$NON-NLS-1$
+
+    /**
+     * The maximum number of changes to the time card that may be pending
+     * commit before the next change waits for the journal to be committed.
+     */
+    private static final int MAXIMUM_PENDING_CHANGE_COUNT = 1024;
+
+    /** The name of the time card journal file. */
+    private static final String TIME_CARD_JOURNAL_FILE_NAME = "timecard.journal"; //$NON-NLS-1$
+
+    /** The daily billing reports aggregator for the time card. */
+    private final DailyBillingAggregator dailyBillingAggregator_;
+
     /** The time card. */
     private final TimeCard timeCard_;
 
+    /**
+     * The writer of the journal of the time card or {@code null} if the
+     * application has not been created.
+     */
+    private TimeCardJournalWriter timeCardJournalWriter_;
+
 
     // ======================================================================
     // Constructors
@@ -41,6 +69,8 @@ public final class BeltimeApplication
     public BeltimeApplication()
     {
         timeCard_ = new TimeCard();
+        dailyBillingAggregator_ = DailyBillingAggregator.attach( timeCard_ );
+        timeCardJournalWriter_ = null;
     }
 
 
@@ -48,6 +78,51 @@ public final class BeltimeApplication
     // Methods
     // ======================================================================
 
+    /**
+     * Commits the changes made to the time card to its journal and waits for
+     * them to become durable.
+     * 
+     * <p>
+     * This method should only be called when the application may be stopped,
+     * because it waits for the disk.
+     * </p>
+     * 
+     * @return {@code true} if the changes made to the time card are durable;
+     *         {@code false} if the journal cannot be committed, in which case
+     *         the failure is logged and the caller should tell the user that
+     *         changes are not being saved.
+     */
+    boolean flushTimeCardJournal()
+    {
+        final TimeCardJournalWriter timeCardJournalWriter = timeCardJournalWriter_;
+        if( timeCardJournalWriter == null )
+        {
+            return false;
+        }
+
+        try
+        {
+            timeCardJournalWriter.flush();
+            return true;
+        }
+        catch( final IOException e )
+        {
+            Log.e( LOG_TAG, "failed to commit time card journal", e ); //$NON-NLS-1$
+            return false;
+        }
+    }
+
+    /**
+     * Gets the daily billing reports aggregator for the time card.
+     * 
+     * @return The daily billing reports aggregator for the time card.
+     */
+    @SuppressWarnings( "null" )
+    DailyBillingAggregator getDailyBillingAggregator()
+    {
+        return dailyBillingAggregator_;
+    }
+
     /**
      * Gets the time card.
      * 
@@ -58,4 +133,78 @@ public final class BeltimeApplication
     {
         return timeCard_;
     }
+
+    /*
+     * @see android.app.Application#onCreate()
+     */
+    @Override
+    public void onCreate()
+    {
+        super.onCreate();
+
+        final TimeCardJournal timeCardJournal = openTimeCardJournal();
+        if( timeCardJournal != null )
+        {
+            timeCardJournalWriter_ = TimeCardJournalWriter.start( timeCardJournal, MAXIMUM_PENDING_CHANGE_COUNT );
+        }
+    }
+
+    /**
+     * Opens the journal of the time card and recovers the time card from it.
+     * 
+     * <p>
+     * A journal that cannot be recovered must not keep the application from
+     * starting, so it is logged and quarantined for later examination, and
+     * the time card starts over with a new journal. If not even a new journal
+     * can be opened, changes to the time card are not saved.
+     * </p>
+     * 
+     * @return The journal of the time card or {@code null} if no journal could
+     *         be opened.
+     */
+    @Nullable
+    private TimeCardJournal openTimeCardJournal()
+    {
+        final File file = new File( getFilesDir(), TIME_CARD_JOURNAL_FILE_NAME );
+        try
+        {
+            return TimeCardJournal.open( file, timeCard_ );
+        }
+        catch( final IOException e )
+        {
+            Log.e( LOG_TAG, "failed to recover time card journal; quarantining it", e ); //$NON-NLS-1$
+        }
+
+        // discard whatever was replayed before the journal failed
+        timeCard_.reset();
+        timeCard_.clearHistory();
+        try
+        {
+            TimeCardJournal.quarantine( file );
+            return TimeCardJournal.open( file, timeCard_ );
+        }
+        catch( final IOException e )
+        {
+            Log.e( LOG_TAG, "failed to start new time card journal; changes will not be saved", e ); //$NON-NLS-1$
+            return null;
+        }
+    }
+
+    /**
+     * Requests the changes made to the time card to be committed to its
+     * journal in the background.
+     * 
+     * <p>
+     * This method does not wait for the disk, so it may be called from the
+     * user interface thread after each change to the time card.
+     * </p>
+     */
+    void requestTimeCardJournalCommit()
+    {
+        final TimeCardJournalWriter timeCardJournalWriter = timeCardJournalWriter_;
+        if( timeCardJournalWriter != null )
+        {
+            timeCardJournalWriter.requestCommit();
+        }
+    }
 }
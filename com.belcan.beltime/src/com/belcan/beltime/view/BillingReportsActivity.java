@@ -14,16 +14,48 @@
 
 package com.belcan.beltime.view;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import android.os.Bundle;
+import android.widget.ListAdapter;
+import android.widget.ListView;
+import android.widget.SimpleAdapter;
 import com.belcan.beltime.R;
+import com.belcan.beltime.model.Activity;
+import com.belcan.beltime.model.BillingReport;
+import com.belcan.beltime.model.ClosedPeriod;
+import com.belcan.beltime.model.ITimeCardListener;
+import com.belcan.beltime.model.TimeCard;
 import org.eclipse.jdt.annotation.Nullable;
 
 /**
  * The billing reports activity.
+ * 
+ * <p>
+ * The daily billing reports are read from the aggregator maintained by the
+ * application, so showing them never processes the activities of the time
+ * card again.
+ * </p>
  */
 public final class BillingReportsActivity
     extends AbstractBeltimeActivity
 {
+    // ======================================================================
+    // Fields
+    // ======================================================================
+
+    /** The billing reports list view. */
+    private ListView billingReportsListView_;
+
+    /** The display utilities. */
+    private final DisplayUtils displayUtils_;
+
+    /** The time card listener for the activity. */
+    private final ITimeCardListener timeCardListener_;
+
+
     // ======================================================================
     // Constructors
     // ======================================================================
@@ -33,6 +65,8 @@ public final class BillingReportsActivity
      */
     public BillingReportsActivity()
     {
+        displayUtils_ = new DisplayUtils( this );
+        timeCardListener_ = new TimeCardListener();
     }
 
 
@@ -40,6 +74,37 @@ public final class BillingReportsActivity
     // Methods
     // ======================================================================
 
+    /**
+     * Creates the adapter for the billing reports list view.
+     * 
+     * @return The adapter for the billing reports list view.
+     */
+    private ListAdapter createBillingReportsAdapter()
+    {
+        final String dateColumnName = "date"; //$NON-NLS-1$
+        final String billsColumnName = "bills"; //$NON-NLS-1$
+        final String[] from = {
+            dateColumnName, //
+            billsColumnName
+        };
+        final int[] to = {
+            R.id.dateTextView, //
+            R.id.billsTextView
+        };
+
+        final List<Map<String, Object>> billingReportsData = new ArrayList<Map<String, Object>>();
+        for( final BillingReport billingReport : getBeltimeApplication().getDailyBillingAggregator().getBillingReports() )
+        {
+            assert billingReport != null;
+            final Map<String, Object> billingReportData = new HashMap<String, Object>();
+            billingReportData.put( dateColumnName, displayUtils_.formatDate( billingReport ) );
+            billingReportData.put( billsColumnName, displayUtils_.formatBills( billingReport ) );
+            billingReportsData.add( billingReportData );
+        }
+
+        return new SimpleAdapter( this, billingReportsData, R.layout.view_billing_report, from, to );
+    }
+
     /*
      * @see android.app.Activity#onCreate(android.os.Bundle)
      */
@@ -51,5 +116,133 @@ public final class BillingReportsActivity
         super.onCreate( savedInstanceState );
 
         setContentView( R.layout.activity_billing_reports );
+        billingReportsListView_ = (ListView)findViewById( R.id.billingReportsListView );
+    }
+
+    /*
+     * @see android.app.Activity#onPause()
+     */
+    @Override
+    protected void onPause()
+    {
+        super.onPause();
+
+        getTimeCard().removeTimeCardListener( timeCardListener_ );
+    }
+
+    /*
+     * @see android.app.Activity#onResume()
+     */
+    @Override
+    protected void onResume()
+    {
+        super.onResume();
+
+        // added after the aggregator, so the aggregator is up to date whenever
+        // the listener is notified
+        getTimeCard().addTimeCardListener( timeCardListener_ );
+        update();
+    }
+
+    /**
+     * Updates the state of the activity based on the model.
+     */
+    private void update()
+    {
+        billingReportsListView_.setAdapter( createBillingReportsAdapter() );
+    }
+
+
+    // ======================================================================
+    // Nested Types
+    // ======================================================================
+
+    /**
+     * The time card listener for the activity.
+     */
+    @SuppressWarnings( "synthetic-access" )
+    private final class TimeCardListener
+        implements ITimeCardListener
+    {
+        // ==================================================================
+        // Constructors
+        // ==================================================================
+
+        /**
+         * Initializes a new instance of the {@code TimeCardListener} class.
+         */
+        TimeCardListener()
+        {
+        }
+
+
+        // ==================================================================
+        // Methods
+        // ==================================================================
+
+        /*
+         * @see com.belcan.beltime.model.ITimeCardListener#onActivitiesAppended(com.belcan.beltime.model.TimeCard, java.util.List)
+         */
+        @Override
+        public void onActivitiesAppended(
+            final TimeCard timeCard,
+            final List<Activity> activities )
+        {
+            update();
+        }
+
+        /*
+         * @see com.belcan.beltime.model.ITimeCardListener#onActivityStarted(com.belcan.beltime.model.TimeCard, com.belcan.beltime.model.Activity)
+         */
+        @Override
+        public void onActivityStarted(
+            final TimeCard timeCard,
+            final Activity activity )
+        {
+            // do nothing
+        }
+
+        /*
+         * @see com.belcan.beltime.model.ITimeCardListener#onActivityStopped(com.belcan.beltime.model.TimeCard, com.belcan.beltime.model.Activity)
+         */
+        @Override
+        public void onActivityStopped(
+            final TimeCard timeCard,
+            final Activity activity )
+        {
+            update();
+        }
+
+        /*
+         * @see com.belcan.beltime.model.ITimeCardListener#onPeriodClosed(com.belcan.beltime.model.TimeCard, com.belcan.beltime.model.ClosedPeriod)
+         */
+        @Override
+        public void onPeriodClosed(
+            final TimeCard timeCard,
+            final ClosedPeriod closedPeriod )
+        {
+            update();
+        }
+
+        /*
+         * @see com.belcan.beltime.model.ITimeCardListener#onReset(com.belcan.beltime.model.TimeCard)
+         */
+        @Override
+        public void onReset(
+            final TimeCard timeCard )
+        {
+            update();
+        }
+
+        /*
+         * @see com.belcan.beltime.model.ITimeCardListener#onRestored(com.belcan.beltime.model.TimeCard, boolean)
+         */
+        @Override
+        public void onRestored(
+            final TimeCard timeCard,
+            final boolean isUndo )
+        {
+            update();
+        }
     }
 }
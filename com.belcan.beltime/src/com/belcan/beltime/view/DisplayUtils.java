@@ -14,9 +14,13 @@
 
 package com.belcan.beltime.view;
 
+import java.text.DateFormat;
+import java.util.TimeZone;
 import android.content.Context;
 import com.belcan.beltime.R;
 import com.belcan.beltime.model.Activity;
+import com.belcan.beltime.model.Bill;
+import com.belcan.beltime.model.BillingReport;
 import com.belcan.beltime.util.NullAnalysis;
 
 /**
@@ -34,6 +38,9 @@ final class DisplayUtils
     /** The application context. */
     private final Context context_;
 
+    /** The format of the day of a daily billing report. */
+    private final DateFormat dayFormat_;
+
 
     // ======================================================================
     // Constructors
@@ -49,6 +56,8 @@ final class DisplayUtils
         final Context context )
     {
         context_ = context;
+        dayFormat_ = DateFormat.getDateInstance();
+        dayFormat_.setTimeZone( TimeZone.getTimeZone( "GMT" ) ); //$NON-NLS-1$
     }
 
 
@@ -56,6 +65,32 @@ final class DisplayUtils
     // Methods
     // ======================================================================
 
+    /**
+     * Formats the bills of the specified billing report, one per line.
+     * 
+     * @param billingReport
+     *        The billing report.
+     * 
+     * @return The formatted bills.
+     */
+    String formatBills(
+        final BillingReport billingReport )
+    {
+        final StringBuilder sb = new StringBuilder();
+        for( final Bill bill : billingReport.getBills() )
+        {
+            if( sb.length() > 0 )
+            {
+                sb.append( '\n' );
+            }
+
+            final double durationInHours = bill.getDuration().toMilliseconds() / MILLISECONDS_PER_HOUR;
+            sb.append( context_.getString( R.string.displayUtils_bill, bill.getChargeNumber().toString(), Double.valueOf( durationInHours ) ) );
+        }
+
+        return NullAnalysis.nonNull( sb.toString() );
+    }
+
     /**
      * Formats the charge number of the specified activity.
      * 
@@ -71,6 +106,24 @@ final class DisplayUtils
         return activity.getChargeNumber().toString();
     }
 
+    /**
+     * Formats the day of the specified daily billing report.
+     * 
+     * <p>
+     * Daily billing reports cover GMT days, so the day is formatted in GMT.
+     * </p>
+     * 
+     * @param billingReport
+     *        The daily billing report.
+     * 
+     * @return The formatted day.
+     */
+    String formatDate(
+        final BillingReport billingReport )
+    {
+        return NullAnalysis.nonNull( dayFormat_.format( billingReport.getDateRange().getBeginDate() ) );
+    }
+
     /**
      * Formats the duration of the specified activity.
      * 
@@ -14,6 +14,7 @@
 
 package com.belcan.beltime.view;
 
+import java.util.List;
 import android.app.AlertDialog;
 import android.content.DialogInterface;
 import android.content.Intent;
@@ -24,9 +25,11 @@ import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.TextView;
+import android.widget.Toast;
 import com.belcan.beltime.R;
 import com.belcan.beltime.model.Activity;
 import com.belcan.beltime.model.ChargeNumber;
+import com.belcan.beltime.model.ClosedPeriod;
 import com.belcan.beltime.model.ITimeCardListener;
 import com.belcan.beltime.model.TimeCard;
 import com.belcan.beltime.util.Dates;
@@ -107,7 +110,11 @@ public final class MainActivity
                     final int which )
                 {
                     final ChargeNumber chargeNumber = ChargeNumber.fromString( NullAnalysis.nonNull( chargeNumberEditText.getText().toString() ) );
-                    getTimeCard().startActivity( chargeNumber, Dates.now() );
+                    final TimeCard timeCard = getTimeCard();
+
+                    // the wall clock may have moved backwards since the previous activity
+                    timeCard.startActivity( chargeNumber, Math.max( Dates.nowInMilliseconds(), timeCard.getEarliestStartTimeInMilliseconds() ) );
+                    getBeltimeApplication().requestTimeCardJournalCommit();
                 }
             } ) //
             .setTitle( R.string.chargeNumberDialog_title ) //
@@ -125,7 +132,11 @@ public final class MainActivity
     public void onClickStopActivity(
         final View view )
     {
-        getTimeCard().stopActiveActivity( Dates.now() );
+        final TimeCard timeCard = getTimeCard();
+
+        // the wall clock may have moved backwards since the activity started
+        timeCard.stopActiveActivity( Math.max( Dates.nowInMilliseconds(), timeCard.getEarliestStartTimeInMilliseconds() ) );
+        getBeltimeApplication().requestTimeCardJournalCommit();
     }
 
     /*
@@ -191,6 +202,10 @@ public final class MainActivity
         super.onPause();
 
         getTimeCard().setTimeCardListener( null );
+        if( !getBeltimeApplication().flushTimeCardJournal() )
+        {
+            Toast.makeText( this, R.string.timeCardJournal_commitFailed_text, Toast.LENGTH_LONG ).show();
+        }
     }
 
     /*
@@ -255,6 +270,17 @@ public final class MainActivity
         // Methods
         // ==================================================================
 
+        /*
+         * @see com.belcan.beltime.model.ITimeCardListener#onActivitiesAppended(com.belcan.beltime.model.TimeCard, java.util.List)
+         */
+        @Override
+        public void onActivitiesAppended(
+            final TimeCard timeCard,
+            final List<Activity> activities )
+        {
+            update();
+        }
+
         /*
          * @see com.belcan.beltime.model.ITimeCardListener#onActivityStarted(com.belcan.beltime.model.TimeCard, com.belcan.beltime.model.Activity)
          */
@@ -277,6 +303,17 @@ public final class MainActivity
             update();
         }
 
+        /*
+         * @see com.belcan.beltime.model.ITimeCardListener#onPeriodClosed(com.belcan.beltime.model.TimeCard, com.belcan.beltime.model.ClosedPeriod)
+         */
+        @Override
+        public void onPeriodClosed(
+            final TimeCard timeCard,
+            final ClosedPeriod closedPeriod )
+        {
+            update();
+        }
+
         /*
          * @see com.belcan.beltime.model.ITimeCardListener#onReset(com.belcan.beltime.model.TimeCard)
          */
@@ -286,5 +323,16 @@ public final class MainActivity
         {
             update();
         }
+
+        /*
+         * @see com.belcan.beltime.model.ITimeCardListener#onRestored(com.belcan.beltime.model.TimeCard, boolean)
+         */
+        @Override
+        public void onRestored(
+            final TimeCard timeCard,
+            final boolean isUndo )
+        {
+            update();
+        }
     }
 }
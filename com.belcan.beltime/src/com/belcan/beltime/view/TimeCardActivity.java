@@ -24,6 +24,7 @@ import android.widget.ListView;
 import android.widget.SimpleAdapter;
 import com.belcan.beltime.R;
 import com.belcan.beltime.model.Activity;
+import com.belcan.beltime.model.ClosedPeriod;
 import com.belcan.beltime.model.ITimeCardListener;
 import com.belcan.beltime.model.TimeCard;
 import org.eclipse.jdt.annotation.Nullable;
@@ -87,7 +88,7 @@ public final class TimeCardActivity
         };
 
         final List<Map<String, Object>> activitiesData = new ArrayList<Map<String, Object>>();
-        for( final Activity activity : getTimeCard().getActivities() )
+        for( final Activity activity : getTimeCard().getSnapshot().getActivities() )
         {
             assert activity != null;
             final Map<String, Object> activityData = new HashMap<String, Object>();
@@ -174,6 +175,17 @@ public final class TimeCardActivity
         // Methods
         // ==================================================================
 
+        /*
+         * @see com.belcan.beltime.model.ITimeCardListener#onActivitiesAppended(com.belcan.beltime.model.TimeCard, java.util.List)
+         */
+        @Override
+        public void onActivitiesAppended(
+            final TimeCard timeCard,
+            final List<Activity> activities )
+        {
+            update();
+        }
+
         /*
          * @see com.belcan.beltime.model.ITimeCardListener#onActivityStarted(com.belcan.beltime.model.TimeCard, com.belcan.beltime.model.Activity)
          */
@@ -196,6 +208,17 @@ public final class TimeCardActivity
             update();
         }
 
+        /*
+         * @see com.belcan.beltime.model.ITimeCardListener#onPeriodClosed(com.belcan.beltime.model.TimeCard, com.belcan.beltime.model.ClosedPeriod)
+         */
+        @Override
+        public void onPeriodClosed(
+            final TimeCard timeCard,
+            final ClosedPeriod closedPeriod )
+        {
+            update();
+        }
+
         /*
          * @see com.belcan.beltime.model.ITimeCardListener#onReset(com.belcan.beltime.model.TimeCard)
          */
@@ -205,5 +228,16 @@ public final class TimeCardActivity
         {
             update();
         }
+
+        /*
+         * @see com.belcan.beltime.model.ITimeCardListener#onRestored(com.belcan.beltime.model.TimeCard, boolean)
+         */
+        @Override
+        public void onRestored(
+            final TimeCard timeCard,
+            final boolean isUndo )
+        {
+            update();
+        }
     }
 }